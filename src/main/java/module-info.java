@@ -17,7 +17,9 @@ module onethreeseven.datastructures{
     exports onethreeseven.datastructures.algorithm;
     exports onethreeseven.datastructures.data;
     exports onethreeseven.datastructures.data.resolver;
+    exports onethreeseven.datastructures.index;
     exports onethreeseven.datastructures.model;
+    exports onethreeseven.datastructures.similarity;
     exports onethreeseven.datastructures.util;
     exports onethreeseven.datastructures.command;
     exports onethreeseven.datastructures.view;
@@ -1,22 +1,47 @@
 package onethreeseven.datastructures.algorithm;
 
-import onethreeseven.common.util.Maths;
-import onethreeseven.datastructures.model.STPt;
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.RegularIntervalSTTrajectory;
 import onethreeseven.datastructures.model.STTrajectory;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Algorithms that extend this class modify the trajectory so that each entry has exactly the same
  * number of milliseconds between it.
  * {@link STTrajectory}.
+ * When run in parallel both the interval heuristic and the resampling of each trajectory
+ * are split across the common fork-join pool.
  * @author Luke Bermingham.
  */
 abstract class AbstractTemporalIntervalTransform {
 
+    private static final int RESAMPLE_CHUNK_SIZE = 1024;
+
+    private boolean parallel = false;
+
+    /**
+     * @param parallel If true, the trajectories are processed in parallel.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param trajectories The trajectories.
+     * @return A stream of the trajectories, which is parallel if this transform is.
+     */
+    Stream<STTrajectory> stream(Map<String, STTrajectory> trajectories){
+        return parallel ? trajectories.values().parallelStream() : trajectories.values().stream();
+    }
+
     /**
      * Get the interval to apply to the trajectories using some heuristic
      *
@@ -26,16 +51,36 @@ abstract class AbstractTemporalIntervalTransform {
     abstract long calculateTemporalInterval(Map<String, STTrajectory> trajectories);
 
     public Map<String, STTrajectory> run(Map<String, STTrajectory> stTrajs) {
-
         //find the temporal interval
         long interval = calculateTemporalInterval(stTrajs);
+        return transform(stTrajs, traj -> createUniformIntervalTrajectory(traj, interval));
+    }
+
+    /**
+     * The same as {@link #run(Map)}, but the output only stores the start time and interval
+     * of each trajectory rather than the time of every entry.
+     * @param stTrajs The trajectories to transform.
+     * @return The regular interval trajectories, keyed by the same ids.
+     */
+    public Map<String, RegularIntervalSTTrajectory> runRegular(Map<String, STTrajectory> stTrajs) {
+        long interval = calculateTemporalInterval(stTrajs);
+        return transform(stTrajs, traj -> createRegularIntervalTrajectory(traj, interval));
+    }
+
+    private <R> Map<String, R> transform(Map<String, STTrajectory> stTrajs, Function<STTrajectory, R> transform){
+        if(parallel){
+            Map<String, R> result = new ConcurrentHashMap<>(stTrajs.size());
+            stTrajs.entrySet().parallelStream().forEach(entry ->
+                    result.put(entry.getKey(), transform.apply(entry.getValue())));
+            return new HashMap<>(result);
+        }
 
         //we make a copy because this retains the index to field mappings
-        Map<String, STTrajectory> result = new HashMap<>();
+        Map<String, R> result = new HashMap<>(stTrajs.size());
 
         //createAnnotation uniform interval trajectory
         for (Map.Entry<String, STTrajectory> entry : stTrajs.entrySet()) {
-            result.put(entry.getKey(), createUniformIntervalTrajectory(entry.getValue(), interval));
+            result.put(entry.getKey(), transform.apply(entry.getValue()));
         }
         return result;
     }
@@ -51,39 +96,131 @@ abstract class AbstractTemporalIntervalTransform {
      * @param trajectory the trajectory used a input for creating the regularly spaced version (it is not modified)
      * @param intervalMillis   the temporal interval (in milliseconds)
      * @return the regularly spaced trajectory
+     * @see #resample(AbstractSTTrajectory, long, int, long[], double[], double[])
      */
     STTrajectory createUniformIntervalTrajectory(STTrajectory trajectory, long intervalMillis) {
 
         //make sure it is in cartesian mode
         trajectory.toCartesian();
-        STTrajectory output = new STTrajectory(true, trajectory.getProjection());
-
-        Iterator<STPt> iter = trajectory.iterator();
-        if(!iter.hasNext()){return output;}
-
-        LocalDateTime prevTime;
-        double[] prevXY;
-        {
-            STPt startPt = iter.next();
-            prevTime = startPt.getTime();
-            prevXY = startPt.getCoords();
-            output.add(startPt);
-        }
 
-        while(iter.hasNext()){
-            STPt curPt = iter.next();
-            long deltaMillis = ChronoUnit.MILLIS.between(prevTime, curPt.getTime());
-            if(deltaMillis < intervalMillis){continue;}
-            //case: the delta millis equal to or larger than the interval
-            double alpha = intervalMillis/deltaMillis;
-            double[] interpPt = Maths.lerp(prevXY, curPt.getCoords(), alpha);
-            prevTime = prevTime.plus(intervalMillis, ChronoUnit.MILLIS);
-            prevXY = interpPt;
-            output.addCartesian(prevXY, prevTime);
+        final int n = resampledSize(trajectory, intervalMillis);
+        STTrajectory output = new STTrajectory(true, trajectory.getProjection(), Math.max(n, 1));
+
+        //resample a chunk at a time so only the output trajectory grows with the number of steps
+        final int chunkSize = Math.min(n, RESAMPLE_CHUNK_SIZE);
+        long[] outMillis = new long[chunkSize];
+        double[] outX = new double[chunkSize];
+        double[] outY = new double[chunkSize];
+        for (int step = 0; step < n; step += chunkSize) {
+            int nWritten = resample(trajectory, intervalMillis, step, outMillis, outX, outY);
+            for (int i = 0; i < nWritten; i++) {
+                output.addCartesian(outX[i], outY[i], outMillis[i]);
+            }
         }
+        return output;
+
+    }
 
+    /**
+     * The same as {@link #createUniformIntervalTrajectory(STTrajectory, long)}, but the output
+     * only stores the start time and interval rather than the time of every entry.
+     * @param trajectory the trajectory used a input for creating the regularly spaced version (it is not modified)
+     * @param intervalMillis the temporal interval (in milliseconds)
+     * @return the regularly spaced trajectory
+     */
+    RegularIntervalSTTrajectory createRegularIntervalTrajectory(STTrajectory trajectory, long intervalMillis) {
+        trajectory.toCartesian();
+
+        final int n = resampledSize(trajectory, intervalMillis);
+        final long startMillis = n == 0 ? 0 : trajectory.getEpochMillis(0);
+        //without a positive interval only the first entry is kept, so the stored interval is never used
+        RegularIntervalSTTrajectory output = new RegularIntervalSTTrajectory(
+                startMillis, Math.max(intervalMillis, 1), true, trajectory.getProjection(), Math.max(n, 1));
+
+        final int chunkSize = Math.min(n, RESAMPLE_CHUNK_SIZE);
+        long[] outMillis = new long[chunkSize];
+        double[] outX = new double[chunkSize];
+        double[] outY = new double[chunkSize];
+        for (int step = 0; step < n; step += chunkSize) {
+            int nWritten = resample(trajectory, intervalMillis, step, outMillis, outX, outY);
+            for (int i = 0; i < nWritten; i++) {
+                output.addCartesian(outX[i], outY[i]);
+            }
+        }
         return output;
+    }
+
+    /**
+     * @param trajectory A trajectory.
+     * @param intervalMillis The temporal interval (in milliseconds). If it is not positive
+     *                       (i.e every trajectory had a single entry) only the first entry is kept.
+     * @return How many entries the trajectory has once it is resampled at the interval.
+     */
+    public static int resampledSize(AbstractSTTrajectory<?> trajectory, long intervalMillis){
+        final int size = trajectory.size();
+        if(size == 0){return 0;}
+        if(intervalMillis <= 0){return 1;}
+        long nSteps = (trajectory.getEpochMillis(size - 1) - trajectory.getEpochMillis(0)) / intervalMillis;
+        if(nSteps >= Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Interval of " + intervalMillis + "ms makes too many entries.");
+        }
+        return (int) nSteps + 1;
+    }
 
+    /**
+     * Resample a trajectory at a regular interval, starting from its first entry, in a single pass
+     * over its time and coordinate columns. An entry is made for every step of the interval, so a gap
+     * of several intervals between two entries is filled in by linear interpolation (the same as
+     * {@link AbstractSTTrajectory#positionAt(long)}).
+     * <br>
+     * As many steps are written as fit in the output arrays, so a long trajectory can be resampled
+     * a chunk at a time by passing the step to start from. Nothing is allocated, so the output arrays
+     * can be re-used across chunks and trajectories.
+     * @param trajectory The trajectory to resample, its coordinates are read in its current mode.
+     * @param intervalMillis The temporal interval (in milliseconds).
+     * @param fromStep The first step to write, between 0 and {@link #resampledSize(AbstractSTTrajectory, long)}.
+     * @param outMillis Where the resampled times are written.
+     * @param outX Where the resampled first coordinates are written.
+     * @param outY Where the resampled second coordinates are written.
+     * @return The number of entries written.
+     */
+    public static int resample(AbstractSTTrajectory<?> trajectory, long intervalMillis, int fromStep,
+                               long[] outMillis, double[] outX, double[] outY){
+        final int nSteps = resampledSize(trajectory, intervalMillis);
+        if(fromStep < 0 || fromStep > nSteps){
+            throw new IllegalArgumentException("Step " + fromStep + " is outside the " + nSteps + " resampled steps.");
+        }
+        final int n = Math.min(nSteps - fromStep, Math.min(outMillis.length, Math.min(outX.length, outY.length)));
+        if(n == 0){return 0;}
+        final int size = trajectory.size();
+        final long firstMillis = trajectory.getEpochMillis(0);
+
+        //the last entry at or before the current time
+        final long startMillis = firstMillis + fromStep * intervalMillis;
+        int j = trajectory.indexOf(startMillis);
+        j = j < 0 ? -j - 2 : j;
+        long t0 = trajectory.getEpochMillis(j);
+        long t1 = j + 1 < size ? trajectory.getEpochMillis(j + 1) : Long.MAX_VALUE;
+        for (int k = 0; k < n; k++) {
+            final long millis = startMillis + k * intervalMillis;
+            while(j + 1 < size && t1 <= millis){
+                j++;
+                t0 = t1;
+                t1 = j + 1 < size ? trajectory.getEpochMillis(j + 1) : Long.MAX_VALUE;
+            }
+            outMillis[k] = millis;
+            double x0 = trajectory.getX(j);
+            double y0 = trajectory.getY(j);
+            if(t0 == millis || j + 1 == size){
+                outX[k] = x0;
+                outY[k] = y0;
+            }else{
+                double alpha = (millis - t0) / (double) (t1 - t0);
+                outX[k] = x0 + alpha * (trajectory.getX(j + 1) - x0);
+                outY[k] = y0 + alpha * (trajectory.getY(j + 1) - y0);
+            }
+        }
+        return n;
     }
 
 }
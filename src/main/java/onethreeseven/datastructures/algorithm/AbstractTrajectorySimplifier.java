@@ -0,0 +1,166 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Algorithms that extend this class simplify a trajectory by dropping the entries that
+ * add the least to its shape, while keeping the error of what is left within a tolerance.
+ * The first and last entries are always kept. Distances are measured in cartesian coordinates
+ * (whatever mode the trajectory is in), so tolerances are in metres.
+ * <br>
+ * A simplification is either the (ascending) indices of the entries that are kept,
+ * see {@link #simplify(SpatioCompositeTrajectory)}, or a new trajectory of just those entries,
+ * see {@link #run(SpatioCompositeTrajectory)}.
+ * @author Luke Bermingham
+ */
+public abstract class AbstractTrajectorySimplifier {
+
+    private boolean parallel = false;
+
+    /**
+     * @param parallel If true, the trajectories of a dataset are simplified in parallel.
+     * @return This simplifier.
+     */
+    public AbstractTrajectorySimplifier setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Simplify the trajectory given as columns.
+     * @param x The cartesian x coordinates.
+     * @param y The cartesian y coordinates.
+     * @param epochMillis The time of each entry, or null if the trajectory is not spatio-temporal.
+     * @param n The number of entries (the columns may be longer), at least three.
+     * @return The indices of the entries to keep, in ascending order.
+     */
+    abstract int[] simplify(double[] x, double[] y, long[] epochMillis, int n);
+
+    /**
+     * @param traj The trajectory to simplify (it is not modified).
+     * @return The indices of the entries to keep, in ascending order.
+     */
+    public int[] simplify(SpatioCompositeTrajectory<?> traj){
+        final int n = traj.size();
+        if(n <= 2){
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        double[][] xy = cartesianColumns(traj);
+        long[] epochMillis = null;
+        if(traj instanceof AbstractSTTrajectory){
+            AbstractSTTrajectory<?> stTraj = (AbstractSTTrajectory<?>) traj;
+            epochMillis = new long[n];
+            for (int i = 0; i < n; i++) {
+                epochMillis[i] = stTraj.getEpochMillis(i);
+            }
+        }
+        return simplify(xy[0], xy[1], epochMillis, n);
+    }
+
+    /**
+     * @param traj The trajectory to simplify (it is not modified).
+     * @param <T> The type of trajectory, one of {@link SpatialTrajectory}, {@link STTrajectory} or {@link STStopTrajectory}.
+     * @return A new trajectory (in the same mode) of only the entries that are kept.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends SpatioCompositeTrajectory<?>> T run(T traj){
+        int[] kept = simplify(traj);
+        SpatioCompositeTrajectory out;
+        if(traj instanceof STStopTrajectory){
+            out = new STStopTrajectory(traj.isInCartesianMode(), traj.getProjection(), kept.length);
+        }else if(traj instanceof STTrajectory){
+            out = new STTrajectory(traj.isInCartesianMode(), traj.getProjection(), kept.length);
+        }else if(traj instanceof SpatialTrajectory){
+            out = new SpatialTrajectory(traj.isInCartesianMode(), traj.getProjection(), kept.length);
+        }else{
+            throw new IllegalArgumentException("Cannot simplify a trajectory of type: " + traj.getClass().getSimpleName());
+        }
+        //copy runs of consecutive entries at once
+        int runStart = 0;
+        for (int i = 1; i <= kept.length; i++) {
+            if(i == kept.length || kept[i] != kept[i - 1] + 1){
+                out.addAll(traj, kept[runStart], kept[i - 1] + 1);
+                runStart = i;
+            }
+        }
+        return (T) out;
+    }
+
+    /**
+     * @param trajs The trajectories to simplify (they are not modified).
+     * @param <T> The type of trajectory, see {@link #run(SpatioCompositeTrajectory)}.
+     * @return The simplified trajectories, keyed by the same ids.
+     */
+    public <T extends SpatioCompositeTrajectory<?>> Map<String, T> run(Map<String, T> trajs){
+        if(parallel){
+            Map<String, T> out = new ConcurrentHashMap<>(trajs.size());
+            trajs.entrySet().parallelStream().forEach(entry -> out.put(entry.getKey(), run(entry.getValue())));
+            return new HashMap<>(out);
+        }
+        Map<String, T> out = new HashMap<>(trajs.size());
+        for (Map.Entry<String, T> entry : trajs.entrySet()) {
+            out.put(entry.getKey(), run(entry.getValue()));
+        }
+        return out;
+    }
+
+    /**
+     * @param traj A trajectory.
+     * @return The cartesian x and y coordinates of every entry, as two columns.
+     */
+    static double[][] cartesianColumns(SpatioCompositeTrajectory<?> traj){
+        final int n = traj.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        final boolean inCartesianMode = traj.isInCartesianMode();
+        for (int i = 0; i < n; i++) {
+            if(inCartesianMode){
+                x[i] = traj.getX(i);
+                y[i] = traj.getY(i);
+            }else{
+                double[] xy = traj.getCoords(i, true);
+                x[i] = xy[0];
+                y[i] = xy[1];
+            }
+        }
+        return new double[][]{x, y};
+    }
+
+    /**
+     * @return The squared distance from point p to the segment a-b.
+     */
+    static double segmentDistanceSq(double px, double py, double ax, double ay, double bx, double by){
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lenSq = dx * dx + dy * dy;
+        double t = lenSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lenSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * The synchronized euclidean distance, which is the distance from point p to where
+     * an entity moving at constant speed from a to b would be at the time of p.
+     * @return The synchronized euclidean distance.
+     */
+    static double sed(double px, double py, long pt, double ax, double ay, long at, double bx, double by, long bt){
+        double alpha = bt == at ? 0 : (pt - at) / (double) (bt - at);
+        double ex = ax + alpha * (bx - ax) - px;
+        double ey = ay + alpha * (by - ay) - py;
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+}
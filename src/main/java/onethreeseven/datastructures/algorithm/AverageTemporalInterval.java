@@ -3,8 +3,6 @@ package onethreeseven.datastructures.algorithm;
 
 import onethreeseven.datastructures.model.STTrajectory;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
 /**
@@ -16,15 +14,14 @@ public class AverageTemporalInterval extends AbstractTemporalIntervalTransform {
     @Override
     long calculateTemporalInterval(Map<String, STTrajectory> trajectories) {
 
-        long totalAvgTime = 0;
-        for (STTrajectory stTraj : trajectories.values()) {
-            int lastIdx = stTraj.size() - 1;
-            LocalDateTime startTime = stTraj.get(0).getTime();
-            LocalDateTime endTime = stTraj.get(lastIdx).getTime();
-            long totalTrajTime = ChronoUnit.MILLIS.between(startTime, endTime);
-            totalAvgTime += (totalTrajTime/lastIdx);
-        }
+        long totalAvgTime = stream(trajectories).mapToLong(AverageTemporalInterval::averageInterval).sum();
         totalAvgTime /= trajectories.size();
         return totalAvgTime;
     }
+
+    private static long averageInterval(STTrajectory stTraj){
+        int lastIdx = stTraj.size() - 1;
+        long totalTrajTime = stTraj.getEpochMillis(lastIdx) - stTraj.getEpochMillis(0);
+        return totalTrajTime/lastIdx;
+    }
 }
@@ -0,0 +1,516 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Finds groups of objects that move together, from spatio-temporal trajectories.
+ * <br>
+ * The trajectories are sampled at snapshots a fixed interval apart (interpolating between entries, objects
+ * are absent from the snapshots outside their time span). At each snapshot the objects are grouped, then candidate
+ * groups are tracked from snapshot to snapshot by intersecting them with the groups of the next snapshot,
+ * like the CMC algorithm of Jeung et al. "Discovery of convoys in trajectory databases". A group is reported when it
+ * has at least minObjects members for at least minSnapshots consecutive snapshots. Candidates that are a subset of
+ * another candidate that started no later are pruned, as anything they could become is covered by the other.
+ * <ul>
+ *     <li>Convoys: the objects of each group are density-connected, see {@link DBSCAN} (with minPts of minObjects).</li>
+ *     <li>Flocks: the objects of each group are inside a disk of the radius, see Benkert et al. "Reporting flock
+ *     patterns". Candidate disks are the ones through each pair of objects (found using a grid), as in
+ *     the BFE algorithm of Vieira et al. "On-line discovery of flock patterns in spatio-temporal data".</li>
+ * </ul>
+ * Grouping the snapshots is the expensive part, so when run in parallel batches of snapshots are grouped in parallel
+ * (tracking is done in time order). Distances are in cartesian coordinates, so are in metres.
+ * @author Luke Bermingham
+ */
+public class CoMovementMiner {
+
+    //how many snapshots are grouped at once
+    private static final int BATCH_SIZE = 256;
+
+    private final int minObjects;
+    private final int minSnapshots;
+    private final long intervalMillis;
+    private boolean parallel = false;
+
+    /**
+     * @param minObjects The fewest objects in a group, at least two.
+     * @param minSnapshots The fewest consecutive snapshots a group has to last.
+     * @param intervalMillis The time between snapshots.
+     */
+    public CoMovementMiner(int minObjects, int minSnapshots, long intervalMillis){
+        if(minObjects < 2){
+            throw new IllegalArgumentException("A group needs at least two objects, got passed: " + minObjects);
+        }
+        if(minSnapshots < 1){
+            throw new IllegalArgumentException("A group must last at least one snapshot, got passed: " + minSnapshots);
+        }
+        if(intervalMillis <= 0){
+            throw new IllegalArgumentException("The snapshot interval must be positive, got passed: " + intervalMillis);
+        }
+        this.minObjects = minObjects;
+        this.minSnapshots = minSnapshots;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param parallel If true, snapshots are grouped in parallel.
+     * @return This miner.
+     */
+    public CoMovementMiner setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @param trajs The trajectories (they are not modified).
+     * @param epsilon How close (in metres) objects have to be to be neighbours.
+     * @return The convoys, in order of when they started.
+     */
+    public List<CoMovementPattern> convoys(Map<String, ? extends AbstractSTTrajectory<?>> trajs, double epsilon){
+        DBSCAN dbscan = new DBSCAN(epsilon, minObjects);
+        return mine(trajs, (x, y, n) -> {
+            int[] labels = dbscan.run(Arrays.copyOf(x, n), Arrays.copyOf(y, n));
+            int nClusters = 0;
+            for (int label : labels) {
+                nClusters = Math.max(nClusters, label + 1);
+            }
+            int[] sizes = new int[nClusters];
+            for (int label : labels) {
+                if(label != DBSCAN.NOISE){
+                    sizes[label]++;
+                }
+            }
+            int[][] groups = new int[nClusters][];
+            for (int c = 0; c < nClusters; c++) {
+                groups[c] = new int[sizes[c]];
+                sizes[c] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                if(labels[i] != DBSCAN.NOISE){
+                    groups[labels[i]][sizes[labels[i]]++] = i;
+                }
+            }
+            return groups;
+        });
+    }
+
+    /**
+     * @param trajs The trajectories (they are not modified).
+     * @param radius The radius (in metres) of the disk the objects of a group have to be inside.
+     * @return The flocks, in order of when they started.
+     */
+    public List<CoMovementPattern> flocks(Map<String, ? extends AbstractSTTrajectory<?>> trajs, double radius){
+        if(radius <= 0){
+            throw new IllegalArgumentException("Radius must be positive, got passed: " + radius);
+        }
+        return mine(trajs, (x, y, n) -> disks(x, y, n, radius));
+    }
+
+    /**
+     * Groups the objects of one snapshot.
+     */
+    private interface Grouper {
+        /**
+         * @param x The cartesian x coordinates of the objects in the snapshot.
+         * @param y The cartesian y coordinates of the objects in the snapshot.
+         * @param n The number of objects in the snapshot (the columns may be longer).
+         * @return The groups, as the ascending indices of their objects.
+         */
+        int[][] group(double[] x, double[] y, int n);
+    }
+
+    /**
+     * A group being tracked, members are the ascending indices of the trajectories.
+     */
+    private static final class Candidate {
+        final int[] members;
+        final int start;
+
+        Candidate(int[] members, int start){
+            this.members = members;
+            this.start = start;
+        }
+    }
+
+    private List<CoMovementPattern> mine(Map<String, ? extends AbstractSTTrajectory<?>> trajs, Grouper grouper){
+        final int nObjects = trajs.size();
+        String[] ids = new String[nObjects];
+        AbstractSTTrajectory<?>[] values = new AbstractSTTrajectory<?>[nObjects];
+        int k = 0;
+        for (Map.Entry<String, ? extends AbstractSTTrajectory<?>> entry : trajs.entrySet()) {
+            ids[k] = entry.getKey();
+            values[k] = entry.getValue();
+            k++;
+        }
+        //sort the ids, so members can be reported in order by sorting their indices
+        Integer[] order = new Integer[nObjects];
+        for (int i = 0; i < nObjects; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> ids[i]));
+        String[] sortedIds = new String[nObjects];
+        double[][] xs = new double[nObjects][];
+        double[][] ys = new double[nObjects][];
+        AbstractSTTrajectory<?>[] sorted = new AbstractSTTrajectory<?>[nObjects];
+        long firstMillis = Long.MAX_VALUE;
+        long lastMillis = Long.MIN_VALUE;
+        for (int i = 0; i < nObjects; i++) {
+            AbstractSTTrajectory<?> traj = values[order[i]];
+            sortedIds[i] = ids[order[i]];
+            sorted[i] = traj;
+            double[][] xy = AbstractTrajectorySimplifier.cartesianColumns(traj);
+            xs[i] = xy[0];
+            ys[i] = xy[1];
+            if(traj.size() > 0){
+                firstMillis = Math.min(firstMillis, traj.getEpochMillis(0));
+                lastMillis = Math.max(lastMillis, traj.getEpochMillis(traj.size() - 1));
+            }
+        }
+        List<CoMovementPattern> patterns = new ArrayList<>();
+        if(firstMillis > lastMillis){
+            return patterns;
+        }
+        final long startMillis = firstMillis;
+        final int nSnapshots = (int) Math.min(Integer.MAX_VALUE, (lastMillis - firstMillis) / intervalMillis + 1);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int batchStart = 0; batchStart < nSnapshots; batchStart += BATCH_SIZE) {
+            final int from = batchStart;
+            final int to = Math.min(nSnapshots, batchStart + BATCH_SIZE);
+            int[][][] batchGroups = new int[to - from][][];
+            IntStream snapshots = IntStream.range(from, to);
+            if(parallel){
+                snapshots = snapshots.parallel();
+            }
+            snapshots.forEach(s -> batchGroups[s - from] =
+                    groupSnapshot(sorted, xs, ys, startMillis + s * intervalMillis, grouper));
+            for (int s = from; s < to; s++) {
+                candidates = track(candidates, batchGroups[s - from], s, patterns, sortedIds, startMillis);
+            }
+        }
+        for (Candidate c : candidates) {
+            report(c, nSnapshots - 1, patterns, sortedIds, startMillis);
+        }
+        return removeDominated(patterns);
+    }
+
+    /**
+     * @return The groups of the snapshot, as the ascending indices of their trajectories.
+     */
+    private int[][] groupSnapshot(AbstractSTTrajectory<?>[] trajs, double[][] xs, double[][] ys, long millis, Grouper grouper){
+        final int nObjects = trajs.length;
+        double[] x = new double[nObjects];
+        double[] y = new double[nObjects];
+        int[] objs = new int[nObjects];
+        int n = 0;
+        for (int o = 0; o < nObjects; o++) {
+            AbstractSTTrajectory<?> traj = trajs[o];
+            int idx = traj.indexOf(millis);
+            if(idx >= 0){
+                x[n] = xs[o][idx];
+                y[n] = ys[o][idx];
+            }else{
+                int after = -idx - 1;
+                if(after == 0 || after == traj.size()){
+                    //not moving at this time
+                    continue;
+                }
+                long t0 = traj.getEpochMillis(after - 1);
+                double alpha = (millis - t0) / (double) (traj.getEpochMillis(after) - t0);
+                x[n] = xs[o][after - 1] + alpha * (xs[o][after] - xs[o][after - 1]);
+                y[n] = ys[o][after - 1] + alpha * (ys[o][after] - ys[o][after - 1]);
+            }
+            objs[n++] = o;
+        }
+        if(n < minObjects){
+            return new int[0][];
+        }
+        int[][] groups = grouper.group(x, y, n);
+        //back to trajectory indices, which are ascending as the objects were added in order
+        for (int[] group : groups) {
+            for (int i = 0; i < group.length; i++) {
+                group[i] = objs[group[i]];
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Extend the candidates with the groups of the next snapshot.
+     * @return The candidates after this snapshot.
+     */
+    private List<Candidate> track(List<Candidate> candidates, int[][] groups, int snapshot,
+                                  List<CoMovementPattern> patterns, String[] ids, long startMillis){
+        //the groups each object is in
+        Map<Integer, List<Integer>> groupsOf = new HashMap<>();
+        for (int g = 0; g < groups.length; g++) {
+            for (int o : groups[g]) {
+                groupsOf.computeIfAbsent(o, key -> new ArrayList<>(1)).add(g);
+            }
+        }
+        List<Candidate> next = new ArrayList<>();
+        for (Candidate c : candidates) {
+            //the members of the candidate in each group
+            Map<Integer, int[]> shared = new LinkedHashMap<>();
+            Map<Integer, Integer> nShared = new HashMap<>();
+            for (int o : c.members) {
+                List<Integer> gs = groupsOf.get(o);
+                if(gs == null){
+                    continue;
+                }
+                for (int g : gs) {
+                    int[] members = shared.computeIfAbsent(g, key -> new int[c.members.length]);
+                    int count = nShared.getOrDefault(g, 0);
+                    members[count] = o;
+                    nShared.put(g, count + 1);
+                }
+            }
+            boolean keptWhole = false;
+            for (Map.Entry<Integer, int[]> entry : shared.entrySet()) {
+                int count = nShared.get(entry.getKey());
+                if(count >= minObjects){
+                    next.add(new Candidate(Arrays.copyOf(entry.getValue(), count), c.start));
+                    keptWhole |= count == c.members.length;
+                }
+            }
+            if(!keptWhole){
+                report(c, snapshot - 1, patterns, ids, startMillis);
+            }
+        }
+        for (int[] group : groups) {
+            next.add(new Candidate(group, snapshot));
+        }
+        return prune(next);
+    }
+
+    /**
+     * Remove the candidates with the same members (keeping the earliest) or that are a subset of one that started no later.
+     */
+    private static List<Candidate> prune(List<Candidate> candidates){
+        Map<MemberKey, Candidate> unique = new HashMap<>();
+        for (Candidate c : candidates) {
+            unique.merge(new MemberKey(c.members), c, (a, b) -> a.start <= b.start ? a : b);
+        }
+        List<Candidate> bySize = new ArrayList<>(unique.values());
+        bySize.sort((a, b) -> a.members.length != b.members.length ?
+                Integer.compare(b.members.length, a.members.length) : Integer.compare(a.start, b.start));
+        //the kept candidates containing each object
+        Map<Integer, List<Candidate>> keptWith = new HashMap<>();
+        List<Candidate> kept = new ArrayList<>();
+        for (Candidate c : bySize) {
+            boolean dominated = false;
+            for (Candidate d : keptWith.getOrDefault(c.members[0], Collections.emptyList())) {
+                if(d.start <= c.start && containsAll(d.members, c.members)){
+                    dominated = true;
+                    break;
+                }
+            }
+            if(!dominated){
+                kept.add(c);
+                for (int o : c.members) {
+                    keptWith.computeIfAbsent(o, key -> new ArrayList<>()).add(c);
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return True if every member of sub is in sup (both ascending).
+     */
+    private static boolean containsAll(int[] sup, int[] sub){
+        if(sub.length > sup.length){
+            return false;
+        }
+        int i = 0;
+        for (int o : sub) {
+            while(i < sup.length && sup[i] < o){
+                i++;
+            }
+            if(i == sup.length || sup[i] != o){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void report(Candidate c, int lastSnapshot, List<CoMovementPattern> patterns, String[] ids, long startMillis){
+        int nSnapshots = lastSnapshot - c.start + 1;
+        if(nSnapshots < minSnapshots){
+            return;
+        }
+        String[] members = new String[c.members.length];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = ids[c.members[i]];
+        }
+        patterns.add(new CoMovementPattern(members, startMillis + c.start * intervalMillis,
+                startMillis + lastSnapshot * intervalMillis, nSnapshots));
+    }
+
+    /**
+     * @return The patterns that do not have a subset of the members and time span of another.
+     */
+    private static List<CoMovementPattern> removeDominated(List<CoMovementPattern> patterns){
+        patterns.sort(Comparator.comparingLong(CoMovementPattern::getStartMillis)
+                .thenComparing(p -> -p.getMembers().size()));
+        List<CoMovementPattern> out = new ArrayList<>();
+        for (CoMovementPattern p : patterns) {
+            boolean dominated = false;
+            for (CoMovementPattern q : patterns) {
+                if(q != p && q.getStartMillis() <= p.getStartMillis() && q.getEndMillis() >= p.getEndMillis() &&
+                        q.getMembers().containsAll(p.getMembers()) &&
+                        (q.getMembers().size() > p.getMembers().size() || q.getNumberOfSnapshots() > p.getNumberOfSnapshots())){
+                    dominated = true;
+                    break;
+                }
+            }
+            if(!dominated){
+                out.add(p);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return The groups of objects inside a disk of the radius, using the disks through each pair of
+     * objects within the diameter of each other. Groups that are a subset of another are left out.
+     */
+    private int[][] disks(double[] x, double[] y, int n, double radius){
+        final double diameter = 2 * radius;
+        //a little slack so the objects on the edge of a disk are inside it
+        final double rSq = radius * radius * (1 + 1e-9);
+        Map<Long, List<Integer>> grid = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            grid.computeIfAbsent(cellKey(cell(x[i], diameter), cell(y[i], diameter)), key -> new ArrayList<>()).add(i);
+        }
+        Map<MemberKey, int[]> found = new HashMap<>();
+        for (int p = 0; p < n; p++) {
+            int cx = cell(x[p], diameter);
+            int cy = cell(y[p], diameter);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    List<Integer> cellPts = grid.get(cellKey(cx + dx, cy + dy));
+                    if(cellPts == null){
+                        continue;
+                    }
+                    for (int q : cellPts) {
+                        if(q <= p){
+                            continue;
+                        }
+                        double ux = x[q] - x[p];
+                        double uy = y[q] - y[p];
+                        double d = Math.sqrt(ux * ux + uy * uy);
+                        if(d > diameter){
+                            continue;
+                        }
+                        double midX = (x[p] + x[q]) / 2;
+                        double midY = (y[p] + y[q]) / 2;
+                        if(d == 0){
+                            addDisk(midX, midY, x, y, rSq, diameter, grid, found);
+                            continue;
+                        }
+                        //the two disks with p and q on their edge
+                        double h = Math.sqrt(Math.max(0, radius * radius - d * d / 4));
+                        double perpX = -uy / d * h;
+                        double perpY = ux / d * h;
+                        addDisk(midX + perpX, midY + perpY, x, y, rSq, diameter, grid, found);
+                        addDisk(midX - perpX, midY - perpY, x, y, rSq, diameter, grid, found);
+                    }
+                }
+            }
+        }
+        //leave out the disks whose objects are all in a bigger one
+        List<int[]> bySize = new ArrayList<>(found.values());
+        bySize.sort((a, b) -> Integer.compare(b.length, a.length));
+        Map<Integer, List<int[]>> keptWith = new HashMap<>();
+        List<int[]> kept = new ArrayList<>();
+        for (int[] disk : bySize) {
+            boolean subset = false;
+            for (int[] bigger : keptWith.getOrDefault(disk[0], Collections.emptyList())) {
+                if(containsAll(bigger, disk)){
+                    subset = true;
+                    break;
+                }
+            }
+            if(!subset){
+                kept.add(disk);
+                for (int o : disk) {
+                    keptWith.computeIfAbsent(o, key -> new ArrayList<>()).add(disk);
+                }
+            }
+        }
+        return kept.toArray(new int[0][]);
+    }
+
+    private void addDisk(double centreX, double centreY, double[] x, double[] y, double rSq, double cellSize,
+                         Map<Long, List<Integer>> grid, Map<MemberKey, int[]> found){
+        int cx = cell(centreX, cellSize);
+        int cy = cell(centreY, cellSize);
+        int[] members = new int[8];
+        int count = 0;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                List<Integer> cellPts = grid.get(cellKey(cx + dx, cy + dy));
+                if(cellPts == null){
+                    continue;
+                }
+                for (int i : cellPts) {
+                    double ex = x[i] - centreX;
+                    double ey = y[i] - centreY;
+                    if(ex * ex + ey * ey <= rSq){
+                        if(count == members.length){
+                            members = Arrays.copyOf(members, count * 2);
+                        }
+                        members[count++] = i;
+                    }
+                }
+            }
+        }
+        if(count >= minObjects){
+            members = Arrays.copyOf(members, count);
+            Arrays.sort(members);
+            found.putIfAbsent(new MemberKey(members), members);
+        }
+    }
+
+    private static int cell(double v, double cellSize){
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private static long cellKey(int cx, int cy){
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /**
+     * A set of members as a map key.
+     */
+    private static final class MemberKey {
+        private final int[] members;
+        private final int hash;
+
+        MemberKey(int[] members){
+            this.members = members;
+            this.hash = Arrays.hashCode(members);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MemberKey && Arrays.equals(members, ((MemberKey) o).members);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
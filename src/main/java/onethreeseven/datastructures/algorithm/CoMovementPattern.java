@@ -0,0 +1,59 @@
+package onethreeseven.datastructures.algorithm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of objects that moved together (a convoy or a flock) found by {@link CoMovementMiner},
+ * with the ids of its members and the time span it lasted.
+ * @author Luke Bermingham
+ */
+public final class CoMovementPattern {
+
+    private final List<String> members;
+    private final long startMillis;
+    private final long endMillis;
+    private final int nSnapshots;
+
+    CoMovementPattern(String[] members, long startMillis, long endMillis, int nSnapshots){
+        this.members = Collections.unmodifiableList(Arrays.asList(members));
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.nSnapshots = nSnapshots;
+    }
+
+    /**
+     * @return The ids of the trajectories in the group, in ascending order.
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return The time of the first snapshot the group was together in.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return The time of the last snapshot the group was together in.
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * @return The number of consecutive snapshots the group was together in.
+     */
+    public int getNumberOfSnapshots() {
+        return nSnapshots;
+    }
+
+    @Override
+    public String toString() {
+        return "CoMovementPattern{members=" + members + ", startMillis=" + startMillis +
+                ", endMillis=" + endMillis + "}";
+    }
+}
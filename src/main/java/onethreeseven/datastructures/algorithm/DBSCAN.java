@@ -0,0 +1,421 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Density-based clustering of points, DBSCAN (Ester et al. "A density-based algorithm for discovering
+ * clusters in large spatial databases with noise"). A point is a core point if at least minPts points
+ * (including itself) are within epsilon of it. Core points within epsilon of each other are in the same cluster,
+ * other points are in the cluster of their nearest core point within epsilon, or else are noise.
+ * <br>
+ * The points are bucketed into a uniform grid of cells whose diagonal is epsilon (Gunawan's grid DBSCAN),
+ * so every point in a cell is within epsilon of the others: a cell with at least minPts points is all core points
+ * and the core points of a cell are always one cluster, without comparing them pairwise. The neighbours of a point
+ * are only looked for in the 20 cells around its own that can be within epsilon. Finding the core points and
+ * linking the clusters of neighbouring cells (stopping at the first pair of core points within epsilon) are done
+ * cell by cell (in parallel if set), then the linked cells are merged with a union-find.
+ * Distances are in cartesian coordinates, so epsilon is in metres.
+ * <br>
+ * Clusters are numbered from 0 in the order of their first core point.
+ * @author Luke Bermingham
+ */
+public class DBSCAN {
+
+    /**
+     * The cluster of points that are not part of any cluster.
+     */
+    public static final int NOISE = -1;
+
+    private final double epsilon;
+    private final int minPts;
+    private boolean parallel = false;
+
+    /**
+     * @param epsilon How close (in metres) points have to be to be neighbours.
+     * @param minPts How many neighbours (including itself) a point needs to be a core point.
+     */
+    public DBSCAN(double epsilon, int minPts){
+        if(epsilon <= 0){
+            throw new IllegalArgumentException("Epsilon must be positive, got passed: " + epsilon);
+        }
+        if(minPts < 1){
+            throw new IllegalArgumentException("Minimum points must be at least one, got passed: " + minPts);
+        }
+        this.epsilon = epsilon;
+        this.minPts = minPts;
+    }
+
+    /**
+     * @param parallel If true, the cells of the grid are processed in parallel.
+     * @return This clusterer.
+     */
+    public DBSCAN setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Cluster every entry of a dataset together.
+     * @param trajs The trajectories (they are not modified).
+     * @return The cluster of each entry of each trajectory (or {@link #NOISE}), keyed by the same ids.
+     */
+    public Map<String, int[]> run(Map<String, ? extends SpatioCompositeTrajectory<?>> trajs){
+        int n = 0;
+        for (SpatioCompositeTrajectory<?> traj : trajs.values()) {
+            n += traj.size();
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        int k = 0;
+        for (SpatioCompositeTrajectory<?> traj : trajs.values()) {
+            final boolean inCartesianMode = traj.isInCartesianMode();
+            for (int i = 0; i < traj.size(); i++, k++) {
+                if(inCartesianMode){
+                    x[k] = traj.getX(i);
+                    y[k] = traj.getY(i);
+                }else{
+                    double[] xy = traj.getCoords(i, true);
+                    x[k] = xy[0];
+                    y[k] = xy[1];
+                }
+            }
+        }
+        int[] labels = run(x, y);
+        Map<String, int[]> out = new LinkedHashMap<>(trajs.size());
+        k = 0;
+        for (Map.Entry<String, ? extends SpatioCompositeTrajectory<?>> entry : trajs.entrySet()) {
+            int size = entry.getValue().size();
+            out.put(entry.getKey(), Arrays.copyOfRange(labels, k, k + size));
+            k += size;
+        }
+        return out;
+    }
+
+    /**
+     * Cluster the stop episodes of a dataset into places, using the centroid of each episode.
+     * @param trajs Stop/move annotated trajectories (they are not modified).
+     * @return The stop episodes of each trajectory with their place set, keyed by the same ids.
+     */
+    public Map<String, List<StopEpisode>> clusterStops(Map<String, STStopTrajectory> trajs){
+        Map<String, List<StopEpisode>> out = new LinkedHashMap<>(trajs.size());
+        List<StopEpisode> all = new ArrayList<>();
+        for (Map.Entry<String, STStopTrajectory> entry : trajs.entrySet()) {
+            List<StopEpisode> episodes = StopEpisode.extract(entry.getValue());
+            out.put(entry.getKey(), episodes);
+            all.addAll(episodes);
+        }
+        double[] x = new double[all.size()];
+        double[] y = new double[all.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = all.get(i).getX();
+            y[i] = all.get(i).getY();
+        }
+        int[] labels = run(x, y);
+        for (int i = 0; i < labels.length; i++) {
+            all.get(i).setPlace(labels[i]);
+        }
+        return out;
+    }
+
+    /**
+     * @param x The cartesian x coordinates of the points.
+     * @param y The cartesian y coordinates of the points.
+     * @return The cluster of each point, or {@link #NOISE}.
+     */
+    public int[] run(double[] x, double[] y){
+        if(x.length != y.length){
+            throw new IllegalArgumentException("There must be the same number of x and y coordinates.");
+        }
+        return new Clustering(x, y).run();
+    }
+
+    /**
+     * The state of clustering one set of points. The points are reordered cell by cell,
+     * so the points of a cell are next to each other in memory.
+     */
+    private class Clustering {
+
+        private final int n;
+        private final double epsSq = epsilon * epsilon;
+        //the diagonal of a cell is epsilon, so every point in a cell is within epsilon of the others
+        private final double cellSize = epsilon / Math.sqrt(2);
+        //the points in cell order
+        private final double[] xs;
+        private final double[] ys;
+        //the original index of each point, and the cell order position of each original index
+        private final int[] orig;
+        private final int[] pos;
+        //the points of cell c are [cellStart[c], cellStart[c + 1])
+        private final int[] cellStart;
+        //the other cells that can hold points within epsilon of each cell
+        private final int[][] neighbours;
+
+        private final boolean[] core;
+        //whether each cell has any core points, they are all in the same cluster
+        private final boolean[] coreCell;
+
+        Clustering(double[] x, double[] y){
+            this.n = x.length;
+            Map<Long, Integer> cellIdxs = new HashMap<>();
+            int[] cellOf = new int[n];
+            List<Long> keys = new ArrayList<>();
+            int[] counts = new int[Math.max(1, n)];
+            for (int i = 0; i < n; i++) {
+                long key = cellKey(cell(x[i]), cell(y[i]));
+                Integer c = cellIdxs.get(key);
+                if(c == null){
+                    c = keys.size();
+                    cellIdxs.put(key, c);
+                    keys.add(key);
+                }
+                cellOf[i] = c;
+                counts[c]++;
+            }
+            final int nCells = keys.size();
+            this.cellStart = new int[nCells + 1];
+            for (int c = 0; c < nCells; c++) {
+                cellStart[c + 1] = cellStart[c] + counts[c];
+            }
+            this.xs = new double[n];
+            this.ys = new double[n];
+            this.orig = new int[n];
+            this.pos = new int[n];
+            int[] fill = Arrays.copyOf(cellStart, nCells);
+            for (int i = 0; i < n; i++) {
+                int k = fill[cellOf[i]]++;
+                xs[k] = x[i];
+                ys[k] = y[i];
+                orig[k] = i;
+                pos[i] = k;
+            }
+            this.neighbours = new int[nCells][];
+            forEachCell(c -> {
+                long key = keys.get(c);
+                int cx = (int) (key >> 32);
+                int cy = (int) key;
+                //the 5x5 block of cells without its corners, which are always more than epsilon away
+                int[] found = new int[20];
+                int nFound = 0;
+                for (int dx = -2; dx <= 2; dx++) {
+                    for (int dy = -2; dy <= 2; dy++) {
+                        if((dx == 0 && dy == 0) || (Math.abs(dx) == 2 && Math.abs(dy) == 2)){
+                            continue;
+                        }
+                        Integer nc = cellIdxs.get(cellKey(cx + dx, cy + dy));
+                        if(nc != null){
+                            found[nFound++] = nc;
+                        }
+                    }
+                }
+                neighbours[c] = Arrays.copyOf(found, nFound);
+            });
+            this.core = new boolean[n];
+            this.coreCell = new boolean[nCells];
+        }
+
+        private int cell(double v){
+            return (int) Math.floor(v / cellSize);
+        }
+
+        private long cellKey(int cx, int cy){
+            return ((long) cx << 32) | (cy & 0xffffffffL);
+        }
+
+        private void forEachCell(IntConsumer action){
+            IntStream cells = IntStream.range(0, cellStart.length - 1);
+            if(parallel){
+                cells = cells.parallel();
+            }
+            cells.forEach(action);
+        }
+
+        private boolean withinEpsilon(int p, int q){
+            double dx = xs[p] - xs[q];
+            double dy = ys[p] - ys[q];
+            return dx * dx + dy * dy <= epsSq;
+        }
+
+        int[] run(){
+            final int nCells = cellStart.length - 1;
+            forEachCell(this::findCorePoints);
+
+            //collect the links between the clusters of neighbouring cells in parallel, then merge them
+            int[][] links = new int[nCells][];
+            forEachCell(c -> links[c] = linkAcrossCells(c));
+            int[] parent = new int[nCells];
+            for (int c = 0; c < nCells; c++) {
+                parent[c] = c;
+            }
+            for (int c = 0; c < nCells; c++) {
+                for (int nc : links[c]) {
+                    union(parent, c, nc);
+                }
+            }
+
+            //number the clusters in the order of their first core point
+            int[] cellOf = new int[n];
+            for (int c = 0; c < nCells; c++) {
+                Arrays.fill(cellOf, cellStart[c], cellStart[c + 1], c);
+            }
+            int[] rootLabel = new int[nCells];
+            Arrays.fill(rootLabel, NOISE);
+            int[] sortedLabels = new int[n];
+            Arrays.fill(sortedLabels, NOISE);
+            int nClusters = 0;
+            for (int i = 0; i < n; i++) {
+                int p = pos[i];
+                if(core[p]){
+                    int root = find(parent, cellOf[p]);
+                    if(rootLabel[root] == NOISE){
+                        rootLabel[root] = nClusters++;
+                    }
+                    sortedLabels[p] = rootLabel[root];
+                }
+            }
+            //border points join the cluster of their nearest core point
+            forEachCell(c -> labelBorderPoints(c, sortedLabels));
+
+            int[] labels = new int[n];
+            for (int p = 0; p < n; p++) {
+                labels[orig[p]] = sortedLabels[p];
+            }
+            return labels;
+        }
+
+        private void findCorePoints(int c){
+            final int start = cellStart[c];
+            final int end = cellStart[c + 1];
+            //every point of the cell is a neighbour of the others
+            final int cellCount = end - start;
+            boolean anyCore = false;
+            for (int p = start; p < end; p++) {
+                int count = cellCount;
+                search:
+                for (int nc : neighbours[c]) {
+                    if(count >= minPts){
+                        break;
+                    }
+                    for (int q = cellStart[nc]; q < cellStart[nc + 1]; q++) {
+                        if(withinEpsilon(p, q) && ++count >= minPts){
+                            break search;
+                        }
+                    }
+                }
+                core[p] = count >= minPts;
+                anyCore |= core[p];
+            }
+            coreCell[c] = anyCore;
+        }
+
+        /**
+         * @return The neighbouring cells after this one whose core points are within epsilon of
+         * a core point of this cell, and so are in the same cluster.
+         */
+        private int[] linkAcrossCells(int c){
+            if(!coreCell[c]){
+                return new int[0];
+            }
+            int[] linked = new int[neighbours[c].length];
+            int nLinked = 0;
+            for (int nc : neighbours[c]) {
+                if(nc > c && coreCell[nc] && anyCoreWithinEpsilon(c, nc)){
+                    linked[nLinked++] = nc;
+                }
+            }
+            return Arrays.copyOf(linked, nLinked);
+        }
+
+        /**
+         * @return True as soon as a core point of one cell is found within epsilon of a core point of the other.
+         */
+        private boolean anyCoreWithinEpsilon(int c, int nc){
+            for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+                if(!core[p]){
+                    continue;
+                }
+                for (int q = cellStart[nc]; q < cellStart[nc + 1]; q++) {
+                    if(core[q] && withinEpsilon(p, q)){
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void labelBorderPoints(int c, int[] sortedLabels){
+            for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+                if(core[p]){
+                    continue;
+                }
+                int nearest = nearestCore(p, c, -1);
+                for (int nc : neighbours[c]) {
+                    nearest = nearestCore(p, nc, nearest);
+                }
+                sortedLabels[p] = nearest == -1 ? NOISE : sortedLabels[nearest];
+            }
+        }
+
+        /**
+         * @param p A border point.
+         * @param c The cell to look in.
+         * @param nearest The nearest core point within epsilon found so far, or -1.
+         * @return The nearest core point within epsilon after also looking in the cell, or -1.
+         */
+        private int nearestCore(int p, int c, int nearest){
+            double nearestDistSq = Double.POSITIVE_INFINITY;
+            if(nearest != -1){
+                double dx = xs[p] - xs[nearest];
+                double dy = ys[p] - ys[nearest];
+                nearestDistSq = dx * dx + dy * dy;
+            }
+            for (int q = cellStart[c]; q < cellStart[c + 1]; q++) {
+                if(!core[q]){
+                    continue;
+                }
+                double dx = xs[p] - xs[q];
+                double dy = ys[p] - ys[q];
+                double dSq = dx * dx + dy * dy;
+                //ties go to the lowest original index, so the result does not depend on the cell order
+                if(dSq <= epsSq && (dSq < nearestDistSq || (dSq == nearestDistSq && orig[q] < orig[nearest]))){
+                    nearest = q;
+                    nearestDistSq = dSq;
+                }
+            }
+            return nearest;
+        }
+
+    }
+
+    private static int find(int[] parent, int i){
+        while(parent[i] != i){
+            //path halving
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b){
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if(rootA != rootB){
+            //the smaller index is the root, which keeps the result the same whatever order links are merged in
+            if(rootA < rootB){
+                parent[rootB] = rootA;
+            }else{
+                parent[rootA] = rootB;
+            }
+        }
+    }
+
+}
@@ -1,11 +1,8 @@
 package onethreeseven.datastructures.algorithm;
 
-import onethreeseven.datastructures.model.STPt;
+import onethreeseven.datastructures.model.RegularIntervalSTTrajectory;
 import onethreeseven.datastructures.model.STTrajectory;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -35,26 +32,30 @@ public class DefinedTemporalInterval extends AbstractTemporalIntervalTransform {
         trajectory.toCartesian();
 
         STTrajectory out = new STTrajectory(true, trajectory.getProjection());
-        Iterator<STPt> stPtIter = trajectory.iterator();
+        final int size = trajectory.size();
+        if(size == 0){return out;}
 
-        if(!stPtIter.hasNext()){return out;}
+        long curMillis = trajectory.getEpochMillis(0);
+        out.addCartesian(trajectory.getX(0), trajectory.getY(0), curMillis);
 
-        STPt prevPt = stPtIter.next();
-        LocalDateTime prevTime = prevPt.getTime();
-        {
-            double[] startPt = new double[2];
-            System.arraycopy(prevPt.getCoords(), 0, startPt, 0, 2);
-            out.addCartesian(startPt, prevTime);
+        for (int i = 1; i < size; i++) {
+            curMillis += interval;
+            out.addCartesian(trajectory.getX(i), trajectory.getY(i), curMillis);
         }
+        return out;
+    }
+
+    @Override
+    RegularIntervalSTTrajectory createRegularIntervalTrajectory(STTrajectory trajectory, long interval) {
+
+        trajectory.toCartesian();
 
-        while(stPtIter.hasNext()){
-            STPt curPt = stPtIter.next();
-            double[] xy = curPt.getCoords();
-            double[] xyCopy = new double[xy.length];
-            //copy contents
-            System.arraycopy(xy, 0, xyCopy, 0, xy.length);
-            prevTime = prevTime.plus(interval, ChronoUnit.MILLIS);
-            out.addCartesian(xyCopy, prevTime);
+        final int size = trajectory.size();
+        final long startMillis = size == 0 ? 0 : trajectory.getEpochMillis(0);
+        RegularIntervalSTTrajectory out = new RegularIntervalSTTrajectory(
+                startMillis, interval, true, trajectory.getProjection(), size);
+        for (int i = 0; i < size; i++) {
+            out.addCartesian(trajectory.getX(i), trajectory.getY(i));
         }
         return out;
     }
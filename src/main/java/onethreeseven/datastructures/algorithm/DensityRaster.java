@@ -0,0 +1,171 @@
+package onethreeseven.datastructures.algorithm;
+
+/**
+ * A density raster made by {@link DensityRasterizer}: a grid of square cells (in cartesian coordinates)
+ * for each bucket of time, holding how many entries (or segments) fell in each cell and, for segments
+ * of spatio-temporal trajectories, how long was spent in it.
+ * <br>
+ * The values are stored as flat primitive arrays, bucket by bucket, then row by row (rows go up in y),
+ * see {@link #index(int, int, int)}. Save it with {@link onethreeseven.datastructures.data.DensityRasterWriter}.
+ * @author Luke Bermingham
+ */
+public final class DensityRaster {
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int nCols;
+    private final int nRows;
+    private final long startMillis;
+    private final long bucketMillis;
+    private final int nBuckets;
+    private final int[] counts;
+    private final float[] dwellSeconds;
+
+    /**
+     * @param minX The x coordinate of the left edge of the grid.
+     * @param minY The y coordinate of the bottom edge of the grid.
+     * @param cellSize The width and height of each cell.
+     * @param nCols The number of columns.
+     * @param nRows The number of rows.
+     * @param startMillis The start of the first time bucket.
+     * @param bucketMillis The length of each time bucket, or 0 if there is a single bucket for all time.
+     * @param nBuckets The number of time buckets.
+     * @param counts The count of each cell, see {@link #index(int, int, int)}.
+     * @param dwellSeconds The time spent in each cell, or null if it was not measured.
+     */
+    public DensityRaster(double minX, double minY, double cellSize, int nCols, int nRows,
+                         long startMillis, long bucketMillis, int nBuckets, int[] counts, float[] dwellSeconds){
+        long nCells = (long) nCols * nRows * nBuckets;
+        if(counts.length != nCells || (dwellSeconds != null && dwellSeconds.length != nCells)){
+            throw new IllegalArgumentException("The raster should have " + nCells + " cells.");
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.nCols = nCols;
+        this.nRows = nRows;
+        this.startMillis = startMillis;
+        this.bucketMillis = bucketMillis;
+        this.nBuckets = nBuckets;
+        this.counts = counts;
+        this.dwellSeconds = dwellSeconds;
+    }
+
+    /**
+     * @param bucket A time bucket.
+     * @param row A row of the grid.
+     * @param col A column of the grid.
+     * @return The index of the cell in the flat arrays.
+     */
+    public int index(int bucket, int row, int col){
+        return (bucket * nRows + row) * nCols + col;
+    }
+
+    /**
+     * @return The number of entries that fell in the cell (or segments that crossed it).
+     */
+    public int getCount(int bucket, int row, int col){
+        return counts[index(bucket, row, col)];
+    }
+
+    /**
+     * @return The seconds spent in the cell, or 0 if it was not measured.
+     */
+    public float getDwellSeconds(int bucket, int row, int col){
+        return dwellSeconds == null ? 0 : dwellSeconds[index(bucket, row, col)];
+    }
+
+    /**
+     * @return The count of every cell (not a copy), see {@link #index(int, int, int)}.
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return The seconds spent in every cell (not a copy), or null if it was not measured.
+     */
+    public float[] getDwellSeconds() {
+        return dwellSeconds;
+    }
+
+    public boolean hasDwellSeconds(){
+        return dwellSeconds != null;
+    }
+
+    /**
+     * @return The sum of the counts of every cell.
+     */
+    public long getTotalCount(){
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param epochMillis A time.
+     * @return The bucket the time falls in, or -1 if it is outside the buckets.
+     */
+    public int getBucket(long epochMillis){
+        if(bucketMillis == 0){
+            return 0;
+        }
+        long bucket = Math.floorDiv(epochMillis - startMillis, bucketMillis);
+        return bucket < 0 || bucket >= nBuckets ? -1 : (int) bucket;
+    }
+
+    /**
+     * @return The column x falls in, or -1 if it is outside the grid.
+     */
+    public int getCol(double x){
+        double col = Math.floor((x - minX) / cellSize);
+        return col < 0 || col >= nCols ? -1 : (int) col;
+    }
+
+    /**
+     * @return The row y falls in, or -1 if it is outside the grid.
+     */
+    public int getRow(double y){
+        double row = Math.floor((y - minY) / cellSize);
+        return row < 0 || row >= nRows ? -1 : (int) row;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getNumberOfCols() {
+        return nCols;
+    }
+
+    public int getNumberOfRows() {
+        return nRows;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return The length of each time bucket, or 0 if there is a single bucket for all time.
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getNumberOfBuckets() {
+        return nBuckets;
+    }
+
+}
@@ -0,0 +1,356 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Aggregates trajectories into a {@link DensityRaster}, i.e for traffic heat-maps.
+ * The grid is in cartesian coordinates, entries of trajectories in geographic mode
+ * are projected with the trajectory's own projection. Entries are read straight from the coordinate
+ * (and time) columns, so no point objects are made.
+ * <br>
+ * In {@link Mode#POINTS} mode each entry adds one to the cell and time bucket it is in.
+ * In {@link Mode#SEGMENTS} mode the segment between each pair of consecutive entries is walked through
+ * the grid (Amanatides and Woo, "A fast voxel traversal algorithm for ray tracing"), adding one to each
+ * cell it crosses and, for spatio-temporal trajectories, the time spent crossing it (assuming constant speed).
+ * A segment crossing a time bucket boundary is split between the buckets by interpolating its time.
+ * <br>
+ * When run in parallel each thread adds to its own primitive arrays, which are summed at the end.
+ * @author Luke Bermingham
+ */
+public class DensityRasterizer {
+
+    public enum Mode {
+        /**
+         * Count the entries in each cell.
+         */
+        POINTS,
+        /**
+         * Count the segments crossing each cell, and the time spent in it.
+         */
+        SEGMENTS
+    }
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int nCols;
+    private final int nRows;
+    private long startMillis = 0;
+    private long bucketMillis = 0;
+    private int nBuckets = 1;
+    private Mode mode = Mode.POINTS;
+    private boolean parallel = false;
+
+    /**
+     * @param minX The x coordinate of the left edge of the grid.
+     * @param minY The y coordinate of the bottom edge of the grid.
+     * @param cellSize The width and height of each cell (in metres).
+     * @param nCols The number of columns.
+     * @param nRows The number of rows.
+     */
+    public DensityRasterizer(double minX, double minY, double cellSize, int nCols, int nRows){
+        if(cellSize <= 0){
+            throw new IllegalArgumentException("Cell size must be positive, got passed: " + cellSize);
+        }
+        if(nCols < 1 || nRows < 1){
+            throw new IllegalArgumentException("The grid must have at least one row and column.");
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.nCols = nCols;
+        this.nRows = nRows;
+    }
+
+    /**
+     * @param bounds The cartesian bounds to cover, {{minX, maxX},{minY, maxY}}, i.e from
+     *               {@link SpatioCompositeTrajectory#getBounds()}.
+     * @param cellSize The width and height of each cell (in metres).
+     */
+    public DensityRasterizer(double[][] bounds, double cellSize){
+        this(bounds[0][0], bounds[1][0], cellSize,
+                cellsToCover(bounds[0][1] - bounds[0][0], cellSize),
+                cellsToCover(bounds[1][1] - bounds[1][0], cellSize));
+    }
+
+    private static int cellsToCover(double extent, double cellSize){
+        //the max edge is inside the last cell
+        long n = (long) Math.floor(extent / cellSize) + 1;
+        if(n > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Too many cells to cover the bounds with cells of size: " + cellSize);
+        }
+        return (int) n;
+    }
+
+    /**
+     * Split time into buckets, each with its own grid. Only spatio-temporal trajectories can be rasterized
+     * once this is set, and entries outside the buckets are ignored.
+     * @param startMillis The start of the first bucket.
+     * @param bucketMillis The length of each bucket.
+     * @param nBuckets The number of buckets.
+     * @return This rasterizer.
+     */
+    public DensityRasterizer setTimeBuckets(long startMillis, long bucketMillis, int nBuckets) {
+        if(bucketMillis <= 0 || nBuckets < 1){
+            throw new IllegalArgumentException("There must be at least one time bucket of positive length.");
+        }
+        this.startMillis = startMillis;
+        this.bucketMillis = bucketMillis;
+        this.nBuckets = nBuckets;
+        return this;
+    }
+
+    /**
+     * @param mode Whether to rasterize the entries or the segments between them (the default is entries).
+     * @return This rasterizer.
+     */
+    public DensityRasterizer setMode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @param parallel If true, the trajectories of a dataset are rasterized in parallel.
+     * @return This rasterizer.
+     */
+    public DensityRasterizer setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @param traj The trajectory to rasterize (it is not modified).
+     * @return Its density raster.
+     */
+    public DensityRaster run(SpatioCompositeTrajectory<?> traj){
+        Accumulator acc = new Accumulator();
+        acc.add(traj);
+        return acc.toRaster();
+    }
+
+    /**
+     * @param trajs The trajectories to rasterize together (they are not modified).
+     * @return Their density raster.
+     */
+    public DensityRaster run(Map<String, ? extends SpatioCompositeTrajectory<?>> trajs){
+        Map<Thread, Accumulator> accs = new ConcurrentHashMap<>();
+        Stream<? extends SpatioCompositeTrajectory<?>> stream = parallel ? trajs.values().parallelStream() : trajs.values().stream();
+        stream.forEach(traj -> accs.computeIfAbsent(Thread.currentThread(), thread -> new Accumulator()).add(traj));
+        Accumulator total = null;
+        for (Accumulator acc : accs.values()) {
+            if(total == null){
+                total = acc;
+            }else{
+                total.merge(acc);
+            }
+        }
+        return total == null ? new Accumulator().toRaster() : total.toRaster();
+    }
+
+    /**
+     * The counts (and dwell times) of one thread.
+     */
+    private class Accumulator {
+
+        private final int[] counts;
+        private final float[] dwellSeconds;
+        //the parameter range of the segment being clipped, reused for every segment
+        private final double[] range = new double[2];
+
+        Accumulator(){
+            long nCells = (long) nCols * nRows * nBuckets;
+            if(nCells > Integer.MAX_VALUE - 8){
+                throw new IllegalArgumentException("Too many cells in the raster: " + nCells);
+            }
+            this.counts = new int[(int) nCells];
+            this.dwellSeconds = mode == Mode.SEGMENTS ? new float[(int) nCells] : null;
+        }
+
+        private int index(int bucket, int row, int col){
+            return (bucket * nRows + row) * nCols + col;
+        }
+
+        void add(SpatioCompositeTrajectory<?> traj){
+            final int n = traj.size();
+            AbstractSTTrajectory<?> stTraj = traj instanceof AbstractSTTrajectory ? (AbstractSTTrajectory<?>) traj : null;
+            if(bucketMillis > 0 && stTraj == null){
+                throw new IllegalArgumentException("Only spatio-temporal trajectories can be split into time buckets.");
+            }
+            final boolean inCartesianMode = traj.isInCartesianMode();
+            double prevX = 0;
+            double prevY = 0;
+            long prevMillis = 0;
+            for (int i = 0; i < n; i++) {
+                double x;
+                double y;
+                if(inCartesianMode){
+                    x = traj.getX(i);
+                    y = traj.getY(i);
+                }else{
+                    double[] xy = traj.getProjection().geographicToCartesian(traj.getX(i), traj.getY(i));
+                    x = xy[0];
+                    y = xy[1];
+                }
+                long millis = stTraj == null ? 0 : stTraj.getEpochMillis(i);
+                if(mode == Mode.POINTS){
+                    addPoint(x, y, millis);
+                }else if(i > 0){
+                    addSegment(prevX, prevY, prevMillis, x, y, millis, stTraj != null);
+                }else if(n == 1){
+                    addSegment(x, y, millis, x, y, millis, stTraj != null);
+                }
+                prevX = x;
+                prevY = y;
+                prevMillis = millis;
+            }
+        }
+
+        private int bucketOf(long millis){
+            if(bucketMillis == 0){
+                return 0;
+            }
+            long bucket = Math.floorDiv(millis - startMillis, bucketMillis);
+            return bucket < 0 || bucket >= nBuckets ? -1 : (int) bucket;
+        }
+
+        private void addPoint(double x, double y, long millis){
+            int bucket = bucketOf(millis);
+            double col = Math.floor((x - minX) / cellSize);
+            double row = Math.floor((y - minY) / cellSize);
+            if(bucket >= 0 && col >= 0 && col < nCols && row >= 0 && row < nRows){
+                counts[index(bucket, (int) row, (int) col)]++;
+            }
+        }
+
+        private void addSegment(double ax, double ay, long aMillis, double bx, double by, long bMillis, boolean hasTime){
+            final double dx = bx - ax;
+            final double dy = by - ay;
+            //clip the segment to the grid (Liang-Barsky)
+            range[0] = 0;
+            range[1] = 1;
+            final double maxX = minX + nCols * cellSize;
+            final double maxY = minY + nRows * cellSize;
+            if(!clip(-dx, ax - minX, range) || !clip(dx, maxX - ax, range) ||
+                    !clip(-dy, ay - minY, range) || !clip(dy, maxY - ay, range)){
+                return;
+            }
+            final double t0 = range[0];
+            final double t1 = range[1];
+
+            int col = cellOf(ax + t0 * dx, minX, nCols);
+            int row = cellOf(ay + t0 * dy, minY, nRows);
+            final int endCol = cellOf(ax + t1 * dx, minX, nCols);
+            final int endRow = cellOf(ay + t1 * dy, minY, nRows);
+            final int stepCol = Integer.signum(endCol - col);
+            final int stepRow = Integer.signum(endRow - row);
+            //the segment parameter where it crosses into the next column/row
+            final double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+            final double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+            double nextX = stepCol == 0 ? Double.POSITIVE_INFINITY : (minX + (col + (stepCol > 0 ? 1 : 0)) * cellSize - ax) / dx;
+            double nextY = stepRow == 0 ? Double.POSITIVE_INFINITY : (minY + (row + (stepRow > 0 ? 1 : 0)) * cellSize - ay) / dy;
+
+            //the number of cells is known, which keeps the walk inside the grid whatever the rounding
+            int nSteps = Math.abs(endCol - col) + Math.abs(endRow - row);
+            double s = t0;
+            for (int step = 0; step <= nSteps; step++) {
+                boolean last = step == nSteps;
+                boolean stepX = !last && (nextY > nextX || row == endRow) && col != endCol;
+                double e = last ? t1 : Math.max(s, Math.min(t1, stepX ? nextX : nextY));
+                addCell(row, col, s, e, aMillis, bMillis, hasTime);
+                if(last){
+                    break;
+                }
+                if(stepX){
+                    col += stepCol;
+                    nextX += deltaX;
+                }else{
+                    row += stepRow;
+                    nextY += deltaY;
+                }
+                s = e;
+            }
+        }
+
+        /**
+         * Add the part [s, e] of a segment (as fractions of its length) that is in a cell.
+         */
+        private void addCell(int row, int col, double s, double e, long aMillis, long bMillis, boolean hasTime){
+            if(bucketMillis == 0){
+                counts[index(0, row, col)]++;
+                if(hasTime){
+                    dwellSeconds[index(0, row, col)] += (float) ((e - s) * (bMillis - aMillis) / 1000.0);
+                }
+                return;
+            }
+            double from = aMillis + s * (bMillis - aMillis);
+            double to = aMillis + e * (bMillis - aMillis);
+            long firstBucket = Math.max(0, (long) Math.floor((from - startMillis) / bucketMillis));
+            long lastBucket = Math.min(nBuckets - 1, (long) Math.floor((to - startMillis) / bucketMillis));
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                double bucketStart = startMillis + bucket * bucketMillis;
+                double overlap = Math.min(to, bucketStart + bucketMillis) - Math.max(from, bucketStart);
+                //only touching the start of a bucket does not count, unless no time passes at all
+                if(overlap < 0 || (overlap == 0 && to > from)){
+                    continue;
+                }
+                int idx = index((int) bucket, row, col);
+                counts[idx]++;
+                dwellSeconds[idx] += (float) (overlap / 1000.0);
+            }
+        }
+
+        private int cellOf(double v, double min, int nCells){
+            int cell = (int) Math.floor((v - min) / cellSize);
+            return Math.max(0, Math.min(nCells - 1, cell));
+        }
+
+        void merge(Accumulator other){
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            if(dwellSeconds != null){
+                for (int i = 0; i < dwellSeconds.length; i++) {
+                    dwellSeconds[i] += other.dwellSeconds[i];
+                }
+            }
+        }
+
+        DensityRaster toRaster(){
+            return new DensityRaster(minX, minY, cellSize, nCols, nRows,
+                    startMillis, bucketMillis, nBuckets, counts, dwellSeconds);
+        }
+    }
+
+    /**
+     * Clip the parameter range of a segment against one edge (Liang-Barsky).
+     * @return False if the segment is entirely outside the edge.
+     */
+    private static boolean clip(double p, double q, double[] range){
+        if(p == 0){
+            return q >= 0;
+        }
+        double r = q / p;
+        if(p < 0){
+            if(r > range[1]){
+                return false;
+            }
+            if(r > range[0]){
+                range[0] = r;
+            }
+        }else{
+            if(r < range[0]){
+                return false;
+            }
+            if(r < range[1]){
+                range[1] = r;
+            }
+        }
+        return true;
+    }
+
+}
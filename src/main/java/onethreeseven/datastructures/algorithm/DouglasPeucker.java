@@ -0,0 +1,135 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification (Douglas and Peucker, "Algorithms for the reduction of the number of points
+ * required to represent a digitized line or its caricature"). The entry furthest from the segment between
+ * the two ends is kept and each side is split again, until every dropped entry is within the tolerance
+ * of the segment that replaces it. Spans are kept on an explicit stack rather than by recursion,
+ * so long trajectories cannot overflow the call stack.
+ * @author Luke Bermingham
+ */
+public class DouglasPeucker extends AbstractTrajectorySimplifier {
+
+    private final double toleranceSq;
+
+    /**
+     * @param tolerance The furthest (in metres) a dropped entry can be from the simplified trajectory.
+     */
+    public DouglasPeucker(double tolerance){
+        if(tolerance < 0){
+            throw new IllegalArgumentException("Tolerance cannot be negative, got passed: " + tolerance);
+        }
+        this.toleranceSq = tolerance * tolerance;
+    }
+
+    @Override
+    int[] simplify(double[] x, double[] y, long[] epochMillis, int n) {
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int nKept = 2;
+
+        //pairs of start and end indices still to be split
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while(top > 0){
+            final int end = stack[--top];
+            final int start = stack[--top];
+            double maxDistSq = -1;
+            int furthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distSq = segmentDistanceSq(x[i], y[i], x[start], y[start], x[end], y[end]);
+                if(distSq > maxDistSq){
+                    maxDistSq = distSq;
+                    furthest = i;
+                }
+            }
+            if(furthest == -1 || maxDistSq <= toleranceSq){
+                continue;
+            }
+            keep[furthest] = true;
+            nKept++;
+            if(top + 4 > stack.length){
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = start;
+            stack[top++] = furthest;
+            stack[top++] = furthest;
+            stack[top++] = end;
+        }
+
+        int[] kept = new int[nKept];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if(keep[i]){
+                kept[k++] = i;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Work out, for every entry, the largest tolerance at which Douglas-Peucker would still keep it.
+     * The entries kept with a tolerance t are exactly those whose significance is more than t,
+     * so one pass gives the simplification at every tolerance (i.e for levels of detail).
+     * @param traj A trajectory (it is not modified).
+     * @return The significance of each entry in metres, the first and last entries are infinitely significant.
+     */
+    public static double[] significance(SpatioCompositeTrajectory<?> traj){
+        final int n = traj.size();
+        double[] significance = new double[n];
+        if(n == 0){
+            return significance;
+        }
+        significance[0] = Double.POSITIVE_INFINITY;
+        significance[n - 1] = Double.POSITIVE_INFINITY;
+        double[][] xy = cartesianColumns(traj);
+        final double[] x = xy[0];
+        final double[] y = xy[1];
+
+        //spans still to be split, with the significance of the entry that split them
+        int[] stack = new int[64];
+        double[] parentSignificance = new double[32];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        parentSignificance[0] = Double.POSITIVE_INFINITY;
+        while(top > 0){
+            final double parent = parentSignificance[(top >> 1) - 1];
+            final int end = stack[--top];
+            final int start = stack[--top];
+            double maxDistSq = -1;
+            int furthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distSq = segmentDistanceSq(x[i], y[i], x[start], y[start], x[end], y[end]);
+                if(distSq > maxDistSq){
+                    maxDistSq = distSq;
+                    furthest = i;
+                }
+            }
+            if(furthest == -1){
+                continue;
+            }
+            //an entry is only kept if the entry that split its span is kept too
+            double s = Math.min(parent, Math.sqrt(maxDistSq));
+            significance[furthest] = s;
+            if(top + 4 > stack.length){
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                parentSignificance = Arrays.copyOf(parentSignificance, stack.length / 2);
+            }
+            parentSignificance[top >> 1] = s;
+            stack[top++] = start;
+            stack[top++] = furthest;
+            parentSignificance[top >> 1] = s;
+            stack[top++] = furthest;
+            stack[top++] = end;
+        }
+        return significance;
+    }
+
+}
@@ -0,0 +1,172 @@
+package onethreeseven.datastructures.algorithm;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of integer ids (i.e entry indices) keyed by a double, where the key of an id
+ * already in the heap can be changed or the id removed in O(log n).
+ * The simplification algorithms use this to keep the least important entry at the top
+ * as the importance of its neighbours changes.
+ * @author Luke Bermingham
+ */
+final class IndexedMinHeap {
+
+    private int[] heap;
+    //where each id is in the heap, or -1 if it is not
+    private int[] pos;
+    private double[] keys;
+    private int size = 0;
+
+    IndexedMinHeap(int capacity){
+        capacity = Math.max(1, capacity);
+        this.heap = new int[capacity];
+        this.pos = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    private void ensureCapacity(int id){
+        if(id < pos.length){
+            return;
+        }
+        int oldLength = pos.length;
+        int newLength = Math.max(id + 1, oldLength + (oldLength >> 1));
+        heap = Arrays.copyOf(heap, newLength);
+        keys = Arrays.copyOf(keys, newLength);
+        pos = Arrays.copyOf(pos, newLength);
+        Arrays.fill(pos, oldLength, newLength, -1);
+    }
+
+    int size(){
+        return size;
+    }
+
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    boolean contains(int id){
+        return id < pos.length && pos[id] != -1;
+    }
+
+    /**
+     * Add an id, or change its key if it is already in the heap.
+     * @param id The id.
+     * @param key The key of the id.
+     */
+    void put(int id, double key){
+        ensureCapacity(id);
+        int i = pos[id];
+        if(i == -1){
+            i = size++;
+            heap[i] = id;
+            pos[id] = i;
+            keys[id] = key;
+            siftUp(i);
+            return;
+        }
+        double oldKey = keys[id];
+        keys[id] = key;
+        if(key < oldKey){
+            siftUp(i);
+        }else{
+            siftDown(i);
+        }
+    }
+
+    /**
+     * @param id An id, which does not have to be in the heap.
+     */
+    void remove(int id){
+        if(!contains(id)){
+            return;
+        }
+        int i = pos[id];
+        pos[id] = -1;
+        size--;
+        if(i == size){
+            return;
+        }
+        int last = heap[size];
+        heap[i] = last;
+        pos[last] = i;
+        siftUp(i);
+        siftDown(pos[last]);
+    }
+
+    /**
+     * @return The id with the smallest key.
+     */
+    int peek(){
+        if(size == 0){
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * @return The smallest key, or positive infinity if the heap is empty.
+     */
+    double peekKey(){
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[heap[0]];
+    }
+
+    /**
+     * @return The id with the smallest key, which is removed from the heap.
+     */
+    int poll(){
+        int id = peek();
+        remove(id);
+        return id;
+    }
+
+    /**
+     * @param id An id in the heap.
+     * @return Its key.
+     */
+    double getKey(int id){
+        return keys[id];
+    }
+
+    private void siftUp(int i){
+        final int id = heap[i];
+        final double key = keys[id];
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            int parentId = heap[parent];
+            if(keys[parentId] <= key){
+                break;
+            }
+            heap[i] = parentId;
+            pos[parentId] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i){
+        final int id = heap[i];
+        final double key = keys[id];
+        while(true){
+            int child = 2 * i + 1;
+            if(child >= size){
+                break;
+            }
+            if(child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]){
+                child++;
+            }
+            int childId = heap[child];
+            if(keys[childId] >= key){
+                break;
+            }
+            heap[i] = childId;
+            pos[childId] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+}
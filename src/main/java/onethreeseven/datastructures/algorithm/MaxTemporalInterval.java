@@ -1,10 +1,7 @@
 package onethreeseven.datastructures.algorithm;
 
-import onethreeseven.datastructures.model.STPt;
 import onethreeseven.datastructures.model.STTrajectory;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
 /**
@@ -18,23 +15,22 @@ public class MaxTemporalInterval extends AbstractTemporalIntervalTransform {
 
     @Override
     protected long calculateTemporalInterval(Map<String, STTrajectory> trajectories) {
-        long maxInterval = Long.MIN_VALUE;
+        return stream(trajectories).mapToLong(MaxTemporalInterval::maxInterval).max().orElse(Long.MIN_VALUE);
+    }
 
-        for (Map.Entry<String, STTrajectory> trajEntry : trajectories.entrySet()) {
-            STTrajectory trajectory = trajEntry.getValue();
-            //previous value is used to determine interval size
-            LocalDateTime prevTime = trajectory.get(0).getTime();
-            //go through each point in trajectory
-            for (STPt stPt : trajectory) {
-                LocalDateTime curTime = stPt.getTime();
-                long temporalInterval = ChronoUnit.MILLIS.between(prevTime, curTime);
-                if (temporalInterval > maxInterval) {
-                    maxInterval = temporalInterval;
-                }
-                prevTime = curTime;
+    private static long maxInterval(STTrajectory trajectory){
+        long maxInterval = Long.MIN_VALUE;
+        //previous value is used to determine interval size
+        long prevTime = trajectory.getEpochMillis(0);
+        //go through each point in trajectory
+        for (int i = 0; i < trajectory.size(); i++) {
+            long curTime = trajectory.getEpochMillis(i);
+            long temporalInterval = curTime - prevTime;
+            if (temporalInterval > maxInterval) {
+                maxInterval = temporalInterval;
             }
+            prevTime = curTime;
         }
-
         return maxInterval;
     }
 
@@ -2,8 +2,6 @@ package onethreeseven.datastructures.algorithm;
 
 import onethreeseven.datastructures.model.STTrajectory;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
 /**
@@ -17,22 +15,22 @@ public class MinTemporalInterval extends AbstractTemporalIntervalTransform {
 
     @Override
     long calculateTemporalInterval(Map<String, STTrajectory> trajectories) {
-        long minInterval = Long.MAX_VALUE;
+        return stream(trajectories).mapToLong(MinTemporalInterval::minInterval).min().orElse(Long.MAX_VALUE);
+    }
 
-        for (STTrajectory trajectory : trajectories.values()) {
-            //previous value is used to determine interval size
-            LocalDateTime prevValue = trajectory.get(0).getTime();
-            //go through each point in trajectory
-            for (int i = 1; i < trajectory.size(); i++) {
-                LocalDateTime curValue = trajectory.get(i).getTime();
-                long interval = ChronoUnit.MILLIS.between(prevValue, curValue);
-                if (interval != 0 && interval < minInterval) {
-                    minInterval = interval;
-                }
-                prevValue = curValue;
+    private static long minInterval(STTrajectory trajectory){
+        long minInterval = Long.MAX_VALUE;
+        //previous value is used to determine interval size
+        long prevValue = trajectory.getEpochMillis(0);
+        //go through each point in trajectory
+        for (int i = 1; i < trajectory.size(); i++) {
+            long curValue = trajectory.getEpochMillis(i);
+            long interval = curValue - prevValue;
+            if (interval != 0 && interval < minInterval) {
+                minInterval = interval;
             }
+            prevValue = curValue;
         }
-
         return minInterval;
     }
 }
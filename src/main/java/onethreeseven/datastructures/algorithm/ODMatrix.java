@@ -0,0 +1,117 @@
+package onethreeseven.datastructures.algorithm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A sparse origin-destination matrix: the number of trips from each zone to each zone,
+ * for each time of day bucket. Only the cells with trips are stored. Trips can be added
+ * from many threads at once, see {@link ODMatrixBuilder}.
+ * @author Luke Bermingham
+ */
+public final class ODMatrix {
+
+    /**
+     * Receives the non-zero cells of the matrix, see {@link #forEach(Consumer)}.
+     */
+    public interface Consumer {
+        void accept(int bucket, int origin, int destination, long trips);
+    }
+
+    private final int nZones;
+    private final int nBuckets;
+    private final ConcurrentHashMap<Long, LongAdder> trips = new ConcurrentHashMap<>();
+
+    /**
+     * @param nZones The number of zones.
+     * @param nBuckets The number of time of day buckets.
+     */
+    public ODMatrix(int nZones, int nBuckets){
+        if(nZones < 0 || nBuckets < 1){
+            throw new IllegalArgumentException("There must be at least one bucket and no negative number of zones.");
+        }
+        //every cell must have its own key
+        Math.multiplyExact(Math.multiplyExact((long) nZones, nZones), nBuckets);
+        this.nZones = nZones;
+        this.nBuckets = nBuckets;
+    }
+
+    private long key(int bucket, int origin, int destination){
+        if(bucket < 0 || bucket >= nBuckets || origin < 0 || origin >= nZones || destination < 0 || destination >= nZones){
+            throw new IndexOutOfBoundsException("No cell at bucket " + bucket + ", origin " + origin +
+                    ", destination " + destination);
+        }
+        return ((long) bucket * nZones + origin) * nZones + destination;
+    }
+
+    /**
+     * Add a trip, this is safe to call from many threads at once.
+     * @param bucket The time of day bucket.
+     * @param origin The zone the trip started in.
+     * @param destination The zone the trip ended in.
+     */
+    public void add(int bucket, int origin, int destination){
+        trips.computeIfAbsent(key(bucket, origin, destination), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return The number of trips from the origin to the destination in the bucket.
+     */
+    public long get(int bucket, int origin, int destination){
+        LongAdder count = trips.get(key(bucket, origin, destination));
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return The number of trips from the origin to the destination at any time of day.
+     */
+    public long get(int origin, int destination){
+        long total = 0;
+        for (int bucket = 0; bucket < nBuckets; bucket++) {
+            total += get(bucket, origin, destination);
+        }
+        return total;
+    }
+
+    /**
+     * @return The total number of trips.
+     */
+    public long getTotalTrips(){
+        long total = 0;
+        for (LongAdder count : trips.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of cells with any trips.
+     */
+    public int getNumberOfNonZero(){
+        return trips.size();
+    }
+
+    /**
+     * @param consumer Given every cell with any trips (in no particular order).
+     */
+    public void forEach(Consumer consumer){
+        for (Map.Entry<Long, LongAdder> entry : trips.entrySet()) {
+            long key = entry.getKey();
+            int destination = (int) (key % nZones);
+            key /= nZones;
+            int origin = (int) (key % nZones);
+            int bucket = (int) (key / nZones);
+            consumer.accept(bucket, origin, destination, entry.getValue().sum());
+        }
+    }
+
+    public int getNumberOfZones() {
+        return nZones;
+    }
+
+    public int getNumberOfBuckets() {
+        return nBuckets;
+    }
+
+}
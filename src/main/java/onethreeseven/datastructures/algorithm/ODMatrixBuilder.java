@@ -0,0 +1,119 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.index.ZoneIndex;
+import onethreeseven.datastructures.model.STStopTrajectory;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Builds an {@link ODMatrix} from stop/move annotated trajectories. A trip is the move between two
+ * consecutive stop episodes of a trajectory: it goes from the zone of the first episode's centroid to
+ * the zone of the second's, and is put in the time of day bucket of when it left (the end of the first episode).
+ * Trips to or from a stop outside every zone are not counted.
+ * <br>
+ * Stop episodes are found with {@link StopEpisode#forEach(STStopTrajectory, StopEpisode.Consumer)} as primitive values,
+ * so no object is made for each episode or trip. Trajectories are processed in parallel (if set) and add their trips
+ * straight into the matrix, and {@link #add(STStopTrajectory, ODMatrix)} can be used to add a large dataset one part at a time.
+ * Times of day are in UTC, like {@link onethreeseven.datastructures.util.EpochMillisUtil}.
+ * @author Luke Bermingham
+ */
+public class ODMatrixBuilder {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final ZoneIndex zones;
+    private int nBuckets = 1;
+    private boolean includeIntraZone = true;
+    private boolean parallel = false;
+
+    /**
+     * @param zones The zones of the matrix.
+     */
+    public ODMatrixBuilder(ZoneIndex zones){
+        this.zones = zones;
+    }
+
+    /**
+     * @param nBuckets How many equal parts to split the day into, i.e 24 for hourly buckets (the default is 1).
+     * @return This builder.
+     */
+    public ODMatrixBuilder setTimeOfDayBuckets(int nBuckets) {
+        if(nBuckets < 1){
+            throw new IllegalArgumentException("There must be at least one time of day bucket, got passed: " + nBuckets);
+        }
+        this.nBuckets = nBuckets;
+        return this;
+    }
+
+    /**
+     * @param includeIntraZone If false, trips that start and end in the same zone are not counted (the default is true).
+     * @return This builder.
+     */
+    public ODMatrixBuilder setIncludeIntraZone(boolean includeIntraZone) {
+        this.includeIntraZone = includeIntraZone;
+        return this;
+    }
+
+    /**
+     * @param parallel If true, the trajectories of a dataset are processed in parallel.
+     * @return This builder.
+     */
+    public ODMatrixBuilder setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @return An empty matrix of the zones and time of day buckets of this builder.
+     */
+    public ODMatrix newMatrix(){
+        return new ODMatrix(zones.size(), nBuckets);
+    }
+
+    /**
+     * @param trajs The trajectories (they are not modified).
+     * @return The trips between the zones.
+     */
+    public ODMatrix run(Map<String, STStopTrajectory> trajs){
+        ODMatrix matrix = newMatrix();
+        add(trajs, matrix);
+        return matrix;
+    }
+
+    /**
+     * @param trajs The trajectories (they are not modified).
+     * @param matrix The matrix to add their trips to, made by {@link #newMatrix()}.
+     */
+    public void add(Map<String, STStopTrajectory> trajs, ODMatrix matrix){
+        Stream<STStopTrajectory> stream = parallel ? trajs.values().parallelStream() : trajs.values().stream();
+        stream.forEach(traj -> add(traj, matrix));
+    }
+
+    /**
+     * @param traj A trajectory (it is not modified).
+     * @param matrix The matrix to add its trips to, made by {@link #newMatrix()}.
+     */
+    public void add(STStopTrajectory traj, ODMatrix matrix){
+        if(matrix.getNumberOfZones() != zones.size() || matrix.getNumberOfBuckets() != nBuckets){
+            throw new IllegalArgumentException("The matrix does not have the zones and buckets of this builder.");
+        }
+        //the zone and departure time of the previous episode
+        final int[] prevZone = new int[]{-1};
+        final long[] prevEndMillis = new long[1];
+        StopEpisode.forEach(traj, (startIndex, endIndex, startMillis, endMillis, x, y) -> {
+            int zone = zones.zoneOf(x, y);
+            if(prevZone[0] != -1 && zone != -1 && (includeIntraZone || zone != prevZone[0])){
+                matrix.add(bucketOf(prevEndMillis[0]), prevZone[0], zone);
+            }
+            prevZone[0] = zone;
+            prevEndMillis[0] = endMillis;
+        });
+    }
+
+    private int bucketOf(long epochMillis){
+        long millisOfDay = Math.floorMod(epochMillis, MILLIS_PER_DAY);
+        return (int) (millisOfDay * nBuckets / MILLIS_PER_DAY);
+    }
+
+}
@@ -0,0 +1,180 @@
+package onethreeseven.datastructures.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Online simplification of spatio-temporal trajectories with a bounded error, based on SQUISH-E(&mu;)
+ * (Muckell et al. "Compression of trajectory data: a comprehensive evaluation and new approach").
+ * <br>
+ * Entries are streamed in one at a time. Each entry with two neighbours has a priority: the synchronized
+ * euclidean distance (SED) from it to the segment between its neighbours, plus the largest error inherited
+ * from entries already dropped next to it. Whenever the smallest priority is within the tolerance that entry
+ * is dropped and its neighbours inherit its priority. Because the priority is an upper bound on the error of
+ * every entry dropped around it, no dropped entry is ever further than the tolerance (in SED) from the
+ * simplified trajectory. Dropping is done as entries arrive, so only the entries kept so far are in the heap.
+ * <br>
+ * SED needs the time of each entry, so this only works on spatio-temporal trajectories.
+ * @author Luke Bermingham
+ */
+public class SquishE extends AbstractTrajectorySimplifier {
+
+    private final double maxError;
+
+    /**
+     * @param maxError The furthest (in metres) a dropped entry can be from where the simplified
+     *                 trajectory is at the same time (the synchronized euclidean distance).
+     */
+    public SquishE(double maxError){
+        if(maxError < 0){
+            throw new IllegalArgumentException("Maximum error cannot be negative, got passed: " + maxError);
+        }
+        this.maxError = maxError;
+    }
+
+    @Override
+    int[] simplify(double[] x, double[] y, long[] epochMillis, int n) {
+        if(epochMillis == null){
+            throw new IllegalArgumentException("SQUISH-E needs a spatio-temporal trajectory.");
+        }
+        Stream stream = newStream(n);
+        for (int i = 0; i < n; i++) {
+            stream.add(x[i], y[i], epochMillis[i]);
+        }
+        return stream.finish();
+    }
+
+    /**
+     * @return A stream that simplifies entries as they are added.
+     */
+    public Stream newStream(){
+        return newStream(16);
+    }
+
+    private Stream newStream(int initialCapacity){
+        return new Stream(initialCapacity);
+    }
+
+    /**
+     * Simplifies a trajectory as its entries arrive (in time order).
+     * Each entry gets the index of the order it was added in.
+     */
+    public class Stream {
+
+        private double[] xs;
+        private double[] ys;
+        private long[] ts;
+        //the largest error inherited from dropped neighbours
+        private double[] inherited;
+        //the remaining entries as a linked list, -1 means none
+        private int[] prev;
+        private int[] next;
+        private final IndexedMinHeap heap;
+        private int n = 0;
+        private int nKept = 0;
+
+        private Stream(int initialCapacity){
+            initialCapacity = Math.max(1, initialCapacity);
+            this.xs = new double[initialCapacity];
+            this.ys = new double[initialCapacity];
+            this.ts = new long[initialCapacity];
+            this.inherited = new double[initialCapacity];
+            this.prev = new int[initialCapacity];
+            this.next = new int[initialCapacity];
+            this.heap = new IndexedMinHeap(initialCapacity);
+        }
+
+        /**
+         * @param x The cartesian x coordinate.
+         * @param y The cartesian y coordinate.
+         * @param epochMillis The time of the entry, which cannot be before the last entry.
+         */
+        public void add(double x, double y, long epochMillis){
+            if(n > 0 && epochMillis < ts[n - 1]){
+                throw new IllegalArgumentException("Entries must be added in time order.");
+            }
+            if(n == xs.length){
+                int newCapacity = n + (n >> 1) + 1;
+                xs = Arrays.copyOf(xs, newCapacity);
+                ys = Arrays.copyOf(ys, newCapacity);
+                ts = Arrays.copyOf(ts, newCapacity);
+                inherited = Arrays.copyOf(inherited, newCapacity);
+                prev = Arrays.copyOf(prev, newCapacity);
+                next = Arrays.copyOf(next, newCapacity);
+            }
+            final int i = n++;
+            xs[i] = x;
+            ys[i] = y;
+            ts[i] = epochMillis;
+            inherited[i] = 0;
+            //the last entry is never dropped, so the previous entry is still kept
+            prev[i] = i - 1;
+            next[i] = -1;
+            nKept++;
+            if(i == 0){
+                return;
+            }
+            next[i - 1] = i;
+            //the previous entry now has a neighbour on both sides (unless it is the first)
+            if(prev[i - 1] != -1){
+                updatePriority(i - 1);
+            }
+            reduce();
+        }
+
+        private void updatePriority(int i){
+            int p = prev[i];
+            int q = next[i];
+            heap.put(i, inherited[i] + sed(xs[i], ys[i], ts[i], xs[p], ys[p], ts[p], xs[q], ys[q], ts[q]));
+        }
+
+        /**
+         * Drop entries while the smallest priority is within the tolerance.
+         */
+        private void reduce(){
+            while(heap.peekKey() <= maxError){
+                double priority = heap.peekKey();
+                int j = heap.poll();
+                int p = prev[j];
+                int q = next[j];
+                next[p] = q;
+                prev[q] = p;
+                nKept--;
+                inherited[p] = Math.max(inherited[p], priority);
+                inherited[q] = Math.max(inherited[q], priority);
+                if(prev[p] != -1){
+                    updatePriority(p);
+                }
+                if(next[q] != -1){
+                    updatePriority(q);
+                }
+            }
+        }
+
+        /**
+         * @return The indices of the entries that are kept, in ascending order.
+         */
+        public int[] finish(){
+            int[] kept = new int[nKept];
+            int k = 0;
+            for (int i = n == 0 ? -1 : 0; i != -1; i = next[i]) {
+                kept[k++] = i;
+            }
+            return kept;
+        }
+
+        /**
+         * @return How many entries have been added.
+         */
+        public int size(){
+            return n;
+        }
+
+        /**
+         * @return How many of the entries added so far are kept.
+         */
+        public int getKeptCount(){
+            return nKept;
+        }
+    }
+
+}
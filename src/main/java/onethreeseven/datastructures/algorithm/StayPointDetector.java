@@ -0,0 +1,256 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.STStopTrajectory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects the stops (stay points) of spatio-temporal trajectories.
+ * An entry is part of a stop if, starting from some earlier entry (the anchor), every following entry
+ * stays within a distance of the anchor for at least a duration. This is the stay point
+ * definition of Li et al. "Mining user similarity based on location history".
+ * <br>
+ * Detection is done in a single pass and only the entries whose stop status is still undecided are kept,
+ * i.e the entries within the distance of the anchor that do not yet span the duration.
+ * So it can be used on live streams of entries, see {@link #newStream(STStopTrajectory)}.
+ * @author Luke Bermingham
+ */
+public class StayPointDetector {
+
+    private final double distanceMetres;
+    private final long durationMillis;
+    private boolean parallel = false;
+
+    /**
+     * @param distanceMetres How far entries can be from the anchor and still be part of the stop (in metres).
+     * @param durationMillis How long entries must stay within the distance to be a stop (in milliseconds).
+     */
+    public StayPointDetector(double distanceMetres, long durationMillis){
+        if(distanceMetres < 0){
+            throw new IllegalArgumentException("Distance threshold cannot be negative.");
+        }
+        if(durationMillis < 0){
+            throw new IllegalArgumentException("Duration threshold cannot be negative.");
+        }
+        this.distanceMetres = distanceMetres;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @param parallel If true, the trajectories of a dataset are processed in parallel.
+     * @return This detector.
+     */
+    public StayPointDetector setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @param trajs The trajectories to find the stops of (they are not modified).
+     * @return The trajectories with their stops, keyed by the same ids.
+     */
+    public Map<String, STStopTrajectory> run(Map<String, ? extends AbstractSTTrajectory<?>> trajs){
+        if(parallel){
+            Map<String, STStopTrajectory> out = new ConcurrentHashMap<>(trajs.size());
+            trajs.entrySet().parallelStream().forEach(entry -> out.put(entry.getKey(), run(entry.getValue())));
+            return new HashMap<>(out);
+        }
+        Map<String, STStopTrajectory> out = new HashMap<>(trajs.size());
+        for (Map.Entry<String, ? extends AbstractSTTrajectory<?>> entry : trajs.entrySet()) {
+            out.put(entry.getKey(), run(entry.getValue()));
+        }
+        return out;
+    }
+
+    /**
+     * @param traj The trajectory to find the stops of (it is not modified).
+     * @return A copy of the trajectory (in the same mode) with its stops.
+     */
+    public STStopTrajectory run(AbstractSTTrajectory<?> traj){
+        STStopTrajectory out = new STStopTrajectory(traj.isInCartesianMode(), traj.getProjection(), traj.size());
+        Stream stream = newStream(out);
+        for (int i = 0; i < traj.size(); i++) {
+            stream.add(traj.getX(i), traj.getY(i), traj.getEpochMillis(i));
+        }
+        stream.finish();
+        return out;
+    }
+
+    /**
+     * @param output The trajectory to add entries to once their stop status is known.
+     * @return A stream that entries can be added to one at a time.
+     */
+    public Stream newStream(STStopTrajectory output){
+        return new Stream(output);
+    }
+
+    /**
+     * Detects stops as entries are added, once it is known whether an entry
+     * is a stop it is added to the output trajectory (in the order the entries were added).
+     */
+    public final class Stream {
+
+        private final STStopTrajectory output;
+
+        //entries whose stop status is not known yet are in [head, tail), the entry at head is the anchor
+        private double[] xs = new double[16];
+        private double[] ys = new double[16];
+        private double[] cartXs = new double[16];
+        private double[] cartYs = new double[16];
+        private long[] times = new long[16];
+        private int head = 0;
+        private int tail = 0;
+        //the entries before this are known to be within the distance of the anchor
+        private int scanned = 0;
+
+        //when stopped there are no pending entries, but the anchor is kept
+        private boolean stopped = false;
+        private double anchorCartX;
+        private double anchorCartY;
+
+        private Stream(STStopTrajectory output){
+            this.output = output;
+        }
+
+        /**
+         * Add the next entry of the trajectory.
+         * @param x The x coordinate (or latitude if the output is in geographic mode).
+         * @param y The y coordinate (or longitude if the output is in geographic mode).
+         * @param epochMillis The time of the entry, entries must be added in time order.
+         */
+        public void add(double x, double y, long epochMillis){
+            double cartX = x;
+            double cartY = y;
+            if(!output.isInCartesianMode()){
+                double[] xy = output.getProjection().geographicToCartesian(x, y);
+                cartX = xy[0];
+                cartY = xy[1];
+            }
+            if(stopped){
+                if(withinDistanceOfAnchor(cartX, cartY)){
+                    emit(x, y, epochMillis, true);
+                    return;
+                }
+                //moved away, this entry is the new anchor
+                stopped = false;
+            }
+            push(x, y, cartX, cartY, epochMillis);
+            settle();
+        }
+
+        /**
+         * Decide the stop status of as many pending entries as possible.
+         */
+        private void settle(){
+            while(head < tail){
+                anchorCartX = cartXs[head];
+                anchorCartY = cartYs[head];
+                scanned = Math.max(scanned, head + 1);
+                boolean leftAnchor = false;
+                boolean isStop = false;
+                while(scanned < tail){
+                    if(!withinDistanceOfAnchor(cartXs[scanned], cartYs[scanned])){
+                        leftAnchor = true;
+                        break;
+                    }
+                    if(times[scanned] - times[head] >= durationMillis){
+                        isStop = true;
+                        break;
+                    }
+                    scanned++;
+                }
+                if(isStop){
+                    //everything up to here stayed long enough, and so does anything after that is still close
+                    while(head < tail && withinDistanceOfAnchor(cartXs[head], cartYs[head])){
+                        emit(xs[head], ys[head], times[head], true);
+                        head++;
+                    }
+                    stopped = head == tail;
+                }else if(leftAnchor){
+                    //left before the duration, so the anchor is not a stop, try again from the next entry
+                    emit(xs[head], ys[head], times[head], false);
+                    head++;
+                    scanned = head + 1;
+                }else{
+                    //not enough entries yet to decide
+                    return;
+                }
+            }
+            head = 0;
+            tail = 0;
+            scanned = 0;
+        }
+
+        private boolean withinDistanceOfAnchor(double cartX, double cartY){
+            double dx = cartX - anchorCartX;
+            double dy = cartY - anchorCartY;
+            return dx * dx + dy * dy <= distanceMetres * distanceMetres;
+        }
+
+        private void push(double x, double y, double cartX, double cartY, long epochMillis){
+            if(tail == xs.length){
+                if(head > 0){
+                    //reclaim the space of the entries already output
+                    int n = tail - head;
+                    System.arraycopy(xs, head, xs, 0, n);
+                    System.arraycopy(ys, head, ys, 0, n);
+                    System.arraycopy(cartXs, head, cartXs, 0, n);
+                    System.arraycopy(cartYs, head, cartYs, 0, n);
+                    System.arraycopy(times, head, times, 0, n);
+                    scanned -= head;
+                    tail = n;
+                    head = 0;
+                }
+                if(tail == xs.length){
+                    int newCapacity = xs.length * 2;
+                    xs = Arrays.copyOf(xs, newCapacity);
+                    ys = Arrays.copyOf(ys, newCapacity);
+                    cartXs = Arrays.copyOf(cartXs, newCapacity);
+                    cartYs = Arrays.copyOf(cartYs, newCapacity);
+                    times = Arrays.copyOf(times, newCapacity);
+                }
+            }
+            xs[tail] = x;
+            ys[tail] = y;
+            cartXs[tail] = cartX;
+            cartYs[tail] = cartY;
+            times[tail] = epochMillis;
+            tail++;
+        }
+
+        private void emit(double x, double y, long epochMillis, boolean isStopped){
+            if(output.isInCartesianMode()){
+                output.addCartesian(x, y, epochMillis, isStopped);
+            }else{
+                output.addGeographic(x, y, epochMillis, isStopped);
+            }
+        }
+
+        /**
+         * Output the remaining entries, these are moves because they never stayed long enough to be a stop.
+         * The stream can be re-used afterwards as if it were new.
+         */
+        public void finish(){
+            for (int i = head; i < tail; i++) {
+                emit(xs[i], ys[i], times[i], false);
+            }
+            head = 0;
+            tail = 0;
+            scanned = 0;
+            stopped = false;
+        }
+
+        /**
+         * @return The number of entries added that have not been output yet.
+         */
+        public int getPendingCount(){
+            return tail - head;
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stop episode, a run of consecutive stopped entries of a {@link STStopTrajectory}
+ * (the same episodes that {@link onethreeseven.datastructures.util.CountStopsAndMoves} counts).
+ * It is summarised by its time span and the centroid of its entries in cartesian coordinates.
+ * Once the episodes are clustered (see {@link DBSCAN#clusterStops(java.util.Map)}) each also has the place it is at.
+ * @author Luke Bermingham
+ */
+public final class StopEpisode {
+
+    private final int startIndex;
+    private final int endIndex;
+    private final long startMillis;
+    private final long endMillis;
+    private final double x;
+    private final double y;
+    private int place = DBSCAN.NOISE;
+
+    StopEpisode(int startIndex, int endIndex, long startMillis, long endMillis, double x, double y){
+        this.startIndex = startIndex;
+        this.endIndex = endIndex;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Receives stop episodes as primitive values, see {@link #forEach(STStopTrajectory, Consumer)}.
+     */
+    public interface Consumer {
+        /**
+         * @param startIndex The index of the first entry of the episode.
+         * @param endIndex The index after the last entry of the episode.
+         * @param startMillis The time of the first entry.
+         * @param endMillis The time of the last entry.
+         * @param x The cartesian x coordinate of the centroid.
+         * @param y The cartesian y coordinate of the centroid.
+         */
+        void accept(int startIndex, int endIndex, long startMillis, long endMillis, double x, double y);
+    }
+
+    /**
+     * @param traj A stop/move annotated spatio-temporal trajectory (it is not modified).
+     * @return Its stop episodes, in time order.
+     */
+    public static List<StopEpisode> extract(STStopTrajectory traj){
+        List<StopEpisode> episodes = new ArrayList<>();
+        forEach(traj, (startIndex, endIndex, startMillis, endMillis, x, y) ->
+                episodes.add(new StopEpisode(startIndex, endIndex, startMillis, endMillis, x, y)));
+        return episodes;
+    }
+
+    /**
+     * Find the stop episodes of a trajectory without making an object for each.
+     * @param traj A stop/move annotated spatio-temporal trajectory (it is not modified).
+     * @param consumer Given each stop episode, in time order.
+     */
+    public static void forEach(STStopTrajectory traj, Consumer consumer){
+        final int n = traj.size();
+        final boolean inCartesianMode = traj.isInCartesianMode();
+        int i = 0;
+        while(i < n){
+            if(!traj.isStopped(i)){
+                i++;
+                continue;
+            }
+            int start = i;
+            double sumX = 0;
+            double sumY = 0;
+            for (; i < n && traj.isStopped(i); i++) {
+                if(inCartesianMode){
+                    sumX += traj.getX(i);
+                    sumY += traj.getY(i);
+                }else{
+                    double[] xy = traj.getCoords(i, true);
+                    sumX += xy[0];
+                    sumY += xy[1];
+                }
+            }
+            int count = i - start;
+            consumer.accept(start, i, traj.getEpochMillis(start), traj.getEpochMillis(i - 1), sumX / count, sumY / count);
+        }
+    }
+
+    /**
+     * @return The index of the first entry of the episode.
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * @return The index after the last entry of the episode.
+     */
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public long getDurationMillis(){
+        return endMillis - startMillis;
+    }
+
+    /**
+     * @return The cartesian x coordinate of the centroid.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return The cartesian y coordinate of the centroid.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return The cluster of episodes this is part of, or {@link DBSCAN#NOISE} if it is
+     * not part of one (or has not been clustered).
+     */
+    public int getPlace() {
+        return place;
+    }
+
+    void setPlace(int place) {
+        this.place = place;
+    }
+
+    @Override
+    public String toString() {
+        return "StopEpisode{[" + startIndex + ", " + endIndex + "), place=" + place + "}";
+    }
+}
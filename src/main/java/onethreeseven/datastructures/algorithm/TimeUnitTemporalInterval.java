@@ -36,6 +36,12 @@ public class TimeUnitTemporalInterval extends AbstractTemporalIntervalTransform
         return new TimeUnitTemporalInterval(algo, timeUnit);
     }
 
+    @Override
+    public void setParallel(boolean parallel) {
+        super.setParallel(parallel);
+        algo.setParallel(parallel);
+    }
+
     @Override
     long calculateTemporalInterval(Map<String, STTrajectory> trajectories) {
         long millis = algo.calculateTemporalInterval(trajectories);
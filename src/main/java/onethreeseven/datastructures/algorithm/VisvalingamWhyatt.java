@@ -0,0 +1,68 @@
+package onethreeseven.datastructures.algorithm;
+
+/**
+ * Visvalingam-Whyatt simplification (Visvalingam and Whyatt, "Line generalisation by repeated elimination
+ * of points"). Each entry is given the area of the triangle it makes with its neighbours, and the entry with
+ * the smallest area is dropped over and over (using a heap) until every remaining area is at least the tolerance.
+ * When an entry is dropped its neighbours' areas are worked out again, but never made smaller than the
+ * area just dropped, so entries are always dropped in order of importance.
+ * @author Luke Bermingham
+ */
+public class VisvalingamWhyatt extends AbstractTrajectorySimplifier {
+
+    private final double minArea;
+
+    /**
+     * @param minArea The smallest area (in square metres) of the triangle an entry makes with its neighbours to be kept.
+     */
+    public VisvalingamWhyatt(double minArea){
+        if(minArea < 0){
+            throw new IllegalArgumentException("Minimum area cannot be negative, got passed: " + minArea);
+        }
+        this.minArea = minArea;
+    }
+
+    private static double area(double[] x, double[] y, int a, int b, int c){
+        return Math.abs((x[b] - x[a]) * (y[c] - y[a]) - (x[c] - x[a]) * (y[b] - y[a])) / 2;
+    }
+
+    @Override
+    int[] simplify(double[] x, double[] y, long[] epochMillis, int n) {
+        //the remaining entries as a linked list
+        int[] prev = new int[n];
+        int[] next = new int[n];
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        for (int i = 0; i < n; i++) {
+            prev[i] = i - 1;
+            next[i] = i + 1;
+            if(i > 0 && i < n - 1){
+                heap.put(i, area(x, y, i - 1, i, i + 1));
+            }
+        }
+
+        int nKept = n;
+        while(!heap.isEmpty() && heap.peekKey() < minArea){
+            double droppedArea = heap.peekKey();
+            int i = heap.poll();
+            nKept--;
+            int p = prev[i];
+            int q = next[i];
+            next[p] = q;
+            prev[q] = p;
+            if(prev[p] != -1){
+                heap.put(p, Math.max(droppedArea, area(x, y, prev[p], p, q)));
+            }
+            if(next[q] != n){
+                heap.put(q, Math.max(droppedArea, area(x, y, p, q, next[q])));
+            }
+        }
+
+        int[] kept = new int[nKept];
+        int k = 0;
+        for (int i = 0; i != n; i = next[i]) {
+            kept[k++] = i;
+        }
+        return kept;
+    }
+
+}
@@ -91,6 +91,10 @@ public class LoadTrajectory extends CLICommand {
             description = "Specifies the delimiter used to break up each line of the trajectory file into fields. By default this is a comma.")
     private String delimiter = ",";
 
+    @Parameter(names = {"-p", "--parallel"},
+            description = "If specified the trajectory file is split into chunks that are parsed concurrently.")
+    private boolean parallel = false;
+
     @Override
     protected void resetParametersAfterRun(Class clazz) {
         super.resetParametersAfterRun(clazz);
@@ -98,6 +102,7 @@ public class LoadTrajectory extends CLICommand {
         stopIndex = -1;
         skipNLines = 1;
         delimiter = ",";
+        parallel = false;
     }
 
     @Override
@@ -219,6 +224,7 @@ public class LoadTrajectory extends CLICommand {
             AbstractTrajectoryParser<? extends ITrajectory> parser = makeTrajectoryParser();
             parser.setnLinesToSkip(skipNLines);
             parser.setDelimiter(delimiter);
+            parser.setParallel(parallel);
             Map<String, ? extends ITrajectory> out = parser.parse(new File(inputTrajPath));
             outputTrajectories(out);
             return true;
@@ -3,14 +3,22 @@ package onethreeseven.datastructures.data;
 
 import onethreeseven.common.data.AbstractLineBasedParser;
 import onethreeseven.common.util.FileUtil;
+import onethreeseven.datastructures.data.resolver.DelimitedLine;
 import onethreeseven.datastructures.data.resolver.IdResolver;
+import onethreeseven.datastructures.data.resolver.IncrementalIdResolver;
 import onethreeseven.datastructures.data.resolver.NumericFieldsResolver;
 import onethreeseven.datastructures.model.ITrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
 import java.io.*;
-import java.util.AbstractMap;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 /**
@@ -26,24 +34,54 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
     protected String delimiter = ",";
     protected NumericFieldsResolver numericFieldsResolver;
     protected IdResolver idResolver;
+    /**
+     * Tokenizes each line that is parsed, only made again when the delimiter changes.
+     */
+    private DelimitedLine fields;
+    /**
+     * The coordinates of the line being parsed, written over for every line.
+     */
+    private double[] coords;
+    /**
+     * If true, {@link #parse(File)} splits the file into chunks and parses them concurrently.
+     */
+    protected boolean parallel = false;
+    private Consumer<Double> progressListener = null;
+
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 16 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
 
     public AbstractTrajectoryParser(IdResolver idResolver, NumericFieldsResolver numericFieldsResolver){
         this.output = new HashMap<>();
         this.idResolver = idResolver;
         this.numericFieldsResolver = numericFieldsResolver;
+        this.fields = new DelimitedLine(delimiter);
     }
 
     @Override
     protected void parseLine(String line) {
-        String[] lineParts = line.split(this.delimiter);
-        double[] coordinates = numericFieldsResolver.resolve(lineParts);
-        String id = idResolver.resolve(lineParts);
-        T t = output.get(id);
+        if(coords == null || coords.length != numericFieldsResolver.getNumberOfFields()){
+            coords = new double[numericFieldsResolver.getNumberOfFields()];
+        }
+        parseFields(fields.tokenize(line), output, coords);
+    }
+
+    /**
+     * Resolve a tokenized line and add it to the trajectory it belongs to.
+     * @param lineFields The tokenized line.
+     * @param into The trajectories parsed so far, keyed by id.
+     * @param coordinates Scratch array the numeric fields are resolved into.
+     */
+    private void parseFields(DelimitedLine lineFields, Map<String, T> into, double[] coordinates){
+        numericFieldsResolver.resolve(lineFields, coordinates);
+        String id = idResolver.resolve(lineFields);
+        T t = into.get(id);
         if(t == null){
             t = makeNewTrajectory();
-            output.put(id, t);
+            into.put(id, t);
         }
-        addCoordinates(t, coordinates, lineParts);
+        addCoordinates(t, coordinates, lineFields);
     }
 
     @Override
@@ -58,12 +96,13 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
     /**
      * Add coordinates to the trajectory.
      * If any additional processing need to be done with
-     * the line parts, do that here too.
+     * the fields of the line, do that here too.
      * @param traj The trajectory to add coordinates to.
-     * @param coords The coordinates to add.
-     * @param lineParts The line parts, which may or may not be used further.
+     * @param coords The coordinates to add, this array is re-used for the next line
+     *               so it must be copied if it is kept.
+     * @param fields The tokenized line, which may or may not be used further.
      */
-    protected abstract void addCoordinates(T traj, double[] coords, String[] lineParts);
+    protected abstract void addCoordinates(T traj, double[] coords, DelimitedLine fields);
 
     /**
      * Reads a trajectory data-set from a plain text file.
@@ -93,6 +132,9 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
             }
 
             Iterator<String> lineIter = br.lines().iterator();
+            //this iterator tokenizes separately so it can be used alongside parsing
+            final DelimitedLine lineFields = new DelimitedLine(delimiter);
+            final double[] coordinates = new double[numericFieldsResolver.getNumberOfFields()];
 
             return new Iterator<Map.Entry<String, T>>() {
 
@@ -117,26 +159,25 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
                 public Map.Entry<String, T> next() {
                     //read all lines until the id changes
                     while(lineIter.hasNext()){
-                        String line = lineIter.next();
-                        String[] lineParts = line.split(AbstractTrajectoryParser.this.delimiter);
-                        String id = idResolver.resolve(lineParts);
-                        double[] coordinates = numericFieldsResolver.resolve(lineParts);
+                        lineFields.tokenize(lineIter.next());
+                        String id = idResolver.resolve(lineFields);
+                        numericFieldsResolver.resolve(lineFields, coordinates);
 
                         //case: no trajectory established yet to add stuff to, make one
                         if(cur == null){
                             T traj = makeNewTrajectory();
-                            addCoordinates(traj, coordinates, lineParts);
+                            addCoordinates(traj, coordinates, lineFields);
                             cur = new AbstractMap.SimpleEntry<>(id, traj);
                         }
                         //case: trajectory established and this line can add to it
                         else if(cur != null && cur.getKey().equals(id)){
-                            addCoordinates(cur.getValue(), coordinates, lineParts);
+                            addCoordinates(cur.getValue(), coordinates, lineFields);
                         }
                         //case: trajectory established but this line is for a different traj
                         else if(cur != null && !cur.getKey().equals(id)){
                             Map.Entry<String, T> output = cur;
                             T traj = makeNewTrajectory();
-                            addCoordinates(traj, coordinates, lineParts);
+                            addCoordinates(traj, coordinates, lineFields);
                             cur = new AbstractMap.SimpleEntry<>(id, traj);
                             return output;
                         }
@@ -162,9 +203,228 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
 
     @Override
     public Map<String, T> parse(File dataset) throws IOException {
+        //custom terminators and line-order dependent ids can only be parsed front to back
+        if(parallel && lineTerminators == null && !(idResolver instanceof IncrementalIdResolver)){
+            return parseParallel(dataset);
+        }
         return super.parse(dataset);
     }
 
+    ///////////////////////
+    //PARALLEL PARSING
+    ///////////////////////
+
+    /**
+     * Parses the file by memory mapping it in newline aligned chunks and parsing each
+     * chunk as a separate task on the common fork-join pool. Each task tokenizes with its own
+     * {@link DelimitedLine} and collects its own trajectories, which are then appended together
+     * in file order so the result is the same as parsing the file line by line.
+     * Note: the resolvers are shared by all tasks, so they must not keep per-line state.
+     * @param dataset The file to parse.
+     * @return The parsed trajectories keyed by id.
+     * @throws IOException If the file cannot be read.
+     */
+    private Map<String, T> parseParallel(File dataset) throws IOException {
+        try(FileChannel channel = FileChannel.open(dataset.toPath(), StandardOpenOption.READ)){
+            final long fileSize = channel.size();
+            final long dataStart = skipLines(channel, nLinesToSkip);
+
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            long chunkTarget = (fileSize - dataStart) / Math.max(1, parallelism * CHUNKS_PER_THREAD);
+            chunkTarget = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, chunkTarget));
+
+            //split into chunks that always end just after a new line
+            List<Future<Map<String, T>>> tasks = new ArrayList<>();
+            long chunkStart = dataStart;
+            while(chunkStart < fileSize){
+                long chunkEnd = nextLineStart(channel, Math.min(fileSize, chunkStart + chunkTarget));
+                final MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+                tasks.add(ForkJoinPool.commonPool().submit(() -> parseChunk(chunk)));
+                chunkStart = chunkEnd;
+            }
+
+            //join in file order so each trajectory keeps its entries in order
+            try{
+                for (int i = 0; i < tasks.size(); i++) {
+                    for (Map.Entry<String, T> entry : tasks.get(i).get().entrySet()) {
+                        T existing = output.get(entry.getKey());
+                        if(existing == null){
+                            output.put(entry.getKey(), entry.getValue());
+                        }else{
+                            appendTrajectory(existing, entry.getValue());
+                        }
+                    }
+                    if(progressListener != null){
+                        progressListener.accept((i + 1) / (double) tasks.size());
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Parsing was interrupted.");
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof UncheckedIOException){
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                if(cause instanceof RuntimeException){
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+            finally {
+                for (Future<Map<String, T>> task : tasks) {
+                    task.cancel(false);
+                }
+            }
+        }
+        return done();
+    }
+
+    /**
+     * Parse every line in a chunk of the file.
+     * @param chunk The bytes of the chunk, starting at the start of a line.
+     * @return The trajectories in this chunk keyed by id.
+     */
+    private Map<String, T> parseChunk(ByteBuffer chunk){
+        CharSequence text = isAscii(chunk) ? new AsciiCharSequence(chunk) : StandardCharsets.UTF_8.decode(chunk);
+        DelimitedLine lineFields = new DelimitedLine(delimiter);
+        double[] coordinates = new double[numericFieldsResolver.getNumberOfFields()];
+        Map<String, T> chunkOutput = new HashMap<>();
+        int lineStart = 0;
+        final int n = text.length();
+        while(lineStart < n){
+            int lineEnd = lineStart;
+            while(lineEnd < n && text.charAt(lineEnd) != '\n'){
+                lineEnd++;
+            }
+            int nextLine = lineEnd + 1;
+            if(lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r'){
+                lineEnd--;
+            }
+            if(lineEnd > lineStart){
+                parseFields(lineFields.tokenize(text, lineStart, lineEnd), chunkOutput, coordinates);
+            }
+            lineStart = nextLine;
+        }
+        return chunkOutput;
+    }
+
+    /**
+     * Appends the entries of one trajectory to another.
+     * @param into The trajectory to add to.
+     * @param from The trajectory whose entries are added.
+     */
+    @SuppressWarnings("unchecked")
+    protected void appendTrajectory(T into, T from){
+        if(into instanceof SpatioCompositeTrajectory && from instanceof SpatioCompositeTrajectory){
+            ((SpatioCompositeTrajectory) into).addAll((SpatioCompositeTrajectory) from);
+        }else{
+            for (Object entry : from) {
+                into.add(entry);
+            }
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer buf){
+        for (int i = buf.position(); i < buf.limit(); i++) {
+            if(buf.get(i) < 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param channel The file.
+     * @param nLines The number of lines to skip.
+     * @return The byte position of the start of the line after the skipped lines.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long skipLines(FileChannel channel, int nLines) throws IOException {
+        long pos = 0;
+        for (int i = 0; i < nLines && pos < channel.size(); i++) {
+            pos = nextLineStart(channel, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * @param channel The file.
+     * @param from The byte position to start looking from.
+     * @return The byte position just after the next new line at or after from (or the file size).
+     * @throws IOException If the file cannot be read.
+     */
+    private static long nextLineStart(FileChannel channel, long from) throws IOException {
+        final long size = channel.size();
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = from;
+        while(pos < size){
+            buf.clear();
+            int nRead = channel.read(buf, pos);
+            if(nRead <= 0){
+                break;
+            }
+            for (int i = 0; i < nRead; i++) {
+                if(buf.get(i) == '\n'){
+                    return pos + i + 1;
+                }
+            }
+            pos += nRead;
+        }
+        return size;
+    }
+
+    /**
+     * A read-only view of ASCII bytes as characters, so a mapped chunk can be tokenized
+     * without decoding it into a copy first. Only the fields that are materialized are copied.
+     */
+    private static final class AsciiCharSequence implements CharSequence {
+
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiCharSequence(ByteBuffer bytes){
+            this(bytes, bytes.position(), bytes.remaining());
+        }
+
+        private AsciiCharSequence(ByteBuffer bytes, int offset, int length){
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return makeString(start, end);
+        }
+
+        private String makeString(int start, int end){
+            byte[] arr = new byte[end - start];
+            for (int i = 0; i < arr.length; i++) {
+                arr[i] = bytes.get(offset + start + i);
+            }
+            return new String(arr, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return makeString(0, length);
+        }
+    }
+
     /**
      * @param trajFile The trajectory file to try and load.
      * @return The string the execute this trajectory parsing command through CLI.
@@ -200,8 +460,19 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
         return this;
     }
 
+    /**
+     * @param parallel If true, the file is parsed in chunks concurrently (this only applies when
+     *                 no custom line terminators are set and ids do not depend on line order).
+     * @return This parser.
+     */
+    public AbstractTrajectoryParser<T> setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
     public AbstractTrajectoryParser<T> setDelimiter(String delimiter) {
         this.delimiter = delimiter;
+        this.fields = new DelimitedLine(delimiter);
         return this;
     }
 
@@ -220,6 +491,7 @@ public abstract class AbstractTrajectoryParser<T extends ITrajectory> extends Ab
     @Override
     public AbstractTrajectoryParser<T> setProgressListener(Consumer<Double> progressListener) {
         super.setProgressListener(progressListener);
+        this.progressListener = progressListener;
         return this;
     }
 }
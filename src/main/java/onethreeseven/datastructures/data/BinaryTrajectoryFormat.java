@@ -0,0 +1,317 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * The layout of the binary trajectory file written by {@link BinaryTrajectoryWriter}
+ * and read by {@link BinaryTrajectoryReader}. All values are little-endian.
+ * <pre>
+ * header:     magic (int), version (short), kind (byte), codec (byte), coordinates (byte),
+ *             number of trajectories (int)
+ * dictionary: for each trajectory: id length (int), id (UTF-8 bytes), number of entries (int),
+ *             block offset from the start of the file (long), block length in bytes (long)
+ * blocks:     for each trajectory (in dictionary order) its columns, one after another:
+ *             latitudes or x (double[n]), longitudes or y (double[n]),
+ *             epoch millis (long[n], spatio-temporal kinds only),
+ *             stop flags (long[(n+63)/64] bit words, stop kind only)
+ * </pre>
+ * Coordinates are stored geographically so the file does not depend on a projection, unless every trajectory
+ * is in cartesian mode ({@link #COORDS_CARTESIAN}), then the x and y columns are stored as they are, so they are
+ * not made less precise (or projected outside the valid latitudes) by a round trip through the projection.
+ * Version 1 files have no coordinates byte and are always geographic.
+ * <br>
+ * With the {@link #CODEC_GORILLA} codec each block is instead one bit stream (stored as longs) made with
+ * {@link onethreeseven.datastructures.util.GorillaCodec}: the latitudes and longitudes are XOR encoded,
+ * the epoch millis are delta-of-delta encoded and the stop flags are one bit each. This is lossless.
+ * @author Luke Bermingham
+ */
+final class BinaryTrajectoryFormat {
+
+    static final int MAGIC = 0x54313337; //"T137"
+    static final short VERSION = 2;
+    /**
+     * The first version, which has no coordinates byte in the header.
+     */
+    static final short VERSION_GEOGRAPHIC_ONLY = 1;
+
+    static final byte COORDS_GEOGRAPHIC = 0;
+    static final byte COORDS_CARTESIAN = 1;
+
+    static final byte KIND_SPATIAL = 0;
+    static final byte KIND_SPATIOTEMPORAL = 1;
+    static final byte KIND_STOP = 2;
+
+    /**
+     * Columns are stored as plain values.
+     */
+    static final byte CODEC_RAW = 0;
+    /**
+     * Columns are compressed with {@link onethreeseven.datastructures.util.GorillaCodec}.
+     */
+    static final byte CODEC_GORILLA = 1;
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private BinaryTrajectoryFormat(){}
+
+    /**
+     * @param traj A trajectory.
+     * @return The richest kind this trajectory can be stored as.
+     */
+    static byte kindOf(SpatioCompositeTrajectory<?> traj){
+        if(traj instanceof STStopTrajectory){
+            return KIND_STOP;
+        }
+        if(traj instanceof AbstractSTTrajectory){
+            return KIND_SPATIOTEMPORAL;
+        }
+        return KIND_SPATIAL;
+    }
+
+    static String kindName(byte kind){
+        switch (kind){
+            case KIND_SPATIAL: return "spatial";
+            case KIND_SPATIOTEMPORAL: return "spatio-temporal";
+            case KIND_STOP: return "spatio-temporal with stops";
+            default: return "unknown (" + kind + ")";
+        }
+    }
+
+    /**
+     * @param kind The kind of trajectory.
+     * @param n The number of entries.
+     * @return The number of bytes of a {@link #CODEC_RAW} block.
+     */
+    static long rawBlockLength(byte kind, int n){
+        long len = 16L * n;
+        if(kind >= KIND_SPATIOTEMPORAL){
+            len += 8L * n;
+        }
+        if(kind == KIND_STOP){
+            len += 8L * stopWords(n);
+        }
+        return len;
+    }
+
+    static int stopWords(int n){
+        return (n + 63) >>> 6;
+    }
+
+    /**
+     * Buffered little-endian writing to a file channel.
+     */
+    static final class ChannelOutput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+
+        ChannelOutput(FileChannel channel){
+            this.channel = channel;
+            this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void ensure(int nBytes) throws IOException {
+            if(buf.remaining() < nBytes){
+                flush();
+            }
+        }
+
+        void putByte(byte v) throws IOException {
+            ensure(1);
+            buf.put(v);
+        }
+
+        void putShort(short v) throws IOException {
+            ensure(2);
+            buf.putShort(v);
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        void putDouble(double v) throws IOException {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        void putInts(int[] values) throws IOException {
+            int off = 0;
+            while(off < values.length){
+                ensure(4);
+                int nPut = Math.min(buf.remaining() >>> 2, values.length - off);
+                buf.asIntBuffer().put(values, off, nPut);
+                buf.position(buf.position() + (nPut << 2));
+                off += nPut;
+            }
+        }
+
+        void putFloats(float[] values) throws IOException {
+            int off = 0;
+            while(off < values.length){
+                ensure(4);
+                int nPut = Math.min(buf.remaining() >>> 2, values.length - off);
+                buf.asFloatBuffer().put(values, off, nPut);
+                buf.position(buf.position() + (nPut << 2));
+                off += nPut;
+            }
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int off = 0;
+            while(off < bytes.length){
+                if(!buf.hasRemaining()){
+                    flush();
+                }
+                int n = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while(buf.hasRemaining()){
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+    /**
+     * Buffered little-endian reading from a file channel.
+     */
+    static final class ChannelInput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+
+        ChannelInput(FileChannel channel){
+            this.channel = channel;
+            this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.buf.limit(0);
+        }
+
+        private void require(int nBytes) throws IOException {
+            if(buf.remaining() >= nBytes){
+                return;
+            }
+            buf.compact();
+            while(buf.position() < nBytes){
+                if(channel.read(buf) < 0){
+                    throw new EOFException("Binary file ended unexpectedly.");
+                }
+            }
+            buf.flip();
+        }
+
+        byte getByte() throws IOException {
+            require(1);
+            return buf.get();
+        }
+
+        short getShort() throws IOException {
+            require(2);
+            return buf.getShort();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buf.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buf.getLong();
+        }
+
+        double getDouble() throws IOException {
+            require(8);
+            return buf.getDouble();
+        }
+
+        void getBytes(byte[] dst) throws IOException {
+            int off = 0;
+            while(off < dst.length){
+                require(1);
+                int n = Math.min(buf.remaining(), dst.length - off);
+                buf.get(dst, off, n);
+                off += n;
+            }
+        }
+
+        void getDoubles(double[] dst, int n) throws IOException {
+            int off = 0;
+            while(off < n){
+                require(8);
+                int nRead = Math.min(buf.remaining() >>> 3, n - off);
+                buf.asDoubleBuffer().get(dst, off, nRead);
+                buf.position(buf.position() + (nRead << 3));
+                off += nRead;
+            }
+        }
+
+        void getInts(int[] dst, int n) throws IOException {
+            int off = 0;
+            while(off < n){
+                require(4);
+                int nRead = Math.min(buf.remaining() >>> 2, n - off);
+                buf.asIntBuffer().get(dst, off, nRead);
+                buf.position(buf.position() + (nRead << 2));
+                off += nRead;
+            }
+        }
+
+        void getFloats(float[] dst, int n) throws IOException {
+            int off = 0;
+            while(off < n){
+                require(4);
+                int nRead = Math.min(buf.remaining() >>> 2, n - off);
+                buf.asFloatBuffer().get(dst, off, nRead);
+                buf.position(buf.position() + (nRead << 2));
+                off += nRead;
+            }
+        }
+
+        void getLongs(long[] dst, int n) throws IOException {
+            int off = 0;
+            while(off < n){
+                require(8);
+                int nRead = Math.min(buf.remaining() >>> 3, n - off);
+                buf.asLongBuffer().get(dst, off, nRead);
+                buf.position(buf.position() + (nRead << 3));
+                off += nRead;
+            }
+        }
+
+        /**
+         * Move to an absolute position in the file.
+         * @param position The byte offset from the start of the file.
+         * @throws IOException If the channel cannot be repositioned.
+         */
+        void seek(long position) throws IOException {
+            long bufStart = channel.position() - buf.limit();
+            if(position >= bufStart && position <= channel.position()){
+                buf.position((int) (position - bufStart));
+            }else{
+                channel.position(position);
+                buf.limit(0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import onethreeseven.datastructures.util.GorillaCodec;
+import onethreeseven.geo.projection.AbstractGeographicProjection;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static onethreeseven.datastructures.data.BinaryTrajectoryFormat.*;
+
+/**
+ * Reads the binary trajectory files written by {@link BinaryTrajectoryWriter}.
+ * The columns are read in bulk and the trajectories are made at their final size,
+ * so loading is bound by how fast the file can be read.
+ * @author Luke Bermingham
+ */
+public class BinaryTrajectoryReader {
+
+    private AbstractGeographicProjection projection;
+    private boolean inCartesianMode;
+
+    /**
+     * @param projection The map projection to use if the coordinates are converted to cartesian.
+     * @param inCartesianMode If true, convert the coordinates to cartesian coordinates using the projection.
+     */
+    public BinaryTrajectoryReader(AbstractGeographicProjection projection, boolean inCartesianMode){
+        this.projection = projection;
+        this.inCartesianMode = inCartesianMode;
+    }
+
+    /**
+     * Reads trajectories into cartesian coordinates using the equirectangular projection.
+     */
+    public BinaryTrajectoryReader(){
+        this(new ProjectionEquirectangular(), true);
+    }
+
+    /**
+     * Read the trajectories as whatever kind they were written as.
+     * @param file The binary trajectory file.
+     * @return The trajectories keyed by id, they are {@link SpatialTrajectory}, {@link STTrajectory}
+     * or {@link STStopTrajectory} depending on what was written.
+     * @throws IOException If the file cannot be read or is not a binary trajectory file.
+     */
+    public Map<String, ? extends SpatioCompositeTrajectory<?>> read(File file) throws IOException {
+        return read(file, (byte) -1);
+    }
+
+    /**
+     * @param file The binary trajectory file.
+     * @return The trajectories keyed by id, only their coordinates are read.
+     * @throws IOException If the file cannot be read or is not a binary trajectory file.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, SpatialTrajectory> readSpatial(File file) throws IOException {
+        return (Map<String, SpatialTrajectory>) read(file, KIND_SPATIAL);
+    }
+
+    /**
+     * @param file The binary trajectory file.
+     * @return The trajectories keyed by id, any stops are not read.
+     * @throws IOException If the file cannot be read or does not store time-stamps.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, STTrajectory> readSpatioTemporal(File file) throws IOException {
+        return (Map<String, STTrajectory>) read(file, KIND_SPATIOTEMPORAL);
+    }
+
+    /**
+     * @param file The binary trajectory file.
+     * @return The trajectories keyed by id.
+     * @throws IOException If the file cannot be read or does not store time-stamps and stops.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, STStopTrajectory> readStops(File file) throws IOException {
+        return (Map<String, STStopTrajectory>) read(file, KIND_STOP);
+    }
+
+    /**
+     * @param file The file to read.
+     * @param wantedKind The kind of trajectories to make or -1 for the kind in the file.
+     * @return The trajectories keyed by id.
+     * @throws IOException If the file cannot be read.
+     */
+    private Map<String, ? extends SpatioCompositeTrajectory<?>> read(File file, byte wantedKind) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            ChannelInput in = new ChannelInput(channel);
+            if(in.getInt() != MAGIC){
+                throw new IOException(file.getName() + " is not a binary trajectory file.");
+            }
+            short version = in.getShort();
+            if(version != VERSION && version != VERSION_GEOGRAPHIC_ONLY){
+                throw new IOException("Unsupported binary trajectory file version: " + version);
+            }
+            byte fileKind = in.getByte();
+            byte codec = in.getByte();
+            if(codec != CODEC_RAW && codec != CODEC_GORILLA){
+                throw new IOException("Unsupported binary trajectory codec: " + codec);
+            }
+            byte coords = version == VERSION_GEOGRAPHIC_ONLY ? COORDS_GEOGRAPHIC : in.getByte();
+            if(coords != COORDS_GEOGRAPHIC && coords != COORDS_CARTESIAN){
+                throw new IOException("Unsupported binary trajectory coordinates: " + coords);
+            }
+            final boolean cartesian = coords == COORDS_CARTESIAN;
+            byte kind = wantedKind < 0 ? fileKind : wantedKind;
+            if(kind > fileKind){
+                throw new IOException("Cannot read " + kindName(kind) + " trajectories from a file of "
+                        + kindName(fileKind) + " trajectories.");
+            }
+
+            int nTrajs = in.getInt();
+            String[] ids = new String[nTrajs];
+            int[] sizes = new int[nTrajs];
+            long[] offsets = new long[nTrajs];
+            long[] lengths = new long[nTrajs];
+            for (int i = 0; i < nTrajs; i++) {
+                byte[] id = new byte[in.getInt()];
+                in.getBytes(id);
+                ids[i] = new String(id, StandardCharsets.UTF_8);
+                sizes[i] = in.getInt();
+                offsets[i] = in.getLong();
+                lengths[i] = in.getLong();
+            }
+
+            Map<String, SpatioCompositeTrajectory<?>> out = new HashMap<>(Math.max(16, (int) (nTrajs / 0.75f) + 1));
+            double[] lats = new double[0];
+            double[] lons = new double[0];
+            long[] millis = new long[0];
+            long[] stopWords = new long[0];
+            for (int t = 0; t < nTrajs; t++) {
+                final int n = sizes[t];
+                if(lats.length < n){
+                    lats = new double[n];
+                    lons = new double[n];
+                }
+                if(fileKind >= KIND_SPATIOTEMPORAL && millis.length < n){
+                    millis = new long[n];
+                }
+                if(fileKind == KIND_STOP && stopWords.length < stopWords(n)){
+                    stopWords = new long[stopWords(n)];
+                }
+                in.seek(offsets[t]);
+                if(codec == CODEC_GORILLA){
+                    long[] block = new long[(int) (lengths[t] >>> 3)];
+                    in.getLongs(block, block.length);
+                    decompressBlock(block, fileKind, n, lats, lons, millis, stopWords);
+                }else{
+                    in.getDoubles(lats, n);
+                    in.getDoubles(lons, n);
+                    if(fileKind >= KIND_SPATIOTEMPORAL){
+                        in.getLongs(millis, n);
+                    }
+                    if(fileKind == KIND_STOP){
+                        in.getLongs(stopWords, stopWords(n));
+                    }
+                }
+                out.put(ids[t], makeTrajectory(kind, cartesian, n, lats, lons, millis, stopWords));
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Decode a block written with {@link BinaryTrajectoryFormat#CODEC_GORILLA} into the same columns a raw block has.
+     */
+    private static void decompressBlock(long[] block, byte fileKind, int n, double[] lats, double[] lons,
+                                        long[] millis, long[] stopWords){
+        GorillaCodec.BitReader bits = new GorillaCodec.BitReader(block);
+        GorillaCodec.DoubleDecoder latDec = new GorillaCodec.DoubleDecoder();
+        GorillaCodec.DoubleDecoder lonDec = new GorillaCodec.DoubleDecoder();
+        for (int i = 0; i < n; i++) {
+            lats[i] = latDec.decode(bits);
+        }
+        for (int i = 0; i < n; i++) {
+            lons[i] = lonDec.decode(bits);
+        }
+        if(fileKind >= KIND_SPATIOTEMPORAL){
+            GorillaCodec.LongDecoder timeDec = new GorillaCodec.LongDecoder();
+            for (int i = 0; i < n; i++) {
+                millis[i] = timeDec.decode(bits);
+            }
+        }
+        if(fileKind == KIND_STOP){
+            Arrays.fill(stopWords, 0, stopWords(n), 0L);
+            for (int i = 0; i < n; i++) {
+                if(bits.readBit()){
+                    stopWords[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cartesian Whether the coordinate columns are x and y rather than latitudes and longitudes.
+     */
+    private SpatioCompositeTrajectory<?> makeTrajectory(byte kind, boolean cartesian, int n, double[] lats, double[] lons,
+                                                        long[] millis, long[] stopWords){
+        switch (kind){
+            case KIND_STOP:
+                STStopTrajectory stopTraj = new STStopTrajectory(inCartesianMode, projection, n);
+                for (int i = 0; i < n; i++) {
+                    boolean isStopped = (stopWords[i >>> 6] & (1L << (i & 63))) != 0;
+                    if(cartesian){
+                        stopTraj.addCartesian(lats[i], lons[i], millis[i], isStopped);
+                    }else{
+                        stopTraj.addGeographic(lats[i], lons[i], millis[i], isStopped);
+                    }
+                }
+                return stopTraj;
+            case KIND_SPATIOTEMPORAL:
+                STTrajectory stTraj = new STTrajectory(inCartesianMode, projection, n);
+                for (int i = 0; i < n; i++) {
+                    if(cartesian){
+                        stTraj.addCartesian(lats[i], lons[i], millis[i]);
+                    }else{
+                        stTraj.addGeographic(lats[i], lons[i], millis[i]);
+                    }
+                }
+                return stTraj;
+            default:
+                SpatialTrajectory spatialTraj = new SpatialTrajectory(inCartesianMode, projection, n);
+                for (int i = 0; i < n; i++) {
+                    if(cartesian){
+                        spatialTraj.addCartesian(lats[i], lons[i]);
+                    }else{
+                        spatialTraj.addGeographic(lats[i], lons[i]);
+                    }
+                }
+                return spatialTraj;
+        }
+    }
+
+    public BinaryTrajectoryReader setProjection(AbstractGeographicProjection projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    public BinaryTrajectoryReader setInCartesianMode(boolean inCartesianMode) {
+        this.inCartesianMode = inCartesianMode;
+        return this;
+    }
+
+}
@@ -0,0 +1,190 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import onethreeseven.datastructures.util.GorillaCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static onethreeseven.datastructures.data.BinaryTrajectoryFormat.*;
+
+/**
+ * Writes a map of trajectories to a compact binary file (see {@link BinaryTrajectoryFormat})
+ * that {@link BinaryTrajectoryReader} can load back without any text parsing.
+ * The file stores the richest kind of trajectory that every trajectory in the map supports,
+ * i.e a map of {@link STStopTrajectory} keeps its times and stops, whereas a map mixing
+ * {@link STStopTrajectory} and {@link onethreeseven.datastructures.model.SpatialTrajectory} only keeps coordinates.
+ * If every trajectory is in cartesian mode the cartesian coordinates are written as they are,
+ * otherwise all coordinates are written geographically.
+ * @author Luke Bermingham
+ */
+public class BinaryTrajectoryWriter {
+
+    private boolean compressed = false;
+
+    /**
+     * @param file The file to write to (it is replaced if it already exists).
+     * @param trajs The trajectories to write, keyed by id.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(File file, Map<String, ? extends SpatioCompositeTrajectory<?>> trajs) throws IOException {
+
+        byte kind = KIND_STOP;
+        boolean cartesian = !trajs.isEmpty();
+        for (SpatioCompositeTrajectory<?> traj : trajs.values()) {
+            kind = (byte) Math.min(kind, kindOf(traj));
+            cartesian &= traj.isInCartesianMode();
+        }
+
+        //work out where each block goes so the dictionary can be written first
+        List<byte[]> ids = new ArrayList<>(trajs.size());
+        List<SpatioCompositeTrajectory<?>> values = new ArrayList<>(trajs.size());
+        //compressed blocks have to be made first to know how long they are
+        List<long[]> compressedBlocks = new ArrayList<>(compressed ? trajs.size() : 0);
+        long headerLength = 4 + 2 + 1 + 1 + 1 + 4;
+        for (Map.Entry<String, ? extends SpatioCompositeTrajectory<?>> entry : trajs.entrySet()) {
+            byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            ids.add(id);
+            values.add(entry.getValue());
+            if(compressed){
+                compressedBlocks.add(compressBlock(entry.getValue(), kind, cartesian));
+            }
+            headerLength += 4 + id.length + 4 + 8 + 8;
+        }
+
+        try(FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ChannelOutput out = new ChannelOutput(channel);
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putByte(kind);
+            out.putByte(compressed ? CODEC_GORILLA : CODEC_RAW);
+            out.putByte(cartesian ? COORDS_CARTESIAN : COORDS_GEOGRAPHIC);
+            out.putInt(ids.size());
+
+            long blockOffset = headerLength;
+            for (int i = 0; i < ids.size(); i++) {
+                int n = values.get(i).size();
+                long blockLength = compressed ? 8L * compressedBlocks.get(i).length : rawBlockLength(kind, n);
+                out.putInt(ids.get(i).length);
+                out.putBytes(ids.get(i));
+                out.putInt(n);
+                out.putLong(blockOffset);
+                out.putLong(blockLength);
+                blockOffset += blockLength;
+            }
+
+            for (int i = 0; i < values.size(); i++) {
+                if(compressed){
+                    for (long word : compressedBlocks.get(i)) {
+                        out.putLong(word);
+                    }
+                }else{
+                    writeBlock(out, values.get(i), kind, cartesian);
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * @param traj The trajectory.
+     * @param kind The kind of trajectory being written.
+     * @param cartesian Whether the file stores cartesian coordinates.
+     * @return The block as a compressed bit stream.
+     */
+    private static long[] compressBlock(SpatioCompositeTrajectory<?> traj, byte kind, boolean cartesian){
+        final int n = traj.size();
+        GorillaCodec.BitWriter bits = new GorillaCodec.BitWriter(n + 2);
+        GorillaCodec.DoubleEncoder latEnc = new GorillaCodec.DoubleEncoder();
+        GorillaCodec.DoubleEncoder lonEnc = new GorillaCodec.DoubleEncoder();
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            double[] coords = traj.isInCartesianMode() == cartesian ?
+                    new double[]{traj.getX(i), traj.getY(i)} : traj.getCoords(i, false);
+            latEnc.encode(bits, coords[0]);
+            lons[i] = coords[1];
+        }
+        for (int i = 0; i < n; i++) {
+            lonEnc.encode(bits, lons[i]);
+        }
+        if(kind >= KIND_SPATIOTEMPORAL){
+            AbstractSTTrajectory<?> stTraj = (AbstractSTTrajectory<?>) traj;
+            GorillaCodec.LongEncoder timeEnc = new GorillaCodec.LongEncoder();
+            for (int i = 0; i < n; i++) {
+                timeEnc.encode(bits, stTraj.getEpochMillis(i));
+            }
+        }
+        if(kind == KIND_STOP){
+            STStopTrajectory stopTraj = (STStopTrajectory) traj;
+            for (int i = 0; i < n; i++) {
+                bits.writeBit(stopTraj.isStopped(i));
+            }
+        }
+        return bits.toWords();
+    }
+
+    private static void writeBlock(ChannelOutput out, SpatioCompositeTrajectory<?> traj, byte kind,
+                                   boolean cartesian) throws IOException {
+        final int n = traj.size();
+        //only cartesian trajectories in a geographic file have to be converted
+        if(traj.isInCartesianMode() != cartesian){
+            double[] lons = new double[n];
+            for (int i = 0; i < n; i++) {
+                double[] latlon = traj.getCoords(i, false);
+                out.putDouble(latlon[0]);
+                lons[i] = latlon[1];
+            }
+            for (int i = 0; i < n; i++) {
+                out.putDouble(lons[i]);
+            }
+        }else{
+            for (int i = 0; i < n; i++) {
+                out.putDouble(traj.getX(i));
+            }
+            for (int i = 0; i < n; i++) {
+                out.putDouble(traj.getY(i));
+            }
+        }
+
+        if(kind >= KIND_SPATIOTEMPORAL){
+            AbstractSTTrajectory<?> stTraj = (AbstractSTTrajectory<?>) traj;
+            for (int i = 0; i < n; i++) {
+                out.putLong(stTraj.getEpochMillis(i));
+            }
+        }
+
+        if(kind == KIND_STOP){
+            STStopTrajectory stopTraj = (STStopTrajectory) traj;
+            int nWords = stopWords(n);
+            for (int w = 0; w < nWords; w++) {
+                long word = 0;
+                int end = Math.min(n, (w + 1) << 6);
+                for (int i = w << 6; i < end; i++) {
+                    if(stopTraj.isStopped(i)){
+                        word |= 1L << (i & 63);
+                    }
+                }
+                out.putLong(word);
+            }
+        }
+    }
+
+    /**
+     * @param compressed If true, the columns are losslessly compressed (see {@link BinaryTrajectoryFormat}).
+     * @return This writer.
+     */
+    public BinaryTrajectoryWriter setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+}
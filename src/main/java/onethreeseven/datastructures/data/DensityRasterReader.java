@@ -0,0 +1,59 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.algorithm.DensityRaster;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static onethreeseven.datastructures.data.DensityRasterWriter.MAGIC;
+import static onethreeseven.datastructures.data.DensityRasterWriter.VERSION;
+
+/**
+ * Reads the density raster files written by {@link DensityRasterWriter}.
+ * @author Luke Bermingham
+ */
+public class DensityRasterReader {
+
+    /**
+     * @param file The density raster file.
+     * @return The raster.
+     * @throws IOException If the file cannot be read or is not a density raster file.
+     */
+    public DensityRaster read(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            BinaryTrajectoryFormat.ChannelInput in = new BinaryTrajectoryFormat.ChannelInput(channel);
+            if(in.getInt() != MAGIC){
+                throw new IOException(file.getName() + " is not a density raster file.");
+            }
+            short version = in.getShort();
+            if(version != VERSION){
+                throw new IOException("Unsupported density raster file version: " + version);
+            }
+            boolean hasDwellSeconds = in.getByte() != 0;
+            double minX = in.getDouble();
+            double minY = in.getDouble();
+            double cellSize = in.getDouble();
+            int nCols = in.getInt();
+            int nRows = in.getInt();
+            long startMillis = in.getLong();
+            long bucketMillis = in.getLong();
+            int nBuckets = in.getInt();
+            long nCells = (long) nCols * nRows * nBuckets;
+            if(nCols < 1 || nRows < 1 || nBuckets < 1 || nCells > Integer.MAX_VALUE - 8){
+                throw new IOException("Invalid density raster size: " + nCols + " x " + nRows + " x " + nBuckets);
+            }
+            int[] counts = new int[(int) nCells];
+            in.getInts(counts, counts.length);
+            float[] dwellSeconds = null;
+            if(hasDwellSeconds){
+                dwellSeconds = new float[(int) nCells];
+                in.getFloats(dwellSeconds, dwellSeconds.length);
+            }
+            return new DensityRaster(minX, minY, cellSize, nCols, nRows,
+                    startMillis, bucketMillis, nBuckets, counts, dwellSeconds);
+        }
+    }
+
+}
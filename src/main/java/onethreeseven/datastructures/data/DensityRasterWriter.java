@@ -0,0 +1,56 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.algorithm.DensityRaster;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {@link DensityRaster} as a compact binary file, read back by {@link DensityRasterReader}.
+ * All values are little-endian.
+ * <pre>
+ * header: magic (int), version (short), has dwell times (byte),
+ *         min x (double), min y (double), cell size (double), columns (int), rows (int),
+ *         start millis (long), bucket millis (long), buckets (int)
+ * cells:  counts (int[buckets * rows * cols]), dwell seconds (float[buckets * rows * cols], if it has dwell times)
+ * </pre>
+ * The cells are in the order of {@link DensityRaster#index(int, int, int)}, so the counts can be
+ * mapped straight into an array by other tools.
+ * @author Luke Bermingham
+ */
+public class DensityRasterWriter {
+
+    static final int MAGIC = 0x52313337; //"R137"
+    static final short VERSION = 1;
+
+    /**
+     * @param file The file to write to (it is replaced if it already exists).
+     * @param raster The raster to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(File file, DensityRaster raster) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            BinaryTrajectoryFormat.ChannelOutput out = new BinaryTrajectoryFormat.ChannelOutput(channel);
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putByte((byte) (raster.hasDwellSeconds() ? 1 : 0));
+            out.putDouble(raster.getMinX());
+            out.putDouble(raster.getMinY());
+            out.putDouble(raster.getCellSize());
+            out.putInt(raster.getNumberOfCols());
+            out.putInt(raster.getNumberOfRows());
+            out.putLong(raster.getStartMillis());
+            out.putLong(raster.getBucketMillis());
+            out.putInt(raster.getNumberOfBuckets());
+            out.putInts(raster.getCounts());
+            if(raster.hasDwellSeconds()){
+                out.putFloats(raster.getDwellSeconds());
+            }
+            out.flush();
+        }
+    }
+
+}
@@ -2,9 +2,7 @@ package onethreeseven.datastructures.data;
 
 import onethreeseven.datastructures.data.resolver.*;
 import onethreeseven.datastructures.model.STStopTrajectory;
-import onethreeseven.datastructures.model.TimeAndStop;
 import onethreeseven.geo.projection.AbstractGeographicProjection;
-import java.time.LocalDateTime;
 
 /**
  * Parser for reading in {@link STStopTrajectory}.
@@ -43,17 +41,23 @@ public class STStopTrajectoryParser extends AbstractTrajectoryParser<STStopTraje
         return this;
     }
 
+    @Override
+    public STStopTrajectoryParser setParallel(boolean parallel) {
+        super.setParallel(parallel);
+        return this;
+    }
+
     @Override
     protected STStopTrajectory makeNewTrajectory() {
         return new STStopTrajectory(inCartesianMode, projection);
     }
 
     @Override
-    protected void addCoordinates(STStopTrajectory traj, double[] coords, String[] lineParts) {
+    protected void addCoordinates(STStopTrajectory traj, double[] coords, DelimitedLine fields) {
         //coordinates 0 and 1 are lat,lon, have to derive speed
-        LocalDateTime time = temporalFieldResolver.resolve(lineParts);
-        boolean isStop = stopFieldResolver.resolve(lineParts);
-        traj.addGeographic(coords, new TimeAndStop(time, isStop));
+        long epochMillis = temporalFieldResolver.resolveEpochMillis(fields);
+        boolean isStop = stopFieldResolver.resolve(fields);
+        traj.addGeographic(coords[0], coords[1], epochMillis, isStop);
     }
 
     @Override
@@ -5,7 +5,6 @@ import onethreeseven.datastructures.model.STTrajectory;
 import onethreeseven.datastructures.model.SpatialTrajectory;
 import onethreeseven.geo.projection.AbstractGeographicProjection;
 import onethreeseven.geo.projection.ProjectionMercator;
-import java.time.LocalDateTime;
 import java.util.function.Consumer;
 
 /**
@@ -47,9 +46,9 @@ public class STTrajectoryParser extends AbstractTrajectoryParser<STTrajectory> {
     }
 
     @Override
-    protected void addCoordinates(STTrajectory traj, double[] coords, String[] lineParts) {
-        LocalDateTime t = temporalFieldResolver.resolve(lineParts);
-        traj.addGeographic(coords, t);
+    protected void addCoordinates(STTrajectory traj, double[] coords, DelimitedLine fields) {
+        long epochMillis = temporalFieldResolver.resolveEpochMillis(fields);
+        traj.addGeographic(coords[0], coords[1], epochMillis);
     }
 
     @Override
@@ -79,6 +78,12 @@ public class STTrajectoryParser extends AbstractTrajectoryParser<STTrajectory> {
         return this;
     }
 
+    @Override
+    public STTrajectoryParser setParallel(boolean parallel) {
+        super.setParallel(parallel);
+        return this;
+    }
+
     @Override
     public STTrajectoryParser setDelimiter(String delimiter) {
         super.setDelimiter(delimiter);
@@ -34,7 +34,7 @@ public class SpatialTrajectoryParser extends AbstractTrajectoryParser<SpatialTra
     }
 
     @Override
-    protected void addCoordinates(SpatialTrajectory traj, double[] coords, String[] lineParts) {
+    protected void addCoordinates(SpatialTrajectory traj, double[] coords, DelimitedLine fields) {
         traj.addGeographic(coords);
     }
 
@@ -52,4 +52,10 @@ public class SpatialTrajectoryParser extends AbstractTrajectoryParser<SpatialTra
         this.inCartesianMode = inCartesianMode;
         return this;
     }
+
+    @Override
+    public SpatialTrajectoryParser setParallel(boolean parallel) {
+        super.setParallel(parallel);
+        return this;
+    }
 }
@@ -1,6 +1,7 @@
 package onethreeseven.datastructures.data;
 
 
+import onethreeseven.datastructures.data.resolver.DelimitedLine;
 import onethreeseven.datastructures.data.resolver.IdFieldResolver;
 import onethreeseven.datastructures.data.resolver.IdResolver;
 import onethreeseven.datastructures.data.resolver.NumericFieldsResolver;
@@ -32,8 +33,8 @@ public class TrajectoryParser extends AbstractTrajectoryParser<Trajectory> {
     }
 
     @Override
-    protected void addCoordinates(Trajectory traj, double[] coords, String[] lineParts) {
-        traj.add(coords);
+    protected void addCoordinates(Trajectory traj, double[] coords, DelimitedLine fields) {
+        traj.add(coords.clone());
     }
 
     @Override
@@ -53,6 +54,12 @@ public class TrajectoryParser extends AbstractTrajectoryParser<Trajectory> {
         return this;
     }
 
+    @Override
+    public TrajectoryParser setParallel(boolean parallel) {
+        super.setParallel(parallel);
+        return this;
+    }
+
     @Override
     public TrajectoryParser setDelimiter(String delimiter) {
         super.setDelimiter(delimiter);
@@ -28,6 +28,27 @@ public abstract class AbstractStringArrayToFieldResolver<T> implements IResolver
         return copy;
     }
 
+    /**
+     * Resolve straight from the offsets of a tokenized line.
+     * By default only the fields at the resolution indices are materialized and passed to
+     * {@link #resolve(Object)}, subclasses override this to avoid making Strings at all.
+     * @param fields The tokenized line.
+     * @return The "resolved" output.
+     */
+    public T resolve(DelimitedLine fields){
+        int maxIdx = 0;
+        for (int resolutionIndex : resolutionIndices) {
+            maxIdx = Math.max(maxIdx, resolutionIndex);
+        }
+        String[] sparseFields = new String[maxIdx + 1];
+        for (int resolutionIndex : resolutionIndices) {
+            if(resolutionIndex >= 0){
+                sparseFields[resolutionIndex] = fields.getField(resolutionIndex);
+            }
+        }
+        return resolve(sparseFields);
+    }
+
     public abstract String getCommandParamString();
 
 }
@@ -0,0 +1,157 @@
+package onethreeseven.datastructures.data.resolver;
+
+/**
+ * Parses plain decimal numbers (i.e "-37.8136", "144.96", "1.5e-3") straight from a range of
+ * characters without making a String. Numbers with at most 18 significant digits whose value
+ * and power of ten are both exactly representable as a double are computed with a single
+ * correctly rounded multiply or divide, so the result is identical to {@link Double#parseDouble(String)}.
+ * Anything else (i.e very long mantissas, huge exponents, "NaN", hex or type suffixes) falls back
+ * to {@link Double#parseDouble(String)}, which also produces the same exceptions for bad input.
+ * @author Luke Bermingham
+ */
+final class DecimalParser {
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_POW10 = 22;
+    //19 digits can overflow a long (and wrap negative), 18 never do
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private DecimalParser(){}
+
+    /**
+     * @param seq The characters to parse.
+     * @return The parsed double.
+     * @throws NumberFormatException If the characters are not a number.
+     */
+    static double parse(CharSequence seq){
+        return parse(seq, 0, seq.length());
+    }
+
+    /**
+     * @param seq The characters containing the number.
+     * @param from The inclusive start of the number.
+     * @param to The exclusive end of the number.
+     * @return The parsed double, leading and trailing whitespace is ignored.
+     * @throws NumberFormatException If the characters are not a number.
+     */
+    static double parse(CharSequence seq, int from, int to){
+        //same whitespace rule as String.trim()
+        int i = from;
+        int end = to;
+        while(i < end && seq.charAt(i) <= ' '){
+            i++;
+        }
+        while(end > i && seq.charAt(end - 1) <= ' '){
+            end--;
+        }
+        if(i == end){
+            return fallback(seq, from, to);
+        }
+
+        boolean negative = false;
+        char c = seq.charAt(i);
+        if(c == '-' || c == '+'){
+            negative = c == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int nDigits = 0;
+        int nSignificant = 0;
+        int exp10 = 0;
+
+        //integer part
+        for (; i < end; i++) {
+            c = seq.charAt(i);
+            if(c < '0' || c > '9'){
+                break;
+            }
+            nDigits++;
+            if(mantissa == 0 && c == '0'){
+                continue;
+            }
+            if(++nSignificant > MAX_MANTISSA_DIGITS){
+                return fallback(seq, from, to);
+            }
+            mantissa = mantissa * 10 + (c - '0');
+        }
+
+        //fractional part
+        if(i < end && seq.charAt(i) == '.'){
+            i++;
+            for (; i < end; i++) {
+                c = seq.charAt(i);
+                if(c < '0' || c > '9'){
+                    break;
+                }
+                nDigits++;
+                exp10--;
+                if(mantissa == 0 && c == '0'){
+                    continue;
+                }
+                if(++nSignificant > MAX_MANTISSA_DIGITS){
+                    return fallback(seq, from, to);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            }
+        }
+
+        if(nDigits == 0){
+            return fallback(seq, from, to);
+        }
+
+        //exponent
+        if(i < end && (seq.charAt(i) == 'e' || seq.charAt(i) == 'E')){
+            i++;
+            boolean negativeExp = false;
+            if(i < end && (seq.charAt(i) == '-' || seq.charAt(i) == '+')){
+                negativeExp = seq.charAt(i) == '-';
+                i++;
+            }
+            int expDigits = 0;
+            int exp = 0;
+            for (; i < end; i++) {
+                c = seq.charAt(i);
+                if(c < '0' || c > '9'){
+                    break;
+                }
+                expDigits++;
+                if(exp < 1000){
+                    exp = exp * 10 + (c - '0');
+                }
+            }
+            if(expDigits == 0){
+                return fallback(seq, from, to);
+            }
+            exp10 += negativeExp ? -exp : exp;
+        }
+
+        //anything left over (i.e a 'd' or 'f' suffix) is left to the JDK
+        if(i != end){
+            return fallback(seq, from, to);
+        }
+
+        double value;
+        if(mantissa == 0){
+            value = 0;
+        }
+        else if(mantissa < MAX_EXACT_MANTISSA && exp10 >= -MAX_EXACT_POW10 && exp10 <= MAX_EXACT_POW10){
+            //both operands are exact so the single operation is correctly rounded
+            value = exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+        }
+        else{
+            return fallback(seq, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double fallback(CharSequence seq, int from, int to){
+        return Double.parseDouble(seq.subSequence(from, to).toString());
+    }
+
+}
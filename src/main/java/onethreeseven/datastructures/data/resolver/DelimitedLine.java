@@ -0,0 +1,341 @@
+package onethreeseven.datastructures.data.resolver;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A reusable tokenizer that breaks a line of text into fields using a delimiter.
+ * Rather than making a String for every field (like {@link String#split(String)} does)
+ * it scans the line once and records the start and end offset of each field.
+ * Resolvers then read the characters of the fields they care about directly, so only those
+ * fields that have to become a String (such as an id) are ever materialized.
+ * <br>
+ * The fields produced are identical to {@link String#split(String)}, that is, the delimiter
+ * is a regular expression and trailing empty fields are dropped. Single character
+ * delimiters (such as "," or ";") are matched without using a regular expression at all.
+ * <br>
+ * This class is not thread-safe, each thread should tokenize with its own instance.
+ * @author Luke Bermingham
+ */
+public class DelimitedLine {
+
+    private static final String REGEX_META_CHARS = ".$|()[{^?*+\\";
+    private static final int DEFAULT_FIELDS = 16;
+
+    private final String delimiter;
+    private final char delimiterChar;
+    private final Matcher delimiterMatcher;
+
+    private CharSequence seq = "";
+    private int nFields = 0;
+    private int[] starts = new int[DEFAULT_FIELDS];
+    private int[] ends = new int[DEFAULT_FIELDS];
+
+    //the last String made for each field, reused while the field content stays the same
+    private String[] fieldCache = new String[DEFAULT_FIELDS];
+    private String[] joinedCache = new String[DEFAULT_FIELDS];
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * @param delimiter The delimiter (regular expression) that separates fields.
+     */
+    public DelimitedLine(String delimiter) {
+        this.delimiter = delimiter;
+        char literal = literalDelimiter(delimiter);
+        if(literal != 0){
+            this.delimiterChar = literal;
+            this.delimiterMatcher = null;
+        }else{
+            this.delimiterChar = 0;
+            this.delimiterMatcher = Pattern.compile(delimiter).matcher("");
+        }
+    }
+
+    /**
+     * Same rule {@link String#split(String)} uses to avoid the regex engine.
+     * @param delimiter The delimiter.
+     * @return The literal character to split on, or 0 if a regular expression is required.
+     */
+    private static char literalDelimiter(String delimiter){
+        if(delimiter.length() == 1 && REGEX_META_CHARS.indexOf(delimiter.charAt(0)) == -1){
+            return delimiter.charAt(0);
+        }
+        if(delimiter.length() == 2 && delimiter.charAt(0) == '\\'){
+            char c = delimiter.charAt(1);
+            boolean isAlphaNumeric = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+            if(!isAlphaNumeric && !Character.isHighSurrogate(c) && !Character.isLowSurrogate(c)){
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Tokenize a whole line.
+     * @param line The line to tokenize.
+     * @return This, so that fields can be read.
+     */
+    public DelimitedLine tokenize(CharSequence line){
+        return tokenize(line, 0, line.length());
+    }
+
+    /**
+     * Tokenize a range of a larger sequence of characters (i.e one line of a whole file)
+     * without making a sub-sequence.
+     * @param seq The sequence of characters.
+     * @param from The inclusive start of the line.
+     * @param to The exclusive end of the line.
+     * @return This, so that fields can be read.
+     */
+    public DelimitedLine tokenize(CharSequence seq, int from, int to){
+        //field caches refer to content not the sequence, so they stay valid across lines
+        this.seq = seq;
+        nFields = 0;
+        int fieldStart = from;
+        boolean matched = false;
+
+        if(delimiterMatcher == null){
+            for (int i = from; i < to; i++) {
+                if(seq.charAt(i) == delimiterChar){
+                    addField(fieldStart, i);
+                    fieldStart = i + 1;
+                    matched = true;
+                }
+            }
+        }
+        else{
+            delimiterMatcher.reset(seq);
+            delimiterMatcher.region(from, to);
+            while(delimiterMatcher.find()){
+                int mStart = delimiterMatcher.start();
+                int mEnd = delimiterMatcher.end();
+                //a zero-width match at the beginning never produces an empty leading field
+                if(fieldStart == from && mStart == from && mStart == mEnd){
+                    continue;
+                }
+                addField(fieldStart, mStart);
+                fieldStart = mEnd;
+                matched = true;
+            }
+        }
+
+        //no delimiter in the line, whole line is one field
+        if(!matched){
+            nFields = 0;
+            addField(from, to);
+            return this;
+        }
+
+        addField(fieldStart, to);
+        //drop trailing empty fields
+        while(nFields > 0 && starts[nFields-1] == ends[nFields-1]){
+            nFields--;
+        }
+        return this;
+    }
+
+    private void addField(int start, int end){
+        if(nFields == starts.length){
+            int newLen = starts.length * 2;
+            starts = Arrays.copyOf(starts, newLen);
+            ends = Arrays.copyOf(ends, newLen);
+            fieldCache = Arrays.copyOf(fieldCache, newLen);
+            joinedCache = Arrays.copyOf(joinedCache, newLen);
+        }
+        starts[nFields] = start;
+        ends[nFields] = end;
+        nFields++;
+    }
+
+    private void checkField(int field){
+        if(field < 0 || field >= nFields){
+            throw new ArrayIndexOutOfBoundsException("Field " + field + " does not exist, line only has " + nFields + " fields.");
+        }
+    }
+
+    /**
+     * @return The number of fields in the last line that was tokenized.
+     */
+    public int getFieldCount() {
+        return nFields;
+    }
+
+    /**
+     * @return The sequence the last line was tokenized from.
+     */
+    public CharSequence getSequence() {
+        return seq;
+    }
+
+    /**
+     * @param field The field index.
+     * @return The inclusive offset (in {@link #getSequence()}) the field starts at.
+     */
+    public int getStart(int field){
+        checkField(field);
+        return starts[field];
+    }
+
+    /**
+     * @param field The field index.
+     * @return The exclusive offset (in {@link #getSequence()}) the field ends at.
+     */
+    public int getEnd(int field){
+        checkField(field);
+        return ends[field];
+    }
+
+    /**
+     * @param field The field index.
+     * @return The start offset of the field after skipping leading whitespace.
+     */
+    public int getTrimmedStart(int field){
+        int start = getStart(field);
+        int end = ends[field];
+        while(start < end && seq.charAt(start) <= ' '){
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @param field The field index.
+     * @return The end offset of the field after skipping trailing whitespace.
+     */
+    public int getTrimmedEnd(int field){
+        int start = getStart(field);
+        int end = ends[field];
+        while(end > start && seq.charAt(end-1) <= ' '){
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Materialize a field as a String. If the field has the same content as the last
+     * time this field was materialized the same String is returned again, this means
+     * repeated values (such as the id on every line of a trajectory) do not allocate.
+     * @param field The field index.
+     * @return The field as a String.
+     */
+    public String getField(int field){
+        checkField(field);
+        int start = starts[field];
+        int end = ends[field];
+        String cached = fieldCache[field];
+        if(cached != null && contentEquals(cached, start, end)){
+            return cached;
+        }
+        String str = seq.subSequence(start, end).toString();
+        fieldCache[field] = str;
+        return str;
+    }
+
+    /**
+     * Join several fields into one String (with a separator between them) and trim the result.
+     * Like {@link #getField(int)} the last String made for these fields is reused if the content is the same.
+     * @param fields The indices of fields to join, in the order they should be joined.
+     * @param separator The separator to put between fields.
+     * @return The trimmed joined String.
+     */
+    public String getJoinedFields(int[] fields, String separator){
+        if(fields.length == 1){
+            int start = getTrimmedStart(fields[0]);
+            int end = getTrimmedEnd(fields[0]);
+            if(start == starts[fields[0]] && end == ends[fields[0]]){
+                return getField(fields[0]);
+            }
+        }
+        sb.setLength(0);
+        for (int i = 0; i < fields.length; i++) {
+            int field = fields[i];
+            checkField(field);
+            sb.append(seq, starts[field], ends[field]);
+            if(i < fields.length - 1){
+                sb.append(separator);
+            }
+        }
+        //trim
+        int start = 0;
+        int end = sb.length();
+        while(start < end && sb.charAt(start) <= ' '){
+            start++;
+        }
+        while(end > start && sb.charAt(end-1) <= ' '){
+            end--;
+        }
+        int cacheSlot = fields[0];
+        String cached = joinedCache[cacheSlot];
+        if(cached != null && cached.length() == end - start){
+            boolean same = true;
+            for (int i = 0; i < cached.length(); i++) {
+                if(cached.charAt(i) != sb.charAt(start + i)){
+                    same = false;
+                    break;
+                }
+            }
+            if(same){
+                return cached;
+            }
+        }
+        String str = sb.substring(start, end);
+        joinedCache[cacheSlot] = str;
+        return str;
+    }
+
+    /**
+     * Compare a (trimmed) field to a String ignoring case, without materializing the field.
+     * @param field The field index.
+     * @param str The String to compare against.
+     * @return True if the trimmed field equals the String ignoring case.
+     */
+    public boolean trimmedFieldEqualsIgnoreCase(int field, String str){
+        int start = getTrimmedStart(field);
+        int end = getTrimmedEnd(field);
+        if(end - start != str.length()){
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            char a = seq.charAt(start + i);
+            char b = str.charAt(i);
+            if(a != b && Character.toUpperCase(a) != Character.toUpperCase(b)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean contentEquals(String str, int start, int end){
+        if(str.length() != end - start){
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if(str.charAt(i) != seq.charAt(start + i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Materialize all fields of the line, only useful for debugging or legacy code.
+     * @return All the fields as Strings.
+     */
+    public String[] toArray(){
+        String[] arr = new String[nFields];
+        for (int i = 0; i < nFields; i++) {
+            arr[i] = seq.subSequence(starts[i], ends[i]).toString();
+        }
+        return arr;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -46,6 +46,14 @@ public class IdFieldResolver extends IdResolver {
         }
     }
 
+    @Override
+    public String resolve(DelimitedLine fields) {
+        if(resolutionIndices.length > 1){
+            return fields.getJoinedFields(resolutionIndices, "");
+        }
+        return fields.getField(resolutionIndices[0]);
+    }
+
     @Override
     public String toString(){
         return "Id";
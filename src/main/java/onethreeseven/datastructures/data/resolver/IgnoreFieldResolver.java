@@ -20,6 +20,11 @@ public class IgnoreFieldResolver extends AbstractStringArrayToFieldResolver<Void
         return null;
     }
 
+    @Override
+    public Void resolve(DelimitedLine fields) {
+        return null;
+    }
+
     @Override
     public String toString(){
         return "Ignored";
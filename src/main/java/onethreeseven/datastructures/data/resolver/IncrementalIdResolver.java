@@ -19,6 +19,11 @@ public class IncrementalIdResolver extends IdResolver {
         return res;
     }
 
+    @Override
+    public String resolve(DelimitedLine fields) {
+        return resolve((String[]) null);
+    }
+
     @Override
     public String getCommandParamString() {
         return " -id ++";
@@ -36,14 +36,40 @@ public class NumericFieldsResolver extends AbstractStringArrayToFieldResolver<do
         double[] arr = new double[resolutionIndices.length];
         int j = 0;
         for (int i : resolutionIndices) {
-            String s = in[i];
-            double d = Double.parseDouble(s.trim());
-            arr[j] = d;
+            arr[j] = DecimalParser.parse(in[i]);
             j++;
         }
         return arr;
     }
 
+    @Override
+    public double[] resolve(DelimitedLine fields) {
+        double[] arr = new double[resolutionIndices.length];
+        resolve(fields, arr);
+        return arr;
+    }
+
+    /**
+     * Resolve the numeric fields of a tokenized line into an existing array,
+     * the characters are parsed in place so no Strings are made.
+     * @param fields The tokenized line.
+     * @param out The array to write to, must have room for {@link #getNumberOfFields()} values.
+     */
+    public void resolve(DelimitedLine fields, double[] out) {
+        CharSequence seq = fields.getSequence();
+        for (int j = 0; j < resolutionIndices.length; j++) {
+            int i = resolutionIndices[j];
+            out[j] = DecimalParser.parse(seq, fields.getStart(i), fields.getEnd(i));
+        }
+    }
+
+    /**
+     * @return The number of values this resolver produces.
+     */
+    public int getNumberOfFields() {
+        return resolutionIndices.length;
+    }
+
     @Override
     public String toString(){
         return "Numeric";
@@ -25,6 +25,11 @@ public class SameIdResolver extends IdResolver {
         return id;
     }
 
+    @Override
+    public String resolve(DelimitedLine fields) {
+        return id;
+    }
+
     public String getId() {
         return id;
     }
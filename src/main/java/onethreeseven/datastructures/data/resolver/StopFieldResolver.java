@@ -43,6 +43,11 @@ public class StopFieldResolver extends AbstractStringArrayToFieldResolver<Boolea
         return stopMoveStr.equals(isStoppedString);
     }
 
+    @Override
+    public Boolean resolve(DelimitedLine fields) {
+        return fields.trimmedFieldEqualsIgnoreCase(resolutionIndices[0], isStoppedString);
+    }
+
     @Override
     public String toString(){
         return "Stop/Move";
@@ -1,11 +1,20 @@
 package onethreeseven.datastructures.data.resolver;
 
 import onethreeseven.common.util.TimeUtil;
+import onethreeseven.datastructures.util.EpochMillisUtil;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 
 /**
  * Using elements of a string[] (given the indices) this class can formulate a {@link java.time.LocalDateTime}.
+ * <br>
+ * When the default {@link TimeUtil#parseDate(String)} parser is used the format of the time-stamps is
+ * detected from the first lines resolved: each line is parsed by {@link TimeUtil#parseDate(String)}
+ * and only the {@link TimestampLayout} candidates that agree with it are kept. Lines are checked for as
+ * long as several layouts agree, once a single layout remains every following line is parsed with that
+ * fixed layout instead, any line that does not fit the layout is still parsed by {@link TimeUtil#parseDate(String)}.
  * @author Luke Bermingham
  */
 public class TemporalFieldResolver extends AbstractStringArrayToFieldResolver<LocalDateTime> {
@@ -14,15 +23,35 @@ public class TemporalFieldResolver extends AbstractStringArrayToFieldResolver<Lo
 
     private final Function<String, LocalDateTime> textToDateTimeParser;
 
+    //detection state, only touched in detectLayout()
+    private List<TimestampLayout> candidates;
+    //set once detection is finished (may be null if no layout fits)
+    private volatile boolean layoutDetected;
+    private volatile TimestampLayout layout = null;
+
     /**
      * Uses a custom string to date-time function to resolve a combined string.
      * @param customResolver The resolver function to use.
      * @param indices The indices of the strings to combine together into a date-time string to parse.
      */
     public TemporalFieldResolver(Function<String, LocalDateTime> customResolver, int... indices){
+        this(customResolver, false, indices);
+    }
+
+    private TemporalFieldResolver(Function<String, LocalDateTime> parser, boolean detectLayout, int... indices){
         super(indices);
-        this.textToDateTimeParser = customResolver;
+        this.textToDateTimeParser = parser;
         this.sb = new StringBuilder();
+        this.layoutDetected = !detectLayout;
+        if(detectLayout){
+            this.candidates = new ArrayList<>();
+            for (String pattern : TimestampLayout.CANDIDATE_PATTERNS) {
+                TimestampLayout candidate = new TimestampLayout(pattern);
+                if(candidate.supportsFields(indices.length)){
+                    candidates.add(candidate);
+                }
+            }
+        }
     }
 
     /**
@@ -31,7 +60,7 @@ public class TemporalFieldResolver extends AbstractStringArrayToFieldResolver<Lo
      * @param indices The indices of the strings to combine together into a date-time string to parse.
      */
     public TemporalFieldResolver(int... indices) {
-        this(TimeUtil::parseDate, indices);
+        this(TimeUtil::parseDate, true, indices);
     }
 
     @Override
@@ -52,6 +81,83 @@ public class TemporalFieldResolver extends AbstractStringArrayToFieldResolver<Lo
         return this.textToDateTimeParser.apply(combinedTimeStamps);
     }
 
+    @Override
+    public LocalDateTime resolve(DelimitedLine fields) {
+        TimestampLayout detected = layout;
+        if(detected != null){
+            long epochMillis = detected.parse(fields, resolutionIndices);
+            if(epochMillis != TimestampLayout.FAILED){
+                return EpochMillisUtil.toLocalDateTime(epochMillis);
+            }
+        }
+        return parseJoinedFields(fields);
+    }
+
+    /**
+     * Resolve the time-stamp of a tokenized line straight to epoch millis (treated as UTC),
+     * this avoids making a {@link LocalDateTime} when a time-stamp layout has been detected.
+     * @param fields The tokenized line.
+     * @return The epoch millis of the time-stamp.
+     */
+    public long resolveEpochMillis(DelimitedLine fields) {
+        TimestampLayout detected = layout;
+        if(detected != null){
+            long epochMillis = detected.parse(fields, resolutionIndices);
+            if(epochMillis != TimestampLayout.FAILED){
+                return epochMillis;
+            }
+        }
+        return EpochMillisUtil.toEpochMillis(parseJoinedFields(fields));
+    }
+
+    /**
+     * Parse the joined time-stamp fields with the general parser (and use the result for detection).
+     * @param fields The tokenized line.
+     * @return The parsed time-stamp.
+     */
+    private LocalDateTime parseJoinedFields(DelimitedLine fields){
+        String combinedTimeStamps = fields.getJoinedFields(resolutionIndices, " ");
+        LocalDateTime time = this.textToDateTimeParser.apply(combinedTimeStamps);
+        if(!layoutDetected){
+            detectLayout(fields, time);
+        }
+        return time;
+    }
+
+    /**
+     * Drop every candidate layout that disagrees with the time-stamp the general parser produced.
+     * @param fields The tokenized line.
+     * @param expected The time-stamp produced by the general parser.
+     */
+    private synchronized void detectLayout(DelimitedLine fields, LocalDateTime expected){
+        if(layoutDetected){
+            return;
+        }
+        //a time-stamp with more precision than millis says nothing about the layouts
+        if(expected.getNano() % 1000000 != 0){
+            return;
+        }
+        long expectedMillis = EpochMillisUtil.toEpochMillis(expected);
+        candidates.removeIf(candidate -> candidate.parse(fields, resolutionIndices) != expectedMillis);
+        //while several layouts agree (i.e day first or month first) they are never guessed between
+        if(candidates.size() == 1){
+            layout = candidates.get(0);
+        }
+        if(layout != null || candidates.isEmpty()){
+            candidates = null;
+            layoutDetected = true;
+        }
+    }
+
+    /**
+     * @return The pattern of the time-stamp layout that was detected,
+     * or null if none has been detected (yet).
+     */
+    public String getDetectedPattern(){
+        TimestampLayout detected = layout;
+        return detected == null ? null : detected.getPattern();
+    }
+
     private String combineTimeStamps(String[] timeStampParts){
         sb.setLength(0);
         int len = resolutionIndices.length;
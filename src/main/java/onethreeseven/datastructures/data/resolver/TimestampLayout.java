@@ -0,0 +1,272 @@
+package onethreeseven.datastructures.data.resolver;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * A fixed character layout of a time-stamp (i.e "dd/MM/yyyy HH:mm:ss") that is parsed
+ * by reading digits at known positions, straight into epoch millis (treating the time-stamp as UTC).
+ * Parsing never throws, if the characters do not fit the layout exactly (or the date is invalid)
+ * {@link #FAILED} is returned so the caller can fall back to a general purpose parser.
+ * <br>
+ * The layout is written like a {@link java.time.format.DateTimeFormatter} pattern but only supports:
+ * yyyy, MM, dd, HH, mm, ss, SSS (exactly three digits of milliseconds), an optional fraction
+ * written as [.S] (one to three digits) and literal characters (quoted literals are written without quotes).
+ * A space in the layout may also separate time-stamp parts that are stored in different fields.
+ * <br>
+ * Instances are immutable apart from a cache of the last date parsed, which is itself
+ * immutable, so a layout can be shared between threads.
+ * @author Luke Bermingham
+ */
+final class TimestampLayout {
+
+    static final long FAILED = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    //token kinds, literals are stored as their (positive) character
+    private static final int YEAR = -1;
+    private static final int MONTH = -2;
+    private static final int DAY = -3;
+    private static final int HOUR = -4;
+    private static final int MINUTE = -5;
+    private static final int SECOND = -6;
+    private static final int MILLIS = -7;
+    private static final int OPTIONAL_FRACTION = -8;
+
+    /**
+     * Common time-stamp layouts, most preferred first.
+     */
+    static final String[] CANDIDATE_PATTERNS = {
+            "yyyy-MM-ddTHH:mm:ss[.S]",
+            "yyyy-MM-dd HH:mm:ss",
+            "yyyy-MM-dd HH:mm:ss.SSS",
+            "yyyy/MM/dd HH:mm:ss",
+            "dd/MM/yyyy HH:mm:ss",
+            "MM/dd/yyyy HH:mm:ss",
+            "dd-MM-yyyy HH:mm:ss",
+            "dd.MM.yyyy HH:mm:ss"
+    };
+
+    private final String pattern;
+    //the tokens of the whole pattern, used when the time-stamp is in one field
+    private final int[] tokens;
+    //the tokens of each space separated part, used when the time-stamp is spread over fields
+    private final int[][] partTokens;
+
+    //racy but safe, the cache is immutable and any thread may replace it
+    private DayCache lastDay = null;
+
+    TimestampLayout(String pattern){
+        this.pattern = pattern;
+        this.tokens = compile(pattern);
+        String[] parts = pattern.split(" ");
+        this.partTokens = new int[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            partTokens[i] = compile(parts[i]);
+        }
+    }
+
+    private static int[] compile(String pattern){
+        int[] out = new int[pattern.length()];
+        int n = 0;
+        int i = 0;
+        while(i < pattern.length()){
+            if(pattern.startsWith("[.S]", i)){
+                out[n++] = OPTIONAL_FRACTION;
+                i += 4;
+            }else if(pattern.startsWith("yyyy", i)){
+                out[n++] = YEAR;
+                i += 4;
+            }else if(pattern.startsWith("SSS", i)){
+                out[n++] = MILLIS;
+                i += 3;
+            }else if(pattern.startsWith("MM", i)){
+                out[n++] = MONTH;
+                i += 2;
+            }else if(pattern.startsWith("dd", i)){
+                out[n++] = DAY;
+                i += 2;
+            }else if(pattern.startsWith("HH", i)){
+                out[n++] = HOUR;
+                i += 2;
+            }else if(pattern.startsWith("mm", i)){
+                out[n++] = MINUTE;
+                i += 2;
+            }else if(pattern.startsWith("ss", i)){
+                out[n++] = SECOND;
+                i += 2;
+            }else{
+                out[n++] = pattern.charAt(i);
+                i++;
+            }
+        }
+        int[] trimmed = new int[n];
+        System.arraycopy(out, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    /**
+     * @param nFields The number of fields the time-stamp is stored in.
+     * @return True if this layout can parse a time-stamp stored in that many fields.
+     */
+    boolean supportsFields(int nFields){
+        return nFields == 1 || nFields == partTokens.length;
+    }
+
+    /**
+     * Parse a time-stamp whose parts are the given fields of a tokenized line
+     * (as if they were joined by a space and trimmed).
+     * @param fields The tokenized line.
+     * @param indices The indices of the fields holding the time-stamp.
+     * @return The epoch millis of the time-stamp or {@link #FAILED}.
+     */
+    long parse(DelimitedLine fields, int[] indices){
+        final int nParts = indices.length;
+        if(!supportsFields(nParts)){
+            return FAILED;
+        }
+        //year, month, day, hour, minute, second, millis
+        long packedDate = 0;
+        int timeOfDayMillis = 0;
+        CharSequence seq = fields.getSequence();
+        for (int p = 0; p < nParts; p++) {
+            int field = indices[p];
+            //joined time-stamps are only trimmed on the outside
+            int start = p == 0 ? fields.getTrimmedStart(field) : fields.getStart(field);
+            int end = p == nParts - 1 ? fields.getTrimmedEnd(field) : fields.getEnd(field);
+            int[] toks = nParts == 1 ? tokens : partTokens[p];
+            long result = parseTokens(seq, start, end, toks);
+            if(result == FAILED){
+                return FAILED;
+            }
+            //each part contributes date and/or time, they never overlap
+            packedDate |= result >>> 32;
+            timeOfDayMillis += (int) (result & 0xFFFFFFFFL);
+        }
+        return toEpochMillis(packedDate, timeOfDayMillis);
+    }
+
+    /**
+     * @return The date packed as (year << 9 | month << 5 | day) in the upper 32 bits and the
+     * milliseconds of the day in the lower 32 bits, or {@link #FAILED}.
+     */
+    private static long parseTokens(CharSequence seq, int start, int end, int[] toks){
+        int pos = start;
+        int year = 0, month = 0, day = 0;
+        int hour = 0, minute = 0, second = 0, millis = 0;
+        boolean hasDate = false;
+        for (int tok : toks) {
+            int nDigits;
+            switch (tok){
+                case YEAR: nDigits = 4; break;
+                case MILLIS: nDigits = 3; break;
+                case OPTIONAL_FRACTION: nDigits = 0; break;
+                case MONTH:
+                case DAY:
+                case HOUR:
+                case MINUTE:
+                case SECOND: nDigits = 2; break;
+                default:
+                    if(pos >= end || seq.charAt(pos) != tok){
+                        return FAILED;
+                    }
+                    pos++;
+                    continue;
+            }
+            if(tok == OPTIONAL_FRACTION){
+                if(pos < end && seq.charAt(pos) == '.'){
+                    pos++;
+                    int scale = 100;
+                    int nFraction = 0;
+                    while(pos < end && nFraction < 3 && isDigit(seq.charAt(pos))){
+                        millis += (seq.charAt(pos) - '0') * scale;
+                        scale /= 10;
+                        nFraction++;
+                        pos++;
+                    }
+                    //more precision than millis is left to the general parser
+                    if(nFraction == 0 || (pos < end && isDigit(seq.charAt(pos)))){
+                        return FAILED;
+                    }
+                }
+                continue;
+            }
+            if(pos + nDigits > end){
+                return FAILED;
+            }
+            int value = 0;
+            for (int i = 0; i < nDigits; i++) {
+                char c = seq.charAt(pos++);
+                if(!isDigit(c)){
+                    return FAILED;
+                }
+                value = value * 10 + (c - '0');
+            }
+            switch (tok){
+                case YEAR: year = value; break;
+                case MONTH: month = value; hasDate = true; break;
+                case DAY: day = value; hasDate = true; break;
+                case HOUR: hour = value; break;
+                case MINUTE: minute = value; break;
+                case SECOND: second = value; break;
+                default: millis = value; break;
+            }
+        }
+        //out of range months and days would spill into the neighbouring packed fields
+        if(pos != end || hour > 23 || minute > 59 || second > 59){
+            return FAILED;
+        }
+        if(hasDate && (month < 1 || month > 12 || day < 1 || day > 31)){
+            return FAILED;
+        }
+        long packedDate = ((long) year << 9) | (month << 5) | day;
+        long timeOfDay = ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+        return (packedDate << 32) | timeOfDay;
+    }
+
+    private static boolean isDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    private long toEpochMillis(long packedDate, int timeOfDayMillis){
+        DayCache day = lastDay;
+        if(day == null || day.packedDate != packedDate){
+            int year = (int) (packedDate >>> 9);
+            int month = (int) ((packedDate >>> 5) & 0xF);
+            int dayOfMonth = (int) (packedDate & 0x1F);
+            try{
+                long epochDay = LocalDate.of(year, month, dayOfMonth).toEpochDay();
+                day = new DayCache(packedDate, epochDay * MILLIS_PER_DAY);
+            }catch (DateTimeException e){
+                return FAILED;
+            }
+            lastDay = day;
+        }
+        return day.epochDayMillis + timeOfDayMillis;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * The epoch millis at the start of the last date that was parsed, consecutive entries
+     * of a trajectory usually fall on the same day.
+     */
+    private static final class DayCache {
+        final long packedDate;
+        final long epochDayMillis;
+
+        DayCache(long packedDate, long epochDayMillis) {
+            this.packedDate = packedDate;
+            this.epochDayMillis = epochDayMillis;
+        }
+    }
+
+}
@@ -23,12 +23,24 @@ public class UTMFieldResolver extends AbstractStringArrayToFieldResolver<double[
 
     @Override
     public double[] resolve(String[] in) {
-        double easting = Double.parseDouble(in[resolutionIndices[0]].trim());
-        double northing = Double.parseDouble(in[resolutionIndices[1]].trim());
+        double easting = DecimalParser.parse(in[resolutionIndices[0]]);
+        double northing = DecimalParser.parse(in[resolutionIndices[1]]);
         double[] latlon = utmProjection.cartesianToGeographic(new double[]{easting, northing});
         return desiredProjection.geographicToCartesian(latlon[0], latlon[1]);
     }
 
+    @Override
+    public double[] resolve(DelimitedLine fields) {
+        double easting = parseField(fields, resolutionIndices[0]);
+        double northing = parseField(fields, resolutionIndices[1]);
+        double[] latlon = utmProjection.cartesianToGeographic(new double[]{easting, northing});
+        return desiredProjection.geographicToCartesian(latlon[0], latlon[1]);
+    }
+
+    private static double parseField(DelimitedLine fields, int idx){
+        return DecimalParser.parse(fields.getSequence(), fields.getStart(idx), fields.getEnd(idx));
+    }
+
     @Override
     public String getCommandParamString() {
         throw new UnsupportedOperationException("UTM resolving not yet supported in load trajectory CLI.");
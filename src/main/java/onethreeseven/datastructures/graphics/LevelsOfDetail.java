@@ -0,0 +1,138 @@
+package onethreeseven.datastructures.graphics;
+
+import onethreeseven.datastructures.algorithm.DouglasPeucker;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A pyramid of simplifications of a trajectory, so it can be drawn with only as much detail as can be seen.
+ * Level 0 is every entry, and each level after that is the Douglas-Peucker simplification
+ * at double the tolerance of the one before, until only the first and last entries are left.
+ * Every level is worked out from a single Douglas-Peucker pass, see {@link DouglasPeucker#significance(SpatioCompositeTrajectory)}.
+ * @author Luke Bermingham
+ */
+public class LevelsOfDetail {
+
+    /**
+     * The tolerance of level 1 (in metres).
+     */
+    public static final double DEFAULT_MIN_TOLERANCE = 1;
+
+    private final double[] tolerances;
+    private final int[][] levels;
+    private final int size;
+
+    /**
+     * @param traj The trajectory to make the levels for (it is not modified).
+     */
+    public LevelsOfDetail(SpatioCompositeTrajectory<?> traj){
+        this(traj, DEFAULT_MIN_TOLERANCE);
+    }
+
+    /**
+     * @param traj The trajectory to make the levels for (it is not modified).
+     * @param minTolerance The tolerance of level 1 (in metres).
+     */
+    public LevelsOfDetail(SpatioCompositeTrajectory<?> traj, double minTolerance){
+        if(minTolerance <= 0){
+            throw new IllegalArgumentException("Minimum tolerance must be positive, got passed: " + minTolerance);
+        }
+        this.size = traj.size();
+        double[] significance = DouglasPeucker.significance(traj);
+        //sort the significances, so the size of each level is found by binary search
+        double[] sorted = significance.clone();
+        Arrays.sort(sorted);
+
+        List<Double> tolerances = new ArrayList<>();
+        List<int[]> levels = new ArrayList<>();
+        int[] all = new int[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = i;
+        }
+        tolerances.add(0.0);
+        levels.add(all);
+
+        int prevCount = size;
+        for (double tolerance = minTolerance; prevCount > 2; tolerance *= 2) {
+            //how many entries are more significant than the tolerance
+            int count = size - countAtMost(sorted, tolerance);
+            if(count == prevCount){
+                //nothing more is dropped, the last level already covers this tolerance
+                continue;
+            }
+            int[] level = new int[count];
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                if(significance[i] > tolerance){
+                    level[k++] = i;
+                }
+            }
+            tolerances.add(tolerance);
+            levels.add(level);
+            prevCount = count;
+        }
+
+        this.tolerances = new double[tolerances.size()];
+        for (int i = 0; i < this.tolerances.length; i++) {
+            this.tolerances[i] = tolerances.get(i);
+        }
+        this.levels = levels.toArray(new int[0][]);
+    }
+
+    private static int countAtMost(double[] sorted, double value){
+        int lo = 0;
+        int hi = sorted.length;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(sorted[mid] <= value){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param tolerance How far (in metres) the drawn trajectory can be from the real one,
+     *                  typically the number of metres per pixel times the number of pixels of error allowed.
+     * @return The level with the fewest entries that is within the tolerance.
+     */
+    public int getLevel(double tolerance){
+        int level = 0;
+        while(level + 1 < tolerances.length && tolerances[level + 1] <= tolerance){
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @param level A level.
+     * @return The indices of the trajectory's entries in the level, in ascending order.
+     */
+    public int[] getIndices(int level){
+        return levels[level];
+    }
+
+    /**
+     * @param level A level.
+     * @return The tolerance (in metres) of the level.
+     */
+    public double getTolerance(int level){
+        return tolerances[level];
+    }
+
+    public int getNumberOfLevels(){
+        return levels.length;
+    }
+
+    /**
+     * @return The number of entries the trajectory had when the levels were made.
+     */
+    public int getTrajectorySize(){
+        return size;
+    }
+
+}
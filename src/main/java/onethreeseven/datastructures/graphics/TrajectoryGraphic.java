@@ -11,10 +11,19 @@ import java.util.Iterator;
 
 /**
  * Packed verts for drawing trajectories.
+ * <br>
+ * By default every entry is drawn. If a level of detail tolerance is set (i.e from the current zoom, see
+ * {@link #setLevelOfDetailTolerance(double)}) then only the entries of the matching {@link LevelsOfDetail}
+ * are drawn, the levels are worked out the first time they are needed and kept.
  * @author Luke Bermingham
  */
 public class TrajectoryGraphic extends GraphicsPayload {
 
+    private double levelOfDetailTolerance = 0;
+    private LevelsOfDetail levelsOfDetail = null;
+    //the trajectory the levels of detail were made from
+    private SpatioCompositeTrajectory<?> levelsOfDetailTraj = null;
+
     public TrajectoryGraphic(BoundingCoordinates model){
         super();
         if(model instanceof SpatioCompositeTrajectory){
@@ -34,6 +43,9 @@ public class TrajectoryGraphic extends GraphicsPayload {
 
         if(model instanceof SpatioCompositeTrajectory){
             ((SpatioCompositeTrajectory) model).toCartesian();
+            if(levelOfDetailTolerance > 0){
+                return createVertexData((SpatioCompositeTrajectory<?>) model, levelOfDetailTolerance);
+            }
         }
 
         PackedVertexData vertexData = new PackedVertexData(
@@ -55,6 +67,55 @@ public class TrajectoryGraphic extends GraphicsPayload {
         return vertexData;
     }
 
+    /**
+     * @param traj The trajectory to draw.
+     * @param tolerance How far (in metres) the drawn trajectory can be from the real one,
+     *                  typically the metres per pixel at the current zoom times the pixels of error allowed.
+     * @return The verts of the level of detail that matches the tolerance.
+     */
+    public PackedVertexData createVertexData(SpatioCompositeTrajectory<?> traj, double tolerance){
+        traj.toCartesian();
+        LevelsOfDetail lod = getLevelsOfDetail(traj);
+        int[] indices = lod.getIndices(lod.getLevel(tolerance));
+        PackedVertexData vertexData = new PackedVertexData(
+                indices.length, new PackedVertexData.Types[]{PackedVertexData.Types.VERTEX});
+        final double elevation = PluginSettings.smallElevation.getSetting();
+        for (int idx : indices) {
+            vertexData.add(traj.getX(idx));
+            vertexData.add(traj.getY(idx));
+            vertexData.add(elevation);
+        }
+        return vertexData;
+    }
+
+    /**
+     * @param traj The trajectory being drawn.
+     * @return Its levels of detail, which are made again if a different trajectory is passed
+     * or the trajectory has changed size.
+     */
+    public LevelsOfDetail getLevelsOfDetail(SpatioCompositeTrajectory<?> traj){
+        if(levelsOfDetail == null || levelsOfDetailTraj != traj || levelsOfDetail.getTrajectorySize() != traj.size()){
+            levelsOfDetail = new LevelsOfDetail(traj);
+            levelsOfDetailTraj = traj;
+        }
+        return levelsOfDetail;
+    }
+
+    /**
+     * @param tolerance How far (in metres) the drawn trajectory can be from the real one,
+     *                  0 draws every entry.
+     */
+    public void setLevelOfDetailTolerance(double tolerance) {
+        if(tolerance < 0){
+            throw new IllegalArgumentException("Tolerance cannot be negative, got passed: " + tolerance);
+        }
+        this.levelOfDetailTolerance = tolerance;
+    }
+
+    public double getLevelOfDetailTolerance() {
+        return levelOfDetailTolerance;
+    }
+
     @Override
     protected RenderingModes defaultRenderingMode() {
         return RenderingModes.LINE_STRIP;
@@ -0,0 +1,75 @@
+package onethreeseven.datastructures.index;
+
+/**
+ * A run of consecutive entries of a trajectory that matched a query on a {@link SegmentRTree} or {@link SpaceTimeIndex}.
+ * @author Luke Bermingham
+ */
+public class SegmentMatch {
+
+    private final String id;
+    private final int startIdx;
+    private final int endIdx;
+    private final double distance;
+
+    /**
+     * @param id The id of the trajectory.
+     * @param startIdx The index of the first entry of the matching segments.
+     * @param endIdx The index of the last entry of the matching segments (inclusive).
+     * @param distance The smallest distance between the query and the matching segments.
+     */
+    public SegmentMatch(String id, int startIdx, int endIdx, double distance){
+        this.id = id;
+        this.startIdx = startIdx;
+        this.endIdx = endIdx;
+        this.distance = distance;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The index of the first entry of the matching segments.
+     */
+    public int getStartIdx() {
+        return startIdx;
+    }
+
+    /**
+     * @return The index of the last entry of the matching segments (inclusive),
+     * a single matching segment from entry i to i+1 has an end index of i+1.
+     */
+    public int getEndIdx() {
+        return endIdx;
+    }
+
+    /**
+     * @return The smallest distance between the query and the matching segments,
+     * this is 0 for bounding box and space-time queries.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SegmentMatch that = (SegmentMatch) o;
+        return startIdx == that.startIdx && endIdx == that.endIdx && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = id.hashCode();
+        result = 31 * result + startIdx;
+        result = 31 * result + endIdx;
+        return result;
+    }
+
+    @Override
+    public String toString(){
+        return id + "[" + startIdx + ", " + endIdx + "]";
+    }
+
+}
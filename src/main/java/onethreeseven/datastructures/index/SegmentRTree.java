@@ -0,0 +1,523 @@
+package onethreeseven.datastructures.index;
+
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A static R-tree over the segments of every trajectory in a dataset.
+ * The leaves of the tree are runs of consecutive segments (rather than single segments)
+ * which keeps the tree small, and the tree is bulk loaded using Sort-Tile-Recursive packing
+ * so its nodes are full and overlap little.
+ * <br>
+ * The tree works in cartesian coordinates: geographic trajectories are projected
+ * (using their own projection) when the tree is built, and queries are given in cartesian coordinates.
+ * The tree keeps its own copy of the coordinates, so it is not affected by later changes to the trajectories.
+ * @author Luke Bermingham
+ */
+public class SegmentRTree {
+
+    public static final int DEFAULT_NODE_CAPACITY = 16;
+    public static final int DEFAULT_RUN_LENGTH = 8;
+
+    private final int nodeCapacity;
+
+    private final String[] ids;
+    private final double[][] xs;
+    private final double[][] ys;
+
+    //the leaf entries, each a run of segments from entry runStart to entry runEnd (inclusive)
+    private final int[] runTraj;
+    private final int[] runStart;
+    private final int[] runEnd;
+
+    //boxes of each level as (minX, minY, maxX, maxY), level 0 is the runs
+    private final double[][] levelBoxes;
+    private final int[] levelSizes;
+    //node i of level l > 0 has the children [childStart[l][i], childEnd[l][i]) of level l-1
+    private final int[][] childStart;
+    private final int[][] childEnd;
+
+    public SegmentRTree(Map<String, ? extends SpatioCompositeTrajectory<?>> trajs){
+        this(trajs, DEFAULT_NODE_CAPACITY, DEFAULT_RUN_LENGTH);
+    }
+
+    /**
+     * @param trajs The trajectories to index, keyed by id.
+     * @param nodeCapacity The maximum number of children of each node.
+     * @param runLength The maximum number of segments in each leaf entry, longer runs make the tree smaller
+     *                  but queries have to check more segments.
+     */
+    public SegmentRTree(Map<String, ? extends SpatioCompositeTrajectory<?>> trajs, int nodeCapacity, int runLength){
+        if(nodeCapacity < 2){
+            throw new IllegalArgumentException("Node capacity must be at least two.");
+        }
+        if(runLength < 1){
+            throw new IllegalArgumentException("Run length must be at least one.");
+        }
+        this.nodeCapacity = nodeCapacity;
+
+        final int nTrajs = trajs.size();
+        this.ids = new String[nTrajs];
+        this.xs = new double[nTrajs][];
+        this.ys = new double[nTrajs][];
+
+        int nRuns = 0;
+        int t = 0;
+        for (Map.Entry<String, ? extends SpatioCompositeTrajectory<?>> entry : trajs.entrySet()) {
+            SpatioCompositeTrajectory<?> traj = entry.getValue();
+            final int n = traj.size();
+            ids[t] = entry.getKey();
+            xs[t] = new double[n];
+            ys[t] = new double[n];
+            for (int i = 0; i < n; i++) {
+                if(traj.isInCartesianMode()){
+                    xs[t][i] = traj.getX(i);
+                    ys[t][i] = traj.getY(i);
+                }else{
+                    double[] xy = traj.getCoords(i, true);
+                    xs[t][i] = xy[0];
+                    ys[t][i] = xy[1];
+                }
+            }
+            //n-1 segments, a single entry is a run of its own
+            nRuns += n <= 1 ? n : (n - 2) / runLength + 1;
+            t++;
+        }
+
+        int[] runTraj = new int[nRuns];
+        int[] runStart = new int[nRuns];
+        int[] runEnd = new int[nRuns];
+        double[] runBoxes = new double[4 * nRuns];
+        int r = 0;
+        for (t = 0; t < nTrajs; t++) {
+            final int n = xs[t].length;
+            final int nSegments = n == 0 ? 0 : Math.max(1, n - 1);
+            for (int start = 0; start < nSegments; start += runLength) {
+                int end = Math.min(start + runLength, n - 1);
+                runTraj[r] = t;
+                runStart[r] = start;
+                runEnd[r] = end;
+                setBox(runBoxes, r, xs[t], ys[t], start, end);
+                r++;
+            }
+        }
+
+        //pack the runs, then pack each level of nodes until one node's worth remain
+        List<double[]> boxes = new ArrayList<>();
+        List<int[]> starts = new ArrayList<>();
+        List<int[]> ends = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+
+        int[] order = strOrder(runBoxes, nRuns);
+        this.runTraj = permute(runTraj, order);
+        this.runStart = permute(runStart, order);
+        this.runEnd = permute(runEnd, order);
+        double[] levelBox = permute(runBoxes, order);
+        int count = nRuns;
+        boxes.add(levelBox);
+        starts.add(null);
+        ends.add(null);
+        sizes.add(count);
+
+        while(count > nodeCapacity){
+            int nParents = (count + nodeCapacity - 1) / nodeCapacity;
+            double[] parentBoxes = new double[4 * nParents];
+            int[] parentStarts = new int[nParents];
+            int[] parentEnds = new int[nParents];
+            for (int p = 0; p < nParents; p++) {
+                int from = p * nodeCapacity;
+                int to = Math.min(count, from + nodeCapacity);
+                parentStarts[p] = from;
+                parentEnds[p] = to;
+                unionBox(parentBoxes, p, levelBox, from, to);
+            }
+            order = strOrder(parentBoxes, nParents);
+            levelBox = permute(parentBoxes, order);
+            count = nParents;
+            boxes.add(levelBox);
+            starts.add(permute(parentStarts, order));
+            ends.add(permute(parentEnds, order));
+            sizes.add(count);
+        }
+
+        this.levelBoxes = boxes.toArray(new double[0][]);
+        this.childStart = starts.toArray(new int[0][]);
+        this.childEnd = ends.toArray(new int[0][]);
+        this.levelSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    ///////////////////////
+    //QUERIES
+    ///////////////////////
+
+    /**
+     * Find the segments that pass through a bounding box.
+     * @param bounds The bounding box, as {{minX, maxX}, {minY, maxY}}.
+     * @return The matching runs of segments, consecutive matching segments of a trajectory are merged.
+     */
+    public List<SegmentMatch> query(double[][] bounds){
+        final double minX = bounds[0][0];
+        final double maxX = bounds[0][1];
+        final double minY = bounds[1][0];
+        final double maxY = bounds[1][1];
+        HitList hits = new HitList();
+        search(
+                (box, i) -> box[4 * i] <= maxX && box[4 * i + 2] >= minX
+                        && box[4 * i + 1] <= maxY && box[4 * i + 3] >= minY,
+                run -> {
+                    double[] x = xs[runTraj[run]];
+                    double[] y = ys[runTraj[run]];
+                    int seg = runStart[run];
+                    do {
+                        int next = Math.min(seg + 1, runEnd[run]);
+                        if(segmentIntersectsBox(x[seg], y[seg], x[next], y[next], minX, minY, maxX, maxY)){
+                            hits.add(runTraj[run], seg);
+                        }
+                        seg++;
+                    } while(seg < runEnd[run]);
+                });
+        return hits.toMatches(Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Find the segments that come within a distance of a point.
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param radius The distance from the point.
+     * @return The matching runs of segments, consecutive matching segments of a trajectory are merged.
+     */
+    public List<SegmentMatch> withinDistance(double x, double y, double radius){
+        final double radiusSq = radius * radius;
+        HitList hits = new HitList();
+        search(
+                (box, i) -> boxDistanceSq(box, i, x, y) <= radiusSq,
+                run -> {
+                    double[] rx = xs[runTraj[run]];
+                    double[] ry = ys[runTraj[run]];
+                    int seg = runStart[run];
+                    do {
+                        int next = Math.min(seg + 1, runEnd[run]);
+                        if(segmentDistanceSq(x, y, rx[seg], ry[seg], rx[next], ry[next]) <= radiusSq){
+                            hits.add(runTraj[run], seg);
+                        }
+                        seg++;
+                    } while(seg < runEnd[run]);
+                });
+        return hits.toMatches(x, y);
+    }
+
+    /**
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @return The segment nearest to the point, or null if the tree is empty.
+     */
+    public SegmentMatch nearest(double x, double y){
+        List<SegmentMatch> nearest = nearest(x, y, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * Find the segments nearest to a point, using a best-first search of the tree.
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param k The number of segments to find.
+     * @return Up to k single segments, nearest first.
+     */
+    public List<SegmentMatch> nearest(double x, double y, int k){
+        List<SegmentMatch> out = new ArrayList<>(k);
+        if(k <= 0 || runTraj.length == 0){
+            return out;
+        }
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        int top = levelBoxes.length - 1;
+        for (int i = 0; i < levelSizes[top]; i++) {
+            queue.add(new Candidate(boxDistanceSq(levelBoxes[top], i, x, y), top, i, -1));
+        }
+        while(!queue.isEmpty() && out.size() < k){
+            Candidate c = queue.poll();
+            if(c.seg >= 0){
+                int traj = runTraj[c.idx];
+                int end = Math.min(c.seg + 1, xs[traj].length - 1);
+                out.add(new SegmentMatch(ids[traj], c.seg, end, Math.sqrt(c.distSq)));
+            }else if(c.level == 0){
+                double[] rx = xs[runTraj[c.idx]];
+                double[] ry = ys[runTraj[c.idx]];
+                int seg = runStart[c.idx];
+                do {
+                    int next = Math.min(seg + 1, runEnd[c.idx]);
+                    queue.add(new Candidate(segmentDistanceSq(x, y, rx[seg], ry[seg], rx[next], ry[next]), 0, c.idx, seg));
+                    seg++;
+                } while(seg < runEnd[c.idx]);
+            }else{
+                double[] childBoxes = levelBoxes[c.level - 1];
+                for (int i = childStart[c.level][c.idx]; i < childEnd[c.level][c.idx]; i++) {
+                    queue.add(new Candidate(boxDistanceSq(childBoxes, i, x, y), c.level - 1, i, -1));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return The number of trajectories indexed.
+     */
+    public int getNumberOfTrajectories(){
+        return ids.length;
+    }
+
+    /**
+     * @return The number of levels of the tree, including the leaf entries.
+     */
+    public int getHeight(){
+        return levelBoxes.length;
+    }
+
+    ///////////////////////
+    //TRAVERSAL
+    ///////////////////////
+
+    private interface BoxFilter {
+        boolean test(double[] boxes, int i);
+    }
+
+    private interface RunVisitor {
+        void visit(int run);
+    }
+
+    /**
+     * Depth-first search of the tree.
+     * @param filter Whether a node or run needs to be visited.
+     * @param visitor Called for every run that passes the filter.
+     */
+    private void search(BoxFilter filter, RunVisitor visitor){
+        int top = levelBoxes.length - 1;
+        //(level, index) pairs
+        int[] stack = new int[64];
+        int stackSize = 0;
+        for (int i = 0; i < levelSizes[top]; i++) {
+            if(stackSize + 2 > stack.length){
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[stackSize++] = top;
+            stack[stackSize++] = i;
+        }
+        while(stackSize > 0){
+            int idx = stack[--stackSize];
+            int level = stack[--stackSize];
+            if(!filter.test(levelBoxes[level], idx)){
+                continue;
+            }
+            if(level == 0){
+                visitor.visit(idx);
+                continue;
+            }
+            int from = childStart[level][idx];
+            int to = childEnd[level][idx];
+            if(stackSize + 2 * (to - from) > stack.length){
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, stackSize + 2 * (to - from)));
+            }
+            for (int i = from; i < to; i++) {
+                stack[stackSize++] = level - 1;
+                stack[stackSize++] = i;
+            }
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final double distSq;
+        final int level;
+        final int idx;
+        //the segment within the run, or -1 if this is a node or run
+        final int seg;
+
+        Candidate(double distSq, int level, int idx, int seg){
+            this.distSq = distSq;
+            this.level = level;
+            this.idx = idx;
+            this.seg = seg;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            return Double.compare(distSq, o.distSq);
+        }
+    }
+
+    /**
+     * The segments hit by a query, encoded as (trajectory, segment) longs.
+     */
+    private final class HitList {
+        long[] hits = new long[16];
+        int size = 0;
+
+        void add(int traj, int seg){
+            if(size == hits.length){
+                hits = Arrays.copyOf(hits, size * 2);
+            }
+            hits[size++] = ((long) traj << 32) | seg;
+        }
+
+        /**
+         * @param x The x coordinate of the query point, or NaN if there is none.
+         * @param y The y coordinate of the query point, or NaN if there is none.
+         * @return The hits merged into runs of consecutive segments.
+         */
+        List<SegmentMatch> toMatches(double x, double y){
+            Arrays.sort(hits, 0, size);
+            List<SegmentMatch> out = new ArrayList<>();
+            int i = 0;
+            while(i < size){
+                int traj = (int) (hits[i] >>> 32);
+                int start = (int) hits[i];
+                int end = start;
+                double minDistSq = Double.POSITIVE_INFINITY;
+                while(true){
+                    if(!Double.isNaN(x)){
+                        int next = Math.min(end + 1, xs[traj].length - 1);
+                        minDistSq = Math.min(minDistSq,
+                                segmentDistanceSq(x, y, xs[traj][end], ys[traj][end], xs[traj][next], ys[traj][next]));
+                    }
+                    i++;
+                    if(i < size && (int) (hits[i] >>> 32) == traj && (int) hits[i] == end + 1){
+                        end++;
+                    }else{
+                        break;
+                    }
+                }
+                double dist = Double.isNaN(x) ? 0 : Math.sqrt(minDistSq);
+                out.add(new SegmentMatch(ids[traj], start, Math.min(end + 1, xs[traj].length - 1), dist));
+            }
+            return out;
+        }
+    }
+
+    ///////////////////////
+    //PACKING
+    ///////////////////////
+
+    /**
+     * Sort-Tile-Recursive order: sort by x, cut into vertical slices, and sort each slice by y.
+     * @param boxes The boxes to order.
+     * @param count The number of boxes.
+     * @return The order of the boxes, consecutive groups of the node capacity become nodes.
+     */
+    private int[] strOrder(double[] boxes, int count){
+        Integer[] idx = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, Comparator.comparingDouble(i -> boxes[4 * i] + boxes[4 * i + 2]));
+        int nNodes = (count + nodeCapacity - 1) / nodeCapacity;
+        int nSlices = (int) Math.ceil(Math.sqrt(nNodes));
+        int sliceSize = nSlices * nodeCapacity;
+        for (int from = 0; from < count; from += sliceSize) {
+            Arrays.sort(idx, from, Math.min(count, from + sliceSize),
+                    Comparator.comparingDouble(i -> boxes[4 * i + 1] + boxes[4 * i + 3]));
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = idx[i];
+        }
+        return order;
+    }
+
+    private static int[] permute(int[] values, int[] order){
+        int[] out = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            out[i] = values[order[i]];
+        }
+        return out;
+    }
+
+    private static double[] permute(double[] boxes, int[] order){
+        double[] out = new double[4 * order.length];
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(boxes, 4 * order[i], out, 4 * i, 4);
+        }
+        return out;
+    }
+
+    private static void setBox(double[] boxes, int i, double[] x, double[] y, int from, int to){
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int j = from; j <= to; j++) {
+            minX = Math.min(minX, x[j]);
+            minY = Math.min(minY, y[j]);
+            maxX = Math.max(maxX, x[j]);
+            maxY = Math.max(maxY, y[j]);
+        }
+        boxes[4 * i] = minX;
+        boxes[4 * i + 1] = minY;
+        boxes[4 * i + 2] = maxX;
+        boxes[4 * i + 3] = maxY;
+    }
+
+    private static void unionBox(double[] out, int o, double[] boxes, int from, int to){
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, boxes[4 * i]);
+            minY = Math.min(minY, boxes[4 * i + 1]);
+            maxX = Math.max(maxX, boxes[4 * i + 2]);
+            maxY = Math.max(maxY, boxes[4 * i + 3]);
+        }
+        out[4 * o] = minX;
+        out[4 * o + 1] = minY;
+        out[4 * o + 2] = maxX;
+        out[4 * o + 3] = maxY;
+    }
+
+    ///////////////////////
+    //GEOMETRY
+    ///////////////////////
+
+    private static double boxDistanceSq(double[] boxes, int i, double x, double y){
+        double dx = Math.max(0, Math.max(boxes[4 * i] - x, x - boxes[4 * i + 2]));
+        double dy = Math.max(0, Math.max(boxes[4 * i + 1] - y, y - boxes[4 * i + 3]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * @return The squared distance between the point (px, py) and the segment (x1, y1) to (x2, y2).
+     */
+    static double segmentDistanceSq(double px, double py, double x1, double y1, double x2, double y2){
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lenSq = dx * dx + dy * dy;
+        double t = lenSq == 0 ? 0 : ((px - x1) * dx + (py - y1) * dy) / lenSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x1 + t * dx - px;
+        double ey = y1 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * @return True if the segment (x1, y1) to (x2, y2) touches the box.
+     */
+    static boolean segmentIntersectsBox(double x1, double y1, double x2, double y2,
+                                        double minX, double minY, double maxX, double maxY){
+        //the boxes must overlap
+        if(Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX || Math.max(y1, y2) < minY || Math.min(y1, y2) > maxY){
+            return false;
+        }
+        //then the segment hits the box unless all corners are strictly on one side of its line
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double c1 = dx * (minY - y1) - dy * (minX - x1);
+        double c2 = dx * (minY - y1) - dy * (maxX - x1);
+        double c3 = dx * (maxY - y1) - dy * (minX - x1);
+        double c4 = dx * (maxY - y1) - dy * (maxX - x1);
+        return !((c1 > 0 && c2 > 0 && c3 > 0 && c4 > 0) || (c1 < 0 && c2 < 0 && c3 < 0 && c4 < 0));
+    }
+
+}
@@ -0,0 +1,241 @@
+package onethreeseven.datastructures.index;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.util.EpochMillisUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers "which trajectories were in this area during this time" queries over a dataset of
+ * spatio-temporal trajectories. The result of a query is every run of consecutive entries
+ * that are inside the box and the time window.
+ * <br>
+ * Queries are pruned in three steps: whole trajectories by their bounds and time span,
+ * then each trajectory's entries by binary searching its time-stamps for the time window,
+ * and then blocks of entries by their bounds, so only the entries in blocks that overlap the box are checked.
+ * <br>
+ * The bounds are calculated when the index is made, so it must be remade if the trajectories are modified.
+ * Queries do not modify the index, so they can be run from many threads at once.
+ * @param <T> The type of trajectory.
+ * @author Luke Bermingham
+ */
+public class SpaceTimeIndex<T extends AbstractSTTrajectory<?>> {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final int blockSize;
+    private final String[] ids;
+    private final List<T> trajs;
+    private final Map<String, T> trajsById;
+    private final long[] startMillis;
+    private final long[] endMillis;
+    //per trajectory, the boxes of each block as (minX, minY, maxX, maxY), then the box of the whole trajectory
+    private final double[][] cartesianBoxes;
+    private final double[][] geographicBoxes;
+
+    public SpaceTimeIndex(Map<String, T> trajs){
+        this(trajs, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param trajs The trajectories to index, keyed by id. Their entries must be in time order.
+     * @param blockSize The number of entries in each block.
+     */
+    public SpaceTimeIndex(Map<String, T> trajs, int blockSize){
+        if(blockSize < 1){
+            throw new IllegalArgumentException("Block size must be at least one.");
+        }
+        this.blockSize = blockSize;
+        final int nTrajs = trajs.size();
+        this.ids = new String[nTrajs];
+        this.trajs = new ArrayList<>(nTrajs);
+        this.trajsById = new HashMap<>(trajs);
+        this.startMillis = new long[nTrajs];
+        this.endMillis = new long[nTrajs];
+        this.cartesianBoxes = new double[nTrajs][];
+        this.geographicBoxes = new double[nTrajs][];
+
+        int t = 0;
+        for (Map.Entry<String, T> entry : trajs.entrySet()) {
+            T traj = entry.getValue();
+            ids[t] = entry.getKey();
+            this.trajs.add(traj);
+            final int n = traj.size();
+            if(n > 0){
+                startMillis[t] = traj.getEpochMillis(0);
+                endMillis[t] = traj.getEpochMillis(n - 1);
+            }
+            cartesianBoxes[t] = makeBoxes(traj, true);
+            geographicBoxes[t] = makeBoxes(traj, false);
+            t++;
+        }
+    }
+
+    private double[] makeBoxes(T traj, boolean cartesian){
+        final int n = traj.size();
+        final int nBlocks = (n + blockSize - 1) / blockSize;
+        double[] boxes = new double[4 * (nBlocks + 1)];
+        resetBox(boxes, nBlocks);
+        for (int b = 0; b < nBlocks; b++) {
+            resetBox(boxes, b);
+            int end = Math.min(n, (b + 1) * blockSize);
+            for (int i = b * blockSize; i < end; i++) {
+                double x;
+                double y;
+                if(traj.isInCartesianMode() == cartesian){
+                    x = traj.getX(i);
+                    y = traj.getY(i);
+                }else{
+                    double[] xy = traj.getCoords(i, cartesian);
+                    x = xy[0];
+                    y = xy[1];
+                }
+                expandBox(boxes, b, x, y);
+                expandBox(boxes, nBlocks, x, y);
+            }
+        }
+        return boxes;
+    }
+
+    private static void resetBox(double[] boxes, int i){
+        boxes[4 * i] = Double.POSITIVE_INFINITY;
+        boxes[4 * i + 1] = Double.POSITIVE_INFINITY;
+        boxes[4 * i + 2] = Double.NEGATIVE_INFINITY;
+        boxes[4 * i + 3] = Double.NEGATIVE_INFINITY;
+    }
+
+    private static void expandBox(double[] boxes, int i, double x, double y){
+        boxes[4 * i] = Math.min(boxes[4 * i], x);
+        boxes[4 * i + 1] = Math.min(boxes[4 * i + 1], y);
+        boxes[4 * i + 2] = Math.max(boxes[4 * i + 2], x);
+        boxes[4 * i + 3] = Math.max(boxes[4 * i + 3], y);
+    }
+
+    ///////////////////////
+    //QUERIES
+    ///////////////////////
+
+    /**
+     * @param bounds The cartesian box, as {{minX, maxX}, {minY, maxY}}.
+     * @param from The start of the time window (inclusive).
+     * @param to The end of the time window (inclusive).
+     * @return The runs of entries inside the box and time window.
+     */
+    public List<SegmentMatch> query(double[][] bounds, LocalDateTime from, LocalDateTime to){
+        return query(bounds, EpochMillisUtil.toEpochMillis(from), EpochMillisUtil.toEpochMillis(to));
+    }
+
+    /**
+     * @param bounds The cartesian box, as {{minX, maxX}, {minY, maxY}}.
+     * @param fromEpochMillis The start of the time window (inclusive).
+     * @param toEpochMillis The end of the time window (inclusive).
+     * @return The runs of entries inside the box and time window.
+     */
+    public List<SegmentMatch> query(double[][] bounds, long fromEpochMillis, long toEpochMillis){
+        return query(bounds, fromEpochMillis, toEpochMillis, true);
+    }
+
+    /**
+     * @param latLonBounds The geographic box, as {{minLat, maxLat}, {minLon, maxLon}}.
+     * @param from The start of the time window (inclusive).
+     * @param to The end of the time window (inclusive).
+     * @return The runs of entries inside the box and time window.
+     */
+    public List<SegmentMatch> queryGeographic(double[][] latLonBounds, LocalDateTime from, LocalDateTime to){
+        return queryGeographic(latLonBounds, EpochMillisUtil.toEpochMillis(from), EpochMillisUtil.toEpochMillis(to));
+    }
+
+    /**
+     * @param latLonBounds The geographic box, as {{minLat, maxLat}, {minLon, maxLon}}.
+     * @param fromEpochMillis The start of the time window (inclusive).
+     * @param toEpochMillis The end of the time window (inclusive).
+     * @return The runs of entries inside the box and time window.
+     */
+    public List<SegmentMatch> queryGeographic(double[][] latLonBounds, long fromEpochMillis, long toEpochMillis){
+        return query(latLonBounds, fromEpochMillis, toEpochMillis, false);
+    }
+
+    private List<SegmentMatch> query(double[][] bounds, long from, long to, boolean cartesian){
+        final double minX = bounds[0][0];
+        final double maxX = bounds[0][1];
+        final double minY = bounds[1][0];
+        final double maxY = bounds[1][1];
+        List<SegmentMatch> out = new ArrayList<>();
+        for (int t = 0; t < ids.length; t++) {
+            T traj = trajs.get(t);
+            final int n = traj.size();
+            double[] boxes = cartesian ? cartesianBoxes[t] : geographicBoxes[t];
+            final int nBlocks = boxes.length / 4 - 1;
+            //prune the whole trajectory
+            if(n == 0 || endMillis[t] < from || startMillis[t] > to || !overlaps(boxes, nBlocks, minX, minY, maxX, maxY)){
+                continue;
+            }
+            //then the entries outside the time window
+            final int first = lowerBound(traj, from);
+            final int last = to == Long.MAX_VALUE ? n : lowerBound(traj, to + 1);
+            //then the blocks outside the box
+            int runStart = -1;
+            int i = first;
+            while(i < last){
+                int b = i / blockSize;
+                int blockEnd = Math.min(last, (b + 1) * blockSize);
+                if(!overlaps(boxes, b, minX, minY, maxX, maxY)){
+                    if(runStart >= 0){
+                        out.add(new SegmentMatch(ids[t], runStart, i - 1, 0));
+                        runStart = -1;
+                    }
+                    i = blockEnd;
+                    continue;
+                }
+                for (; i < blockEnd; i++) {
+                    double x;
+                    double y;
+                    if(traj.isInCartesianMode() == cartesian){
+                        x = traj.getX(i);
+                        y = traj.getY(i);
+                    }else{
+                        double[] xy = traj.getCoords(i, cartesian);
+                        x = xy[0];
+                        y = xy[1];
+                    }
+                    boolean inside = x >= minX && x <= maxX && y >= minY && y <= maxY;
+                    if(inside && runStart < 0){
+                        runStart = i;
+                    }else if(!inside && runStart >= 0){
+                        out.add(new SegmentMatch(ids[t], runStart, i - 1, 0));
+                        runStart = -1;
+                    }
+                }
+            }
+            if(runStart >= 0){
+                out.add(new SegmentMatch(ids[t], runStart, last - 1, 0));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return The index of the first entry at or after the time.
+     */
+    private static int lowerBound(AbstractSTTrajectory<?> traj, long epochMillis){
+        int idx = traj.indexOf(epochMillis);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    private static boolean overlaps(double[] boxes, int i, double minX, double minY, double maxX, double maxY){
+        return boxes[4 * i] <= maxX && boxes[4 * i + 2] >= minX && boxes[4 * i + 1] <= maxY && boxes[4 * i + 3] >= minY;
+    }
+
+    /**
+     * @param id The id of a trajectory.
+     * @return The indexed trajectory with that id, or null if there is none.
+     */
+    public T getTrajectory(String id){
+        return trajsById.get(id);
+    }
+
+}
@@ -0,0 +1,166 @@
+package onethreeseven.datastructures.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds which zone a point is in, where each zone is a rectangle in cartesian coordinates
+ * (i.e. the zones of an origin-destination matrix). The zones are bucketed into a uniform grid,
+ * so a lookup only checks the zones that overlap the point's grid cell.
+ * <br>
+ * If zones overlap, a point is in the first of them (in the order they were given).
+ * The index is immutable, so lookups can be run from many threads at once.
+ * @author Luke Bermingham
+ */
+public class ZoneIndex {
+
+    private final String[] names;
+    private final Map<String, Integer> zoneIdxs;
+    private final double[] minXs;
+    private final double[] maxXs;
+    private final double[] minYs;
+    private final double[] maxYs;
+
+    private final double gridMinX;
+    private final double gridMinY;
+    private final double cellSize;
+    private final int nCols;
+    private final int nRows;
+    //the zones overlapping cell c are cellZones[cellStart[c]] to cellZones[cellStart[c + 1] - 1], in ascending order
+    private final int[] cellStart;
+    private final int[] cellZones;
+
+    /**
+     * @param zones The bounds of each zone, {{minX, maxX},{minY, maxY}}, keyed by name.
+     *              Each zone's index is its position in the iteration order of the map.
+     */
+    public ZoneIndex(Map<String, double[][]> zones){
+        final int nZones = zones.size();
+        this.names = new String[nZones];
+        this.zoneIdxs = new HashMap<>(nZones);
+        this.minXs = new double[nZones];
+        this.maxXs = new double[nZones];
+        this.minYs = new double[nZones];
+        this.maxYs = new double[nZones];
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int z = 0;
+        for (Map.Entry<String, double[][]> entry : zones.entrySet()) {
+            double[][] bounds = entry.getValue();
+            if(bounds[0][0] > bounds[0][1] || bounds[1][0] > bounds[1][1]){
+                throw new IllegalArgumentException("The bounds of zone " + entry.getKey() + " are inverted.");
+            }
+            names[z] = entry.getKey();
+            zoneIdxs.put(entry.getKey(), z);
+            minXs[z] = bounds[0][0];
+            maxXs[z] = bounds[0][1];
+            minYs[z] = bounds[1][0];
+            maxYs[z] = bounds[1][1];
+            minX = Math.min(minX, minXs[z]);
+            maxX = Math.max(maxX, maxXs[z]);
+            minY = Math.min(minY, minYs[z]);
+            maxY = Math.max(maxY, maxYs[z]);
+            z++;
+        }
+        if(nZones == 0){
+            minX = maxX = minY = maxY = 0;
+        }
+        //about one cell per zone over the area the zones cover
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double cellSize = Math.sqrt(width * height / Math.max(1, nZones));
+        if(!(cellSize > 0)){
+            cellSize = Math.max(Math.max(width, height), 1);
+        }
+        this.gridMinX = minX;
+        this.gridMinY = minY;
+        this.cellSize = cellSize;
+        this.nCols = (int) Math.min(1 << 15, Math.floor(width / cellSize) + 1);
+        this.nRows = (int) Math.min(1 << 15, Math.floor(height / cellSize) + 1);
+
+        //count the zones of each cell, then fill them in
+        final int nCells = nCols * nRows;
+        this.cellStart = new int[nCells + 1];
+        for (z = 0; z < nZones; z++) {
+            for (int row = row(minYs[z]); row <= row(maxYs[z]); row++) {
+                for (int col = col(minXs[z]); col <= col(maxXs[z]); col++) {
+                    cellStart[row * nCols + col + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < nCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellZones = new int[cellStart[nCells]];
+        int[] fill = cellStart.clone();
+        for (z = 0; z < nZones; z++) {
+            for (int row = row(minYs[z]); row <= row(maxYs[z]); row++) {
+                for (int col = col(minXs[z]); col <= col(maxXs[z]); col++) {
+                    cellZones[fill[row * nCols + col]++] = z;
+                }
+            }
+        }
+    }
+
+    private int col(double x){
+        return (int) Math.max(0, Math.min(nCols - 1, Math.floor((x - gridMinX) / cellSize)));
+    }
+
+    private int row(double y){
+        return (int) Math.max(0, Math.min(nRows - 1, Math.floor((y - gridMinY) / cellSize)));
+    }
+
+    /**
+     * @param x A cartesian x coordinate.
+     * @param y A cartesian y coordinate.
+     * @return The index of the zone the point is in (edges included), or -1 if it is in none.
+     */
+    public int zoneOf(double x, double y){
+        if(names.length == 0){
+            return -1;
+        }
+        int c = row(y) * nCols + col(x);
+        for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+            int z = cellZones[k];
+            if(x >= minXs[z] && x <= maxXs[z] && y >= minYs[z] && y <= maxYs[z]){
+                return z;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param zone The index of a zone.
+     * @return Its name.
+     */
+    public String getName(int zone){
+        return names[zone];
+    }
+
+    /**
+     * @param name The name of a zone.
+     * @return Its index, or -1 if there is no zone with that name.
+     */
+    public int indexOf(String name){
+        Integer z = zoneIdxs.get(name);
+        return z == null ? -1 : z;
+    }
+
+    /**
+     * @param zone The index of a zone.
+     * @return Its bounds, {{minX, maxX},{minY, maxY}}.
+     */
+    public double[][] getBounds(int zone){
+        return new double[][]{new double[]{minXs[zone], maxXs[zone]}, new double[]{minYs[zone], maxYs[zone]}};
+    }
+
+    /**
+     * @return The number of zones.
+     */
+    public int size(){
+        return names.length;
+    }
+
+}
@@ -0,0 +1,315 @@
+package onethreeseven.datastructures.model;
+
+import onethreeseven.datastructures.util.EpochMillisUtil;
+import onethreeseven.geo.projection.AbstractGeographicProjection;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * A trajectory with spatial and one temporal dimension.
+ * The temporal dimension is stored as a column of epoch millis
+ * alongside the coordinate columns, so times are kept to the millisecond.
+ * Subclasses whose times follow a rule (see {@link RegularIntervalSTTrajectory}) can instead
+ * work them out on demand by overriding {@link #epochMillisAt(int)}.
+ * @param <T> the type of spatio-temporal pt being used.
+ * @author Luke Bermingham
+ */
+public abstract class AbstractSTTrajectory<T extends STPt> extends SpatioCompositeTrajectory<T> {
+
+    /**
+     * The time of every entry, null if the subclass works the times out itself.
+     */
+    protected long[] epochMillis;
+
+    public AbstractSTTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection){
+        super(inCartesianMode, projection);
+        this.epochMillis = new long[capacity()];
+    }
+
+    public AbstractSTTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection, int initialCapacity){
+        super(inCartesianMode, projection, initialCapacity);
+        this.epochMillis = new long[capacity()];
+    }
+
+    /**
+     * @param inCartesianMode Whether the coordinates are stored as cartesian or geographic.
+     * @param projection The projection used to convert between cartesian and geographic coordinates.
+     * @param initialCapacity How many entries to allocate room for up front.
+     * @param storeTimes False if the subclass overrides {@link #epochMillisAt(int)}, so no time column is kept.
+     */
+    protected AbstractSTTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection,
+                                   int initialCapacity, boolean storeTimes){
+        super(inCartesianMode, projection, initialCapacity);
+        this.epochMillis = storeTimes ? new long[capacity()] : null;
+    }
+
+    public AbstractSTTrajectory(){
+        super();
+        this.epochMillis = new long[capacity()];
+    }
+
+    @Override
+    protected void onCapacityChanged(int newCapacity) {
+        if(epochMillis != null){
+            epochMillis = Arrays.copyOf(epochMillis, newCapacity);
+        }
+    }
+
+    @Override
+    protected void setExtra(int idx, T stPt) {
+        epochMillis[idx] = EpochMillisUtil.toEpochMillis(stPt.getTime());
+    }
+
+    /**
+     * @param entry The entry to add. Its time is stored as epoch millis (see {@link EpochMillisUtil}),
+     *              so any part of the time smaller than a millisecond is dropped.
+     */
+    @Override
+    public void add(T entry) {
+        super.add(entry);
+    }
+
+    @Override
+    protected void copyExtras(int destIdx, SpatioCompositeTrajectory<T> src, int srcIdx, int length) {
+        if(src instanceof AbstractSTTrajectory){
+            AbstractSTTrajectory<T> stSrc = (AbstractSTTrajectory<T>) src;
+            if(stSrc.epochMillis != null){
+                System.arraycopy(stSrc.epochMillis, srcIdx, epochMillis, destIdx, length);
+            }else{
+                for (int i = 0; i < length; i++) {
+                    epochMillis[destIdx + i] = stSrc.epochMillisAt(srcIdx + i);
+                }
+            }
+        }else{
+            super.copyExtras(destIdx, src, srcIdx, length);
+        }
+    }
+
+    public LocalDateTime getTime(int i){
+        return EpochMillisUtil.toLocalDateTime(getEpochMillis(i));
+    }
+
+    /**
+     * @param i The index of the entry.
+     * @return The time of the entry in epoch millis.
+     * @see EpochMillisUtil
+     */
+    public long getEpochMillis(int i){
+        checkIndex(i);
+        return epochMillisAt(i);
+    }
+
+    /**
+     * The same as {@link #getEpochMillis(int)} without checking the index.
+     * @param i The index of the entry.
+     * @return The time of the entry in epoch millis.
+     */
+    protected long epochMillisAt(int i){
+        return epochMillis[i];
+    }
+
+    ///////////////////////
+    //TEMPORAL LOOKUP
+    //These use binary search over the epoch millis column,
+    //so they assume the entries are in time order.
+    ///////////////////////
+
+    /**
+     * Find the entry at a given time.
+     * @param time The time to look for.
+     * @return The index of the first entry at the time, otherwise (-(insertion point) - 1),
+     * the same as {@link Arrays#binarySearch(long[], long)}.
+     */
+    public int indexOf(LocalDateTime time){
+        return indexOf(EpochMillisUtil.toEpochMillis(time));
+    }
+
+    /**
+     * Find the entry at a given time.
+     * @param epochMillis The time to look for.
+     * @return The index of the first entry at the time, otherwise (-(insertion point) - 1),
+     * the same as {@link Arrays#binarySearch(long[], long)}.
+     */
+    public int indexOf(long epochMillis){
+        int idx = lowerBound(epochMillis);
+        if(idx < size() && epochMillisAt(idx) == epochMillis){
+            return idx;
+        }
+        return -idx - 1;
+    }
+
+    /**
+     * @param epochMillis A time.
+     * @return The index of the first entry at or after the time (or the size if there is none).
+     */
+    protected int lowerBound(long epochMillis){
+        int lo = 0;
+        int hi = size();
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(epochMillisAt(mid) < epochMillis){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param epochMillis A time.
+     * @return The index of the first entry after the time (or the size if there is none).
+     */
+    protected int upperBound(long epochMillis){
+        int lo = 0;
+        int hi = size();
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(epochMillisAt(mid) <= epochMillis){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Get the position of the trajectory at a time, linearly interpolating between
+     * the entries either side of the time.
+     * @param time The time.
+     * @return The coordinates (in the current mode) at the time,
+     * or null if the time is outside the time span of the trajectory.
+     */
+    public double[] positionAt(LocalDateTime time){
+        return positionAt(EpochMillisUtil.toEpochMillis(time));
+    }
+
+    /**
+     * Get the position of the trajectory at a time, linearly interpolating between
+     * the entries either side of the time.
+     * @param epochMillis The time.
+     * @return The coordinates (in the current mode) at the time,
+     * or null if the time is outside the time span of the trajectory.
+     */
+    public double[] positionAt(long epochMillis){
+        int n = size();
+        if(n == 0 || epochMillis < epochMillisAt(0) || epochMillis > epochMillisAt(n - 1)){
+            return null;
+        }
+        return interpolate(upperBound(epochMillis) - 1, epochMillis);
+    }
+
+    /**
+     * Get the position of the trajectory at many times in a single pass over the trajectory,
+     * which is faster than calling {@link #positionAt(long)} for each time when there are lots of them.
+     * @param sortedEpochMillis The times, in ascending order.
+     * @return The coordinates (in the current mode) at each time, an element is null
+     * if its time is outside the time span of the trajectory.
+     */
+    public double[][] positionsAt(long[] sortedEpochMillis){
+        double[][] out = new double[sortedEpochMillis.length][];
+        int n = size();
+        if(n == 0){
+            return out;
+        }
+        final long start = epochMillisAt(0);
+        final long end = epochMillisAt(n - 1);
+        //index of the last entry at or before the current time
+        int i = 0;
+        for (int q = 0; q < sortedEpochMillis.length; q++) {
+            long t = sortedEpochMillis[q];
+            if(q > 0 && t < sortedEpochMillis[q - 1]){
+                throw new IllegalArgumentException("Times must be in ascending order.");
+            }
+            if(t < start || t > end){
+                continue;
+            }
+            while(i + 1 < n && epochMillisAt(i + 1) <= t){
+                i++;
+            }
+            out[q] = interpolate(i, t);
+        }
+        return out;
+    }
+
+    /**
+     * @param i The index of the last entry at or before the time.
+     * @param epochMillis The time.
+     * @return The coordinates between entry i and the next entry at the time.
+     */
+    private double[] interpolate(int i, long epochMillis){
+        long t0 = epochMillisAt(i);
+        if(t0 == epochMillis || i + 1 == size()){
+            return new double[]{x[i], y[i]};
+        }
+        double alpha = (epochMillis - t0) / (double) (epochMillisAt(i + 1) - t0);
+        return new double[]{
+                x[i] + alpha * (x[i + 1] - x[i]),
+                y[i] + alpha * (y[i + 1] - y[i])
+        };
+    }
+
+    /**
+     * Given index i and i-1 compute the speed between them.
+     * @param i The index to find the speed for.
+     * @return The speed in meters per second at the current index.
+     */
+    public double getSpeed(int i){
+        if(i == 0){
+            return 0.0;
+        }
+        long deltaTimeMillis = getEpochMillis(i) - epochMillisAt(i - 1);
+        double dist = distanceAlong(i-1, i);
+        return dist/(deltaTimeMillis/1000.0);
+    }
+
+    public double getMinSpeed(){
+        double minSpeed = Double.MAX_VALUE;
+        for (int i = 0; i < size(); i++) {
+            double curSpeed = getSpeed(i);
+            if(curSpeed < minSpeed){
+                minSpeed = curSpeed;
+            }
+        }
+        return minSpeed;
+    }
+
+    public double getMaxSpeed(){
+        double maxSpeed = Double.MIN_VALUE;
+        for (int i = 0; i < size(); i++) {
+            double curSpeed = getSpeed(i);
+            if(curSpeed > maxSpeed){
+                maxSpeed = curSpeed;
+            }
+        }
+        return maxSpeed;
+    }
+
+    public double getAverageSpeed(){
+        double avgSpeed = 0;
+        for (int i = 0; i < size(); i++) {
+            double curSpeed = getSpeed(i);
+            avgSpeed += curSpeed;
+        }
+        return avgSpeed / size();
+    }
+
+    /**
+     * Gets the duration of this trajectory by checking its first and last entries.
+     * @param timeUnit The unit of time get the duration in.
+     * @return The duration of trajectory as defined above.
+     */
+    public long getDuration(ChronoUnit timeUnit){
+        int trajSize = size();
+
+        if(trajSize <= 1){
+            throw new IllegalArgumentException("Trajectory must have at least two entries.");
+        }
+        LocalDateTime startTime = getTime(0);
+        LocalDateTime endTime = getTime(trajSize-1);
+        return timeUnit.between(startTime, endTime);
+    }
+
+}
@@ -2,24 +2,23 @@ package onethreeseven.datastructures.model;
 
 import onethreeseven.trajsuitePlugin.util.BoundsUtil;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A numerical trajectory that has some other dimension of type T.
+ * Implementations store their entries however they like (i.e in primitive columns)
+ * and hand out points of type T as views over that storage.
  * @param <T> the type of the other dimension.
  * @author Luke Bermingham
  */
 abstract class CompositeTrajectory<T extends CompositePt> implements ITrajectory<T> {
 
-    private int nDimensions = 0;
-    protected final ArrayList<T> entries;
     protected double[][] bounds;
 
-    CompositeTrajectory(){
-        this.entries = new ArrayList<>();
-    }
+    CompositeTrajectory(){}
 
     /**
      * @param fromIdx inclusive from index
@@ -27,20 +26,17 @@ abstract class CompositeTrajectory<T extends CompositePt> implements ITrajectory
      * @return List between indices.
      */
     public List<T> get(int fromIdx, int toIdx){
-        return entries.subList(fromIdx, toIdx);
-    }
-
-    @Override
-    public T get(int idx) {
-        return entries.get(idx);
-    }
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return CompositeTrajectory.this.get(index);
+            }
 
-    @Override
-    public void add(T entry) {
-        if(nDimensions == 0){
-            nDimensions = entry.coords.length;
-        }
-        this.entries.add(entry);
+            @Override
+            public int size() {
+                return CompositeTrajectory.this.size();
+            }
+        }.subList(fromIdx, toIdx);
     }
 
     @Override
@@ -58,7 +54,7 @@ abstract class CompositeTrajectory<T extends CompositePt> implements ITrajectory
     public Iterator<double[]> coordinateIter() {
 
         return new Iterator<double[]>() {
-            Iterator<T> iter = entries.iterator();
+            Iterator<T> iter = iterator();
             @Override
             public boolean hasNext() {
                 return iter.hasNext();
@@ -71,14 +67,23 @@ abstract class CompositeTrajectory<T extends CompositePt> implements ITrajectory
         };
     }
 
-    @Override
-    public int size() {
-        return entries.size();
-    }
-
     @Override
     public Iterator<T> iterator() {
-        return entries.iterator();
+        return new Iterator<T>() {
+            int idx = 0;
+            @Override
+            public boolean hasNext() {
+                return idx < size();
+            }
+
+            @Override
+            public T next() {
+                if(idx >= size()){
+                    throw new NoSuchElementException();
+                }
+                return get(idx++);
+            }
+        };
     }
 
 }
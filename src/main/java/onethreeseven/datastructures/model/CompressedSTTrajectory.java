@@ -0,0 +1,311 @@
+package onethreeseven.datastructures.model;
+
+import onethreeseven.datastructures.util.EpochMillisUtil;
+import onethreeseven.datastructures.util.GorillaCodec;
+import onethreeseven.geo.projection.AbstractGeographicProjection;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only spatio-temporal trajectory that keeps its entries compressed with {@link GorillaCodec}.
+ * Time-stamps are delta-of-delta encoded. Coordinates are either XOR encoded (lossless) or,
+ * if a precision is given, rounded to that precision and delta-of-delta encoded (which for regularly
+ * sampled movement is far smaller). Entries are decoded as they are iterated over.
+ * <br>
+ * The encoding is restarted every "checkpoint interval" entries so that {@link #get(int)} only has to decode
+ * from the nearest checkpoint, not from the start. Use {@link #toSTTrajectory()} to get a modifiable copy.
+ * @author Luke Bermingham
+ */
+public class CompressedSTTrajectory implements ITrajectory<STPt> {
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 128;
+
+    private final long[] words;
+    //bit position of the start of every checkpoint block
+    private final long[] checkpoints;
+    private final int checkpointInterval;
+    private final int size;
+    //0 means lossless
+    private final double precision;
+    private final boolean inCartesianMode;
+    private final AbstractGeographicProjection projection;
+    private final double[][] bounds;
+
+    /**
+     * Losslessly compress a spatio-temporal trajectory.
+     * @param traj The trajectory to compress (it is not modified).
+     */
+    public CompressedSTTrajectory(AbstractSTTrajectory<?> traj){
+        this(traj, 0);
+    }
+
+    /**
+     * @param traj The trajectory to compress (it is not modified).
+     * @param precision The precision to round coordinates to, in the units of the trajectory's
+     *                  current mode (i.e metres if cartesian, degrees if geographic). Use 0 for lossless.
+     */
+    public CompressedSTTrajectory(AbstractSTTrajectory<?> traj, double precision){
+        this(traj, precision, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param traj The trajectory to compress (it is not modified).
+     * @param precision The precision to round coordinates to, in the units of the trajectory's
+     *                  current mode (i.e metres if cartesian, degrees if geographic). Use 0 for lossless.
+     * @param checkpointInterval How many entries are between checkpoints, smaller values
+     *                           make {@link #get(int)} faster but compress slightly worse.
+     */
+    public CompressedSTTrajectory(AbstractSTTrajectory<?> traj, double precision, int checkpointInterval){
+        if(precision < 0){
+            throw new IllegalArgumentException("Precision cannot be negative, got passed: " + precision);
+        }
+        if(checkpointInterval < 1){
+            throw new IllegalArgumentException("Checkpoint interval must be at least one.");
+        }
+        this.size = traj.size();
+        this.precision = precision;
+        this.checkpointInterval = checkpointInterval;
+        this.inCartesianMode = traj.isInCartesianMode();
+        this.projection = traj.getProjection();
+        this.bounds = traj.size() == 0 ? null : traj.getBounds();
+        this.checkpoints = new long[(size + checkpointInterval - 1) / checkpointInterval];
+
+        GorillaCodec.BitWriter out = new GorillaCodec.BitWriter(size / 2 + 2);
+        ColumnEncoders encoders = new ColumnEncoders();
+        for (int i = 0; i < size; i++) {
+            if(i % checkpointInterval == 0){
+                checkpoints[i / checkpointInterval] = out.getBitPosition();
+                encoders.reset();
+            }
+            encoders.encode(out, traj.getX(i), traj.getY(i), traj.getEpochMillis(i));
+        }
+        this.words = out.toWords();
+    }
+
+    /**
+     * The encoders of the three interleaved columns.
+     */
+    private final class ColumnEncoders {
+        final GorillaCodec.DoubleEncoder xEnc = new GorillaCodec.DoubleEncoder();
+        final GorillaCodec.DoubleEncoder yEnc = new GorillaCodec.DoubleEncoder();
+        final GorillaCodec.LongEncoder qxEnc = new GorillaCodec.LongEncoder();
+        final GorillaCodec.LongEncoder qyEnc = new GorillaCodec.LongEncoder();
+        final GorillaCodec.LongEncoder tEnc = new GorillaCodec.LongEncoder();
+
+        void encode(GorillaCodec.BitWriter out, double x, double y, long t){
+            if(precision == 0){
+                xEnc.encode(out, x);
+                yEnc.encode(out, y);
+            }else{
+                qxEnc.encode(out, Math.round(x / precision));
+                qyEnc.encode(out, Math.round(y / precision));
+            }
+            tEnc.encode(out, t);
+        }
+
+        void reset(){
+            xEnc.reset();
+            yEnc.reset();
+            qxEnc.reset();
+            qyEnc.reset();
+            tEnc.reset();
+        }
+    }
+
+    /**
+     * Decodes entries one after another, starting from a checkpoint.
+     */
+    private final class Cursor {
+        private final GorillaCodec.BitReader in = new GorillaCodec.BitReader(words);
+        private final GorillaCodec.DoubleDecoder xDec = new GorillaCodec.DoubleDecoder();
+        private final GorillaCodec.DoubleDecoder yDec = new GorillaCodec.DoubleDecoder();
+        private final GorillaCodec.LongDecoder qxDec = new GorillaCodec.LongDecoder();
+        private final GorillaCodec.LongDecoder qyDec = new GorillaCodec.LongDecoder();
+        private final GorillaCodec.LongDecoder tDec = new GorillaCodec.LongDecoder();
+        //index of the next entry to be decoded
+        int next;
+        double x;
+        double y;
+        long t;
+
+        Cursor(int from){
+            seek(from);
+        }
+
+        void seek(int idx){
+            int checkpoint = idx / checkpointInterval;
+            next = checkpoint * checkpointInterval;
+            if(checkpoint < checkpoints.length){
+                in.setBitPosition(checkpoints[checkpoint]);
+            }
+            while(next < idx){
+                advance();
+            }
+        }
+
+        void advance(){
+            if(next % checkpointInterval == 0){
+                xDec.reset();
+                yDec.reset();
+                qxDec.reset();
+                qyDec.reset();
+                tDec.reset();
+            }
+            if(precision == 0){
+                x = xDec.decode(in);
+                y = yDec.decode(in);
+            }else{
+                x = qxDec.decode(in) * precision;
+                y = qyDec.decode(in) * precision;
+            }
+            t = tDec.decode(in);
+            next++;
+        }
+    }
+
+    private void checkIndex(int idx){
+        if(idx < 0 || idx >= size){
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public STPt get(int idx) {
+        checkIndex(idx);
+        Cursor cursor = new Cursor(idx);
+        cursor.advance();
+        return new STPt(new double[]{cursor.x, cursor.y}, EpochMillisUtil.toLocalDateTime(cursor.t));
+    }
+
+    /**
+     * @param idx The index of the entry.
+     * @return The epoch millis of the entry.
+     */
+    public long getEpochMillis(int idx){
+        checkIndex(idx);
+        Cursor cursor = new Cursor(idx);
+        cursor.advance();
+        return cursor.t;
+    }
+
+    /**
+     * The trajectory is read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void add(STPt entry) {
+        throw new UnsupportedOperationException("Compressed trajectories are read-only, decompress it first.");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A modifiable copy of this trajectory, in the same mode with the same projection.
+     */
+    public STTrajectory toSTTrajectory(){
+        STTrajectory traj = new STTrajectory(inCartesianMode, projection, size);
+        Cursor cursor = new Cursor(0);
+        for (int i = 0; i < size; i++) {
+            cursor.advance();
+            if(inCartesianMode){
+                traj.addCartesian(cursor.x, cursor.y, cursor.t);
+            }else{
+                traj.addGeographic(cursor.x, cursor.y, cursor.t);
+            }
+        }
+        return traj;
+    }
+
+    /**
+     * @return The approximate number of bytes the compressed entries take up.
+     */
+    public long getCompressedSizeInBytes(){
+        return 8L * words.length + 8L * checkpoints.length;
+    }
+
+    public boolean isInCartesianMode() {
+        return inCartesianMode;
+    }
+
+    public AbstractGeographicProjection getProjection() {
+        return projection;
+    }
+
+    @Override
+    public double[][] getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public Iterator<STPt> iterator() {
+        return new Iterator<STPt>() {
+            final Cursor cursor = new Cursor(0);
+
+            @Override
+            public boolean hasNext() {
+                return cursor.next < size;
+            }
+
+            @Override
+            public STPt next() {
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                cursor.advance();
+                return new STPt(new double[]{cursor.x, cursor.y}, EpochMillisUtil.toLocalDateTime(cursor.t));
+            }
+        };
+    }
+
+    /**
+     * @return An iterator over the cartesian coordinates, whatever mode this trajectory is in
+     * (the same as {@link SpatioCompositeTrajectory#coordinateIter()}).
+     */
+    @Override
+    public Iterator<double[]> coordinateIter() {
+        return coordIter(true);
+    }
+
+    @Override
+    public Iterator<double[]> geoCoordinateIter() {
+        return coordIter(false);
+    }
+
+    /**
+     * @param cartesian Whether the coordinates should be cartesian or geographic.
+     * @return An iterator that decodes the coordinates, converting them if needed.
+     */
+    private Iterator<double[]> coordIter(boolean cartesian){
+        return new Iterator<double[]>() {
+            final Cursor cursor = new Cursor(0);
+
+            @Override
+            public boolean hasNext() {
+                return cursor.next < size;
+            }
+
+            @Override
+            public double[] next() {
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                cursor.advance();
+                if(cartesian == inCartesianMode){
+                    return new double[]{cursor.x, cursor.y};
+                }
+                return cartesian ? projection.geographicToCartesian(cursor.x, cursor.y)
+                        : projection.cartesianToGeographic(new double[]{cursor.x, cursor.y});
+            }
+        };
+    }
+
+    @Override
+    public String toString(){
+        return "Compressed Spatio-temporal Trajectory (" + size() + " entries)";
+    }
+
+}
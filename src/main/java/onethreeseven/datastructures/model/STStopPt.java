@@ -29,6 +29,11 @@ public class STStopPt extends STPt {
         return timeAndStop.isStopped();
     }
 
+    /**
+     * Changes the stop flag of this point only, to change the flag of an entry
+     * in a trajectory use {@link STStopTrajectory#setStopped(int, boolean)}.
+     * @param isStopped Whether this point is stopped.
+     */
     public void setIsStopped(boolean isStopped){
         this.timeAndStop.setStopped(isStopped);
     }
@@ -1,14 +1,18 @@
 package onethreeseven.datastructures.model;
 
+import onethreeseven.datastructures.util.EpochMillisUtil;
 import onethreeseven.geo.projection.AbstractGeographicProjection;
 
 import java.time.LocalDateTime;
+import java.util.BitSet;
 
 /**
  * Trajectory with space, time, and speed.
  * @author Luke Bermingham
  */
-public class STStopTrajectory extends SpatioCompositeTrajectory<STStopPt> {
+public class STStopTrajectory extends AbstractSTTrajectory<STStopPt> {
+
+    private final BitSet stops = new BitSet();
 
     public STStopTrajectory(){
         super();
@@ -18,20 +22,85 @@ public class STStopTrajectory extends SpatioCompositeTrajectory<STStopPt> {
         super(inCartesianMode, projection);
     }
 
+    public STStopTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection, int initialCapacity){
+        super(inCartesianMode, projection, initialCapacity);
+    }
+
+    @Override
+    protected void setExtra(int idx, STStopPt stStopPt) {
+        super.setExtra(idx, stStopPt);
+        stops.set(idx, stStopPt.isStopped());
+    }
+
+    @Override
+    protected void copyExtras(int destIdx, SpatioCompositeTrajectory<STStopPt> src, int srcIdx, int length) {
+        super.copyExtras(destIdx, src, srcIdx, length);
+        if(src instanceof STStopTrajectory){
+            BitSet srcStops = ((STStopTrajectory) src).stops;
+            for (int i = 0; i < length; i++) {
+                stops.set(destIdx + i, srcStops.get(srcIdx + i));
+            }
+        }
+    }
+
+    @Override
+    protected STStopPt makePt(int idx, double[] coords) {
+        return new STStopPt(coords, new TimeAndStop(
+                EpochMillisUtil.toLocalDateTime(epochMillis[idx]), stops.get(idx)));
+    }
+
     public boolean isStopped(int i){
-        return get(i).isStopped();
+        checkIndex(i);
+        return stops.get(i);
     }
 
-    public LocalDateTime getTime(int i){
-        return get(i).getTime();
+    public void setStopped(int i, boolean isStopped){
+        checkIndex(i);
+        stops.set(i, isStopped);
     }
 
     public void addCartesian(double[] coords, TimeAndStop timeAndStop) {
-        super.addCartesian(new STStopPt(coords, timeAndStop));
+        addCartesian(coords[0], coords[1],
+                EpochMillisUtil.toEpochMillis(timeAndStop.getTime()), timeAndStop.isStopped());
     }
 
     public void addGeographic(double[] latlon, TimeAndStop timeAndStop){
-        super.addGeographic(new STStopPt(latlon, timeAndStop));
+        addGeographic(latlon[0], latlon[1],
+                EpochMillisUtil.toEpochMillis(timeAndStop.getTime()), timeAndStop.isStopped());
+    }
+
+    public void addCartesian(double x, double y, long epochMillis, boolean isStopped){
+        int idx = appendCartesian(x, y);
+        this.epochMillis[idx] = epochMillis;
+        stops.set(idx, isStopped);
+    }
+
+    public void addGeographic(double lat, double lon, long epochMillis, boolean isStopped){
+        int idx = appendGeographic(lat, lon);
+        this.epochMillis[idx] = epochMillis;
+        stops.set(idx, isStopped);
+    }
+
+    /**
+     * @param from The start of the time range (inclusive).
+     * @param to The end of the time range (inclusive).
+     * @return A new trajectory of the entries within the time range.
+     */
+    public STStopTrajectory subTrajectory(LocalDateTime from, LocalDateTime to){
+        return subTrajectory(EpochMillisUtil.toEpochMillis(from), EpochMillisUtil.toEpochMillis(to));
+    }
+
+    /**
+     * @param fromEpochMillis The start of the time range (inclusive).
+     * @param toEpochMillis The end of the time range (inclusive).
+     * @return A new trajectory of the entries within the time range.
+     */
+    public STStopTrajectory subTrajectory(long fromEpochMillis, long toEpochMillis){
+        int fromIdx = lowerBound(fromEpochMillis);
+        int toIdx = Math.max(fromIdx, upperBound(toEpochMillis));
+        STStopTrajectory sub = new STStopTrajectory(isInCartesianMode(), getProjection(), toIdx - fromIdx);
+        sub.addAll(this, fromIdx, toIdx);
+        return sub;
     }
 
     @Override
@@ -1,95 +1,71 @@
 package onethreeseven.datastructures.model;
 
+import onethreeseven.datastructures.util.EpochMillisUtil;
 import onethreeseven.geo.projection.AbstractGeographicProjection;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 
 /**
  * A trajectory with spatial and one temporal dimension.
  * @author Luke Bermingham
  */
-public class STTrajectory extends SpatioCompositeTrajectory<STPt> {
+public class STTrajectory extends AbstractSTTrajectory<STPt> {
 
     public STTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection){
         //lat lon
         super(inCartesianMode, projection);
     }
 
+    public STTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection, int initialCapacity){
+        super(inCartesianMode, projection, initialCapacity);
+    }
+
     public STTrajectory(){
         super();
     }
 
-    public LocalDateTime getTime(int i){
-        return this.entries.get(i).getTime();
+    @Override
+    protected STPt makePt(int idx, double[] coords) {
+        return new STPt(coords, EpochMillisUtil.toLocalDateTime(epochMillis[idx]));
     }
 
-    /**
-     * Given index i and i-1 compute the speed between them.
-     * @param i The index to find the speed for.
-     * @return The speed in meters per second at the current index.
-     */
-    public double getSpeed(int i){
-        if(i == 0){
-            return 0.0;
-        }
-        long deltaTimeMillis = ChronoUnit.MILLIS.between(getTime(i-1), getTime(i));
-        double dist = getEuclideanDistance(i, i-1);
-        return dist/(deltaTimeMillis/1000.0);
+    public void addCartesian(double[] coords, LocalDateTime time){
+        this.addCartesian(coords[0], coords[1], EpochMillisUtil.toEpochMillis(time));
     }
 
-    public double getMinSpeed(){
-        double minSpeed = Double.MAX_VALUE;
-        for (int i = 0; i < size(); i++) {
-            double curSpeed = getSpeed(i);
-            if(curSpeed < minSpeed){
-                minSpeed = curSpeed;
-            }
-        }
-        return minSpeed;
+    public void addGeographic(double[] latlon, LocalDateTime time) {
+        this.addGeographic(latlon[0], latlon[1], EpochMillisUtil.toEpochMillis(time));
     }
 
-    public double getMaxSpeed(){
-        double maxSpeed = Double.MIN_VALUE;
-        for (int i = 0; i < size(); i++) {
-            double curSpeed = getSpeed(i);
-            if(curSpeed > maxSpeed){
-                maxSpeed = curSpeed;
-            }
-        }
-        return maxSpeed;
+    public void addCartesian(double x, double y, long epochMillis){
+        int idx = appendCartesian(x, y);
+        this.epochMillis[idx] = epochMillis;
     }
 
-    public double getAverageSpeed(){
-        double avgSpeed = 0;
-        for (int i = 0; i < size(); i++) {
-            double curSpeed = getSpeed(i);
-            avgSpeed += curSpeed;
-        }
-        return avgSpeed / size();
+    public void addGeographic(double lat, double lon, long epochMillis){
+        int idx = appendGeographic(lat, lon);
+        this.epochMillis[idx] = epochMillis;
     }
 
     /**
-     * Gets the duration of this trajectory by checking its first and last entries.
-     * @param timeUnit The unit of time get the duration in.
-     * @return The duration of trajectory as defined above.
+     * @param from The start of the time range (inclusive).
+     * @param to The end of the time range (inclusive).
+     * @return A new trajectory of the entries within the time range.
      */
-    public long getDuration(ChronoUnit timeUnit){
-        int trajSize = size();
-
-        if(trajSize <= 1){
-            throw new IllegalArgumentException("Trajectory must have at least two entries.");
-        }
-        LocalDateTime startTime = getTime(0);
-        LocalDateTime endTime = getTime(trajSize-1);
-        return timeUnit.between(startTime, endTime);
-    }
-
-    public void addCartesian(double[] coords, LocalDateTime time){
-        this.addCartesian(new STPt(coords, time));
+    public STTrajectory subTrajectory(LocalDateTime from, LocalDateTime to){
+        return subTrajectory(EpochMillisUtil.toEpochMillis(from), EpochMillisUtil.toEpochMillis(to));
     }
 
-    public void addGeographic(double[] latlon, LocalDateTime time) {
-        this.addGeographic(new STPt(latlon, time));
+    /**
+     * @param fromEpochMillis The start of the time range (inclusive).
+     * @param toEpochMillis The end of the time range (inclusive).
+     * @return A new trajectory of the entries within the time range.
+     */
+    public STTrajectory subTrajectory(long fromEpochMillis, long toEpochMillis){
+        int fromIdx = lowerBound(fromEpochMillis);
+        int toIdx = Math.max(fromIdx, upperBound(toEpochMillis));
+        STTrajectory sub = new STTrajectory(isInCartesianMode(), getProjection(), toIdx - fromIdx);
+        sub.addAll(this, fromIdx, toIdx);
+        return sub;
     }
 
     @Override
@@ -25,8 +25,27 @@ public class SpatialTrajectory extends SpatioCompositeTrajectory<SpatialTrajecto
         super(inCartesianMode, projection);
     }
 
+    public SpatialTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection, int initialCapacity){
+        super(inCartesianMode, projection, initialCapacity);
+    }
+
+    @Override
+    protected void setExtra(int idx, SpatialPt compositePt) {
+        //no extra dimension to store
+    }
+
+    @Override
+    protected void copyExtras(int destIdx, SpatioCompositeTrajectory<SpatialPt> src, int srcIdx, int length) {
+        //no extra dimension to copy
+    }
+
+    @Override
+    protected SpatialPt makePt(int idx, double[] coords) {
+        return new SpatialPt(coords);
+    }
+
     public void addCartesian(double[] coord){
-        super.addCartesian(new SpatialPt(coord));
+        appendCartesian(coord[0], coord[1]);
     }
 
     /**
@@ -34,7 +53,15 @@ public class SpatialTrajectory extends SpatioCompositeTrajectory<SpatialTrajecto
      * @param geo A {lat,lon} coordinate).
      */
     public void addGeographic(double[] geo){
-        super.addGeographic(new SpatialPt(geo));
+        appendGeographic(geo[0], geo[1]);
+    }
+
+    public void addCartesian(double x, double y){
+        appendCartesian(x, y);
+    }
+
+    public void addGeographic(double lat, double lon){
+        appendGeographic(lat, lon);
     }
 
     public class SpatialPt extends CompositePt<Object>{
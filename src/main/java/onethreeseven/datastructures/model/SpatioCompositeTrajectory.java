@@ -1,10 +1,11 @@
 package onethreeseven.datastructures.model;
 
-import onethreeseven.common.util.Maths;
 import onethreeseven.geo.model.LatLonBounds;
 import onethreeseven.geo.projection.AbstractGeographicProjection;
 import onethreeseven.geo.projection.ProjectionEquirectangular;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * A trajectory that has two geographical or cartesian coordinates in index [0] and [1]
@@ -16,20 +17,63 @@ import java.util.Iterator;
  * <br>
  * Switching the two modes is performed by calling:
  * {@link #toCartesian()} and {@link #toGeographic()}
+ * <br>
+ * The coordinates are stored column-wise in two growable primitive arrays, so
+ * the points returned by {@link #get(int)} and {@link #iterator()} are made on demand
+ * and modifying a returned point does not modify the trajectory. Subclasses that store the extra
+ * dimension in their own columns return a new point each time, otherwise the point that was added
+ * is returned again with its coordinates replaced (see {@link #makePt(int, double[])}).
  * @param <T> the type of composite pt being used.
  * @author Luke Bermingham
  */
 public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeTrajectory<T> {
 
+    private static final int DEFAULT_CAPACITY = 16;
+
     private boolean inCartesianMode = false;
     private final AbstractGeographicProjection projection;
 
+    /**
+     * Index [0] of every entry, i.e x or latitude depending on the mode.
+     */
+    protected double[] x;
+    /**
+     * Index [1] of every entry, i.e y or longitude depending on the mode.
+     */
+    protected double[] y;
+    protected int size = 0;
+
+    /**
+     * Only used when the subclass does not store the extra dimension itself.
+     */
+    private Object[] extras = null;
+
+    /**
+     * Optional index of the cumulative (cartesian) distance along the trajectory up to each entry,
+     * null when the index is not enabled. See {@link #setDistanceIndexed(boolean)}.
+     */
+    private double[] cumulativeDistance = null;
+    //the cartesian coordinates of the last entry, so appending only projects the new entry
+    private double lastCartX;
+    private double lastCartY;
 
     public SpatioCompositeTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection){
+        this(inCartesianMode, projection, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param inCartesianMode Whether the coordinates are stored as cartesian or geographic.
+     * @param projection The projection used to convert between cartesian and geographic coordinates.
+     * @param initialCapacity How many entries to allocate room for up front.
+     */
+    public SpatioCompositeTrajectory(boolean inCartesianMode, AbstractGeographicProjection projection, int initialCapacity){
         //lat lon
         super();
         this.inCartesianMode = inCartesianMode;
         this.projection = projection;
+        initialCapacity = Math.max(1, initialCapacity);
+        this.x = new double[initialCapacity];
+        this.y = new double[initialCapacity];
     }
 
     /**
@@ -37,11 +81,226 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
      * using a the mercator projection.
      */
     public SpatioCompositeTrajectory(){
-        super();
-        this.inCartesianMode = true;
-        this.projection = new ProjectionEquirectangular();
+        this(true, new ProjectionEquirectangular());
+    }
+
+    ///////////////////////
+    //COLUMN STORAGE
+    ///////////////////////
+
+    /**
+     * @return The number of entries that can be stored before the columns have to grow.
+     */
+    protected int capacity(){
+        return x.length;
+    }
+
+    private void ensureCapacity(int minCapacity){
+        if(minCapacity <= x.length){
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, x.length + (x.length >> 1));
+        resize(newCapacity);
+    }
+
+    private void resize(int newCapacity){
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        if(extras != null){
+            extras = Arrays.copyOf(extras, newCapacity);
+        }
+        if(cumulativeDistance != null){
+            cumulativeDistance = Arrays.copyOf(cumulativeDistance, newCapacity);
+        }
+        onCapacityChanged(newCapacity);
+    }
+
+    /**
+     * Shrinks the columns so they are exactly the size of the trajectory.
+     * Useful once a trajectory is fully loaded and will not grow any further.
+     */
+    public void trimToSize(){
+        if(size < x.length){
+            resize(Math.max(1, size));
+        }
+    }
+
+    /**
+     * Called when the coordinate columns have been resized so that any
+     * subclass with its own columns can resize them in step.
+     * @param newCapacity The new capacity of the coordinate columns.
+     */
+    protected void onCapacityChanged(int newCapacity){}
+
+    /**
+     * Store the non-spatial part of a composite pt at the given index.
+     * Subclasses that keep the extra dimension in their own columns should override this
+     * and {@link #makePt(int, double[])}.
+     * @param idx The index the composite pt is being stored at.
+     * @param compositePt The composite pt being stored.
+     */
+    protected void setExtra(int idx, T compositePt){
+        if(extras == null){
+            extras = new Object[x.length];
+        }
+        extras[idx] = compositePt;
+    }
+
+    /**
+     * Make the point for a given index. By default this is the point that was stored by
+     * {@link #setExtra(int, CompositePt)} with its coordinates replaced, so every call for the same
+     * index returns the same instance. A generic point cannot be copied here, subclasses that need
+     * independent points should override this and {@link #setExtra(int, CompositePt)}.
+     * @param idx The index of the entry.
+     * @param coords The coordinates of the entry (in the current mode).
+     * @return A point representing the entry at the index.
+     */
+    @SuppressWarnings("unchecked")
+    protected T makePt(int idx, double[] coords){
+        T compositePt = (T) extras[idx];
+        compositePt.setCoords(coords);
+        return compositePt;
     }
 
+    /**
+     * Append coordinates that are already in the same mode as this trajectory.
+     * @param c0 The x or latitude.
+     * @param c1 The y or longitude.
+     * @return The index the coordinates were stored at.
+     */
+    protected int appendCoords(double c0, double c1){
+        ensureCapacity(size + 1);
+        int idx = size;
+        x[idx] = c0;
+        y[idx] = c1;
+        size++;
+        this.bounds = null;
+        if(cumulativeDistance != null){
+            extendDistanceIndex(idx);
+        }
+        return idx;
+    }
+
+    /**
+     * Append a lat/lon pair, converting it to cartesian if this trajectory is in cartesian mode.
+     * @param lat The latitude.
+     * @param lon The longitude.
+     * @return The index the coordinates were stored at.
+     */
+    protected int appendGeographic(double lat, double lon){
+        if(lat < -90 || lat > 90){
+            throw new IllegalArgumentException("Latitude must be between -90 and 90, got passed: " + lat);
+        }
+        if(lon < -180 || lon > 180){
+            throw new IllegalArgumentException("Longitude must be between -180 and 180, got passed: " + lon);
+        }
+        //check if we need to convert pt to cartesian before adding
+        if(inCartesianMode){
+            double[] xy = this.projection.geographicToCartesian(lat, lon);
+            return appendCoords(xy[0], xy[1]);
+        }
+        return appendCoords(lat, lon);
+    }
+
+    /**
+     * Append a cartesian x/y pair, converting it to geographic if this trajectory is in geographic mode.
+     * @param cartX The x coordinate.
+     * @param cartY The y coordinate.
+     * @return The index the coordinates were stored at.
+     */
+    protected int appendCartesian(double cartX, double cartY){
+        //check if we need to convert the pt to geographic before adding
+        if(!inCartesianMode){
+            double[] geo = this.projection.cartesianToGeographic(new double[]{cartX, cartY});
+            return appendCoords(geo[0], geo[1]);
+        }
+        return appendCoords(cartX, cartY);
+    }
+
+    /**
+     * Copy the non-spatial part of a range of entries from another trajectory into this one.
+     * The destination entries already have their coordinates stored.
+     * @param destIdx The index in this trajectory to start copying to.
+     * @param src The trajectory to copy from.
+     * @param srcIdx The index in the source trajectory to start copying from.
+     * @param length The number of entries to copy.
+     */
+    protected void copyExtras(int destIdx, SpatioCompositeTrajectory<T> src, int srcIdx, int length){
+        for (int i = 0; i < length; i++) {
+            setExtra(destIdx + i, src.get(srcIdx + i));
+        }
+    }
+
+    /**
+     * Appends all entries of another trajectory onto the end of this one.
+     * If both trajectories are in the same mode this is a straight copy of the columns.
+     * @param other The trajectory whose entries are appended (it is not modified).
+     */
+    public void addAll(SpatioCompositeTrajectory<T> other){
+        addAll(other, 0, other.size);
+    }
+
+    /**
+     * Appends a range of entries of another trajectory onto the end of this one.
+     * If both trajectories are in the same mode this is a straight copy of the columns.
+     * @param other The trajectory whose entries are appended (it is not modified).
+     * @param fromIdx The first entry to append (inclusive).
+     * @param toIdx The entry to stop at (exclusive).
+     */
+    public void addAll(SpatioCompositeTrajectory<T> other, int fromIdx, int toIdx){
+        if(fromIdx < 0 || toIdx > other.size || fromIdx > toIdx){
+            throw new IndexOutOfBoundsException("Range: [" + fromIdx + ", " + toIdx + "), Size: " + other.size);
+        }
+        final int n = toIdx - fromIdx;
+        if(n == 0){
+            return;
+        }
+        if(other.inCartesianMode != this.inCartesianMode){
+            for (int i = fromIdx; i < toIdx; i++) {
+                double[] coords = other.getCoords(i, this.inCartesianMode);
+                appendCoords(coords[0], coords[1]);
+            }
+            copyExtras(size - n, other, fromIdx, n);
+            return;
+        }
+        ensureCapacity(size + n);
+        System.arraycopy(other.x, fromIdx, x, size, n);
+        System.arraycopy(other.y, fromIdx, y, size, n);
+        int destIdx = size;
+        size += n;
+        copyExtras(destIdx, other, fromIdx, n);
+        this.bounds = null;
+        if(cumulativeDistance != null){
+            extendDistanceIndex(destIdx);
+        }
+    }
+
+    @Override
+    public void add(T entry) {
+        int idx = appendCoords(entry.coords[0], entry.coords[1]);
+        setExtra(idx, entry);
+    }
+
+    @Override
+    public T get(int idx) {
+        checkIndex(idx);
+        return makePt(idx, new double[]{x[idx], y[idx]});
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    protected void checkIndex(int idx){
+        if(idx < 0 || idx >= size){
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size);
+        }
+    }
+
+    ///////////////////////
+    //MODES
+    ///////////////////////
 
     /**
      * Converts geographic coordinates to cartesian coordinates
@@ -51,14 +310,16 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
         if(inCartesianMode){return;}
         //convert geographic pairs (lat/lon or easting/northing)
         //to cartesian x/y pairs
-        for (T entry : this.entries) {
-            double[] geo = entry.coords;
-            double[] xy = projection.geographicToCartesian(geo[0], geo[1]);
-            double[] coords = entry.coords;
-            System.arraycopy(xy, 0, coords, 0, xy.length);
+        for (int i = 0; i < size; i++) {
+            double[] xy = projection.geographicToCartesian(x[i], y[i]);
+            x[i] = xy[0];
+            y[i] = xy[1];
         }
         this.inCartesianMode = true;
         this.bounds = null;
+        if(cumulativeDistance != null){
+            extendDistanceIndex(0);
+        }
     }
 
 
@@ -69,38 +330,97 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
     public void toGeographic(){
         if(!inCartesianMode){return;}
         //convert cartesian pairs to geographic pairs
-        for (T entry : this.entries) {
-            double[] xy = entry.coords;
+        final double[] xy = new double[2];
+        for (int i = 0; i < size; i++) {
+            xy[0] = x[i];
+            xy[1] = y[i];
             double[] geo = projection.cartesianToGeographic(xy);
-            double[] coords = entry.coords;
-            System.arraycopy(geo, 0, coords, 0, geo.length);
+            x[i] = geo[0];
+            y[i] = geo[1];
         }
         this.inCartesianMode = false;
         this.bounds = null;
+        if(cumulativeDistance != null){
+            extendDistanceIndex(0);
+        }
     }
 
+    ///////////////////////
+    //DISTANCE INDEX
+    ///////////////////////
+
     /**
-     * Add a geographic entry to this trajectory and do the cartesian conversion if required.
-     * Note: only [0] and [1] are used in the geographicEntry, so
-     * if there is anymore dimensions they will be dropped.
-     * @param compositePt a spatio-composite point whose coordinates we are assuming are geographic
+     * Enable or disable an index of the cumulative distance along the trajectory. When enabled
+     * the index is kept up to date as entries are added (and rebuilt when the mode changes),
+     * so that {@link #distanceAlong(int, int)} takes constant time instead of visiting every segment.
+     * This costs one extra double per entry.
+     * @param indexed True to build and maintain the index, false to drop it.
      */
-    protected void addGeographic(T compositePt){
-        double lat = compositePt.coords[0];
-        double lon = compositePt.coords[1];
-        if(lat < -90 || lat > 90){
-            throw new IllegalArgumentException("Latitude must be between -90 and 90, got passed: " + lat);
+    public void setDistanceIndexed(boolean indexed){
+        if(!indexed){
+            cumulativeDistance = null;
+        }else if(cumulativeDistance == null){
+            cumulativeDistance = new double[x.length];
+            extendDistanceIndex(0);
         }
-        if(lon < -180 || lon > 180){
-            throw new IllegalArgumentException("Longitude must be between -180 and 180, got passed: " + lon);
+    }
+
+    /**
+     * @return True if the cumulative distance index is enabled.
+     */
+    public boolean isDistanceIndexed(){
+        return cumulativeDistance != null;
+    }
+
+    /**
+     * Calculate the cumulative distance of every entry from an index onward,
+     * the entries before the index must already be indexed.
+     * @param from The first entry to index.
+     */
+    private void extendDistanceIndex(int from){
+        if(from >= size){
+            return;
+        }
+        double total;
+        if(from == 0){
+            total = 0;
+            cumulativeDistance[0] = 0;
+            setLastCart(0);
+            from = 1;
+        }else{
+            total = cumulativeDistance[from - 1];
         }
+        for (int i = from; i < size; i++) {
+            double prevX = lastCartX;
+            double prevY = lastCartY;
+            setLastCart(i);
+            double dx = lastCartX - prevX;
+            double dy = lastCartY - prevY;
+            total += Math.sqrt(dx * dx + dy * dy);
+            cumulativeDistance[i] = total;
+        }
+    }
 
-        //check if we need to convert pt to cartesian before adding
+    private void setLastCart(int i){
         if(inCartesianMode){
-            double[] xy = this.projection.geographicToCartesian(lat, lon);
-            compositePt.setCoords(xy);
+            lastCartX = x[i];
+            lastCartY = y[i];
+        }else{
+            double[] xy = projection.geographicToCartesian(x[i], y[i]);
+            lastCartX = xy[0];
+            lastCartY = xy[1];
         }
-        this.add(compositePt);
+    }
+
+    /**
+     * Add a geographic entry to this trajectory and do the cartesian conversion if required.
+     * Note: only [0] and [1] are used in the geographicEntry, so
+     * if there is anymore dimensions they will be dropped.
+     * @param compositePt a spatio-composite point whose coordinates we are assuming are geographic
+     */
+    protected void addGeographic(T compositePt){
+        int idx = appendGeographic(compositePt.coords[0], compositePt.coords[1]);
+        setExtra(idx, compositePt);
     }
 
     /**
@@ -110,12 +430,8 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
      * @param compositePt a spatio-composite pt which we assume to be in cartesian coordinates
      */
     protected void addCartesian(T compositePt){
-        //check if we need to convert the pt to geographic before adding
-        if(!inCartesianMode){
-            double[] geo = this.projection.cartesianToGeographic(compositePt.coords);
-            compositePt.setCoords(geo);
-        }
-        this.add(compositePt);
+        int idx = appendCartesian(compositePt.coords[0], compositePt.coords[1]);
+        setExtra(idx, compositePt);
     }
 
     public LatLonBounds calculateGeoBounds(){
@@ -128,19 +444,19 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
      */
     public Iterator<double[]> getGeoIter(){
         return new Iterator<double[]>() {
-            final Iterator<T> stIter = entries.iterator();
+            int idx = 0;
             @Override
             public boolean hasNext() {
-                return stIter.hasNext();
+                return idx < size;
             }
 
             @Override
             public double[] next() {
-                T compositePt = stIter.next();
-                double[] coords = compositePt.coords;
-                if(inCartesianMode){
-                    coords = projection.cartesianToGeographic(coords);
+                if(idx >= size){
+                    throw new NoSuchElementException();
                 }
+                double[] coords = getCoords(idx, false);
+                idx++;
                 return coords;
             }
         };
@@ -154,34 +470,56 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
     @Override
     public Iterator<double[]> coordinateIter() {
         return new Iterator<double[]>() {
-            final Iterator<T> stIter = entries.iterator();
+            int idx = 0;
             @Override
             public boolean hasNext() {
-                return stIter.hasNext();
+                return idx < size;
             }
 
             @Override
             public double[] next() {
-                T compositePt = stIter.next();
-                double[] coords = compositePt.coords;
-                if(!inCartesianMode){
-                    coords = projection.geographicToCartesian(coords[0], coords[1]);
+                if(idx >= size){
+                    throw new NoSuchElementException();
                 }
+                double[] coords = getCoords(idx, true);
+                idx++;
                 return coords;
             }
         };
     }
 
+    @Override
+    public double[][] getBounds() {
+        if(bounds != null || !inCartesianMode || size == 0){
+            return super.getBounds();
+        }
+        //in cartesian mode the bounds can be found straight from the columns
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            double curX = x[i];
+            double curY = y[i];
+            if(curX < minX){minX = curX;}
+            if(curX > maxX){maxX = curX;}
+            if(curY < minY){minY = curY;}
+            if(curY > maxY){maxY = curY;}
+        }
+        bounds = new double[][]{new double[]{minX, maxX}, new double[]{minY, maxY}};
+        return bounds;
+    }
+
     public double[] getCoords(int i, boolean inCartesianMode){
-        double[] coords = getCoords(i);
+        checkIndex(i);
         //we are in the same mode the user requested, just return the coordinates
-        if(this.inCartesianMode && inCartesianMode || !this.inCartesianMode && !inCartesianMode){
-            return coords;
+        if(this.inCartesianMode == inCartesianMode){
+            return new double[]{x[i], y[i]};
         }
         //we are in the wrong mode, so do a conversion of the point before returning it
         return inCartesianMode ?
-                projection.geographicToCartesian(coords[0], coords[1]) :
-                projection.cartesianToGeographic(coords);
+                projection.geographicToCartesian(x[i], y[i]) :
+                projection.cartesianToGeographic(new double[]{x[i], y[i]});
     }
 
     /**
@@ -191,13 +529,23 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
      * @return The distance.
      */
     public double getEuclideanDistance(int i, int j){
+        if(inCartesianMode){
+            checkIndex(i);
+            checkIndex(j);
+            double dx = x[i] - x[j];
+            double dy = y[i] - y[j];
+            return Math.sqrt(dx * dx + dy * dy);
+        }
         double[] coordsI = getCoords(i, true);
         double[] coordsJ = getCoords(j, true);
-        return Maths.dist(coordsI, coordsJ);
+        double dx = coordsI[0] - coordsJ[0];
+        double dy = coordsI[1] - coordsJ[1];
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     /**
      * Get the distance along the trajectory between two indices.
+     * This is constant time if the distance index is enabled, see {@link #setDistanceIndexed(boolean)}.
      * @param startIdx The index to start measuring from.
      * @param endIdx The index to stop measuring at.
      * @return The total distance along the trajectory between the two indices (in cartesian coordinates).
@@ -215,16 +563,56 @@ public class SpatioCompositeTrajectory<T extends CompositePt> extends CompositeT
         if(endIdx > size()-1){
             throw new IllegalArgumentException("End index must be not exceed the size of the trajectory.");
         }
+        if(cumulativeDistance != null){
+            return cumulativeDistance[endIdx] - cumulativeDistance[startIdx];
+        }
 
         double totalDist = 0;
-        for (int curIdx = startIdx; curIdx < endIdx; curIdx++) {
-            totalDist += getEuclideanDistance(curIdx, curIdx+1);
+        if(inCartesianMode){
+            for (int curIdx = startIdx; curIdx < endIdx; curIdx++) {
+                double dx = x[curIdx+1] - x[curIdx];
+                double dy = y[curIdx+1] - y[curIdx];
+                totalDist += Math.sqrt(dx * dx + dy * dy);
+            }
+            return totalDist;
+        }
+        //project each point only once
+        double[] prev = projection.geographicToCartesian(x[startIdx], y[startIdx]);
+        for (int curIdx = startIdx+1; curIdx <= endIdx; curIdx++) {
+            double[] cur = projection.geographicToCartesian(x[curIdx], y[curIdx]);
+            double dx = cur[0] - prev[0];
+            double dy = cur[1] - prev[1];
+            totalDist += Math.sqrt(dx * dx + dy * dy);
+            prev = cur;
         }
         return totalDist;
     }
 
+    /**
+     * @param i The index of the entry.
+     * @return A copy of the coordinates at the index (in the current mode).
+     */
     public double[] getCoords(int i){
-        return this.entries.get(i).coords;
+        checkIndex(i);
+        return new double[]{x[i], y[i]};
+    }
+
+    /**
+     * @param i The index of the entry.
+     * @return The coordinate at index [0] of the entry, i.e x in cartesian mode or latitude in geographic mode.
+     */
+    public double getX(int i){
+        checkIndex(i);
+        return x[i];
+    }
+
+    /**
+     * @param i The index of the entry.
+     * @return The coordinate at index [1] of the entry, i.e y in cartesian mode or longitude in geographic mode.
+     */
+    public double getY(int i){
+        checkIndex(i);
+        return y[i];
     }
 
     public boolean isInCartesianMode() {
@@ -0,0 +1,106 @@
+package onethreeseven.datastructures.similarity;
+
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+/**
+ * Measures that extend this class give the distance between two trajectories, using their cartesian
+ * coordinates (so point to point distances are in metres).
+ * <br>
+ * When lots of distances are calculated (i.e finding the trajectories similar to a route) most pairs are not close.
+ * For these {@link #distance(TrajectoryColumns, TrajectoryColumns, double)} takes a threshold, first checking a cheap
+ * lower bound and then giving up on the full calculation as soon as it is certain to be more than the threshold.
+ * The dynamic programming measures only keep two rows of their table, so use memory linear in the trajectory length.
+ * @author Luke Bermingham
+ */
+public abstract class AbstractTrajectoryDistance {
+
+    /**
+     * @param a A trajectory.
+     * @param b Another trajectory.
+     * @return The distance between the trajectories.
+     */
+    public double distance(SpatioCompositeTrajectory<?> a, SpatioCompositeTrajectory<?> b){
+        return distance(new TrajectoryColumns(a), new TrajectoryColumns(b));
+    }
+
+    /**
+     * @param a A trajectory.
+     * @param b Another trajectory.
+     * @return The distance between the trajectories.
+     */
+    public double distance(TrajectoryColumns a, TrajectoryColumns b){
+        checkNotEmpty(a, b);
+        return compute(a, b, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param a A trajectory.
+     * @param b Another trajectory.
+     * @param threshold The largest distance of interest.
+     * @return The distance between the trajectories if it is no more than the threshold,
+     * otherwise positive infinity (as the calculation was abandoned).
+     */
+    public double distance(TrajectoryColumns a, TrajectoryColumns b, double threshold){
+        checkNotEmpty(a, b);
+        if(lowerBound(a, b) > threshold){
+            return Double.POSITIVE_INFINITY;
+        }
+        double distance = compute(a, b, threshold);
+        return distance > threshold ? Double.POSITIVE_INFINITY : distance;
+    }
+
+    /**
+     * @param a A trajectory.
+     * @param b Another trajectory.
+     * @return A value that is never more than the distance between the trajectories,
+     * which is much cheaper to calculate than the distance.
+     */
+    public abstract double lowerBound(TrajectoryColumns a, TrajectoryColumns b);
+
+    /**
+     * Calculate the distance, it can be abandoned once it is certain to be more than the threshold.
+     * @param a A non-empty trajectory.
+     * @param b Another non-empty trajectory.
+     * @param threshold The largest distance of interest.
+     * @return The distance, or any value more than the threshold if it was abandoned.
+     */
+    abstract double compute(TrajectoryColumns a, TrajectoryColumns b, double threshold);
+
+    private static void checkNotEmpty(TrajectoryColumns a, TrajectoryColumns b){
+        if(a.n == 0 || b.n == 0){
+            throw new IllegalArgumentException("Cannot measure the distance to an empty trajectory.");
+        }
+    }
+
+    /**
+     * @return The largest distance from an entry of a to the bounds of b, which is a lower bound on
+     * any measure that matches every entry of a to some entry of b with the max of the costs.
+     */
+    static double maxDistToBounds(TrajectoryColumns a, TrajectoryColumns b){
+        double max = 0;
+        for (int i = 0; i < a.n; i++) {
+            double d = b.distToBounds(a.x[i], a.y[i]);
+            if(d > max){
+                max = d;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param epsilon The matching threshold, on each axis.
+     * @return How many entries of a are further than epsilon (on some axis) from the bounds of b,
+     * these entries cannot be matched to any entry of b.
+     */
+    static int countUnmatchable(TrajectoryColumns a, TrajectoryColumns b, double epsilon){
+        int count = 0;
+        for (int i = 0; i < a.n; i++) {
+            if(a.x[i] < b.minX - epsilon || a.x[i] > b.maxX + epsilon ||
+                    a.y[i] < b.minY - epsilon || a.y[i] > b.maxY + epsilon){
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,51 @@
+package onethreeseven.datastructures.similarity;
+
+/**
+ * The discrete Frechet distance (Eiter and Mannila, "Computing discrete Frechet distance"),
+ * the smallest possible largest distance between matched entries when both trajectories are walked
+ * from start to end without going backwards.
+ * <br>
+ * The lower bound is the largest of the distance between the first entries, the last entries, and
+ * from any entry to the bounds of the other trajectory.
+ * @author Luke Bermingham
+ */
+public class DiscreteFrechet extends AbstractTrajectoryDistance {
+
+    @Override
+    public double lowerBound(TrajectoryColumns a, TrajectoryColumns b) {
+        double lb = Math.max(a.dist(0, b, 0), a.dist(a.n - 1, b, b.n - 1));
+        return Math.max(lb, Math.max(maxDistToBounds(a, b), maxDistToBounds(b, a)));
+    }
+
+    @Override
+    double compute(TrajectoryColumns a, TrajectoryColumns b, double threshold) {
+        final int n = a.n;
+        final int m = b.n;
+        double[] prev = new double[m];
+        double[] cur = new double[m];
+        prev[0] = a.dist(0, b, 0);
+        for (int j = 1; j < m; j++) {
+            prev[j] = Math.max(prev[j - 1], a.dist(0, b, j));
+        }
+        for (int i = 1; i < n; i++) {
+            cur[0] = Math.max(prev[0], a.dist(i, b, 0));
+            double rowMin = cur[0];
+            for (int j = 1; j < m; j++) {
+                double best = Math.min(prev[j], Math.min(prev[j - 1], cur[j - 1]));
+                cur[j] = Math.max(best, a.dist(i, b, j));
+                if(cur[j] < rowMin){
+                    rowMin = cur[j];
+                }
+            }
+            //every path goes through this row, and the distance never goes down along a path
+            if(rowMin > threshold){
+                return rowMin;
+            }
+            double[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[m - 1];
+    }
+
+}
@@ -0,0 +1,204 @@
+package onethreeseven.datastructures.similarity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The distances between every pair of a set of trajectories, made by {@link DistanceMatrixBuilder}.
+ * The matrix is symmetric with zeros on the diagonal, so only the upper triangle is stored
+ * (n * (n - 1) / 2 doubles, row by row). Small matrices are kept in a double array and
+ * large ones in a memory-mapped file, which is deleted when the matrix is closed.
+ * <br>
+ * A distance of positive infinity means the pair was further apart than the cutoff it was built with.
+ * @author Luke Bermingham
+ */
+public final class DistanceMatrix implements Closeable {
+
+    //each mapped region holds this many doubles (1 GiB), as one mapping cannot be over 2 GiB
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final String[] ids;
+    private final Map<String, Integer> idxs;
+    private final int n;
+    private final long nEntries;
+
+    //exactly one of these is used
+    private final double[] inMemory;
+    private final DoubleBuffer[] segments;
+    private final Path file;
+
+    private DistanceMatrix(String[] ids, double[] inMemory, DoubleBuffer[] segments, Path file){
+        this.ids = ids;
+        this.n = ids.length;
+        this.nEntries = nEntries(n);
+        this.idxs = new HashMap<>(n);
+        for (int i = 0; i < n; i++) {
+            idxs.put(ids[i], i);
+        }
+        this.inMemory = inMemory;
+        this.segments = segments;
+        this.file = file;
+    }
+
+    /**
+     * @param ids The ids of the trajectories, in matrix order.
+     * @return A matrix stored in a double array.
+     */
+    static DistanceMatrix inMemory(String[] ids){
+        long nEntries = nEntries(ids.length);
+        if(nEntries > Integer.MAX_VALUE - 8){
+            throw new IllegalArgumentException("Too many trajectories to keep the distances in memory: " + ids.length);
+        }
+        return new DistanceMatrix(ids, new double[(int) nEntries], null, null);
+    }
+
+    /**
+     * @param ids The ids of the trajectories, in matrix order.
+     * @param directory Where to make the file (it is deleted when the matrix is closed).
+     * @return A matrix stored in a memory-mapped file.
+     * @throws IOException If the file cannot be made or mapped.
+     */
+    static DistanceMatrix mapped(String[] ids, Path directory) throws IOException {
+        long nEntries = nEntries(ids.length);
+        Path file = Files.createTempFile(directory, "distances", ".bin");
+        file.toFile().deleteOnExit();
+        int nSegments = (int) ((nEntries + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        DoubleBuffer[] segments = new DoubleBuffer[nSegments];
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            for (int s = 0; s < nSegments; s++) {
+                long start = (long) s << SEGMENT_SHIFT;
+                long length = Math.min(1L << SEGMENT_SHIFT, nEntries - start);
+                //the mapping stays valid after the channel is closed
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, start * Double.BYTES, length * Double.BYTES)
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        }catch (IOException e){
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new DistanceMatrix(ids, null, segments, file);
+    }
+
+    private static long nEntries(int n){
+        return (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * @return The position of pair i < j in the upper triangle.
+     */
+    private long entry(int i, int j){
+        return (long) i * (2L * n - i - 1) / 2 + (j - i - 1);
+    }
+
+    /**
+     * @param i The index of a trajectory.
+     * @param j The index of another trajectory, more than i.
+     * @param distance The distance between them.
+     */
+    void set(int i, int j, double distance){
+        long e = entry(i, j);
+        if(inMemory != null){
+            inMemory[(int) e] = distance;
+        }else{
+            segments[(int) (e >>> SEGMENT_SHIFT)].put((int) (e & SEGMENT_MASK), distance);
+        }
+    }
+
+    /**
+     * @param i The index of a trajectory.
+     * @param j The index of another trajectory.
+     * @return The distance between them.
+     */
+    public double get(int i, int j){
+        if(i == j){
+            if(i < 0 || i >= n){
+                throw new IndexOutOfBoundsException("No trajectory at index: " + i);
+            }
+            return 0;
+        }
+        if(i > j){
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        if(i < 0 || j >= n){
+            throw new IndexOutOfBoundsException("No pair of trajectories at: " + i + ", " + j);
+        }
+        long e = entry(i, j);
+        if(inMemory != null){
+            return inMemory[(int) e];
+        }
+        return segments[(int) (e >>> SEGMENT_SHIFT)].get((int) (e & SEGMENT_MASK));
+    }
+
+    /**
+     * @param idA The id of a trajectory.
+     * @param idB The id of another trajectory.
+     * @return The distance between them.
+     */
+    public double get(String idA, String idB){
+        return get(indexOf(idA), indexOf(idB));
+    }
+
+    /**
+     * @param id The id of a trajectory.
+     * @return Its index in the matrix.
+     */
+    public int indexOf(String id){
+        Integer idx = idxs.get(id);
+        if(idx == null){
+            throw new IllegalArgumentException("No trajectory in the matrix with id: " + id);
+        }
+        return idx;
+    }
+
+    /**
+     * @param i An index in the matrix.
+     * @return The id of the trajectory at that index.
+     */
+    public String getId(int i){
+        return ids[i];
+    }
+
+    /**
+     * @return The number of trajectories (rows).
+     */
+    public int size(){
+        return n;
+    }
+
+    /**
+     * @return True if the distances are in a memory-mapped file.
+     */
+    public boolean isMapped(){
+        return file != null;
+    }
+
+    /**
+     * @return The number of bytes used to store the distances.
+     */
+    public long getStoredBytes(){
+        return nEntries * Double.BYTES;
+    }
+
+    /**
+     * Deletes the file of a memory-mapped matrix, it cannot be used afterwards.
+     * @throws IOException If the file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if(file != null){
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package onethreeseven.datastructures.similarity;
+
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the {@link DistanceMatrix} of a set of trajectories.
+ * <br>
+ * The trajectories are split into tiles of consecutive indices, and only the tiles on or above the diagonal
+ * are worked out (each pair once). A tile compares a small group of trajectories with another, so their
+ * coordinates stay in cache while every pair is measured. The tiles are done in parallel on a fork-join pool.
+ * If a cutoff is set, pairs further apart than it are abandoned early (see
+ * {@link AbstractTrajectoryDistance#distance(TrajectoryColumns, TrajectoryColumns, double)}) and stored as positive infinity.
+ * @author Luke Bermingham
+ */
+public class DistanceMatrixBuilder {
+
+    /**
+     * The default number of trajectories in each tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * The default largest number of distances kept in memory (1 GiB), larger matrices are memory-mapped.
+     */
+    public static final long DEFAULT_MAX_IN_MEMORY_ENTRIES = 1L << 27;
+
+    //how many tiles a task does before splitting
+    private static final int TILES_PER_TASK = 4;
+
+    private AbstractTrajectoryDistance distance = new DynamicTimeWarping();
+    private double cutoff = Double.POSITIVE_INFINITY;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private long maxInMemoryEntries = DEFAULT_MAX_IN_MEMORY_ENTRIES;
+    private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * @param distance The distance measure to use (the default is {@link DynamicTimeWarping}).
+     * @return This builder.
+     */
+    public DistanceMatrixBuilder setDistance(AbstractTrajectoryDistance distance) {
+        this.distance = distance;
+        return this;
+    }
+
+    /**
+     * @param cutoff Pairs further apart than this are stored as positive infinity, which is faster
+     *               as their calculation is abandoned (the default is no cutoff).
+     * @return This builder.
+     */
+    public DistanceMatrixBuilder setCutoff(double cutoff) {
+        this.cutoff = cutoff;
+        return this;
+    }
+
+    /**
+     * @param tileSize How many trajectories are in each tile.
+     * @return This builder.
+     */
+    public DistanceMatrixBuilder setTileSize(int tileSize) {
+        if(tileSize < 1){
+            throw new IllegalArgumentException("Tile size must be positive, got passed: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * @param maxInMemoryEntries The largest number of distances kept in memory, larger matrices are memory-mapped.
+     * @return This builder.
+     */
+    public DistanceMatrixBuilder setMaxInMemoryEntries(long maxInMemoryEntries) {
+        this.maxInMemoryEntries = maxInMemoryEntries;
+        return this;
+    }
+
+    /**
+     * @param spillDirectory Where the files of memory-mapped matrices are made (the default is the temp directory).
+     * @return This builder.
+     */
+    public DistanceMatrixBuilder setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    /**
+     * @param pool The pool to work out the tiles on (the default is the common pool).
+     * @return This builder.
+     */
+    public DistanceMatrixBuilder setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * @param trajs The trajectories, they are not modified.
+     * @return The distance between every pair of trajectories, in the iteration order of the map.
+     * @throws IOException If the matrix is too large for memory and cannot be memory-mapped.
+     */
+    public DistanceMatrix build(Map<String, ? extends SpatioCompositeTrajectory<?>> trajs) throws IOException {
+        final int n = trajs.size();
+        String[] ids = new String[n];
+        SpatioCompositeTrajectory<?>[] values = new SpatioCompositeTrajectory<?>[n];
+        int k = 0;
+        for (Map.Entry<String, ? extends SpatioCompositeTrajectory<?>> entry : trajs.entrySet()) {
+            ids[k] = entry.getKey();
+            values[k] = entry.getValue();
+            k++;
+        }
+        //project every trajectory once
+        TrajectoryColumns[] cols = new TrajectoryColumns[n];
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> cols[i] = new TrajectoryColumns(values[i]))).join();
+        return build(ids, cols);
+    }
+
+    /**
+     * @param ids The ids of the trajectories.
+     * @param cols The trajectories, in the same order as the ids.
+     * @return The distance between every pair of trajectories, in the same order.
+     * @throws IOException If the matrix is too large for memory and cannot be memory-mapped.
+     */
+    public DistanceMatrix build(String[] ids, TrajectoryColumns[] cols) throws IOException {
+        if(ids.length != cols.length){
+            throw new IllegalArgumentException("There must be an id for each trajectory.");
+        }
+        final int n = ids.length;
+        long nEntries = (long) n * (n - 1) / 2;
+        DistanceMatrix matrix = nEntries > maxInMemoryEntries ?
+                DistanceMatrix.mapped(ids, spillDirectory) : DistanceMatrix.inMemory(ids);
+
+        final int nTiles = (n + tileSize - 1) / tileSize;
+        final long nTilePairs = (long) nTiles * (nTiles + 1) / 2;
+        pool.invoke(new TileTask(matrix, cols, nTiles, 0, nTilePairs));
+        return matrix;
+    }
+
+    /**
+     * Works out a range of the tile pairs on or above the diagonal, splitting it in half while it is large.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private final DistanceMatrix matrix;
+        private final TrajectoryColumns[] cols;
+        private final int nTiles;
+        private final long from;
+        private final long to;
+
+        TileTask(DistanceMatrix matrix, TrajectoryColumns[] cols, int nTiles, long from, long to){
+            this.matrix = matrix;
+            this.cols = cols;
+            this.nTiles = nTiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > TILES_PER_TASK){
+                long mid = (from + to) >>> 1;
+                invokeAll(new TileTask(matrix, cols, nTiles, from, mid), new TileTask(matrix, cols, nTiles, mid, to));
+                return;
+            }
+            //find the tile pair of the first index, then walk along the rows of tiles
+            int ti = 0;
+            long rowStart = 0;
+            while(rowStart + (nTiles - ti) <= from){
+                rowStart += nTiles - ti;
+                ti++;
+            }
+            int tj = ti + (int) (from - rowStart);
+            for (long p = from; p < to; p++) {
+                computeTile(ti, tj);
+                tj++;
+                if(tj == nTiles){
+                    ti++;
+                    tj = ti;
+                }
+            }
+        }
+
+        private void computeTile(int ti, int tj){
+            final int n = cols.length;
+            final int iEnd = Math.min(n, (ti + 1) * tileSize);
+            final int jEnd = Math.min(n, (tj + 1) * tileSize);
+            for (int i = ti * tileSize; i < iEnd; i++) {
+                for (int j = Math.max(i + 1, tj * tileSize); j < jEnd; j++) {
+                    double d = cutoff == Double.POSITIVE_INFINITY ?
+                            distance.distance(cols[i], cols[j]) : distance.distance(cols[i], cols[j], cutoff);
+                    matrix.set(i, j, d);
+                }
+            }
+        }
+    }
+
+}
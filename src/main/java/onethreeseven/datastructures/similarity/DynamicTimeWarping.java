@@ -0,0 +1,108 @@
+package onethreeseven.datastructures.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Dynamic time warping (DTW), the smallest total distance of an alignment that matches every entry
+ * of one trajectory to at least one entry of the other, in order. An optional Sakoe-Chiba band limits
+ * how far apart (in entries) matched entries can be, which is faster and stops pathological warping.
+ * <br>
+ * The lower bound is the larger of LB_Kim (the first and last entries must be matched) and either LB_Keogh
+ * (for trajectories of the same length) or the distance of each entry to the bounds of the other trajectory.
+ * @author Luke Bermingham
+ */
+public class DynamicTimeWarping extends AbstractTrajectoryDistance {
+
+    private final int window;
+
+    /**
+     * DTW without a band.
+     */
+    public DynamicTimeWarping(){
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param window How many entries apart matched entries can be (the Sakoe-Chiba band), it is widened
+     *               to the difference in length of the trajectories if that is larger.
+     */
+    public DynamicTimeWarping(int window){
+        if(window < 0){
+            throw new IllegalArgumentException("Window cannot be negative, got passed: " + window);
+        }
+        this.window = window;
+    }
+
+    private int effectiveWindow(TrajectoryColumns a, TrajectoryColumns b){
+        return Math.max(window, Math.abs(a.n - b.n));
+    }
+
+    @Override
+    public double lowerBound(TrajectoryColumns a, TrajectoryColumns b) {
+        final int n = a.n;
+        final int m = b.n;
+        double lbKim = a.dist(0, b, 0);
+        if(n > 1 || m > 1){
+            lbKim += a.dist(n - 1, b, m - 1);
+        }
+        double lb = 0;
+        if(n == m && window < n){
+            //every entry is matched to an entry within the window
+            double[][] env = b.getEnvelope(window);
+            for (int i = 0; i < n; i++) {
+                double dx = Math.max(0, Math.max(env[0][i] - a.x[i], a.x[i] - env[1][i]));
+                double dy = Math.max(0, Math.max(env[2][i] - a.y[i], a.y[i] - env[3][i]));
+                lb += Math.sqrt(dx * dx + dy * dy);
+            }
+        }else{
+            double lbA = 0;
+            for (int i = 0; i < n; i++) {
+                lbA += b.distToBounds(a.x[i], a.y[i]);
+            }
+            double lbB = 0;
+            for (int j = 0; j < m; j++) {
+                lbB += a.distToBounds(b.x[j], b.y[j]);
+            }
+            lb = Math.max(lbA, lbB);
+        }
+        return Math.max(lbKim, lb);
+    }
+
+    @Override
+    double compute(TrajectoryColumns a, TrajectoryColumns b, double threshold) {
+        final int n = a.n;
+        final int m = b.n;
+        final int w = effectiveWindow(a, b);
+        //rows of the cost table, with an extra column at the start
+        double[] prev = new double[m + 1];
+        double[] cur = new double[m + 1];
+        Arrays.fill(prev, Double.POSITIVE_INFINITY);
+        prev[0] = 0;
+        for (int i = 1; i <= n; i++) {
+            final int lo = Math.max(1, i - w);
+            final int hi = (int) Math.min(m, (long) i + w);
+            cur[lo - 1] = Double.POSITIVE_INFINITY;
+            double rowMin = Double.POSITIVE_INFINITY;
+            for (int j = lo; j <= hi; j++) {
+                double best = Math.min(prev[j - 1], Math.min(prev[j], cur[j - 1]));
+                double cost = a.dist(i - 1, b, j - 1) + best;
+                cur[j] = cost;
+                if(cost < rowMin){
+                    rowMin = cost;
+                }
+            }
+            //the cell after the band is read by the next row
+            if(hi < m){
+                cur[hi + 1] = Double.POSITIVE_INFINITY;
+            }
+            if(rowMin > threshold){
+                return rowMin;
+            }
+            double[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[m];
+    }
+
+}
@@ -0,0 +1,67 @@
+package onethreeseven.datastructures.similarity;
+
+/**
+ * Edit distance on real sequence (EDR), see Chen et al. "Robust and fast similarity search for moving
+ * object trajectories". Two entries match if they are within epsilon of each other on both axes, and the
+ * distance is the number of insertions, deletions and substitutions of entries needed to make the trajectories match.
+ * It is robust to noise as an outlier only costs one edit however far away it is.
+ * <br>
+ * The lower bound is the larger of the difference in length and the number of entries of either
+ * trajectory that are too far from the bounds of the other to match anything.
+ * @author Luke Bermingham
+ */
+public class EditDistanceOnRealSequence extends AbstractTrajectoryDistance {
+
+    private final double epsilon;
+
+    /**
+     * @param epsilon How close (in metres, on each axis) two entries have to be to match.
+     */
+    public EditDistanceOnRealSequence(double epsilon){
+        if(epsilon < 0){
+            throw new IllegalArgumentException("Epsilon cannot be negative, got passed: " + epsilon);
+        }
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public double lowerBound(TrajectoryColumns a, TrajectoryColumns b) {
+        int lb = Math.abs(a.n - b.n);
+        lb = Math.max(lb, countUnmatchable(a, b, epsilon));
+        lb = Math.max(lb, countUnmatchable(b, a, epsilon));
+        return lb;
+    }
+
+    @Override
+    double compute(TrajectoryColumns a, TrajectoryColumns b, double threshold) {
+        final int n = a.n;
+        final int m = b.n;
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = i;
+            final double x = a.x[i - 1];
+            final double y = a.y[i - 1];
+            for (int j = 1; j <= m; j++) {
+                boolean match = Math.abs(x - b.x[j - 1]) <= epsilon && Math.abs(y - b.y[j - 1]) <= epsilon;
+                int cost = Math.min(prev[j - 1] + (match ? 0 : 1), Math.min(prev[j], cur[j - 1]) + 1);
+                cur[j] = cost;
+                if(cost < rowMin){
+                    rowMin = cost;
+                }
+            }
+            if(rowMin > threshold){
+                return rowMin;
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[m];
+    }
+
+}
@@ -0,0 +1,60 @@
+package onethreeseven.datastructures.similarity;
+
+/**
+ * The Hausdorff distance, the furthest any entry of either trajectory is from its nearest entry of the other.
+ * The order of the entries does not matter.
+ * <br>
+ * Each entry's search for its nearest entry stops as soon as it finds one closer than the current
+ * furthest (as it cannot change the answer), see Taha and Hanbury "An efficient algorithm for calculating
+ * the exact Hausdorff distance". The lower bound is the furthest any entry is from the bounds of the other trajectory.
+ * @author Luke Bermingham
+ */
+public class Hausdorff extends AbstractTrajectoryDistance {
+
+    @Override
+    public double lowerBound(TrajectoryColumns a, TrajectoryColumns b) {
+        return Math.max(maxDistToBounds(a, b), maxDistToBounds(b, a));
+    }
+
+    @Override
+    double compute(TrajectoryColumns a, TrajectoryColumns b, double threshold) {
+        double maxSq = directedSq(a, b, 0, threshold);
+        if(Math.sqrt(maxSq) <= threshold){
+            maxSq = directedSq(b, a, maxSq, threshold);
+        }
+        return Math.sqrt(maxSq);
+    }
+
+    /**
+     * @param maxSq The largest squared distance found so far.
+     * @return The largest squared distance from an entry of a to its nearest entry of b (or maxSq if that is larger),
+     * or a value more than the threshold if it is exceeded.
+     */
+    private static double directedSq(TrajectoryColumns a, TrajectoryColumns b, double maxSq, double threshold){
+        for (int i = 0; i < a.n; i++) {
+            final double x = a.x[i];
+            final double y = a.y[i];
+            double minSq = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < b.n; j++) {
+                double dx = x - b.x[j];
+                double dy = y - b.y[j];
+                double dSq = dx * dx + dy * dy;
+                if(dSq < minSq){
+                    minSq = dSq;
+                    if(minSq < maxSq){
+                        break;
+                    }
+                }
+            }
+            if(minSq > maxSq){
+                maxSq = minSq;
+                //compared as a distance, so the result is the same as the distance without a threshold
+                if(Math.sqrt(maxSq) > threshold){
+                    return maxSq;
+                }
+            }
+        }
+        return maxSq;
+    }
+
+}
@@ -0,0 +1,81 @@
+package onethreeseven.datastructures.similarity;
+
+/**
+ * A distance based on the longest common subsequence (LCSS) of two trajectories, see Vlachos et al.
+ * "Discovering similar multidimensional trajectories". Two entries match if they are within epsilon of each other
+ * on both axes and at most delta entries apart. The distance is 1 - LCSS / (length of the shorter trajectory),
+ * so it is between 0 (one matches the other entirely) and 1 (nothing matches).
+ * <br>
+ * The lower bound comes from the number of entries of each trajectory that are close enough to the bounds
+ * of the other to match anything. The calculation is abandoned once the rows left cannot add enough matches.
+ * @author Luke Bermingham
+ */
+public class LongestCommonSubsequence extends AbstractTrajectoryDistance {
+
+    private final double epsilon;
+    private final int delta;
+
+    /**
+     * @param epsilon How close (in metres, on each axis) two entries have to be to match.
+     */
+    public LongestCommonSubsequence(double epsilon){
+        this(epsilon, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param epsilon How close (in metres, on each axis) two entries have to be to match.
+     * @param delta How many entries apart two entries can be to match.
+     */
+    public LongestCommonSubsequence(double epsilon, int delta){
+        if(epsilon < 0){
+            throw new IllegalArgumentException("Epsilon cannot be negative, got passed: " + epsilon);
+        }
+        if(delta < 0){
+            throw new IllegalArgumentException("Delta cannot be negative, got passed: " + delta);
+        }
+        this.epsilon = epsilon;
+        this.delta = delta;
+    }
+
+    @Override
+    public double lowerBound(TrajectoryColumns a, TrajectoryColumns b) {
+        int maxMatches = Math.min(a.n - countUnmatchable(a, b, epsilon), b.n - countUnmatchable(b, a, epsilon));
+        return 1 - maxMatches / (double) Math.min(a.n, b.n);
+    }
+
+    @Override
+    double compute(TrajectoryColumns a, TrajectoryColumns b, double threshold) {
+        final int n = a.n;
+        final int m = b.n;
+        final double shorter = Math.min(n, m);
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int i = 1; i <= n; i++) {
+            final double x = a.x[i - 1];
+            final double y = a.y[i - 1];
+            int rowMax = 0;
+            for (int j = 1; j <= m; j++) {
+                int len;
+                if(Math.abs(i - j) <= delta && Math.abs(x - b.x[j - 1]) <= epsilon && Math.abs(y - b.y[j - 1]) <= epsilon){
+                    len = prev[j - 1] + 1;
+                }else{
+                    len = Math.max(prev[j], cur[j - 1]);
+                }
+                cur[j] = len;
+                if(len > rowMax){
+                    rowMax = len;
+                }
+            }
+            //each row left can add at most one match
+            double bestDistance = 1 - Math.min(shorter, rowMax + (n - i)) / shorter;
+            if(bestDistance > threshold){
+                return bestDistance;
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return 1 - prev[m] / shorter;
+    }
+
+}
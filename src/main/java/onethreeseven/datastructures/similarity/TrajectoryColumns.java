@@ -0,0 +1,177 @@
+package onethreeseven.datastructures.similarity;
+
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+
+/**
+ * The cartesian coordinates of a trajectory as two primitive columns, along with their bounds.
+ * The distance measures work on these so that when many distances are calculated the projection
+ * (and bounds) of each trajectory is only worked out once, see {@link AbstractTrajectoryDistance}.
+ * <br>
+ * This is a read-only snapshot, changes to the trajectory afterwards are not seen.
+ * @author Luke Bermingham
+ */
+public final class TrajectoryColumns {
+
+    final double[] x;
+    final double[] y;
+    final int n;
+    final double minX;
+    final double maxX;
+    final double minY;
+    final double maxY;
+
+    //the envelope of the last window asked for (for LB_Keogh)
+    private volatile Envelope envelope = null;
+
+    /**
+     * @param traj The trajectory to take the cartesian coordinates of (it is not modified).
+     */
+    public TrajectoryColumns(SpatioCompositeTrajectory<?> traj){
+        this(cartesian(traj));
+    }
+
+    /**
+     * @param x The cartesian x coordinates.
+     * @param y The cartesian y coordinates, the same length as the x coordinates.
+     */
+    public TrajectoryColumns(double[] x, double[] y){
+        if(x.length != y.length){
+            throw new IllegalArgumentException("There must be the same number of x and y coordinates.");
+        }
+        this.x = x;
+        this.y = y;
+        this.n = x.length;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if(x[i] < minX){minX = x[i];}
+            if(x[i] > maxX){maxX = x[i];}
+            if(y[i] < minY){minY = y[i];}
+            if(y[i] > maxY){maxY = y[i];}
+        }
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    private TrajectoryColumns(double[][] xy){
+        this(xy[0], xy[1]);
+    }
+
+    private static double[][] cartesian(SpatioCompositeTrajectory<?> traj){
+        final int n = traj.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            if(traj.isInCartesianMode()){
+                x[i] = traj.getX(i);
+                y[i] = traj.getY(i);
+            }else{
+                double[] xy = traj.getCoords(i, true);
+                x[i] = xy[0];
+                y[i] = xy[1];
+            }
+        }
+        return new double[][]{x, y};
+    }
+
+    public int size(){
+        return n;
+    }
+
+    public double getX(int i){
+        return x[i];
+    }
+
+    public double getY(int i){
+        return y[i];
+    }
+
+    /**
+     * @return The bounds of the coordinates, {{minX, maxX},{minY, maxY}}.
+     */
+    public double[][] getBounds(){
+        return new double[][]{new double[]{minX, maxX}, new double[]{minY, maxY}};
+    }
+
+    /**
+     * @param i The index of an entry in this trajectory.
+     * @param other Another trajectory.
+     * @param j The index of an entry in the other trajectory.
+     * @return The distance between the two entries.
+     */
+    double dist(int i, TrajectoryColumns other, int j){
+        double dx = x[i] - other.x[j];
+        double dy = y[i] - other.y[j];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @param px An x coordinate.
+     * @param py A y coordinate.
+     * @return The distance from the point to the bounds of this trajectory (0 if it is inside).
+     */
+    double distToBounds(double px, double py){
+        double dx = Math.max(0, Math.max(minX - px, px - maxX));
+        double dy = Math.max(0, Math.max(minY - py, py - maxY));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @param window How many entries either side of each entry the envelope covers.
+     * @return The bounds of every window of entries, as {minX, maxX, minY, maxY} columns.
+     */
+    double[][] getEnvelope(int window){
+        Envelope env = this.envelope;
+        if(env == null || env.window != window){
+            env = new Envelope(window, new double[][]{
+                    slidingExtreme(x, window, false), slidingExtreme(x, window, true),
+                    slidingExtreme(y, window, false), slidingExtreme(y, window, true)
+            });
+            this.envelope = env;
+        }
+        return env.bounds;
+    }
+
+    /**
+     * The smallest (or largest) value within the window of every entry, in linear time
+     * using a double-ended queue of candidate indices.
+     */
+    private static double[] slidingExtreme(double[] v, int window, boolean max){
+        final int n = v.length;
+        double[] out = new double[n];
+        int[] deque = new int[n];
+        int head = 0;
+        int tail = 0;
+        //the next entry to enter the window
+        int next = 0;
+        for (int i = 0; i < n; i++) {
+            int hi = Math.min(n - 1, i + window);
+            while(next <= hi){
+                while(tail > head && (max ? v[deque[tail - 1]] <= v[next] : v[deque[tail - 1]] >= v[next])){
+                    tail--;
+                }
+                deque[tail++] = next++;
+            }
+            while(deque[head] < i - window){
+                head++;
+            }
+            out[i] = v[deque[head]];
+        }
+        return out;
+    }
+
+    private static final class Envelope {
+        final int window;
+        final double[][] bounds;
+
+        Envelope(int window, double[][] bounds){
+            this.window = window;
+            this.bounds = bounds;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package onethreeseven.datastructures.util;
+
+/**
+ * A mergeable sketch that estimates how many distinct values (i.e trajectory ids) it has seen,
+ * using HyperLogLog (Flajolet et al. "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm").
+ * It uses one byte per register no matter how many values are added, and the standard error
+ * of the estimate is about 1.04 / sqrt(registers).
+ * @author Luke Bermingham
+ */
+public class CardinalitySketch {
+
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public CardinalitySketch(){
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision The log2 of the number of registers, between 4 and 18.
+     */
+    public CardinalitySketch(int precision){
+        if(precision < 4 || precision > 18){
+            throw new IllegalArgumentException("Precision must be between 4 and 18, got passed: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @param value A value to count.
+     */
+    public void add(CharSequence value){
+        //64 bit FNV-1a, then mixed so every bit depends on every character
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        addHash(mix(hash));
+    }
+
+    /**
+     * @param value A value to count.
+     */
+    public void add(long value){
+        addHash(mix(value));
+    }
+
+    private static long mix(long h){
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void addHash(long hash){
+        int idx = (int) (hash >>> (64 - precision));
+        //the rank is the position of the first one bit after the index bits
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if(rank > registers[idx]){
+            registers[idx] = rank;
+        }
+    }
+
+    /**
+     * @return The estimated number of distinct values added.
+     */
+    public long getEstimate(){
+        final int m = registers.length;
+        double sum = 0;
+        int nZeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if(register == 0){
+                nZeros++;
+            }
+        }
+        double alpha = m >= 128 ? 0.7213 / (1 + 1.079 / m) : (m == 64 ? 0.709 : (m == 32 ? 0.697 : 0.673));
+        double estimate = alpha * m * (double) m / sum;
+        //linear counting is more accurate for small cardinalities
+        if(estimate <= 2.5 * m && nZeros > 0){
+            estimate = m * Math.log(m / (double) nZeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Count all the values of another sketch in this one.
+     * @param other A sketch with the same precision.
+     */
+    public void merge(CardinalitySketch other){
+        if(other.precision != precision){
+            throw new IllegalArgumentException("Cannot merge sketches with different precisions.");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if(other.registers[i] > registers[i]){
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return A copy of this sketch, changes to either do not affect the other.
+     */
+    public CardinalitySketch copy(){
+        CardinalitySketch copy = new CardinalitySketch(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+}
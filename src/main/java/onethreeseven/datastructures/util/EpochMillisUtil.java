@@ -0,0 +1,38 @@
+package onethreeseven.datastructures.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Converts between {@link LocalDateTime} and epoch milliseconds.
+ * Trajectories store their time-stamps as epoch millis, the local date-time
+ * is treated as if it were in UTC so the conversion is lossless (to the millisecond)
+ * and does not depend on the time-zone of the machine.
+ * @author Luke Bermingham
+ */
+public final class EpochMillisUtil {
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int NANOS_PER_MILLI = 1000000;
+
+    private EpochMillisUtil(){}
+
+    /**
+     * @param time The local date-time to convert.
+     * @return The epoch millis of the date-time (treated as UTC).
+     */
+    public static long toEpochMillis(LocalDateTime time){
+        return time.toEpochSecond(ZoneOffset.UTC) * MILLIS_PER_SECOND + time.getNano() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param epochMillis The epoch millis to convert.
+     * @return The local date-time of the epoch millis (treated as UTC).
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis){
+        long seconds = Math.floorDiv(epochMillis, MILLIS_PER_SECOND);
+        int nanos = (int) Math.floorMod(epochMillis, MILLIS_PER_SECOND) * NANOS_PER_MILLI;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,328 @@
+package onethreeseven.datastructures.util;
+
+import java.util.Arrays;
+
+/**
+ * Bit-level compression of columns of numbers in the style of Facebook's Gorilla time-series store.
+ * Regularly sampled values compress very well: time-stamps (and quantized coordinates) are written
+ * as the difference of consecutive differences (delta-of-delta), which is mostly zero, and doubles are
+ * written as the XOR with the previous value, so only the bits that changed are stored.
+ * <br>
+ * Values are written with a {@link LongEncoder} or {@link DoubleEncoder} into a {@link BitWriter}
+ * and read back in the same order with a {@link LongDecoder} or {@link DoubleDecoder} from a {@link BitReader}.
+ * Several columns may be written into the same stream (i.e interleaved per entry), each column just needs
+ * its own encoder and decoder.
+ * @author Luke Bermingham
+ */
+public final class GorillaCodec {
+
+    private GorillaCodec(){}
+
+    /**
+     * Sign extend the low n bits of a value.
+     */
+    private static long signExtend(long bits, int n){
+        return (bits << (64 - n)) >> (64 - n);
+    }
+
+    private static boolean fitsSigned(long v, int n){
+        return v >= -(1L << (n - 1)) && v < (1L << (n - 1));
+    }
+
+    /**
+     * Writes bits (most significant first) into a growable array of longs.
+     */
+    public static final class BitWriter {
+
+        private long[] words;
+        private long bitPos = 0;
+
+        public BitWriter(){
+            this(16);
+        }
+
+        /**
+         * @param initialWords How many 64-bit words to allocate up front.
+         */
+        public BitWriter(int initialWords){
+            this.words = new long[Math.max(2, initialWords)];
+        }
+
+        /**
+         * @param value The value whose lowest n bits are written.
+         * @param n The number of bits to write (1 to 64).
+         */
+        public void writeBits(long value, int n){
+            if(n < 64){
+                value &= (1L << n) - 1;
+            }
+            int wordIdx = (int) (bitPos >>> 6);
+            if(wordIdx + 1 >= words.length){
+                words = Arrays.copyOf(words, words.length + (words.length >> 1) + 2);
+            }
+            int free = 64 - (int) (bitPos & 63);
+            if(n <= free){
+                words[wordIdx] |= value << (free - n);
+            }else{
+                int spill = n - free;
+                words[wordIdx] |= value >>> spill;
+                words[wordIdx + 1] |= value << (64 - spill);
+            }
+            bitPos += n;
+        }
+
+        public void writeBit(boolean bit){
+            writeBits(bit ? 1 : 0, 1);
+        }
+
+        /**
+         * @return The number of bits written so far.
+         */
+        public long getBitPosition() {
+            return bitPos;
+        }
+
+        /**
+         * @return The number of 64-bit words the written bits occupy.
+         */
+        public int getWordCount(){
+            return (int) ((bitPos + 63) >>> 6);
+        }
+
+        /**
+         * @return The written bits, trimmed to {@link #getWordCount()} words.
+         */
+        public long[] toWords(){
+            return Arrays.copyOf(words, getWordCount());
+        }
+    }
+
+    /**
+     * Reads bits (most significant first) from an array of longs.
+     */
+    public static final class BitReader {
+
+        private final long[] words;
+        private long bitPos;
+
+        public BitReader(long[] words){
+            this(words, 0);
+        }
+
+        /**
+         * @param words The bits.
+         * @param bitPos The bit to start reading from.
+         */
+        public BitReader(long[] words, long bitPos){
+            this.words = words;
+            this.bitPos = bitPos;
+        }
+
+        /**
+         * @param n The number of bits to read (1 to 64).
+         * @return The bits in the lowest n bits of a long.
+         */
+        public long readBits(int n){
+            int wordIdx = (int) (bitPos >>> 6);
+            int offset = (int) (bitPos & 63);
+            int free = 64 - offset;
+            long result;
+            if(n <= free){
+                result = (words[wordIdx] << offset) >>> (64 - n);
+            }else{
+                int spill = n - free;
+                long hi = words[wordIdx] & ((1L << free) - 1);
+                result = (hi << spill) | (words[wordIdx + 1] >>> (64 - spill));
+            }
+            bitPos += n;
+            return result;
+        }
+
+        public boolean readBit(){
+            int wordIdx = (int) (bitPos >>> 6);
+            boolean bit = ((words[wordIdx] >>> (63 - (bitPos & 63))) & 1L) != 0;
+            bitPos++;
+            return bit;
+        }
+
+        public long getBitPosition() {
+            return bitPos;
+        }
+
+        public void setBitPosition(long bitPos) {
+            this.bitPos = bitPos;
+        }
+    }
+
+    /**
+     * Delta-of-delta encoding of a column of longs. The first value is written in full,
+     * then the change in difference is written using a prefix code:
+     * 0 (no change), 10 + 7 bits, 110 + 12 bits, 1110 + 20 bits, or 1111 + 64 bits.
+     */
+    public static final class LongEncoder {
+
+        private long prev = 0;
+        private long prevDelta = 0;
+        private boolean first = true;
+
+        public void encode(BitWriter out, long value){
+            if(first){
+                out.writeBits(value, 64);
+                first = false;
+            }else{
+                long delta = value - prev;
+                long dod = delta - prevDelta;
+                if(dod == 0){
+                    out.writeBits(0b0, 1);
+                }else if(fitsSigned(dod, 7)){
+                    out.writeBits(0b10, 2);
+                    out.writeBits(dod, 7);
+                }else if(fitsSigned(dod, 12)){
+                    out.writeBits(0b110, 3);
+                    out.writeBits(dod, 12);
+                }else if(fitsSigned(dod, 20)){
+                    out.writeBits(0b1110, 4);
+                    out.writeBits(dod, 20);
+                }else{
+                    out.writeBits(0b1111, 4);
+                    out.writeBits(dod, 64);
+                }
+                prevDelta = delta;
+            }
+            prev = value;
+        }
+
+        /**
+         * Start a new column, the next value is written in full.
+         */
+        public void reset(){
+            prev = 0;
+            prevDelta = 0;
+            first = true;
+        }
+    }
+
+    /**
+     * Decodes a column written by {@link LongEncoder}.
+     */
+    public static final class LongDecoder {
+
+        private long prev = 0;
+        private long prevDelta = 0;
+        private boolean first = true;
+
+        public long decode(BitReader in){
+            if(first){
+                prev = in.readBits(64);
+                first = false;
+                return prev;
+            }
+            long dod;
+            if(!in.readBit()){
+                dod = 0;
+            }else if(!in.readBit()){
+                dod = signExtend(in.readBits(7), 7);
+            }else if(!in.readBit()){
+                dod = signExtend(in.readBits(12), 12);
+            }else if(!in.readBit()){
+                dod = signExtend(in.readBits(20), 20);
+            }else{
+                dod = in.readBits(64);
+            }
+            prevDelta += dod;
+            prev += prevDelta;
+            return prev;
+        }
+
+        public void reset(){
+            prev = 0;
+            prevDelta = 0;
+            first = true;
+        }
+    }
+
+    /**
+     * XOR encoding of a column of doubles. The first value is written in full, then each value is
+     * XOR-ed with the previous one: 0 if it is the same, 10 + the meaningful bits if they fit in the
+     * previous window of meaningful bits, otherwise 11 + 5 bits of leading zeros + 6 bits of length + the meaningful bits.
+     */
+    public static final class DoubleEncoder {
+
+        private long prevBits = 0;
+        private int prevLeading = -1;
+        private int prevTrailing = 0;
+        private boolean first = true;
+
+        public void encode(BitWriter out, double value){
+            long bits = Double.doubleToRawLongBits(value);
+            if(first){
+                out.writeBits(bits, 64);
+                first = false;
+                prevBits = bits;
+                return;
+            }
+            long xor = bits ^ prevBits;
+            prevBits = bits;
+            if(xor == 0){
+                out.writeBits(0b0, 1);
+                return;
+            }
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if(prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing){
+                out.writeBits(0b10, 2);
+                out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            }else{
+                int meaningful = 64 - leading - trailing;
+                out.writeBits(0b11, 2);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful - 1, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+
+        public void reset(){
+            prevBits = 0;
+            prevLeading = -1;
+            prevTrailing = 0;
+            first = true;
+        }
+    }
+
+    /**
+     * Decodes a column written by {@link DoubleEncoder}.
+     */
+    public static final class DoubleDecoder {
+
+        private long prevBits = 0;
+        private int prevLeading = 0;
+        private int prevTrailing = 0;
+        private boolean first = true;
+
+        public double decode(BitReader in){
+            if(first){
+                prevBits = in.readBits(64);
+                first = false;
+            }else if(in.readBit()){
+                if(in.readBit()){
+                    prevLeading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6) + 1;
+                    prevTrailing = 64 - prevLeading - meaningful;
+                }
+                int meaningful = 64 - prevLeading - prevTrailing;
+                prevBits ^= in.readBits(meaningful) << prevTrailing;
+            }
+            return Double.longBitsToDouble(prevBits);
+        }
+
+        public void reset(){
+            prevBits = 0;
+            prevLeading = 0;
+            prevTrailing = 0;
+            first = true;
+        }
+    }
+
+}
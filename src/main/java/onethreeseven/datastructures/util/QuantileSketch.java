@@ -0,0 +1,268 @@
+package onethreeseven.datastructures.util;
+
+/**
+ * A mergeable sketch of a distribution of values that can answer quantile queries
+ * (i.e the median or the 95th percentile) with a bounded relative error, using
+ * the logarithmic buckets of DDSketch (Masson et al. "DDSketch: A fast and fully-mergeable quantile sketch
+ * with relative-error guarantees").
+ * <br>
+ * Each value is counted in the bucket for its order of magnitude (in steps of the accuracy),
+ * so the memory used depends on the range of the values, not how many there are.
+ * Sketches of different parts of a dataset can be merged into a sketch of the whole dataset.
+ * Non-finite values are ignored.
+ * @author Luke Bermingham
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    /**
+     * The most buckets kept for each sign, beyond this the smallest buckets are combined.
+     */
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    //values closer to zero than this are counted as zero
+    private final double minIndexableValue;
+    private final int maxBuckets;
+
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount = 0;
+    private long count = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum = 0;
+
+    public QuantileSketch(){
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy The relative error of the quantiles, i.e 0.01 means within 1% of the true value.
+     */
+    public QuantileSketch(double relativeAccuracy){
+        this(relativeAccuracy, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param relativeAccuracy The relative error of the quantiles, i.e 0.01 means within 1% of the true value.
+     * @param maxBuckets The most buckets kept for each sign, this bounds the memory used.
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets){
+        if(relativeAccuracy <= 0 || relativeAccuracy >= 1){
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1, got passed: " + relativeAccuracy);
+        }
+        if(maxBuckets < 1){
+            throw new IllegalArgumentException("There must be at least one bucket.");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndexableValue = Double.MIN_NORMAL * gamma;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * @param value A value to add to the distribution.
+     */
+    public void add(double value){
+        add(value, 1);
+    }
+
+    /**
+     * @param value A value to add to the distribution.
+     * @param n How many times to add it.
+     */
+    public void add(double value, long n){
+        if(n <= 0 || Double.isNaN(value) || Double.isInfinite(value)){
+            return;
+        }
+        if(value > minIndexableValue){
+            positive.add(index(value), n);
+        }else if(value < -minIndexableValue){
+            negative.add(index(-value), n);
+        }else{
+            zeroCount += n;
+        }
+        count += n;
+        sum += value * n;
+        if(value < min){min = value;}
+        if(value > max){max = value;}
+    }
+
+    private int index(double value){
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * @param index A bucket index.
+     * @return The value that represents the bucket, which is within the relative accuracy of any value in it.
+     */
+    private double value(int index){
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * @param q The quantile, between 0 and 1 (i.e 0.5 is the median).
+     * @return The approximate value at the quantile, or NaN if the sketch is empty.
+     */
+    public double getQuantile(double q){
+        if(q < 0 || q > 1){
+            throw new IllegalArgumentException("Quantile must be between 0 and 1, got passed: " + q);
+        }
+        if(count == 0){
+            return Double.NaN;
+        }
+        final double rank = q * (count - 1);
+        double value;
+        if(rank < negative.total){
+            //the most negative values have the largest index
+            long seen = 0;
+            int i = negative.counts.length - 1;
+            while(true){
+                seen += negative.counts[i];
+                if(seen > rank){
+                    break;
+                }
+                i--;
+            }
+            value = -value(i + negative.offset);
+        }else if(rank < negative.total + zeroCount){
+            value = 0;
+        }else{
+            long seen = negative.total + zeroCount;
+            int i = 0;
+            while(true){
+                seen += positive.counts[i];
+                if(seen > rank){
+                    break;
+                }
+                i++;
+            }
+            value = value(i + positive.offset);
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Add all the values of another sketch to this one.
+     * @param other A sketch with the same relative accuracy.
+     */
+    public void merge(QuantileSketch other){
+        if(other.relativeAccuracy != relativeAccuracy){
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracies.");
+        }
+        if(other.count == 0){
+            return;
+        }
+        positive.addAll(other.positive);
+        negative.addAll(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return A copy of this sketch, changes to either do not affect the other.
+     */
+    public QuantileSketch copy(){
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy, maxBuckets);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * @return How many values have been added.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The smallest value added (exactly), or NaN if the sketch is empty.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return The largest value added (exactly), or NaN if the sketch is empty.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return The mean of the values added (exactly), or NaN if the sketch is empty.
+     */
+    public double getMean(){
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * The counts of a contiguous range of bucket indices.
+     */
+    private final class Buckets {
+        long[] counts = new long[0];
+        //the bucket index of counts[0]
+        int offset = 0;
+        long total = 0;
+
+        void add(int index, long n){
+            if(counts.length == 0){
+                counts = new long[Math.min(16, maxBuckets)];
+                offset = index - counts.length / 2;
+            }
+            if(index < offset || index >= offset + counts.length){
+                index = resize(index);
+            }
+            counts[index - offset] += n;
+            total += n;
+        }
+
+        /**
+         * Make room for a bucket index, if that would make too many buckets then the smallest are combined.
+         * @param index The bucket index to make room for.
+         * @return Where the index is counted, which is higher than the index if it was combined.
+         */
+        private int resize(int index){
+            final int end = offset + counts.length;
+            int lo = Math.min(offset, index);
+            int hi = Math.max(end, index + 1);
+            int length = Math.min(maxBuckets, Math.max(hi - lo, 2 * counts.length));
+            int newOffset;
+            if(hi - lo > maxBuckets){
+                newOffset = hi - maxBuckets;
+            }else if(index < offset){
+                //leave spare room below, as that is the direction it is growing
+                newOffset = hi - length;
+            }else{
+                newOffset = lo;
+            }
+            long[] newCounts = new long[length];
+            for (int i = 0; i < counts.length; i++) {
+                newCounts[Math.max(i + offset, newOffset) - newOffset] += counts[i];
+            }
+            counts = newCounts;
+            offset = newOffset;
+            return Math.max(index, newOffset);
+        }
+
+        void addAll(Buckets other){
+            for (int i = 0; i < other.counts.length; i++) {
+                if(other.counts[i] != 0){
+                    add(i + other.offset, other.counts[i]);
+                }
+            }
+        }
+    }
+
+}
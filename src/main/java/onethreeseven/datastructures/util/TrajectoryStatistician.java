@@ -1,10 +1,7 @@
 package onethreeseven.datastructures.util;
 
 import onethreeseven.datastructures.model.ITrajectory;
-import onethreeseven.datastructures.model.STStopTrajectory;
 import onethreeseven.datastructures.model.STTrajectory;
-import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
-import onethreeseven.trajsuitePlugin.util.BoundsUtil;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -23,40 +20,94 @@ public class TrajectoryStatistician {
 
     private TrajectoryStatistician(){}
 
+    /**
+     * @param traj The trajectory.
+     * @return The statistics of the trajectory, keyed by a label.
+     * @see TrajectoryStats
+     */
     public static Map<String, String> getStats(ITrajectory traj){
-        LinkedHashMap<String, String> stats = new LinkedHashMap<>();
-
-        double[][] bounds = traj.getBounds();
-        double area = BoundsUtil.getVolume(bounds);
+        return getStats(TrajectoryStats.of((ITrajectory<?>) traj));
+    }
 
+    /**
+     * @param trajs The trajectories, keyed by id.
+     * @param parallel If true, the trajectories are processed in parallel.
+     * @return The statistics of all the trajectories together, including percentiles, keyed by a label.
+     */
+    public static Map<String, String> getStats(Map<String, ? extends ITrajectory<?>> trajs, boolean parallel){
+        return getDatasetStats(TrajectoryStats.of(trajs, parallel), false);
+    }
 
-        stats.put("Entries:" , String.valueOf(traj.size()));
-        stats.put("Area(m):", formatter.format(area));
+    /**
+     * @param partitions The trajectories of each file or partition, keyed by id (the same id may be in several).
+     * @param parallel If true, the trajectories are processed in parallel.
+     * @return The statistics of all the partitions together, including percentiles and an estimate
+     * of the distinct ids across the partitions, keyed by a label.
+     * @see TrajectoryStats#ofPartitions(Collection, boolean)
+     */
+    public static Map<String, String> getStats(Collection<? extends Map<String, ? extends ITrajectory<?>>> partitions,
+                                               boolean parallel){
+        return getDatasetStats(TrajectoryStats.ofPartitions(partitions, parallel), true);
+    }
 
-        if(traj instanceof SpatioCompositeTrajectory){
-            double pathLength = ((SpatioCompositeTrajectory) traj).distanceAlong(0, traj.size()-1);
-            stats.put("Path length(m):", formatter.format(pathLength));
-        }
-        if(traj instanceof STTrajectory){
-            long durationSeconds = ((STTrajectory) traj).getDuration(ChronoUnit.SECONDS);
-            stats.put("Duration(s):", String.valueOf(durationSeconds));
-            double minSpeed = ((STTrajectory) traj).getMinSpeed();
-            double maxSpeed = ((STTrajectory) traj).getMaxSpeed();
-            double avgSpeed = ((STTrajectory) traj).getAverageSpeed();
-            stats.put("Minimum speed (m/s):", formatter.format(minSpeed));
-            stats.put("Maximum speed (m/s):", formatter.format(maxSpeed));
-            stats.put("Average speed (m/s):", formatter.format(avgSpeed));
+    private static Map<String, String> getDatasetStats(TrajectoryStats stats, boolean withDistinctIds){
+        LinkedHashMap<String, String> out = new LinkedHashMap<>();
+        out.put("Trajectories:", String.valueOf(stats.getNumberOfTrajectories()));
+        if(withDistinctIds){
+            out.put("Distinct ids (approx.):", String.valueOf(stats.getDistinctIds()));
         }
-        if(traj instanceof STStopTrajectory){
-            CountStopsAndMoves stopStatistician = new CountStopsAndMoves();
-            stopStatistician.run((STStopTrajectory) traj);
-            stats.putAll(stopStatistician.getAllStats());
+        out.putAll(getStats(stats));
+        putPercentiles(out, "Entries per trajectory", stats.getSizeSketch());
+        if(stats.hasTime()){
+            putPercentiles(out, "Speed (m/s)", stats.getSpeedSketch());
+            putPercentiles(out, "Recording interval(s)", stats.getIntervalSketch());
+            putPercentiles(out, "Trajectory duration(s)", stats.getDurationSketch());
         }
+        return out;
+    }
 
-        return stats;
+    private static void putPercentiles(Map<String, String> out, String label, QuantileSketch sketch){
+        if(sketch.getCount() == 0){
+            return;
+        }
+        out.put(label + " median:", formatter.format(sketch.getQuantile(0.5)));
+        out.put(label + " 95th percentile:", formatter.format(sketch.getQuantile(0.95)));
+        out.put(label + " 99th percentile:", formatter.format(sketch.getQuantile(0.99)));
     }
 
+    /**
+     * @param stats Some statistics.
+     * @return The statistics, keyed by a label.
+     */
+    public static Map<String, String> getStats(TrajectoryStats stats){
+        LinkedHashMap<String, String> out = new LinkedHashMap<>();
 
+        out.put("Entries:" , String.valueOf(stats.getNumberOfEntries()));
+        out.put("Area(m):", formatter.format(stats.getArea()));
+        if(stats.hasPath()){
+            out.put("Path length(m):", formatter.format(stats.getPathLength()));
+        }
+
+        if(stats.hasTime()){
+            long durationSeconds = stats.getDurationMillis() / 1000L;
+            out.put("Duration(s):", String.valueOf(durationSeconds));
+            out.put("Minimum speed (m/s):", formatter.format(stats.getMinSpeed()));
+            out.put("Maximum speed (m/s):", formatter.format(stats.getMaxSpeed()));
+            out.put("Average speed (m/s):", formatter.format(stats.getAverageSpeed()));
+        }
+        if(stats.hasStops()){
+            out.put("Stops:", String.valueOf(stats.getNumberOfStops()));
+            out.put("Moves:", String.valueOf(stats.getNumberOfMoves()));
+            out.put("Stop episodes:", String.valueOf(stats.getNumberOfStopEpisodes()));
+            out.put("Move episodes:", String.valueOf(stats.getNumberOfMoveEpisodes()));
+            out.put("Trajectory duration(s):", String.valueOf(stats.getDurationMillis() / 1000L));
+            out.put("Minimum recording interval(s):", String.valueOf(stats.getMinIntervalSeconds()));
+            out.put("Maximum recording interval(s):", String.valueOf(stats.getMaxIntervalSeconds()));
+            out.put("Modal recording interval(s):", String.valueOf(stats.getModalIntervalSeconds()));
+        }
+
+        return out;
+    }
 
     /**
      * Prints the total size and average size of a collection of trajectories.
@@ -71,6 +122,12 @@ public class TrajectoryStatistician {
         System.out.println("Total entries: " + totalSize);
         double avgSize = totalSize / (double)trajs.size();
         System.out.println("Average trajectory size: " + avgSize);
+        QuantileSketch sizes = new QuantileSketch();
+        for (ITrajectory traj : trajs) {
+            sizes.add(traj.size());
+        }
+        System.out.println("Median trajectory size: " + formatter.format(sizes.getQuantile(0.5)));
+        System.out.println("95th percentile trajectory size: " + formatter.format(sizes.getQuantile(0.95)));
     }
 
     /**
@@ -0,0 +1,466 @@
+package onethreeseven.datastructures.util;
+
+import onethreeseven.datastructures.model.AbstractSTTrajectory;
+import onethreeseven.datastructures.model.ITrajectory;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import onethreeseven.geo.projection.AbstractGeographicProjection;
+import onethreeseven.trajsuitePlugin.util.BoundsUtil;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The statistics of a trajectory (or of many trajectories) calculated in a single pass over its columns.
+ * Speeds, distances and intervals are worked out from the coordinates and epoch millis directly,
+ * so no entries or date-times are made and each coordinate is projected at most once.
+ * <br>
+ * The statistics of different trajectories can be merged, which is how the statistics
+ * of a whole dataset are calculated, see {@link #of(Collection, boolean)}.
+ * Distributions (such as the speed) are kept as {@link QuantileSketch}, so percentiles
+ * can be reported without keeping every value.
+ * @author Luke Bermingham
+ */
+public class TrajectoryStats {
+
+    /**
+     * Intervals of this many seconds or more are gaps rather than a sampling rate,
+     * so they are left out of {@link #getModalIntervalSeconds()}.
+     */
+    public static final int MODAL_INTERVAL_LIMIT_SECONDS = 3600;
+
+    private static final long[] NO_INTERVALS = new long[0];
+
+    private int nTrajectories = 0;
+    private long nEntries = 0;
+    private double[][] bounds = null;
+    private boolean hasPath = false;
+    private double pathLength = 0;
+
+    //spatio-temporal
+    private boolean hasTime = false;
+    private long durationMillis = 0;
+    private double minSpeed = Double.POSITIVE_INFINITY;
+    private double maxSpeed = Double.NEGATIVE_INFINITY;
+    private double speedSum = 0;
+    private long nSpeeds = 0;
+    //the time between consecutive entries, in whole seconds
+    private long minIntervalSeconds = Long.MAX_VALUE;
+    private long maxIntervalSeconds = 0;
+    //how many intervals there are of each whole second below the limit, only as long as the largest one seen
+    private long[] intervalHistogram = NO_INTERVALS;
+
+    //stops
+    private boolean hasStops = false;
+    private long nStops = 0;
+    private long nMoves = 0;
+    private long nStopEpisodes = 0;
+    private long nMoveEpisodes = 0;
+
+    //distributions
+    private final QuantileSketch sizeSketch = new QuantileSketch();
+    private final QuantileSketch speedSketch = new QuantileSketch();
+    private final QuantileSketch intervalSketch = new QuantileSketch();
+    private final QuantileSketch durationSketch = new QuantileSketch();
+    private CardinalitySketch idSketch = null;
+
+    private TrajectoryStats(){}
+
+    /**
+     * @param traj The trajectory.
+     * @return The statistics of the trajectory.
+     */
+    public static TrajectoryStats of(ITrajectory<?> traj){
+        TrajectoryStats stats = new TrajectoryStats();
+        stats.nTrajectories = 1;
+        stats.nEntries = traj.size();
+        stats.sizeSketch.add(traj.size());
+        if(traj instanceof SpatioCompositeTrajectory){
+            stats.hasPath = true;
+            stats.accumulate((SpatioCompositeTrajectory<?>) traj);
+        }else if(traj.size() > 0){
+            double[][] trajBounds = traj.getBounds();
+            stats.bounds = new double[trajBounds.length][];
+            for (int d = 0; d < trajBounds.length; d++) {
+                stats.bounds[d] = trajBounds[d].clone();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @param trajs The trajectories.
+     * @param parallel If true, the statistics of each trajectory are calculated in parallel.
+     * @return The statistics of all the trajectories together.
+     */
+    public static TrajectoryStats of(Collection<? extends ITrajectory<?>> trajs, boolean parallel){
+        Stream<? extends ITrajectory<?>> stream = parallel ? trajs.parallelStream() : trajs.stream();
+        //merged in place, so a dataset does not make (and copy the sketches of) a new statistics per trajectory
+        return stream.map(TrajectoryStats::of).collect(TrajectoryStats::new, TrajectoryStats::mergeInto, TrajectoryStats::mergeInto);
+    }
+
+    /**
+     * The ids are kept in a {@link CardinalitySketch}, which is only an estimate of the number of trajectories
+     * here (the keys are already distinct), but when the statistics of several files or partitions that may share
+     * ids are merged (see {@link #merge(TrajectoryStats)} and {@link #ofPartitions(Collection, boolean)})
+     * it estimates the distinct ids across all of them.
+     * @param trajs The trajectories, keyed by id.
+     * @param parallel If true, the statistics of each trajectory are calculated in parallel.
+     * @return The statistics of all the trajectories together, including a sketch of the ids.
+     */
+    public static TrajectoryStats of(Map<String, ? extends ITrajectory<?>> trajs, boolean parallel){
+        TrajectoryStats stats = of(trajs.values(), parallel);
+        Stream<String> ids = parallel ? trajs.keySet().parallelStream() : trajs.keySet().stream();
+        stats.idSketch = ids.collect(CardinalitySketch::new, CardinalitySketch::add, CardinalitySketch::merge);
+        return stats;
+    }
+
+    /**
+     * @param partitions The trajectories of each file or partition, keyed by id. The same id may be in several
+     *                   partitions (i.e an entity recorded on different days), it is then a trajectory in each.
+     * @param parallel If true, the statistics of each trajectory are calculated in parallel.
+     * @return The statistics of all the partitions together, including an estimate of the distinct ids across them.
+     */
+    public static TrajectoryStats ofPartitions(Collection<? extends Map<String, ? extends ITrajectory<?>>> partitions,
+                                               boolean parallel){
+        TrajectoryStats stats = new TrajectoryStats();
+        for (Map<String, ? extends ITrajectory<?>> partition : partitions) {
+            stats.mergeInto(of(partition, parallel));
+        }
+        return stats;
+    }
+
+    /**
+     * The one pass over the columns of the trajectory.
+     */
+    private void accumulate(SpatioCompositeTrajectory<?> traj){
+        final AbstractSTTrajectory<?> stTraj = traj instanceof AbstractSTTrajectory ? (AbstractSTTrajectory<?>) traj : null;
+        final STStopTrajectory stopTraj = traj instanceof STStopTrajectory ? (STStopTrajectory) traj : null;
+        hasTime = stTraj != null;
+        hasStops = stopTraj != null;
+        final int n = traj.size();
+        if(n == 0){
+            return;
+        }
+        final boolean cartesian = traj.isInCartesianMode();
+        final AbstractGeographicProjection projection = traj.getProjection();
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double prevCartX = 0;
+        double prevCartY = 0;
+        long prevMillis = 0;
+        boolean isStopped = false;
+
+        for (int i = 0; i < n; i++) {
+            double cartX = traj.getX(i);
+            double cartY = traj.getY(i);
+            if(!cartesian){
+                double[] xy = projection.geographicToCartesian(cartX, cartY);
+                cartX = xy[0];
+                cartY = xy[1];
+            }
+            if(cartX < minX){minX = cartX;}
+            if(cartX > maxX){maxX = cartX;}
+            if(cartY < minY){minY = cartY;}
+            if(cartY > maxY){maxY = cartY;}
+            double dist = 0;
+            if(i > 0){
+                double dx = cartX - prevCartX;
+                double dy = cartY - prevCartY;
+                dist = Math.sqrt(dx * dx + dy * dy);
+                pathLength += dist;
+            }
+            prevCartX = cartX;
+            prevCartY = cartY;
+
+            if(stTraj != null){
+                final long millis = stTraj.getEpochMillis(i);
+                //the first entry has no speed, which counts as zero (the same as AbstractSTTrajectory#getSpeed)
+                double speed = 0;
+                if(i > 0){
+                    long deltaMillis = millis - prevMillis;
+                    speed = dist / (deltaMillis / 1000.0);
+                    intervalSketch.add(deltaMillis / 1000.0);
+                    long deltaSeconds = deltaMillis / 1000L;
+                    if(deltaSeconds < minIntervalSeconds){minIntervalSeconds = deltaSeconds;}
+                    if(deltaSeconds > maxIntervalSeconds){maxIntervalSeconds = deltaSeconds;}
+                    if(deltaSeconds >= 0 && deltaSeconds < MODAL_INTERVAL_LIMIT_SECONDS){
+                        ensureHistogramLength((int) deltaSeconds + 1);
+                        intervalHistogram[(int) deltaSeconds]++;
+                    }
+                    //only real speeds between entries go in the distribution
+                    speedSketch.add(speed);
+                }
+                if(speed < minSpeed){minSpeed = speed;}
+                if(speed > maxSpeed){maxSpeed = speed;}
+                speedSum += speed;
+                nSpeeds++;
+                prevMillis = millis;
+            }
+
+            if(stopTraj != null){
+                if(stopTraj.isStopped(i)){
+                    nStops++;
+                    if(!isStopped){
+                        isStopped = true;
+                        nStopEpisodes++;
+                    }
+                }else{
+                    nMoves++;
+                    if(isStopped){
+                        isStopped = false;
+                        nMoveEpisodes++;
+                    }
+                }
+            }
+        }
+        if(stTraj != null){
+            durationMillis = stTraj.getEpochMillis(n - 1) - stTraj.getEpochMillis(0);
+            durationSketch.add(durationMillis / 1000.0);
+        }
+        bounds = new double[][]{new double[]{minX, maxX}, new double[]{minY, maxY}};
+    }
+
+    /**
+     * @param other Some other statistics.
+     * @return New statistics that are the combination of these and the other statistics.
+     */
+    public TrajectoryStats merge(TrajectoryStats other){
+        TrajectoryStats out = new TrajectoryStats();
+        out.mergeInto(this);
+        out.mergeInto(other);
+        return out;
+    }
+
+    /**
+     * Combine the other statistics into these ones, the other statistics are not modified
+     * and nothing mutable is shared with them.
+     * @param other Some other statistics.
+     */
+    private void mergeInto(TrajectoryStats other){
+        nTrajectories += other.nTrajectories;
+        nEntries += other.nEntries;
+        if(other.bounds != null){
+            if(bounds == null){
+                bounds = new double[other.bounds.length][];
+                for (int d = 0; d < bounds.length; d++) {
+                    bounds[d] = other.bounds[d].clone();
+                }
+            }else{
+                double[][] merged = new double[Math.min(bounds.length, other.bounds.length)][];
+                for (int d = 0; d < merged.length; d++) {
+                    merged[d] = new double[]{
+                            Math.min(bounds[d][0], other.bounds[d][0]),
+                            Math.max(bounds[d][1], other.bounds[d][1])
+                    };
+                }
+                bounds = merged;
+            }
+        }
+        hasPath |= other.hasPath;
+        pathLength += other.pathLength;
+
+        hasTime |= other.hasTime;
+        durationMillis += other.durationMillis;
+        minSpeed = Math.min(minSpeed, other.minSpeed);
+        maxSpeed = Math.max(maxSpeed, other.maxSpeed);
+        speedSum += other.speedSum;
+        nSpeeds += other.nSpeeds;
+        minIntervalSeconds = Math.min(minIntervalSeconds, other.minIntervalSeconds);
+        maxIntervalSeconds = Math.max(maxIntervalSeconds, other.maxIntervalSeconds);
+        ensureHistogramLength(other.intervalHistogram.length);
+        for (int i = 0; i < other.intervalHistogram.length; i++) {
+            intervalHistogram[i] += other.intervalHistogram[i];
+        }
+
+        hasStops |= other.hasStops;
+        nStops += other.nStops;
+        nMoves += other.nMoves;
+        nStopEpisodes += other.nStopEpisodes;
+        nMoveEpisodes += other.nMoveEpisodes;
+
+        sizeSketch.merge(other.sizeSketch);
+        speedSketch.merge(other.speedSketch);
+        intervalSketch.merge(other.intervalSketch);
+        durationSketch.merge(other.durationSketch);
+        if(other.idSketch != null){
+            if(idSketch == null){
+                idSketch = other.idSketch.copy();
+            }else{
+                idSketch.merge(other.idSketch);
+            }
+        }
+    }
+
+    private void ensureHistogramLength(int length){
+        if(intervalHistogram.length < length){
+            int newLength = Math.min(MODAL_INTERVAL_LIMIT_SECONDS, Math.max(length, intervalHistogram.length * 2));
+            intervalHistogram = Arrays.copyOf(intervalHistogram, newLength);
+        }
+    }
+
+    public int getNumberOfTrajectories() {
+        return nTrajectories;
+    }
+
+    public long getNumberOfEntries() {
+        return nEntries;
+    }
+
+    /**
+     * @return The cartesian bounds of all the entries (the same as {@link ITrajectory#getBounds()}),
+     * or null if there are no entries.
+     */
+    public double[][] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return The area of the bounds, or 0 if there are no entries.
+     */
+    public double getArea(){
+        return bounds == null ? 0 : BoundsUtil.getVolume(bounds);
+    }
+
+    /**
+     * @return True if the statistics include trajectories with a path length, i.e spatial trajectories.
+     */
+    public boolean hasPath() {
+        return hasPath;
+    }
+
+    /**
+     * @return The total distance along the trajectories (in metres).
+     */
+    public double getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @return True if the statistics include spatio-temporal trajectories.
+     */
+    public boolean hasTime() {
+        return hasTime;
+    }
+
+    /**
+     * @return The total duration of the trajectories (in milliseconds).
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return The minimum speed between consecutive entries (in metres per second).
+     */
+    public double getMinSpeed() {
+        return nSpeeds == 0 ? 0 : minSpeed;
+    }
+
+    /**
+     * @return The maximum speed between consecutive entries (in metres per second).
+     */
+    public double getMaxSpeed() {
+        return nSpeeds == 0 ? 0 : maxSpeed;
+    }
+
+    /**
+     * @return The average speed between consecutive entries (in metres per second).
+     */
+    public double getAverageSpeed() {
+        return nSpeeds == 0 ? 0 : speedSum / nSpeeds;
+    }
+
+    public long getMinIntervalSeconds() {
+        return intervalSketch.getCount() == 0 ? 0 : minIntervalSeconds;
+    }
+
+    public long getMaxIntervalSeconds() {
+        return maxIntervalSeconds;
+    }
+
+    /**
+     * @return The most common time between consecutive entries (in whole seconds),
+     * if there is a tie the smallest is used. Intervals of {@link #MODAL_INTERVAL_LIMIT_SECONDS} or more
+     * are left out, unless every interval is that long, then the median interval is used.
+     */
+    public long getModalIntervalSeconds() {
+        long mode = 0;
+        long modeCount = 0;
+        for (int i = 0; i < intervalHistogram.length; i++) {
+            if(intervalHistogram[i] > modeCount){
+                mode = i;
+                modeCount = intervalHistogram[i];
+            }
+        }
+        if(modeCount == 0 && intervalSketch.getCount() > 0){
+            return (long) intervalSketch.getQuantile(0.5);
+        }
+        return mode;
+    }
+
+    /**
+     * @return True if the statistics include trajectories with stops.
+     */
+    public boolean hasStops() {
+        return hasStops;
+    }
+
+    public long getNumberOfStops() {
+        return nStops;
+    }
+
+    public long getNumberOfMoves() {
+        return nMoves;
+    }
+
+    public long getNumberOfStopEpisodes() {
+        return nStopEpisodes;
+    }
+
+    public long getNumberOfMoveEpisodes() {
+        return nMoveEpisodes;
+    }
+
+    /**
+     * @return The distribution of the number of entries in each trajectory.
+     */
+    public QuantileSketch getSizeSketch() {
+        return sizeSketch;
+    }
+
+    /**
+     * @return The distribution of the speed between consecutive entries (in metres per second).
+     */
+    public QuantileSketch getSpeedSketch() {
+        return speedSketch;
+    }
+
+    /**
+     * @return The distribution of the time between consecutive entries (in seconds).
+     */
+    public QuantileSketch getIntervalSketch() {
+        return intervalSketch;
+    }
+
+    /**
+     * @return The distribution of the duration of each trajectory (in seconds).
+     */
+    public QuantileSketch getDurationSketch() {
+        return durationSketch;
+    }
+
+    /**
+     * @return The estimated number of distinct trajectory ids, or -1 if the ids were not given.
+     * @see #ofPartitions(Collection, boolean)
+     */
+    public long getDistinctIds(){
+        return idSketch == null ? -1 : idSketch.getEstimate();
+    }
+
+}
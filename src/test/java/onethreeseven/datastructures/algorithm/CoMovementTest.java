@@ -0,0 +1,109 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test finding convoys and flocks in groups of trajectories that travel together.
+ * @see CoMovementMiner
+ * @author Luke Bermingham
+ */
+public class CoMovementTest {
+
+    private static final long start = 1488360615000L;
+    private static final long interval = 60000;
+
+    /**
+     * Three objects that travel together for 30 snapshots, a fourth that joins them part of the way,
+     * and some that wander about far away.
+     */
+    private static Map<String, STTrajectory> makeTrajs(Random rand){
+        Map<String, STTrajectory> trajs = new HashMap<>();
+        double[][] offsets = new double[][]{{0, 0}, {5, 0}, {0, 5}};
+        for (int o = 0; o < offsets.length; o++) {
+            STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+            for (int s = 0; s < 30; s++) {
+                traj.addCartesian(s * 100 + offsets[o][0] + rand.nextDouble(), offsets[o][1] + rand.nextDouble(),
+                        start + s * interval);
+            }
+            trajs.put("group" + o, traj);
+        }
+        STTrajectory joiner = new STTrajectory(true, new ProjectionEquirectangular());
+        for (int s = 0; s < 30; s++) {
+            double y = s >= 10 && s < 20 ? 3 : 5000;
+            //sampled half way between the snapshots, so its position is interpolated
+            joiner.addCartesian(s * 100 + 53, y, start + s * interval + interval / 2);
+        }
+        trajs.put("joiner", joiner);
+        for (int o = 0; o < 20; o++) {
+            STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+            double x = 10000 + rand.nextDouble() * 100000;
+            double y = 10000 + rand.nextDouble() * 100000;
+            for (int s = 0; s < 30; s++) {
+                x += rand.nextGaussian() * 1000;
+                y += rand.nextGaussian() * 1000;
+                traj.addCartesian(x, y, start + s * interval);
+            }
+            trajs.put("wanderer" + o, traj);
+        }
+        return trajs;
+    }
+
+    private static CoMovementPattern find(List<CoMovementPattern> patterns, String... members){
+        for (CoMovementPattern pattern : patterns) {
+            if(pattern.getMembers().equals(Arrays.asList(members))){
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    private static void checkGroups(List<CoMovementPattern> patterns){
+        Assert.assertEquals(2, patterns.size());
+        CoMovementPattern whole = find(patterns, "group0", "group1", "group2");
+        Assert.assertNotNull(whole);
+        Assert.assertEquals(start, whole.getStartMillis());
+        Assert.assertEquals(start + 29 * interval, whole.getEndMillis());
+        Assert.assertEquals(30, whole.getNumberOfSnapshots());
+        CoMovementPattern joined = find(patterns, "group0", "group1", "group2", "joiner");
+        Assert.assertNotNull(joined);
+        //the joiner is nearby from 10.5 to 19.5, so is with the group at snapshots 11 to 19
+        Assert.assertEquals(start + 11 * interval, joined.getStartMillis());
+        Assert.assertEquals(start + 19 * interval, joined.getEndMillis());
+    }
+
+    @Test
+    public void testConvoys() {
+        Map<String, STTrajectory> trajs = makeTrajs(new Random(41L));
+        CoMovementMiner miner = new CoMovementMiner(3, 5, interval);
+        checkGroups(miner.convoys(trajs, 10));
+        checkGroups(miner.setParallel(true).convoys(trajs, 10));
+    }
+
+    @Test
+    public void testFlocks() {
+        Map<String, STTrajectory> trajs = makeTrajs(new Random(42L));
+        CoMovementMiner miner = new CoMovementMiner(3, 5, interval);
+        checkGroups(miner.flocks(trajs, 10));
+        checkGroups(miner.setParallel(true).flocks(trajs, 10));
+        //too small a disk for the group
+        Assert.assertTrue(miner.flocks(trajs, 2).isEmpty());
+    }
+
+    @Test
+    public void testMinSnapshots() {
+        Map<String, STTrajectory> trajs = makeTrajs(new Random(43L));
+        List<CoMovementPattern> convoys = new CoMovementMiner(3, 10, interval).convoys(trajs, 10);
+        Assert.assertEquals(1, convoys.size());
+        Assert.assertNotNull(find(convoys, "group0", "group1", "group2"));
+    }
+
+}
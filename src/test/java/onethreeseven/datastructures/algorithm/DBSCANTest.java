@@ -0,0 +1,186 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test the grid DBSCAN against a brute force version.
+ * @see DBSCAN
+ * @see StopEpisode
+ * @author Luke Bermingham
+ */
+public class DBSCANTest {
+
+    /**
+     * Some gaussian blobs plus uniform noise.
+     */
+    private static double[][] makePoints(int n, Random rand){
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[][] centres = new double[6][];
+        for (int c = 0; c < centres.length; c++) {
+            centres[c] = new double[]{rand.nextDouble() * 1000, rand.nextDouble() * 1000};
+        }
+        for (int i = 0; i < n; i++) {
+            if(rand.nextDouble() < 0.2){
+                x[i] = rand.nextDouble() * 1000 - 500;
+                y[i] = rand.nextDouble() * 1000 - 500;
+            }else{
+                double[] centre = centres[rand.nextInt(centres.length)];
+                x[i] = centre[0] + rand.nextGaussian() * 30;
+                y[i] = centre[1] + rand.nextGaussian() * 30;
+            }
+        }
+        return new double[][]{x, y};
+    }
+
+    private static boolean within(double[] x, double[] y, int i, int j, double eps){
+        double dx = x[i] - x[j];
+        double dy = y[i] - y[j];
+        return dx * dx + dy * dy <= eps * eps;
+    }
+
+    private static void checkAgainstBruteForce(double[] x, double[] y, double eps, int minPts, int[] labels){
+        final int n = x.length;
+        boolean[] core = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int count = 0;
+            for (int j = 0; j < n; j++) {
+                if(within(x, y, i, j, eps)){
+                    count++;
+                }
+            }
+            core[i] = count >= minPts;
+        }
+        //connected components of the core points
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int nComponents = 0;
+        for (int i = 0; i < n; i++) {
+            if(!core[i] || component[i] != -1){
+                continue;
+            }
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(i);
+            component[i] = nComponents;
+            while(!queue.isEmpty()){
+                int p = queue.poll();
+                for (int q = 0; q < n; q++) {
+                    if(core[q] && component[q] == -1 && within(x, y, p, q, eps)){
+                        component[q] = nComponents;
+                        queue.add(q);
+                    }
+                }
+            }
+            nComponents++;
+        }
+        //components map one to one onto clusters, numbered in order of their first point
+        int[] componentLabel = new int[nComponents];
+        Arrays.fill(componentLabel, -2);
+        int next = 0;
+        for (int i = 0; i < n; i++) {
+            if(core[i]){
+                if(componentLabel[component[i]] == -2){
+                    componentLabel[component[i]] = next++;
+                }
+                Assert.assertEquals(componentLabel[component[i]], labels[i]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if(core[i]){
+                continue;
+            }
+            int nearest = -1;
+            double nearestDist = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < n; j++) {
+                double d = Math.hypot(x[i] - x[j], y[i] - y[j]);
+                if(core[j] && within(x, y, i, j, eps) && d < nearestDist){
+                    nearest = j;
+                    nearestDist = d;
+                }
+            }
+            if(nearest == -1){
+                Assert.assertEquals(DBSCAN.NOISE, labels[i]);
+            }else{
+                Assert.assertNotEquals(DBSCAN.NOISE, labels[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random rand = new Random(11L);
+        for (int trial = 0; trial < 10; trial++) {
+            double[][] pts = makePoints(500 + rand.nextInt(1000), rand);
+            double eps = 5 + rand.nextDouble() * 20;
+            int minPts = 1 + rand.nextInt(8);
+            int[] labels = new DBSCAN(eps, minPts).run(pts[0], pts[1]);
+            checkAgainstBruteForce(pts[0], pts[1], eps, minPts, labels);
+            int[] parallelLabels = new DBSCAN(eps, minPts).setParallel(true).run(pts[0], pts[1]);
+            Assert.assertArrayEquals(labels, parallelLabels);
+        }
+    }
+
+    @Test
+    public void testDenseCells() {
+        //hotspots where many points share a cell, with a minimum that only some cells reach on their own
+        Random rand = new Random(13L);
+        for (int trial = 0; trial < 5; trial++) {
+            final int n = 2000;
+            double[] x = new double[n];
+            double[] y = new double[n];
+            for (int i = 0; i < n; i++) {
+                double spread = i % 3 == 0 ? 40 : 2;
+                x[i] = (i % 4) * 25 + rand.nextGaussian() * spread;
+                y[i] = rand.nextGaussian() * spread;
+            }
+            double eps = 2 + rand.nextDouble() * 4;
+            int minPts = 10 + rand.nextInt(60);
+            int[] labels = new DBSCAN(eps, minPts).run(x, y);
+            checkAgainstBruteForce(x, y, eps, minPts, labels);
+            Assert.assertArrayEquals(labels, new DBSCAN(eps, minPts).setParallel(true).run(x, y));
+        }
+    }
+
+    @Test
+    public void testStopEpisodes() {
+        //two trajectories that both stop at home and at work, with moves in between
+        Map<String, STStopTrajectory> trajs = new HashMap<>();
+        Random rand = new Random(12L);
+        for (String id : new String[]{"a", "b"}) {
+            STStopTrajectory traj = new STStopTrajectory(true, new ProjectionEquirectangular());
+            long t = 1488360615000L;
+            double[][] route = new double[][]{{0, 0}, {500, 500}, {1000, 0}, {500, 500}, {0, 0}};
+            for (int leg = 0; leg < route.length; leg++) {
+                boolean isStopped = leg % 2 == 0;
+                for (int i = 0; i < 5; i++) {
+                    traj.addCartesian(route[leg][0] + rand.nextGaussian(), route[leg][1] + rand.nextGaussian(),
+                            t += 60000, isStopped);
+                }
+            }
+            trajs.put(id, traj);
+        }
+        Map<String, List<StopEpisode>> episodes = new DBSCAN(50, 2).clusterStops(trajs);
+        for (List<StopEpisode> trajEpisodes : episodes.values()) {
+            Assert.assertEquals(3, trajEpisodes.size());
+            Assert.assertEquals(0, trajEpisodes.get(0).getStartIndex());
+            Assert.assertEquals(5, trajEpisodes.get(0).getEndIndex());
+            Assert.assertEquals(4 * 60000, trajEpisodes.get(0).getDurationMillis());
+            //home, work, home
+            Assert.assertEquals(trajEpisodes.get(0).getPlace(), trajEpisodes.get(2).getPlace());
+            Assert.assertNotEquals(trajEpisodes.get(0).getPlace(), trajEpisodes.get(1).getPlace());
+            Assert.assertNotEquals(DBSCAN.NOISE, trajEpisodes.get(1).getPlace());
+        }
+        Assert.assertEquals(episodes.get("a").get(1).getPlace(), episodes.get("b").get(1).getPlace());
+    }
+
+}
@@ -0,0 +1,151 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.data.DensityRasterReader;
+import onethreeseven.datastructures.data.DensityRasterWriter;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test rasterizing entries and segments into time bucketed grids.
+ * @see DensityRasterizer
+ * @see DensityRaster
+ * @author Luke Bermingham
+ */
+public class DensityRasterTest {
+
+    private static final long start = 1488360615000L;
+
+    private static Map<String, STTrajectory> makeTrajs(int nTrajs, Random rand){
+        Map<String, STTrajectory> trajs = new HashMap<>();
+        for (int t = 0; t < nTrajs; t++) {
+            STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+            double x = rand.nextDouble() * 100;
+            double y = rand.nextDouble() * 100;
+            long millis = start;
+            for (int i = 0; i < 50; i++) {
+                x += rand.nextGaussian() * 5;
+                y += rand.nextGaussian() * 5;
+                millis += 1000 + rand.nextInt(5000);
+                traj.addCartesian(x, y, millis);
+            }
+            trajs.put(String.valueOf(t), traj);
+        }
+        return trajs;
+    }
+
+    private static STTrajectory segment(double ax, double ay, long aMillis, double bx, double by, long bMillis){
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        traj.addCartesian(ax, ay, aMillis);
+        traj.addCartesian(bx, by, bMillis);
+        return traj;
+    }
+
+    @Test
+    public void testPoints() {
+        Map<String, STTrajectory> trajs = makeTrajs(20, new Random(21L));
+        long bucketMillis = 30000;
+        DensityRasterizer rasterizer = new DensityRasterizer(0, 0, 10, 10, 10)
+                .setTimeBuckets(start, bucketMillis, 5);
+        DensityRaster raster = rasterizer.run(trajs);
+
+        int[] expected = new int[raster.getCounts().length];
+        for (STTrajectory traj : trajs.values()) {
+            for (int i = 0; i < traj.size(); i++) {
+                int bucket = raster.getBucket(traj.getEpochMillis(i));
+                int row = raster.getRow(traj.getY(i));
+                int col = raster.getCol(traj.getX(i));
+                if(bucket != -1 && row != -1 && col != -1){
+                    expected[raster.index(bucket, row, col)]++;
+                }
+            }
+        }
+        Assert.assertArrayEquals(expected, raster.getCounts());
+        Assert.assertFalse(raster.hasDwellSeconds());
+        Assert.assertArrayEquals(expected, rasterizer.setParallel(true).run(trajs).getCounts());
+    }
+
+    @Test
+    public void testHorizontalSegment() {
+        DensityRaster raster = new DensityRasterizer(0, 0, 1, 10, 2)
+                .setMode(DensityRasterizer.Mode.SEGMENTS)
+                .run(segment(0.5, 0.5, start, 5.5, 0.5, start + 10000));
+        for (int col = 0; col < 10; col++) {
+            Assert.assertEquals(col <= 5 ? 1 : 0, raster.getCount(0, 0, col));
+            Assert.assertEquals(0, raster.getCount(0, 1, col));
+        }
+        Assert.assertEquals(1, raster.getDwellSeconds(0, 0, 0), 1e-5);
+        Assert.assertEquals(2, raster.getDwellSeconds(0, 0, 3), 1e-5);
+        Assert.assertEquals(1, raster.getDwellSeconds(0, 0, 5), 1e-5);
+    }
+
+    @Test
+    public void testSegmentsCrossEveryCellOnce() {
+        Random rand = new Random(22L);
+        for (int trial = 0; trial < 500; trial++) {
+            double ax = rand.nextDouble() * 20;
+            double ay = rand.nextDouble() * 20;
+            double bx = rand.nextDouble() * 20;
+            double by = rand.nextDouble() * 20;
+            long duration = 1000 + rand.nextInt(100000);
+            DensityRaster raster = new DensityRasterizer(0, 0, 1, 20, 20)
+                    .setMode(DensityRasterizer.Mode.SEGMENTS)
+                    .run(segment(ax, ay, start, bx, by, start + duration));
+            //a segment in general position crosses one cell per column and row boundary
+            int nCells = Math.abs(raster.getCol(bx) - raster.getCol(ax)) + Math.abs(raster.getRow(by) - raster.getRow(ay)) + 1;
+            Assert.assertEquals(nCells, raster.getTotalCount());
+            double totalDwell = 0;
+            for (float dwell : raster.getDwellSeconds()) {
+                totalDwell += dwell;
+            }
+            Assert.assertEquals(duration / 1000.0, totalDwell, 1e-3);
+            Assert.assertEquals(1, raster.getCount(0, raster.getRow(ay), raster.getCol(ax)));
+            Assert.assertEquals(1, raster.getCount(0, raster.getRow(by), raster.getCol(bx)));
+        }
+    }
+
+    @Test
+    public void testClippedSegmentSplitIntoBuckets() {
+        //crosses the grid from x=0 to x=10 between 5s and 15s, buckets are 4s long from the start
+        DensityRaster raster = new DensityRasterizer(0, 0, 10, 1, 1)
+                .setMode(DensityRasterizer.Mode.SEGMENTS)
+                .setTimeBuckets(start, 4000, 10)
+                .run(segment(-5, 5, start, 15, 5, start + 20000));
+        float[] expected = new float[]{0, 3, 4, 3, 0};
+        for (int bucket = 0; bucket < expected.length; bucket++) {
+            Assert.assertEquals(expected[bucket], raster.getDwellSeconds(bucket, 0, 0), 1e-5);
+            Assert.assertEquals(expected[bucket] > 0 ? 1 : 0, raster.getCount(bucket, 0, 0));
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        DensityRaster raster = new DensityRasterizer(new double[][]{{0, 100}, {0, 100}}, 7)
+                .setMode(DensityRasterizer.Mode.SEGMENTS)
+                .setTimeBuckets(start, 60000, 3)
+                .setParallel(true)
+                .run(makeTrajs(10, new Random(23L)));
+        Assert.assertEquals(15, raster.getNumberOfCols());
+        File file = File.createTempFile("raster", ".bin");
+        file.deleteOnExit();
+        new DensityRasterWriter().write(file, raster);
+        Assert.assertEquals(4 + 2 + 1 + 8 * 3 + 4 * 2 + 8 * 2 + 4 + 8L * raster.getCounts().length, file.length());
+        DensityRaster read = new DensityRasterReader().read(file);
+        Assert.assertArrayEquals(raster.getCounts(), read.getCounts());
+        Assert.assertTrue(Arrays.equals(raster.getDwellSeconds(), read.getDwellSeconds()));
+        Assert.assertEquals(raster.getCellSize(), read.getCellSize(), 0);
+        Assert.assertEquals(raster.getStartMillis(), read.getStartMillis());
+        Assert.assertEquals(raster.getBucketMillis(), read.getBucketMillis());
+        Assert.assertEquals(raster.getNumberOfRows(), read.getNumberOfRows());
+        file.delete();
+    }
+
+}
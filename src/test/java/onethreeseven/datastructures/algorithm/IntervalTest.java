@@ -1,12 +1,15 @@
 package onethreeseven.datastructures.algorithm;
 
+import onethreeseven.datastructures.model.RegularIntervalSTTrajectory;
 import onethreeseven.datastructures.model.STPt;
 import onethreeseven.datastructures.model.STTrajectory;
 import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
 import org.junit.Assert;
 import org.junit.Test;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
@@ -93,5 +96,113 @@ public class IntervalTest {
         generateNormaliseAndTest(definedIntervalAlgo);
     }
 
+    @Test
+    public void testResampleFillsGaps() throws Exception {
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        traj.addCartesian(0, 0, 1000);
+        //a gap of several intervals
+        traj.addCartesian(100, 50, 5500);
+        traj.addCartesian(100, 50, 5500);
+        traj.addCartesian(40, 80, 6200);
+        traj.addCartesian(0, 0, 9100);
+
+        final long interval = 1000;
+        int n = AbstractTemporalIntervalTransform.resampledSize(traj, interval);
+        Assert.assertEquals(9, n);
+        long[] millis = new long[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        Assert.assertEquals(n, AbstractTemporalIntervalTransform.resample(traj, interval, 0, millis, x, y));
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(1000 + i * interval, millis[i]);
+            double[] expected = traj.positionAt(millis[i]);
+            Assert.assertEquals(expected[0], x[i], 0);
+            Assert.assertEquals(expected[1], y[i], 0);
+        }
+        //fractional steps are not truncated
+        Assert.assertEquals(100 * (1000 / 4500.0), x[1], 1e-9);
+
+        STTrajectory uniform = new MinTemporalInterval().createUniformIntervalTrajectory(traj, interval);
+        Assert.assertEquals(n, uniform.size());
+        Assert.assertArrayEquals(new double[]{x[n - 1], y[n - 1]}, uniform.getCoords(n - 1, true), 0);
+
+        //in chunks that start part way through
+        long[] chunkMillis = new long[2];
+        double[] chunkX = new double[2];
+        double[] chunkY = new double[2];
+        for (int step = 0; step < n; step += 2) {
+            int nWritten = AbstractTemporalIntervalTransform.resample(traj, interval, step, chunkMillis, chunkX, chunkY);
+            Assert.assertEquals(Math.min(2, n - step), nWritten);
+            for (int i = 0; i < nWritten; i++) {
+                Assert.assertEquals(millis[step + i], chunkMillis[i]);
+                Assert.assertEquals(x[step + i], chunkX[i], 0);
+                Assert.assertEquals(y[step + i], chunkY[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testNonPositiveInterval() throws Exception {
+        Map<String, STTrajectory> rawTrajs = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            STTrajectory single = new STTrajectory(true, new ProjectionEquirectangular());
+            single.addCartesian(i, i * 2, 1000 + i);
+            rawTrajs.put(String.valueOf(i), single);
+        }
+        //every trajectory has a single entry, so there is no interval between entries
+        AbstractTemporalIntervalTransform[] algos = new AbstractTemporalIntervalTransform[]{
+                new MaxTemporalInterval(), TimeUnitTemporalInterval.wrap(new DefinedTemporalInterval(500), TimeUnit.SECONDS)
+        };
+        for (AbstractTemporalIntervalTransform algo : algos) {
+            Assert.assertTrue(algo.calculateTemporalInterval(rawTrajs) <= 0);
+            Map<String, STTrajectory> uniform = algo.run(rawTrajs);
+            Map<String, RegularIntervalSTTrajectory> regular = algo.runRegular(rawTrajs);
+            for (Map.Entry<String, STTrajectory> entry : rawTrajs.entrySet()) {
+                STTrajectory expected = entry.getValue();
+                Assert.assertEquals(1, uniform.get(entry.getKey()).size());
+                Assert.assertEquals(expected.getEpochMillis(0), uniform.get(entry.getKey()).getEpochMillis(0));
+                Assert.assertArrayEquals(expected.getCoords(0, true), uniform.get(entry.getKey()).getCoords(0, true), 0);
+                Assert.assertEquals(1, regular.get(entry.getKey()).size());
+                Assert.assertEquals(expected.getEpochMillis(0), regular.get(entry.getKey()).getEpochMillis(0));
+            }
+        }
+
+        //a longer trajectory also keeps only its first entry
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        traj.addCartesian(0, 0, 1000);
+        traj.addCartesian(10, 10, 2000);
+        Assert.assertEquals(1, AbstractTemporalIntervalTransform.resampledSize(traj, 0));
+        Assert.assertEquals(1, new MinTemporalInterval().createUniformIntervalTrajectory(traj, 0).size());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        Map<String, STTrajectory> rawTrajs = DataGeneratorUtil.generateSpatiotemporalTrajectories(
+                bounds, startTime, 100, inCartesianMode, ()-> 1000 + rand.nextInt(3000));
+        AbstractTemporalIntervalTransform[] algos = new AbstractTemporalIntervalTransform[]{
+                new MinTemporalInterval(), new MaxTemporalInterval(), new AverageTemporalInterval(),
+                TimeUnitTemporalInterval.wrap(new AverageTemporalInterval(), TimeUnit.SECONDS)
+        };
+        for (AbstractTemporalIntervalTransform algo : algos) {
+            long interval = algo.calculateTemporalInterval(rawTrajs);
+            Map<String, STTrajectory> sequential = algo.run(rawTrajs);
+            algo.setParallel(true);
+            Assert.assertEquals(interval, algo.calculateTemporalInterval(rawTrajs));
+            Map<String, STTrajectory> parallel = algo.run(rawTrajs);
+            checkSameInterval(parallel);
+
+            Assert.assertEquals(sequential.keySet(), parallel.keySet());
+            for (Map.Entry<String, STTrajectory> entry : sequential.entrySet()) {
+                STTrajectory expected = entry.getValue();
+                STTrajectory actual = parallel.get(entry.getKey());
+                Assert.assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertEquals(expected.getEpochMillis(i), actual.getEpochMillis(i));
+                    Assert.assertArrayEquals(expected.getCoords(i, true), actual.getCoords(i, true), 0);
+                }
+            }
+        }
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.index.ZoneIndex;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test counting the trips between zones.
+ * @see ODMatrixBuilder
+ * @see ODMatrix
+ * @author Luke Bermingham
+ */
+public class ODMatrixTest {
+
+    private static final long hour = 60 * 60 * 1000;
+    //midnight UTC
+    private static final long day = 1488326400000L;
+
+    private static ZoneIndex makeZones(){
+        Map<String, double[][]> zones = new LinkedHashMap<>();
+        zones.put("home", new double[][]{{-10, 10}, {-10, 10}});
+        zones.put("work", new double[][]{{990, 1010}, {-10, 10}});
+        zones.put("shop", new double[][]{{490, 510}, {490, 510}});
+        return new ZoneIndex(zones);
+    }
+
+    /**
+     * Add a stop episode at (x, y) from the start time to the end time, then a move away.
+     */
+    private static void stopAt(STStopTrajectory traj, double x, double y, long from, long to, Random rand){
+        for (long t = from; t <= to; t += (to - from) / 4) {
+            traj.addCartesian(x + rand.nextGaussian(), y + rand.nextGaussian(), t, true);
+        }
+        traj.addCartesian(x + 100, y + 100, to + 60000, false);
+        traj.addCartesian(x + 200, y + 200, to + 120000, false);
+    }
+
+    @Test
+    public void testCommute() {
+        Random rand = new Random(32L);
+        Map<String, STStopTrajectory> trajs = new HashMap<>();
+        for (int t = 0; t < 50; t++) {
+            STStopTrajectory traj = new STStopTrajectory(true, new ProjectionEquirectangular());
+            //home overnight, work during the day, then the shop, and home again
+            stopAt(traj, 0, 0, day, day + 8 * hour, rand);
+            stopAt(traj, 1000, 0, day + 9 * hour, day + 17 * hour, rand);
+            stopAt(traj, 500, 500, day + 17 * hour + 1800000, day + 18 * hour, rand);
+            //somewhere outside every zone
+            stopAt(traj, 5000, 5000, day + 19 * hour, day + 20 * hour, rand);
+            stopAt(traj, 0, 0, day + 21 * hour, day + 23 * hour, rand);
+            trajs.put(String.valueOf(t), traj);
+        }
+        ZoneIndex zones = makeZones();
+        int home = zones.indexOf("home");
+        int work = zones.indexOf("work");
+        int shop = zones.indexOf("shop");
+
+        ODMatrixBuilder builder = new ODMatrixBuilder(zones).setTimeOfDayBuckets(24);
+        for (ODMatrix matrix : new ODMatrix[]{builder.run(trajs), builder.setParallel(true).run(trajs)}) {
+            Assert.assertEquals(50, matrix.get(8, home, work));
+            Assert.assertEquals(50, matrix.get(17, work, shop));
+            Assert.assertEquals(50, matrix.get(work, shop));
+            Assert.assertEquals(0, matrix.get(shop, home));
+            Assert.assertEquals(100, matrix.getTotalTrips());
+            Assert.assertEquals(2, matrix.getNumberOfNonZero());
+            long[] total = new long[1];
+            matrix.forEach((bucket, origin, destination, trips) -> {
+                Assert.assertTrue((bucket == 8 && origin == home && destination == work) ||
+                        (bucket == 17 && origin == work && destination == shop));
+                total[0] += trips;
+            });
+            Assert.assertEquals(100, total[0]);
+        }
+    }
+
+    @Test
+    public void testIntraZone() {
+        Random rand = new Random(33L);
+        STStopTrajectory traj = new STStopTrajectory(true, new ProjectionEquirectangular());
+        stopAt(traj, 0, 0, day, day + hour, rand);
+        stopAt(traj, 5, 5, day + 2 * hour, day + 3 * hour, rand);
+        ZoneIndex zones = makeZones();
+        ODMatrixBuilder builder = new ODMatrixBuilder(zones);
+        ODMatrix matrix = builder.newMatrix();
+        builder.add(traj, matrix);
+        Assert.assertEquals(1, matrix.get(0, zones.indexOf("home"), zones.indexOf("home")));
+        Assert.assertEquals(0, builder.setIncludeIntraZone(false).run(Collections.singletonMap("a", traj)).getTotalTrips());
+    }
+
+}
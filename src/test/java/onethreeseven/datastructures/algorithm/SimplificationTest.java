@@ -0,0 +1,202 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test that the simplification algorithms keep the error of dropped entries within their tolerance.
+ * @see DouglasPeucker
+ * @see VisvalingamWhyatt
+ * @see SquishE
+ * @author Luke Bermingham
+ */
+public class SimplificationTest {
+
+    /**
+     * A random walk that mostly goes straight, in cartesian coordinates.
+     */
+    private static STTrajectory makeTraj(int n, Random rand){
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        double x = 0;
+        double y = 0;
+        double heading = 0;
+        long t = 1488360615000L;
+        for (int i = 0; i < n; i++) {
+            heading += rand.nextGaussian() * 0.2;
+            x += Math.cos(heading) * 10 + rand.nextGaussian();
+            y += Math.sin(heading) * 10 + rand.nextGaussian();
+            t += 1000 + rand.nextInt(1000);
+            traj.addCartesian(x, y, t);
+        }
+        return traj;
+    }
+
+    private static void assertKeepsEnds(int[] kept, int n){
+        Assert.assertEquals(0, kept[0]);
+        Assert.assertEquals(n - 1, kept[kept.length - 1]);
+        for (int i = 1; i < kept.length; i++) {
+            Assert.assertTrue(kept[i] > kept[i - 1]);
+        }
+    }
+
+    @Test
+    public void testDouglasPeucker() {
+        STTrajectory traj = makeTraj(5000, new Random(137));
+        final double tolerance = 15;
+        int[] kept = new DouglasPeucker(tolerance).simplify(traj);
+        assertKeepsEnds(kept, traj.size());
+        Assert.assertTrue(kept.length < traj.size() / 2);
+        for (int k = 1; k < kept.length; k++) {
+            int a = kept[k - 1];
+            int b = kept[k];
+            for (int i = a + 1; i < b; i++) {
+                double distSq = AbstractTrajectorySimplifier.segmentDistanceSq(traj.getX(i), traj.getY(i),
+                        traj.getX(a), traj.getY(a), traj.getX(b), traj.getY(b));
+                Assert.assertTrue(Math.sqrt(distSq) <= tolerance + 1e-9);
+            }
+        }
+        //a tolerance of zero keeps everything that is not exactly on a line
+        Assert.assertEquals(traj.size(), new DouglasPeucker(0).simplify(traj).length);
+    }
+
+    @Test
+    public void testSignificance() {
+        STTrajectory traj = makeTraj(2000, new Random(731));
+        double[] significance = DouglasPeucker.significance(traj);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, significance[0], 0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, significance[traj.size() - 1], 0);
+        //the entries more significant than a tolerance are what Douglas-Peucker keeps at that tolerance
+        for (double tolerance = 0.5; tolerance < 5000; tolerance *= 2) {
+            int[] kept = new DouglasPeucker(tolerance).simplify(traj);
+            int k = 0;
+            for (int i = 0; i < traj.size(); i++) {
+                if(significance[i] > tolerance){
+                    Assert.assertEquals("Tolerance " + tolerance, kept[k++], i);
+                }
+            }
+            Assert.assertEquals(kept.length, k);
+        }
+    }
+
+    /**
+     * Visvalingam-Whyatt as originally described, recomputing every area after each drop.
+     */
+    private static int referenceVisvalingamCount(SpatialTrajectory traj, double minArea){
+        List<double[]> pts = new ArrayList<>();
+        for (int i = 0; i < traj.size(); i++) {
+            pts.add(traj.getCoords(i, true));
+        }
+        double lastArea = 0;
+        while(pts.size() > 2){
+            double minFound = Double.POSITIVE_INFINITY;
+            int minIdx = -1;
+            for (int i = 1; i < pts.size() - 1; i++) {
+                double[] a = pts.get(i - 1);
+                double[] b = pts.get(i);
+                double[] c = pts.get(i + 1);
+                double area = Math.abs((b[0] - a[0]) * (c[1] - a[1]) - (c[0] - a[0]) * (b[1] - a[1])) / 2;
+                if(area < minFound){
+                    minFound = area;
+                    minIdx = i;
+                }
+            }
+            if(Math.max(lastArea, minFound) >= minArea){
+                break;
+            }
+            lastArea = Math.max(lastArea, minFound);
+            pts.remove(minIdx);
+        }
+        return pts.size();
+    }
+
+    @Test
+    public void testVisvalingamWhyatt() {
+        Random rand = new Random(731);
+        SpatialTrajectory traj = new SpatialTrajectory(true, new ProjectionEquirectangular());
+        for (int i = 0; i < 500; i++) {
+            traj.addCartesian(i * 10 + rand.nextGaussian() * 3, Math.sin(i / 20.0) * 100 + rand.nextGaussian() * 3);
+        }
+        final double minArea = 200;
+        VisvalingamWhyatt simplifier = new VisvalingamWhyatt(minArea);
+        int[] kept = simplifier.simplify(traj);
+        assertKeepsEnds(kept, traj.size());
+        Assert.assertEquals(referenceVisvalingamCount(traj, minArea), kept.length);
+
+        SpatialTrajectory simplified = simplifier.run(traj);
+        Assert.assertEquals(kept.length, simplified.size());
+        for (int i = 0; i < kept.length; i++) {
+            Assert.assertArrayEquals(traj.getCoords(kept[i]), simplified.getCoords(i), 0);
+        }
+    }
+
+    @Test
+    public void testSquishE() {
+        STTrajectory traj = makeTraj(5000, new Random(137));
+        traj.toGeographic();
+        final double maxError = 20;
+        SquishE simplifier = new SquishE(maxError);
+        int[] kept = simplifier.simplify(traj);
+        assertKeepsEnds(kept, traj.size());
+        Assert.assertTrue(kept.length < traj.size() / 2);
+        for (int k = 1; k < kept.length; k++) {
+            int a = kept[k - 1];
+            int b = kept[k];
+            double[] pa = traj.getCoords(a, true);
+            double[] pb = traj.getCoords(b, true);
+            for (int i = a + 1; i < b; i++) {
+                double[] p = traj.getCoords(i, true);
+                double sed = AbstractTrajectorySimplifier.sed(p[0], p[1], traj.getEpochMillis(i),
+                        pa[0], pa[1], traj.getEpochMillis(a), pb[0], pb[1], traj.getEpochMillis(b));
+                Assert.assertTrue("SED of " + sed, sed <= maxError + 1e-6);
+            }
+        }
+
+        //streaming gives the same answer
+        SquishE.Stream stream = simplifier.newStream();
+        for (int i = 0; i < traj.size(); i++) {
+            double[] p = traj.getCoords(i, true);
+            stream.add(p[0], p[1], traj.getEpochMillis(i));
+            Assert.assertTrue(stream.getKeptCount() <= i + 1);
+        }
+        Assert.assertArrayEquals(kept, stream.finish());
+
+        STTrajectory simplified = simplifier.run(traj);
+        Assert.assertFalse(simplified.isInCartesianMode());
+        Assert.assertEquals(kept.length, simplified.size());
+        for (int i = 0; i < kept.length; i++) {
+            Assert.assertEquals(traj.getEpochMillis(kept[i]), simplified.getEpochMillis(i));
+        }
+    }
+
+    @Test
+    public void testParallel() {
+        Map<String, STTrajectory> trajs = DataGeneratorUtil.generateSpatiotemporalTrajectories(20);
+        AbstractTrajectorySimplifier[] simplifiers = new AbstractTrajectorySimplifier[]{
+                new DouglasPeucker(100), new VisvalingamWhyatt(10000), new SquishE(100)
+        };
+        for (AbstractTrajectorySimplifier simplifier : simplifiers) {
+            Map<String, STTrajectory> sequential = simplifier.setParallel(false).run(trajs);
+            Map<String, STTrajectory> parallel = simplifier.setParallel(true).run(trajs);
+            Assert.assertEquals(trajs.keySet(), parallel.keySet());
+            for (Map.Entry<String, STTrajectory> entry : sequential.entrySet()) {
+                STTrajectory expected = entry.getValue();
+                STTrajectory actual = parallel.get(entry.getKey());
+                Assert.assertEquals(expected.size(), actual.size());
+                Assert.assertTrue(actual.size() <= trajs.get(entry.getKey()).size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertEquals(expected.getEpochMillis(i), actual.getEpochMillis(i));
+                }
+            }
+        }
+    }
+
+}
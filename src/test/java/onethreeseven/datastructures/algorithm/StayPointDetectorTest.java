@@ -0,0 +1,144 @@
+package onethreeseven.datastructures.algorithm;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test stay point detection on trajectories with known stops.
+ * @see StayPointDetector
+ * @author Luke Bermingham
+ */
+public class StayPointDetectorTest {
+
+    private static final long timeStepMillis = 10000;
+    private static final long startMillis = 1488360615000L;
+
+    /**
+     * Make a trajectory that moves 100m every time step, except when it is stopped,
+     * where it jitters within a few metres.
+     * @param stopped Whether each entry is stopped.
+     */
+    private static STTrajectory makeTraj(boolean[] stopped, Random rand){
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < stopped.length; i++) {
+            if(stopped[i]){
+                traj.addCartesian(x + rand.nextDouble() * 5, y + rand.nextDouble() * 5, startMillis + i * timeStepMillis);
+            }else{
+                x += 100;
+                traj.addCartesian(x, y, startMillis + i * timeStepMillis);
+            }
+        }
+        return traj;
+    }
+
+    @Test
+    public void testFindsStops() {
+        Random rand = new Random(137);
+        boolean[] expected = new boolean[200];
+        //a long stop, a stop just long enough and a pause that is too short to be a stop
+        for (int i = 20; i < 80; i++) {
+            expected[i] = true;
+        }
+        for (int i = 100; i < 131; i++) {
+            expected[i] = true;
+        }
+        boolean[] pause = new boolean[200];
+        System.arraycopy(expected, 0, pause, 0, 200);
+        for (int i = 150; i < 170; i++) {
+            pause[i] = true;
+        }
+        STTrajectory traj = makeTraj(pause, rand);
+
+        //stopped for 5 minutes within 20 metres
+        STStopTrajectory stops = new StayPointDetector(20, 300000).run(traj);
+        Assert.assertEquals(traj.size(), stops.size());
+        for (int i = 0; i < traj.size(); i++) {
+            Assert.assertArrayEquals(traj.getCoords(i), stops.getCoords(i), 0);
+            Assert.assertEquals(traj.getEpochMillis(i), stops.getEpochMillis(i));
+            //the entry it arrived at is the anchor of the stop, so it is stopped too
+            boolean arrival = i + 1 < traj.size() && expected[i + 1];
+            Assert.assertEquals("Entry " + i, expected[i] || arrival, stops.isStopped(i));
+        }
+    }
+
+    /**
+     * The stay point algorithm as originally given, which looks ahead over the whole trajectory.
+     */
+    private static boolean[] referenceStops(STTrajectory traj, double distance, long duration){
+        boolean[] stops = new boolean[traj.size()];
+        int i = 0;
+        while(i < traj.size()){
+            double[] anchor = traj.getCoords(i, true);
+            int j = i + 1;
+            while(j < traj.size()){
+                double[] xy = traj.getCoords(j, true);
+                if(Math.hypot(xy[0] - anchor[0], xy[1] - anchor[1]) > distance){
+                    break;
+                }
+                j++;
+            }
+            if(traj.getEpochMillis(j - 1) - traj.getEpochMillis(i) >= duration && j - 1 > i){
+                for (int k = i; k < j; k++) {
+                    stops[k] = true;
+                }
+                i = j;
+            }else{
+                i++;
+            }
+        }
+        return stops;
+    }
+
+    @Test
+    public void testStreamAndParallel() {
+        Random rand = new Random(731);
+        Map<String, STTrajectory> trajs = new HashMap<>();
+        for (int t = 0; t < 20; t++) {
+            boolean[] stopped = new boolean[500];
+            for (int i = 0; i < stopped.length; i++) {
+                stopped[i] = rand.nextDouble() < (i > 0 && stopped[i - 1] ? 0.95 : 0.05);
+            }
+            STTrajectory traj = makeTraj(stopped, rand);
+            traj.toGeographic();
+            trajs.put(String.valueOf(t), traj);
+        }
+
+        StayPointDetector detector = new StayPointDetector(20, 120000);
+        Map<String, STStopTrajectory> sequential = detector.run(trajs);
+        Map<String, STStopTrajectory> parallel = detector.setParallel(true).run(trajs);
+        Assert.assertEquals(sequential.keySet(), parallel.keySet());
+
+        for (Map.Entry<String, STTrajectory> entry : trajs.entrySet()) {
+            STTrajectory traj = entry.getValue();
+            //entries are output as soon as they are decided
+            STStopTrajectory streamed = new STStopTrajectory(false, traj.getProjection());
+            StayPointDetector.Stream stream = detector.newStream(streamed);
+            for (int i = 0; i < traj.size(); i++) {
+                stream.add(traj.getX(i), traj.getY(i), traj.getEpochMillis(i));
+                Assert.assertEquals(i + 1, streamed.size() + stream.getPendingCount());
+            }
+            stream.finish();
+
+            STStopTrajectory expected = sequential.get(entry.getKey());
+            STStopTrajectory actual = parallel.get(entry.getKey());
+            Assert.assertFalse(expected.isInCartesianMode());
+            boolean[] reference = referenceStops(traj, 20, 120000);
+            for (int i = 0; i < traj.size(); i++) {
+                Assert.assertEquals(reference[i], expected.isStopped(i));
+                Assert.assertEquals(expected.isStopped(i), actual.isStopped(i));
+                Assert.assertEquals(expected.isStopped(i), streamed.isStopped(i));
+                Assert.assertArrayEquals(traj.getCoords(i), streamed.getCoords(i), 0);
+            }
+        }
+    }
+
+}
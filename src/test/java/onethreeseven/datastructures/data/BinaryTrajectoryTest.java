@@ -0,0 +1,173 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.algorithm.DefinedTemporalInterval;
+import onethreeseven.datastructures.model.RegularIntervalSTTrajectory;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.datastructures.model.SpatioCompositeTrajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test writing trajectories to the binary format and reading them back.
+ * @see BinaryTrajectoryWriter
+ * @see BinaryTrajectoryReader
+ * @author Luke Bermingham
+ */
+public class BinaryTrajectoryTest {
+
+    private static File makeTempFile() throws IOException {
+        File file = File.createTempFile("trajectories", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void assertSameCoords(SpatioCompositeTrajectory<?> expected, SpatioCompositeTrajectory<?> actual, double delta){
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.getCoords(i, false), actual.getCoords(i, false), delta);
+        }
+    }
+
+    @Test
+    public void testWriteReadSpatiotemporal() throws IOException {
+        Map<String, STTrajectory> expected = DataGeneratorUtil.generateSpatiotemporalTrajectories(20);
+        File file = makeTempFile();
+        new BinaryTrajectoryWriter().write(file, expected);
+
+        Map<String, STTrajectory> actual = new BinaryTrajectoryReader(new ProjectionEquirectangular(), false)
+                .readSpatioTemporal(file);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) {
+            STTrajectory expectedTraj = expected.get(id);
+            STTrajectory actualTraj = actual.get(id);
+            assertSameCoords(expectedTraj, actualTraj, 0);
+            for (int i = 0; i < expectedTraj.size(); i++) {
+                Assert.assertEquals(expectedTraj.getEpochMillis(i), actualTraj.getEpochMillis(i));
+            }
+        }
+
+        //can always read less than what was written
+        Map<String, SpatialTrajectory> spatial = new BinaryTrajectoryReader().readSpatial(file);
+        for (String id : expected.keySet()) {
+            assertSameCoords(expected.get(id), spatial.get(id), 1e-9);
+            Assert.assertTrue(spatial.get(id).isInCartesianMode());
+        }
+
+        //but not more
+        try{
+            new BinaryTrajectoryReader().readStops(file);
+            Assert.fail("Stops were never written.");
+        }catch (IOException ignored){}
+    }
+
+    @Test
+    public void testWriteReadRegularInterval() throws IOException {
+        double[][] bounds = new double[][]{new double[]{-40, -35}, new double[]{140, 150}};
+        Map<String, RegularIntervalSTTrajectory> expected = new DefinedTemporalInterval(500).runRegular(
+                DataGeneratorUtil.generateSpatiotemporalTrajectories(bounds, 1488360615250L, 10, false, () -> 1000L));
+        File file = makeTempFile();
+        new BinaryTrajectoryWriter().write(file, expected);
+
+        Map<String, STTrajectory> actual = new BinaryTrajectoryReader().readSpatioTemporal(file);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) {
+            RegularIntervalSTTrajectory expectedTraj = expected.get(id);
+            STTrajectory actualTraj = actual.get(id);
+            assertSameCoords(expectedTraj, actualTraj, 1e-9);
+            for (int i = 0; i < expectedTraj.size(); i++) {
+                Assert.assertEquals(expectedTraj.getEpochMillis(i), actualTraj.getEpochMillis(i));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteReadStops() throws IOException {
+        Map<String, STStopTrajectory> expected = DataGeneratorUtil.generateTrajsWithStops(
+                5, 1000, -37.8136, 144.9631, 10, 10, 1000, 60000, 3);
+        File file = makeTempFile();
+        new BinaryTrajectoryWriter().write(file, expected);
+
+        Map<String, ? extends SpatioCompositeTrajectory<?>> actual = new BinaryTrajectoryReader().read(file);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) {
+            STStopTrajectory expectedTraj = expected.get(id);
+            Assert.assertTrue(actual.get(id) instanceof STStopTrajectory);
+            STStopTrajectory actualTraj = (STStopTrajectory) actual.get(id);
+            assertSameCoords(expectedTraj, actualTraj, 1e-9);
+            for (int i = 0; i < expectedTraj.size(); i++) {
+                Assert.assertEquals(expectedTraj.getEpochMillis(i), actualTraj.getEpochMillis(i));
+                Assert.assertEquals(expectedTraj.isStopped(i), actualTraj.isStopped(i));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteReadCompressed() throws IOException {
+        Map<String, STStopTrajectory> expected = DataGeneratorUtil.generateTrajsWithStops(
+                5, 1000, -37.8136, 144.9631, 10, 10, 1000, 60000, 3);
+        File rawFile = makeTempFile();
+        File compressedFile = makeTempFile();
+        new BinaryTrajectoryWriter().write(rawFile, expected);
+        new BinaryTrajectoryWriter().setCompressed(true).write(compressedFile, expected);
+        Assert.assertTrue(compressedFile.length() < rawFile.length());
+
+        Map<String, STStopTrajectory> raw = new BinaryTrajectoryReader().readStops(rawFile);
+        Map<String, STStopTrajectory> actual = new BinaryTrajectoryReader().readStops(compressedFile);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) {
+            STStopTrajectory rawTraj = raw.get(id);
+            STStopTrajectory actualTraj = actual.get(id);
+            //compression is lossless
+            assertSameCoords(rawTraj, actualTraj, 0);
+            for (int i = 0; i < rawTraj.size(); i++) {
+                Assert.assertEquals(rawTraj.getEpochMillis(i), actualTraj.getEpochMillis(i));
+                Assert.assertEquals(rawTraj.isStopped(i), actualTraj.isStopped(i));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteReadCartesian() throws IOException {
+        //these would project to latitudes beyond 90 degrees, so they must not go through the projection
+        Map<String, STTrajectory> expected = new HashMap<>();
+        for (int t = 0; t < 5; t++) {
+            STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+            for (int i = 0; i < 100; i++) {
+                traj.addCartesian(1234.5678 * i + 0.1 * t, 2e7 + 98765.4321 * i, 1488360615250L + 1000L * i);
+            }
+            expected.put(String.valueOf(t), traj);
+        }
+
+        for (boolean compressed : new boolean[]{false, true}) {
+            File file = makeTempFile();
+            new BinaryTrajectoryWriter().setCompressed(compressed).write(file, expected);
+            Map<String, STTrajectory> actual = new BinaryTrajectoryReader().readSpatioTemporal(file);
+            Assert.assertEquals(expected.keySet(), actual.keySet());
+            for (String id : expected.keySet()) {
+                STTrajectory expectedTraj = expected.get(id);
+                STTrajectory actualTraj = actual.get(id);
+                Assert.assertEquals(expectedTraj.size(), actualTraj.size());
+                for (int i = 0; i < expectedTraj.size(); i++) {
+                    Assert.assertArrayEquals(expectedTraj.getCoords(i, true), actualTraj.getCoords(i, true), 0);
+                    Assert.assertEquals(expectedTraj.getEpochMillis(i), actualTraj.getEpochMillis(i));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinaryFile() throws IOException {
+        File dataset = MockData.makeTrucksDataset();
+        dataset.deleteOnExit();
+        new BinaryTrajectoryReader().read(dataset);
+    }
+
+}
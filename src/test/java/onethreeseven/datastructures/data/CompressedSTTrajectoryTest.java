@@ -0,0 +1,135 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.model.CompressedSTTrajectory;
+import onethreeseven.datastructures.model.STPt;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.datastructures.util.GorillaCodec;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Tests for {@link CompressedSTTrajectory} and the {@link GorillaCodec} it uses.
+ * @author Luke Bermingham
+ */
+public class CompressedSTTrajectoryTest {
+
+    private static STTrajectory makeRegularTrajectory(int n){
+        STTrajectory traj = new STTrajectory();
+        Random rand = new Random(137);
+        long t = 1500000000000L;
+        double lat = -37.8136;
+        double lon = 144.9631;
+        for (int i = 0; i < n; i++) {
+            //one second sampling with a little jitter
+            t += 1000 + rand.nextInt(5);
+            lat += 0.00001 + rand.nextGaussian() * 0.000001;
+            lon += 0.00001 + rand.nextGaussian() * 0.000001;
+            traj.addGeographic(lat, lon, t);
+        }
+        return traj;
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        Random rand = new Random(137);
+        long[] longs = new long[10000];
+        double[] doubles = new double[longs.length];
+        for (int i = 0; i < longs.length; i++) {
+            //mix of regular, irregular and extreme values
+            longs[i] = i % 100 == 0 ? rand.nextLong() : i * 1000L + rand.nextInt(i % 7 == 0 ? 1000000 : 10);
+            doubles[i] = i % 50 == 0 ? rand.nextDouble() * Double.MAX_VALUE : (i % 3 == 0 ? doubles[Math.max(0, i - 1)] : rand.nextGaussian());
+        }
+        GorillaCodec.BitWriter out = new GorillaCodec.BitWriter();
+        GorillaCodec.LongEncoder longEnc = new GorillaCodec.LongEncoder();
+        GorillaCodec.DoubleEncoder doubleEnc = new GorillaCodec.DoubleEncoder();
+        for (int i = 0; i < longs.length; i++) {
+            longEnc.encode(out, longs[i]);
+            doubleEnc.encode(out, doubles[i]);
+        }
+        GorillaCodec.BitReader in = new GorillaCodec.BitReader(out.toWords());
+        GorillaCodec.LongDecoder longDec = new GorillaCodec.LongDecoder();
+        GorillaCodec.DoubleDecoder doubleDec = new GorillaCodec.DoubleDecoder();
+        for (int i = 0; i < longs.length; i++) {
+            Assert.assertEquals(longs[i], longDec.decode(in));
+            Assert.assertEquals(Double.doubleToRawLongBits(doubles[i]), Double.doubleToRawLongBits(doubleDec.decode(in)));
+        }
+    }
+
+    @Test
+    public void testLossless() {
+        STTrajectory expected = makeRegularTrajectory(1000);
+        CompressedSTTrajectory actual = new CompressedSTTrajectory(expected);
+        Assert.assertEquals(expected.size(), actual.size());
+
+        //iterate
+        Iterator<STPt> iter = actual.iterator();
+        for (int i = 0; i < expected.size(); i++) {
+            STPt pt = iter.next();
+            Assert.assertArrayEquals(expected.getCoords(i), pt.getCoords(), 0);
+            Assert.assertEquals(expected.getTime(i), pt.getTime());
+        }
+        Assert.assertFalse(iter.hasNext());
+
+        //random access
+        for (int i = expected.size() - 1; i >= 0; i -= 37) {
+            Assert.assertArrayEquals(expected.getCoords(i), actual.get(i).getCoords(), 0);
+            Assert.assertEquals(expected.getEpochMillis(i), actual.getEpochMillis(i));
+        }
+
+        //decompress
+        STTrajectory decompressed = actual.toSTTrajectory();
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.getCoords(i), decompressed.getCoords(i), 0);
+            Assert.assertEquals(expected.getEpochMillis(i), decompressed.getEpochMillis(i));
+        }
+    }
+
+    @Test
+    public void testWithPrecision() {
+        STTrajectory expected = makeRegularTrajectory(10000);
+        double precision = 0.01; //cartesian metres
+        CompressedSTTrajectory lossless = new CompressedSTTrajectory(expected);
+        CompressedSTTrajectory actual = new CompressedSTTrajectory(expected, precision);
+        for (int i = 0; i < expected.size(); i++) {
+            STPt pt = actual.get(i);
+            Assert.assertArrayEquals(expected.getCoords(i), pt.getCoords(), precision / 2 + 1e-9);
+            Assert.assertEquals(expected.getTime(i), pt.getTime());
+        }
+        //24 bytes per entry uncompressed
+        long uncompressedBytes = 24L * expected.size();
+        Assert.assertTrue(lossless.getCompressedSizeInBytes() < uncompressedBytes);
+        Assert.assertTrue(actual.getCompressedSizeInBytes() * 4 < uncompressedBytes);
+    }
+
+    @Test
+    public void testEmptyAndReadOnly() {
+        CompressedSTTrajectory empty = new CompressedSTTrajectory(new STTrajectory());
+        Assert.assertEquals(0, empty.size());
+        Assert.assertFalse(empty.iterator().hasNext());
+        try{
+            empty.add(null);
+            Assert.fail("Compressed trajectories are read-only.");
+        }catch (UnsupportedOperationException ignored){}
+    }
+
+    @Test
+    public void testCoordinateIterInGeographicMode() {
+        STTrajectory expected = makeRegularTrajectory(100);
+        expected.toGeographic();
+        CompressedSTTrajectory actual = new CompressedSTTrajectory(expected);
+        Assert.assertFalse(actual.isInCartesianMode());
+
+        Iterator<double[]> expectedIter = expected.coordinateIter();
+        Iterator<double[]> cartIter = actual.coordinateIter();
+        Iterator<double[]> geoIter = actual.geoCoordinateIter();
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expectedIter.next(), cartIter.next(), 1e-6);
+            Assert.assertArrayEquals(expected.getCoords(i, false), geoIter.next(), 1e-9);
+        }
+        Assert.assertFalse(cartIter.hasNext());
+    }
+
+}
@@ -0,0 +1,134 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.algorithm.AverageTemporalInterval;
+import onethreeseven.datastructures.algorithm.DefinedTemporalInterval;
+import onethreeseven.datastructures.model.RegularIntervalSTTrajectory;
+import onethreeseven.datastructures.model.STPt;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Test that a {@link RegularIntervalSTTrajectory} behaves the same as an {@link STTrajectory}
+ * with the same entries.
+ * @author Luke Bermingham
+ */
+public class RegularIntervalSTTrajectoryTest {
+
+    private static void assertSame(STTrajectory expected, RegularIntervalSTTrajectory actual){
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.isInCartesianMode(), actual.isInCartesianMode());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.getEpochMillis(i), actual.getEpochMillis(i));
+            Assert.assertArrayEquals(expected.getCoords(i), actual.getCoords(i), 0);
+            STPt pt = actual.get(i);
+            Assert.assertEquals(expected.getTime(i), pt.getTime());
+        }
+    }
+
+    @Test
+    public void testSameAsTransform() {
+        Map<String, STTrajectory> trajs = DataGeneratorUtil.generateSpatiotemporalTrajectories(10);
+        for (boolean defined : new boolean[]{false, true}) {
+            Map<String, STTrajectory> expected = defined ?
+                    new DefinedTemporalInterval(500).run(trajs) : new AverageTemporalInterval().run(trajs);
+            Map<String, RegularIntervalSTTrajectory> actual = defined ?
+                    new DefinedTemporalInterval(500).runRegular(trajs) : new AverageTemporalInterval().runRegular(trajs);
+            Assert.assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, STTrajectory> entry : expected.entrySet()) {
+                RegularIntervalSTTrajectory regular = actual.get(entry.getKey());
+                assertSame(entry.getValue(), regular);
+                assertSame(regular.toSTTrajectory(), regular);
+            }
+        }
+    }
+
+    @Test
+    public void testLookup() {
+        final long start = 1488360615250L;
+        final long interval = 1000;
+        RegularIntervalSTTrajectory regular = new RegularIntervalSTTrajectory(
+                start, interval, true, new ProjectionEquirectangular());
+        for (int i = 0; i < 50; i++) {
+            regular.addCartesian(i * 10, Math.sin(i) * 100);
+        }
+        STTrajectory traj = regular.toSTTrajectory();
+        for (long t = start - 2500; t < start + 52 * interval; t += 250) {
+            Assert.assertEquals(traj.indexOf(t), regular.indexOf(t));
+            double[] expected = traj.positionAt(t);
+            double[] actual = regular.positionAt(t);
+            if(expected == null){
+                Assert.assertNull(actual);
+            }else{
+                Assert.assertArrayEquals(expected, actual, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyNextInterval() {
+        RegularIntervalSTTrajectory regular = new RegularIntervalSTTrajectory(
+                0, 1000, true, new ProjectionEquirectangular());
+        STTrajectory pts = new STTrajectory(true, new ProjectionEquirectangular());
+        pts.addCartesian(1, 2, 0);
+        pts.addCartesian(1, 2, 1500);
+        regular.add(pts.get(0));
+        try{
+            regular.add(pts.get(1));
+            Assert.fail("Added an entry off the interval.");
+        }catch (IllegalArgumentException ignored){}
+        Assert.assertEquals(1, regular.size());
+
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        traj.addCartesian(5, 5, 1000);
+        traj.addCartesian(6, 6, 2000);
+        traj.addCartesian(7, 7, 3500);
+        try{
+            regular.addAll(traj);
+            Assert.fail("Added entries off the interval.");
+        }catch (IllegalArgumentException ignored){}
+        Assert.assertEquals(1, regular.size());
+        regular.addAll(traj, 0, 2);
+        Assert.assertEquals(3, regular.size());
+        Assert.assertEquals(2000, regular.getEpochMillis(2));
+    }
+
+    @Test
+    public void testDistanceIndexAfterRejectedEntries() {
+        for (boolean cartesian : new boolean[]{true, false}) {
+            RegularIntervalSTTrajectory regular = new RegularIntervalSTTrajectory(
+                    0, 1000, true, new ProjectionEquirectangular());
+            regular.setDistanceIndexed(true);
+            regular.addCartesian(0, 0);
+            regular.addCartesian(3, 4);
+
+            //the rejected entries are far away, so any trace of them would show in the distance
+            STTrajectory rejected = new STTrajectory(true, new ProjectionEquirectangular());
+            rejected.addCartesian(1000, 1000, 2000);
+            rejected.addCartesian(2000, 2000, 3500);
+            STTrajectory next = new STTrajectory(true, new ProjectionEquirectangular());
+            next.addCartesian(6, 8, 2000);
+            if(!cartesian){
+                rejected.toGeographic();
+                next.toGeographic();
+            }
+            try{
+                regular.addAll(rejected);
+                Assert.fail("Added entries off the interval.");
+            }catch (IllegalArgumentException ignored){}
+            Assert.assertEquals(2, regular.size());
+            Assert.assertEquals(5, regular.distanceAlong(0, 1), 1e-6);
+
+            regular.addAll(next);
+            Assert.assertEquals(3, regular.size());
+            Assert.assertEquals(10, regular.distanceAlong(0, 2), 1e-6);
+            Assert.assertArrayEquals(new double[]{3, 4, 6, 8},
+                    new double[]{regular.getX(1), regular.getY(1), regular.getX(2), regular.getY(2)}, 1e-6);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package onethreeseven.datastructures.data;
+
+import onethreeseven.datastructures.model.STPt;
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.datastructures.model.TimeAndStop;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Test the column storage of spatio-temporal trajectories.
+ * @see STTrajectory
+ * @see STStopTrajectory
+ * @author Luke Bermingham
+ */
+public class STTrajectoryTest {
+
+    private static final LocalDateTime startTime = LocalDateTime.of(2017, 3, 1, 9, 30, 15, 250000000);
+
+    private static STTrajectory makeTraj(int nPts){
+        STTrajectory traj = new STTrajectory(false, new ProjectionEquirectangular());
+        for (int i = 0; i < nPts; i++) {
+            traj.addGeographic(new double[]{-27 + i * 0.001, 153 + i * 0.001}, startTime.plusSeconds(i));
+        }
+        return traj;
+    }
+
+    @Test
+    public void testGrowAndGet() {
+        int nPts = 1000;
+        STTrajectory traj = makeTraj(nPts);
+        Assert.assertEquals(nPts, traj.size());
+
+        int i = 0;
+        for (STPt stPt : traj) {
+            Assert.assertArrayEquals(new double[]{-27 + i * 0.001, 153 + i * 0.001}, stPt.getCoords(), 1e-10);
+            Assert.assertEquals(startTime.plusSeconds(i), stPt.getTime());
+            Assert.assertEquals(startTime.plusSeconds(i), traj.getTime(i));
+            i++;
+        }
+        Assert.assertEquals(nPts, i);
+    }
+
+    @Test
+    public void testModeRoundTrip() {
+        STTrajectory traj = makeTraj(10);
+        double distGeo = traj.distanceAlong(0, 9);
+        traj.toCartesian();
+        double distCartesian = traj.distanceAlong(0, 9);
+        Assert.assertEquals(distGeo, distCartesian, 1e-6);
+        traj.toGeographic();
+        for (int i = 0; i < traj.size(); i++) {
+            Assert.assertArrayEquals(new double[]{-27 + i * 0.001, 153 + i * 0.001}, traj.getCoords(i), 1e-7);
+        }
+    }
+
+    @Test
+    public void testDistanceIndex() {
+        STTrajectory traj = makeTraj(500);
+        STTrajectory indexed = makeTraj(250);
+        indexed.setDistanceIndexed(true);
+        //entries added after the index is enabled are indexed too
+        STTrajectory rest = makeTraj(500);
+        for (int i = 250; i < 400; i++) {
+            indexed.addGeographic(rest.getCoords(i), rest.getTime(i));
+        }
+        STTrajectory tail = new STTrajectory(false, new ProjectionEquirectangular());
+        for (int i = 400; i < 500; i++) {
+            tail.addGeographic(rest.getCoords(i), rest.getTime(i));
+        }
+        indexed.addAll(tail);
+        Assert.assertTrue(indexed.isDistanceIndexed());
+        assertSameDistances(traj, indexed);
+
+        traj.toCartesian();
+        indexed.toCartesian();
+        assertSameDistances(traj, indexed);
+        traj.toGeographic();
+        indexed.toGeographic();
+        assertSameDistances(traj, indexed);
+
+        indexed.setDistanceIndexed(false);
+        Assert.assertFalse(indexed.isDistanceIndexed());
+        assertSameDistances(traj, indexed);
+    }
+
+    private static void assertSameDistances(STTrajectory expected, STTrajectory actual){
+        Assert.assertEquals(expected.size(), actual.size());
+        Random rand = new java.util.Random(137);
+        for (int i = 0; i < 100; i++) {
+            int a = rand.nextInt(expected.size());
+            int b = rand.nextInt(expected.size());
+            int start = Math.min(a, b);
+            int end = Math.max(a, b);
+            Assert.assertEquals(expected.distanceAlong(start, end), actual.distanceAlong(start, end), 1e-6);
+        }
+        Assert.assertEquals(expected.getAverageSpeed(), actual.getAverageSpeed(), 1e-6);
+    }
+
+    @Test
+    public void testTemporalLookup() {
+        STTrajectory traj = makeTraj(100);
+        Assert.assertEquals(0, traj.indexOf(startTime));
+        Assert.assertEquals(42, traj.indexOf(startTime.plusSeconds(42)));
+        Assert.assertEquals(-44, traj.indexOf(startTime.plusSeconds(42).plusNanos(500000000)));
+        Assert.assertEquals(-1, traj.indexOf(startTime.minusSeconds(1)));
+        Assert.assertEquals(-101, traj.indexOf(startTime.plusSeconds(100)));
+
+        //exactly on an entry and halfway between two entries
+        Assert.assertArrayEquals(traj.getCoords(10), traj.positionAt(startTime.plusSeconds(10)), 0);
+        double[] halfway = traj.positionAt(startTime.plusSeconds(10).plusNanos(500000000));
+        Assert.assertArrayEquals(new double[]{-27 + 10.5 * 0.001, 153 + 10.5 * 0.001}, halfway, 1e-10);
+        Assert.assertNull(traj.positionAt(startTime.minusSeconds(1)));
+        Assert.assertNull(traj.positionAt(startTime.plusSeconds(100)));
+
+        long start = traj.getEpochMillis(0);
+        long[] times = new long[]{start - 1, start, start + 250, start + 10500, start + 10500, start + 99000, start + 99001};
+        double[][] positions = traj.positionsAt(times);
+        for (int i = 0; i < times.length; i++) {
+            double[] expected = traj.positionAt(times[i]);
+            if(expected == null){
+                Assert.assertNull(positions[i]);
+            }else{
+                Assert.assertArrayEquals(expected, positions[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSubTrajectory() {
+        STTrajectory traj = makeTraj(100);
+        STTrajectory sub = traj.subTrajectory(startTime.plusSeconds(20).minusNanos(1000000), startTime.plusSeconds(30));
+        Assert.assertEquals(11, sub.size());
+        for (int i = 0; i < sub.size(); i++) {
+            Assert.assertArrayEquals(traj.getCoords(i + 20), sub.getCoords(i), 0);
+            Assert.assertEquals(traj.getEpochMillis(i + 20), sub.getEpochMillis(i));
+        }
+        Assert.assertEquals(0, traj.subTrajectory(startTime.plusSeconds(200), startTime.plusSeconds(300)).size());
+        Assert.assertEquals(0, traj.subTrajectory(startTime.plusSeconds(30), startTime.plusSeconds(20)).size());
+    }
+
+    @Test
+    public void testSpeed() {
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        traj.addCartesian(0, 0, 0);
+        traj.addCartesian(10, 0, 2000);
+        traj.addCartesian(10, 30, 5000);
+        Assert.assertEquals(0, traj.getSpeed(0), 1e-10);
+        Assert.assertEquals(5, traj.getSpeed(1), 1e-10);
+        Assert.assertEquals(10, traj.getSpeed(2), 1e-10);
+        Assert.assertEquals(40, traj.distanceAlong(0, 2), 1e-10);
+    }
+
+    @Test
+    public void testStops() {
+        STStopTrajectory traj = new STStopTrajectory(false, new ProjectionEquirectangular());
+        for (int i = 0; i < 100; i++) {
+            traj.addGeographic(new double[]{10, 20}, new TimeAndStop(startTime.plusSeconds(i), i % 3 == 0));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 3 == 0, traj.isStopped(i));
+            Assert.assertEquals(i % 3 == 0, traj.get(i).isStopped());
+        }
+        traj.setStopped(1, true);
+        Assert.assertTrue(traj.get(1).isStopped());
+    }
+
+}
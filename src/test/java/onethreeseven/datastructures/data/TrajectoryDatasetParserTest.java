@@ -10,12 +10,16 @@ import onethreeseven.geo.projection.AbstractGeographicProjection;
 import onethreeseven.geo.projection.ProjectionEquirectangular;
 import org.junit.Assert;
 import org.junit.Test;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 import java.util.logging.Logger;
 
 /**
@@ -290,4 +294,50 @@ public class TrajectoryDatasetParserTest {
         }
     }
 
+
+    @Test
+    public void testParallelParseMatchesSequential() throws IOException {
+        //large enough to be split into several chunks
+        File dataset = File.createTempFile("parallel-parse", ".txt");
+        dataset.deleteOnExit();
+        Random rand = new Random(137);
+        LocalDateTime t = LocalDateTime.of(2002, 9, 10, 9, 15, 59);
+        DateTimeFormatter dateFmt = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        DateTimeFormatter timeFmt = DateTimeFormatter.ofPattern("HH:mm:ss");
+        try(BufferedWriter bw = new BufferedWriter(new FileWriter(dataset))){
+            bw.write("id;lon;lat;date;time\n");
+            for (int i = 0; i < 100000; i++) {
+                t = t.plusSeconds(1);
+                String id = "traj" + rand.nextInt(7);
+                bw.write(id + ";" + (rand.nextDouble() * 2 + 23) + ";" + (rand.nextDouble() * 2 + 38) + ";"
+                        + dateFmt.format(t) + ";" + timeFmt.format(t));
+                //mix in some windows line endings
+                bw.write(i % 3 == 0 ? "\r\n" : "\n");
+            }
+        }
+
+        STTrajectoryParser parser = new STTrajectoryParser(
+                projection,
+                new IdFieldResolver(0),
+                new LatFieldResolver(2),
+                new LonFieldResolver(1),
+                new TemporalFieldResolver(3,4),
+                true)
+                .setnLinesToSkip(1)
+                .setDelimiter(";");
+
+        Map<String, STTrajectory> expected = parser.setParallel(false).parse(dataset);
+        Map<String, STTrajectory> actual = parser.setParallel(true).parse(dataset);
+
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) {
+            STTrajectory expectedTraj = expected.get(id);
+            STTrajectory actualTraj = actual.get(id);
+            Assert.assertEquals(expectedTraj.size(), actualTraj.size());
+            for (int i = 0; i < expectedTraj.size(); i++) {
+                Assert.assertArrayEquals(expectedTraj.getCoords(i), actualTraj.getCoords(i), 1e-10);
+                Assert.assertEquals(expectedTraj.getEpochMillis(i), actualTraj.getEpochMillis(i));
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package onethreeseven.datastructures.data.resolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks {@link DecimalParser} gives exactly the same doubles as {@link Double#parseDouble(String)}.
+ * @author Luke Bermingham
+ */
+public class DecimalParserTest {
+
+    private static void assertSameAsJdk(String str){
+        double expected = Double.parseDouble(str);
+        double actual = DecimalParser.parse(str);
+        Assert.assertEquals("Parsing: " + str,
+                Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    @Test
+    public void testCoordinates() {
+        Random rand = new Random(137);
+        for (int i = 0; i < 100000; i++) {
+            double lat = rand.nextDouble() * 180 - 90;
+            double lon = rand.nextDouble() * 360 - 180;
+            assertSameAsJdk(String.valueOf(lat));
+            assertSameAsJdk(String.valueOf(lon));
+            assertSameAsJdk(String.format(Locale.ROOT, "%.6f", lat));
+            assertSameAsJdk(String.format(Locale.ROOT, "%.8f", lon));
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        String[] strs = new String[]{
+                "0", "-0", "+0", "0.0", "-0.0", "00012.5000", ".5", "5.", "-.25",
+                "1e3", "1E3", "1e-3", "-1.5e+2", "4.35e22", "1e23", "1e-400", "1e400",
+                "9007199254740993", "123456789012345678901234", "0.1000000000000000055511151231257827",
+                "2.2250738585072014E-308", "4.9E-324", "1.7976931348623157E308",
+                "NaN", "-Infinity", "1.0d", "2f", "0x1.8p1", "  42.5 ", "\t-3\t",
+                //19 and 18 significant digits, the former overflow a long mantissa
+                "9999999999999999999", "-9999999999999999999", "0.9999999999999999999",
+                "9223372036854775808", "9223372036854775807", "999999999999999999", "0.999999999999999999"
+        };
+        for (String str : strs) {
+            assertSameAsJdk(str);
+        }
+    }
+
+    @Test
+    public void testRange() {
+        String line = "abc,-37.8136,144.9631,xyz";
+        Assert.assertEquals(-37.8136, DecimalParser.parse(line, 4, 12), 0);
+        Assert.assertEquals(144.9631, DecimalParser.parse(line, 13, 21), 0);
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] strs = new String[]{"", " ", "-", ".", "1e", "1.2.3", "abc", "--1"};
+        for (String str : strs) {
+            try{
+                DecimalParser.parse(str);
+                Assert.fail("Should not parse: '" + str + "'");
+            }catch (NumberFormatException ignored){}
+        }
+    }
+
+}
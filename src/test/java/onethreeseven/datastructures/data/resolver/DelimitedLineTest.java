@@ -0,0 +1,61 @@
+package onethreeseven.datastructures.data.resolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Arrays;
+
+/**
+ * Test that tokenizing gives the same fields as {@link String#split(String)}.
+ * @see DelimitedLine
+ * @author Luke Bermingham
+ */
+public class DelimitedLineTest {
+
+    private static void assertSameAsSplit(String line, String delimiter){
+        DelimitedLine fields = new DelimitedLine(delimiter).tokenize(line);
+        String[] expected = line.split(delimiter);
+        Assert.assertTrue("Tokenizing '" + line + "' by '" + delimiter + "' gave: " + fields,
+                Arrays.equals(expected, fields.toArray()));
+    }
+
+    @Test
+    public void testSameAsSplit() {
+        String[] lines = new String[]{
+                "0862;1;10/09/2002;09:15:59;23.845089;38.018470",
+                "1,85,137",
+                "1, -27.46, 153.03, 2016-11-22T08:08:53, MOVING",
+                "a,,b,,",
+                ",,",
+                ",a",
+                "",
+                "no delimiter here",
+                "2",
+                "x  y\tz"
+        };
+        String[] delimiters = new String[]{",", ";", "", " ", "\\s+", "\\t", "\\|", ", "};
+        for (String line : lines) {
+            for (String delimiter : delimiters) {
+                assertSameAsSplit(line, delimiter);
+            }
+        }
+    }
+
+    @Test
+    public void testFieldReuse() {
+        DelimitedLine fields = new DelimitedLine(",");
+        String first = fields.tokenize("abc,1").getField(0);
+        String second = fields.tokenize("abc,2").getField(0);
+        Assert.assertTrue(first == second);
+        Assert.assertEquals("2", fields.getField(1));
+        Assert.assertEquals("abd", fields.tokenize("abd,3").getField(0));
+    }
+
+    @Test
+    public void testTrimmedCompare() {
+        DelimitedLine fields = new DelimitedLine(",").tokenize("1, stopped ,MOVING");
+        Assert.assertTrue(fields.trimmedFieldEqualsIgnoreCase(1, "STOPPED"));
+        Assert.assertFalse(fields.trimmedFieldEqualsIgnoreCase(2, "STOPPED"));
+        Assert.assertEquals("stopped  MOVING", fields.getJoinedFields(new int[]{1, 2}, " "));
+    }
+
+}
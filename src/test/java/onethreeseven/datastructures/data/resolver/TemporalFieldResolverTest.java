@@ -0,0 +1,159 @@
+package onethreeseven.datastructures.data.resolver;
+
+import onethreeseven.common.util.TimeUtil;
+import onethreeseven.datastructures.util.EpochMillisUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Checks the detected time-stamp layouts resolve the same times as {@link TimeUtil#parseDate(String)}.
+ * @author Luke Bermingham
+ */
+public class TemporalFieldResolverTest {
+
+    private static void assertResolvesLikeTimeUtil(String delimiter, String[] lines, int... indices){
+        TemporalFieldResolver resolver = new TemporalFieldResolver(indices);
+        DelimitedLine fields = new DelimitedLine(delimiter);
+        for (String line : lines) {
+            fields.tokenize(line);
+            LocalDateTime expected = TimeUtil.parseDate(fields.getJoinedFields(indices, " "));
+            Assert.assertEquals(line, expected, resolver.resolve(fields));
+            Assert.assertEquals(line, expected, EpochMillisUtil.toLocalDateTime(
+                    resolver.resolveEpochMillis(fields)));
+        }
+    }
+
+    private static String[] makeLines(String format, int n){
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern(format);
+        LocalDateTime t = LocalDateTime.of(2002, 9, 10, 23, 59, 0);
+        String[] lines = new String[n];
+        for (int i = 0; i < n; i++) {
+            t = t.plusSeconds(7).plusNanos(1000000 * i);
+            lines[i] = "truck" + i + ";" + fmt.format(t) + ";23.84";
+        }
+        return lines;
+    }
+
+    @Test
+    public void testDetectSeparateDateAndTime() {
+        String[] lines = makeLines("dd/MM/yyyy;HH:mm:ss", 100);
+        assertResolvesLikeTimeUtil(";", lines, 1, 2);
+        TemporalFieldResolver resolver = new TemporalFieldResolver(1, 2);
+        DelimitedLine fields = new DelimitedLine(";");
+        for (String line : lines) {
+            resolver.resolve(fields.tokenize(line));
+        }
+        Assert.assertEquals("dd/MM/yyyy HH:mm:ss", resolver.getDetectedPattern());
+    }
+
+    @Test
+    public void testDetectDateTime() {
+        assertResolvesLikeTimeUtil(";", makeLines("yyyy-MM-dd HH:mm:ss", 100), 1);
+    }
+
+    @Test
+    public void testIsoLayout() {
+        TimestampLayout layout = new TimestampLayout("yyyy-MM-ddTHH:mm:ss[.S]");
+        DelimitedLine fields = new DelimitedLine(",");
+        int[] indices = new int[]{0};
+        Assert.assertEquals(EpochMillisUtil.toEpochMillis(LocalDateTime.of(2017, 1, 2, 10, 0, 3)),
+                layout.parse(fields.tokenize("2017-01-02T10:00:03"), indices));
+        Assert.assertEquals(EpochMillisUtil.toEpochMillis(LocalDateTime.of(2017, 1, 2, 10, 0, 3, 500000000)),
+                layout.parse(fields.tokenize("2017-01-02T10:00:03.5"), indices));
+        Assert.assertEquals(EpochMillisUtil.toEpochMillis(LocalDateTime.of(2017, 1, 2, 10, 0, 3, 123000000)),
+                layout.parse(fields.tokenize("2017-01-02T10:00:03.123"), indices));
+        //more precise than millis
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-01-02T10:00:03.1234"), indices));
+    }
+
+    @Test
+    public void testLinesThatDoNotFitLayout() {
+        String[] lines = new String[]{
+                "a, 2017-01-01 10:00:00 ",
+                "a,2017-01-01 10:00:01",
+                "a,02/01/2017 10:00:02",
+                "a,2016-02-29 10:00:04",
+                "a,2017-01-02 10:00:05"
+        };
+        assertResolvesLikeTimeUtil(",", lines, 1);
+    }
+
+    @Test
+    public void testCustomParserNotDetected() {
+        TemporalFieldResolver resolver = new TemporalFieldResolver(s -> LocalDateTime.of(2000, 1, 1, 0, 0), 1);
+        DelimitedLine fields = new DelimitedLine(",");
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(LocalDateTime.of(2000, 1, 1, 0, 0),
+                    resolver.resolve(fields.tokenize("a,2017-01-01 10:00:00")));
+        }
+        Assert.assertNull(resolver.getDetectedPattern());
+    }
+
+    @Test
+    public void testInvalidDate() {
+        TimestampLayout layout = new TimestampLayout("yyyy-MM-dd HH:mm:ss");
+        DelimitedLine fields = new DelimitedLine(",");
+        int[] indices = new int[]{0};
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-02-30 10:00:00"), indices));
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-01-01 24:00:00"), indices));
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-01-01 10:00"), indices));
+        Assert.assertTrue(layout.parse(fields.tokenize("2017-01-01 10:00:00"), indices) != TimestampLayout.FAILED);
+    }
+
+    @Test
+    public void testOutOfRangeMonthAndDay() {
+        TimestampLayout layout = new TimestampLayout("yyyy-MM-dd HH:mm:ss");
+        DelimitedLine fields = new DelimitedLine(",");
+        int[] indices = new int[]{0};
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-20-01 10:00:00"), indices));
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-00-01 10:00:00"), indices));
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-04-33 10:00:00"), indices));
+        Assert.assertEquals(TimestampLayout.FAILED, layout.parse(fields.tokenize("2017-04-00 10:00:00"), indices));
+
+        TimestampLayout dateOnly = new TimestampLayout("yyyy-MM-dd");
+        Assert.assertEquals(TimestampLayout.FAILED, dateOnly.parse(fields.tokenize("2017-04-33"), indices));
+        Assert.assertEquals(TimestampLayout.FAILED, dateOnly.parse(fields.tokenize("2017-13-01"), indices));
+    }
+
+    @Test
+    public void testAmbiguousPrefixIsNotGuessed() {
+        //day first, but day and month read the same either way until the last few lines
+        String[] lines = new String[60];
+        for (int i = 0; i < 50; i++) {
+            lines[i] = String.format("a,03/03/2017 10:00:%02d", i);
+        }
+        for (int i = 50; i < lines.length; i++) {
+            lines[i] = String.format("a,%02d/03/2017 10:00:%02d", i - 30, i);
+        }
+        assertResolvesLikeTimeUtil(",", lines, 1);
+
+        TemporalFieldResolver resolver = new TemporalFieldResolver(1);
+        DelimitedLine fields = new DelimitedLine(",");
+        for (int i = 0; i < 50; i++) {
+            resolver.resolve(fields.tokenize(lines[i]));
+        }
+        Assert.assertNull(resolver.getDetectedPattern());
+        for (int i = 50; i < lines.length; i++) {
+            resolver.resolve(fields.tokenize(lines[i]));
+        }
+        Assert.assertEquals("dd/MM/yyyy HH:mm:ss", resolver.getDetectedPattern());
+        Assert.assertEquals(LocalDateTime.of(2017, 3, 5, 10, 0, 0),
+                resolver.resolve(fields.tokenize("a,05/03/2017 10:00:00")));
+    }
+
+    @Test
+    public void testSubMillisLineDoesNotEndDetection() {
+        String[] lines = makeLines("yyyy-MM-dd HH:mm:ss", 10);
+        TemporalFieldResolver resolver = new TemporalFieldResolver(1);
+        DelimitedLine fields = new DelimitedLine(";");
+        Assert.assertEquals(LocalDateTime.of(2017, 1, 1, 10, 0, 0, 123456),
+                resolver.resolve(fields.tokenize("a;2017-01-01T10:00:00.000123456;1")));
+        for (String line : lines) {
+            resolver.resolve(fields.tokenize(line));
+        }
+        Assert.assertEquals("yyyy-MM-dd HH:mm:ss", resolver.getDetectedPattern());
+    }
+
+}
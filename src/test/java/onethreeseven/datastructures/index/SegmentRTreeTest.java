@@ -0,0 +1,130 @@
+package onethreeseven.datastructures.index;
+
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Test the segment R-tree against a brute force scan of every segment.
+ * @see SegmentRTree
+ * @author Luke Bermingham
+ */
+public class SegmentRTreeTest {
+
+    private static Map<String, SpatialTrajectory> makeRandomWalks(int nTrajs, int maxEntries, Random rand){
+        Map<String, SpatialTrajectory> trajs = new HashMap<>();
+        for (int t = 0; t < nTrajs; t++) {
+            SpatialTrajectory traj = new SpatialTrajectory(true, new ProjectionEquirectangular());
+            double x = rand.nextDouble() * 10000;
+            double y = rand.nextDouble() * 10000;
+            int n = 1 + rand.nextInt(maxEntries);
+            for (int i = 0; i < n; i++) {
+                traj.addCartesian(x, y);
+                x += rand.nextGaussian() * 50;
+                y += rand.nextGaussian() * 50;
+            }
+            trajs.put(String.valueOf(t), traj);
+        }
+        return trajs;
+    }
+
+    /**
+     * @return Every segment in the matches as "id:startIdx".
+     */
+    private static Set<String> toSegments(List<SegmentMatch> matches){
+        Set<String> segments = new HashSet<>();
+        for (SegmentMatch match : matches) {
+            int lastSegment = Math.max(match.getStartIdx(), match.getEndIdx() - 1);
+            for (int i = match.getStartIdx(); i <= lastSegment; i++) {
+                Assert.assertTrue(segments.add(match.getId() + ":" + i));
+            }
+        }
+        return segments;
+    }
+
+    private static int next(SpatialTrajectory traj, int i){
+        return Math.min(i + 1, traj.size() - 1);
+    }
+
+    @Test
+    public void testBoxQuery() {
+        Random rand = new Random(137);
+        Map<String, SpatialTrajectory> trajs = makeRandomWalks(50, 300, rand);
+        SegmentRTree tree = new SegmentRTree(trajs, 4, 5);
+        Assert.assertTrue(tree.getHeight() > 2);
+
+        for (int q = 0; q < 50; q++) {
+            double minX = rand.nextDouble() * 10000;
+            double minY = rand.nextDouble() * 10000;
+            double maxX = minX + rand.nextDouble() * 1000;
+            double maxY = minY + rand.nextDouble() * 1000;
+            Set<String> expected = new HashSet<>();
+            for (Map.Entry<String, SpatialTrajectory> entry : trajs.entrySet()) {
+                SpatialTrajectory traj = entry.getValue();
+                for (int i = 0; i < Math.max(1, traj.size() - 1); i++) {
+                    int j = next(traj, i);
+                    if(SegmentRTree.segmentIntersectsBox(traj.getX(i), traj.getY(i), traj.getX(j), traj.getY(j),
+                            minX, minY, maxX, maxY)){
+                        expected.add(entry.getKey() + ":" + i);
+                    }
+                }
+            }
+            List<SegmentMatch> matches = tree.query(new double[][]{{minX, maxX}, {minY, maxY}});
+            Assert.assertEquals(expected, toSegments(matches));
+        }
+    }
+
+    @Test
+    public void testRadiusAndNearest() {
+        Random rand = new Random(731);
+        Map<String, SpatialTrajectory> trajs = makeRandomWalks(50, 300, rand);
+        SegmentRTree tree = new SegmentRTree(trajs);
+
+        for (int q = 0; q < 50; q++) {
+            double x = rand.nextDouble() * 10000;
+            double y = rand.nextDouble() * 10000;
+            double radius = rand.nextDouble() * 500;
+            Set<String> expected = new HashSet<>();
+            double nearestDist = Double.POSITIVE_INFINITY;
+            for (Map.Entry<String, SpatialTrajectory> entry : trajs.entrySet()) {
+                SpatialTrajectory traj = entry.getValue();
+                for (int i = 0; i < Math.max(1, traj.size() - 1); i++) {
+                    int j = next(traj, i);
+                    double dist = Math.sqrt(SegmentRTree.segmentDistanceSq(x, y,
+                            traj.getX(i), traj.getY(i), traj.getX(j), traj.getY(j)));
+                    nearestDist = Math.min(nearestDist, dist);
+                    if(dist <= radius){
+                        expected.add(entry.getKey() + ":" + i);
+                    }
+                }
+            }
+            List<SegmentMatch> matches = tree.withinDistance(x, y, radius);
+            Assert.assertEquals(expected, toSegments(matches));
+            for (SegmentMatch match : matches) {
+                Assert.assertTrue(match.getDistance() <= radius);
+            }
+
+            List<SegmentMatch> nearest = tree.nearest(x, y, 3);
+            Assert.assertEquals(3, nearest.size());
+            Assert.assertEquals(nearestDist, nearest.get(0).getDistance(), 1e-9);
+            Assert.assertTrue(nearest.get(0).getDistance() <= nearest.get(1).getDistance());
+            Assert.assertTrue(nearest.get(1).getDistance() <= nearest.get(2).getDistance());
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        SegmentRTree tree = new SegmentRTree(new HashMap<String, SpatialTrajectory>());
+        Assert.assertTrue(tree.query(new double[][]{{0, 1}, {0, 1}}).isEmpty());
+        Assert.assertNull(tree.nearest(0, 0));
+    }
+
+}
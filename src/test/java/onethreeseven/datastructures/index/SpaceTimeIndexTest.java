@@ -0,0 +1,96 @@
+package onethreeseven.datastructures.index;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.util.DataGeneratorUtil;
+import onethreeseven.trajsuitePlugin.util.BoundsUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test the space-time index against a brute force scan of every entry.
+ * @see SpaceTimeIndex
+ * @author Luke Bermingham
+ */
+public class SpaceTimeIndexTest {
+
+    private static List<SegmentMatch> bruteForce(Map<String, STStopTrajectory> trajs, double[][] bounds,
+                                                 long from, long to, boolean cartesian){
+        List<SegmentMatch> out = new ArrayList<>();
+        for (Map.Entry<String, STStopTrajectory> entry : trajs.entrySet()) {
+            STStopTrajectory traj = entry.getValue();
+            int runStart = -1;
+            for (int i = 0; i <= traj.size(); i++) {
+                boolean inside = false;
+                if(i < traj.size()){
+                    double[] xy = traj.getCoords(i, cartesian);
+                    long t = traj.getEpochMillis(i);
+                    inside = t >= from && t <= to && xy[0] >= bounds[0][0] && xy[0] <= bounds[0][1]
+                            && xy[1] >= bounds[1][0] && xy[1] <= bounds[1][1];
+                }
+                if(inside && runStart < 0){
+                    runStart = i;
+                }else if(!inside && runStart >= 0){
+                    out.add(new SegmentMatch(entry.getKey(), runStart, i - 1, 0));
+                    runStart = -1;
+                }
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Map<String, STStopTrajectory> trajs = DataGeneratorUtil.generateTrajsWithStops(
+                10, 1000, -37.8136, 144.9631, 10, 10, 1000, 60000, 3);
+        SpaceTimeIndex<STStopTrajectory> index = new SpaceTimeIndex<>(trajs, 32);
+
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        double[][] geoBounds = null;
+        for (STStopTrajectory traj : trajs.values()) {
+            minTime = Math.min(minTime, traj.getEpochMillis(0));
+            maxTime = Math.max(maxTime, traj.getEpochMillis(traj.size() - 1));
+            for (int i = 0; i < traj.size(); i++) {
+                double[] latlon = traj.getCoords(i, false);
+                if(geoBounds == null){
+                    geoBounds = BoundsUtil.boundToOverride(2);
+                }
+                BoundsUtil.expandBounds(geoBounds, latlon);
+            }
+        }
+
+        Random rand = new Random(137);
+        for (int q = 0; q < 100; q++) {
+            boolean cartesian = rand.nextBoolean();
+            double[][] bounds = new double[2][2];
+            for (int d = 0; d < 2; d++) {
+                double lo = geoBounds[d][0];
+                double range = geoBounds[d][1] - lo;
+                double a = lo + rand.nextDouble() * range;
+                bounds[d][0] = a;
+                bounds[d][1] = a + rand.nextDouble() * range / 2;
+            }
+            if(cartesian){
+                STStopTrajectory any = trajs.values().iterator().next();
+                double[] min = any.getProjection().geographicToCartesian(bounds[0][0], bounds[1][0]);
+                double[] max = any.getProjection().geographicToCartesian(bounds[0][1], bounds[1][1]);
+                bounds = new double[][]{{Math.min(min[0], max[0]), Math.max(min[0], max[0])},
+                        {Math.min(min[1], max[1]), Math.max(min[1], max[1])}};
+            }
+            long from = minTime + (long) (rand.nextDouble() * (maxTime - minTime) / 2);
+            long to = from + (long) (rand.nextDouble() * (maxTime - minTime));
+
+            List<SegmentMatch> expected = bruteForce(trajs, bounds, from, to, cartesian);
+            List<SegmentMatch> actual = cartesian ? index.query(bounds, from, to) : index.queryGeographic(bounds, from, to);
+            Assert.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            Assert.assertEquals(expected.size(), actual.size());
+        }
+    }
+
+}
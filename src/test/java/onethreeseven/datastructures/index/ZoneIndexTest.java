@@ -0,0 +1,56 @@
+package onethreeseven.datastructures.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test zone lookups against checking every zone.
+ * @see ZoneIndex
+ * @author Luke Bermingham
+ */
+public class ZoneIndexTest {
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random rand = new Random(31L);
+        Map<String, double[][]> zones = new LinkedHashMap<>();
+        for (int z = 0; z < 200; z++) {
+            double x = rand.nextDouble() * 1000;
+            double y = rand.nextDouble() * 1000;
+            double w = rand.nextDouble() * (rand.nextInt(10) == 0 ? 500 : 50);
+            double h = rand.nextDouble() * 50;
+            zones.put("zone" + z, new double[][]{{x, x + w}, {y, y + h}});
+        }
+        ZoneIndex index = new ZoneIndex(zones);
+        Assert.assertEquals(200, index.size());
+        Assert.assertEquals(7, index.indexOf("zone7"));
+        Assert.assertEquals("zone7", index.getName(7));
+        Assert.assertEquals(-1, index.indexOf("nowhere"));
+
+        double[][][] bounds = zones.values().toArray(new double[0][][]);
+        for (int i = 0; i < 10000; i++) {
+            double x = rand.nextDouble() * 1200 - 100;
+            double y = rand.nextDouble() * 1200 - 100;
+            int expected = -1;
+            for (int z = 0; z < bounds.length; z++) {
+                if(x >= bounds[z][0][0] && x <= bounds[z][0][1] && y >= bounds[z][1][0] && y <= bounds[z][1][1]){
+                    expected = z;
+                    break;
+                }
+            }
+            Assert.assertEquals(expected, index.zoneOf(x, y));
+        }
+        //edges are inside
+        Assert.assertEquals(0, index.zoneOf(bounds[0][0][1], bounds[0][1][1]));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(-1, new ZoneIndex(new LinkedHashMap<>()).zoneOf(0, 0));
+    }
+
+}
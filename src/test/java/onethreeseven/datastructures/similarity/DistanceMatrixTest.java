@@ -0,0 +1,88 @@
+package onethreeseven.datastructures.similarity;
+
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test that the tiled distance matrix matches measuring every pair directly,
+ * in memory and memory-mapped.
+ * @see DistanceMatrixBuilder
+ * @see DistanceMatrix
+ * @author Luke Bermingham
+ */
+public class DistanceMatrixTest {
+
+    private static Map<String, SpatialTrajectory> makeTrajs(int nTrajs, Random rand){
+        Map<String, SpatialTrajectory> trajs = new LinkedHashMap<>();
+        for (int t = 0; t < nTrajs; t++) {
+            SpatialTrajectory traj = new SpatialTrajectory(true, new ProjectionEquirectangular());
+            double x = rand.nextDouble() * 1000;
+            double y = rand.nextDouble() * 1000;
+            int n = 1 + rand.nextInt(20);
+            for (int i = 0; i < n; i++) {
+                x += rand.nextGaussian() * 10;
+                y += rand.nextGaussian() * 10;
+                traj.addCartesian(x, y);
+            }
+            trajs.put("traj" + t, traj);
+        }
+        return trajs;
+    }
+
+    private static void check(Map<String, SpatialTrajectory> trajs, DistanceMatrix matrix,
+                              AbstractTrajectoryDistance measure, double cutoff){
+        Assert.assertEquals(trajs.size(), matrix.size());
+        for (String idA : trajs.keySet()) {
+            for (String idB : trajs.keySet()) {
+                double expected = idA.equals(idB) ? 0 : measure.distance(trajs.get(idA), trajs.get(idB));
+                if(expected > cutoff){
+                    expected = Double.POSITIVE_INFINITY;
+                }
+                Assert.assertEquals(expected, matrix.get(idA, idB), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        Map<String, SpatialTrajectory> trajs = makeTrajs(50, new Random(3L));
+        AbstractTrajectoryDistance measure = new DiscreteFrechet();
+        DistanceMatrix matrix = new DistanceMatrixBuilder().setDistance(measure).setTileSize(7).build(trajs);
+        Assert.assertFalse(matrix.isMapped());
+        Assert.assertEquals(50 * 49 / 2 * Double.BYTES, matrix.getStoredBytes());
+        Assert.assertEquals("traj0", matrix.getId(0));
+        check(trajs, matrix, measure, Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void testMappedWithCutoff() throws IOException {
+        Map<String, SpatialTrajectory> trajs = makeTrajs(40, new Random(4L));
+        AbstractTrajectoryDistance measure = new DynamicTimeWarping(3);
+        double cutoff = 2000;
+        try(DistanceMatrix matrix = new DistanceMatrixBuilder()
+                .setDistance(measure)
+                .setCutoff(cutoff)
+                .setTileSize(5)
+                .setMaxInMemoryEntries(0)
+                .build(trajs)){
+            Assert.assertTrue(matrix.isMapped());
+            check(trajs, matrix, measure, cutoff);
+        }
+    }
+
+    @Test
+    public void testTiny() throws IOException {
+        Map<String, SpatialTrajectory> trajs = makeTrajs(1, new Random(5L));
+        DistanceMatrix matrix = new DistanceMatrixBuilder().build(trajs);
+        Assert.assertEquals(1, matrix.size());
+        Assert.assertEquals(0, matrix.get(0, 0), 0);
+    }
+
+}
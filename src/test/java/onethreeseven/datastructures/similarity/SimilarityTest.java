@@ -0,0 +1,206 @@
+package onethreeseven.datastructures.similarity;
+
+import onethreeseven.datastructures.model.SpatialTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Test the similarity measures against plain full-table versions, and that
+ * their lower bounds and early abandoning never change the answer.
+ * @see AbstractTrajectoryDistance
+ * @author Luke Bermingham
+ */
+public class SimilarityTest {
+
+    private static final double delta = 1e-9;
+
+    private static TrajectoryColumns makeTraj(int n, Random rand){
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double px = rand.nextDouble() * 100;
+        double py = rand.nextDouble() * 100;
+        for (int i = 0; i < n; i++) {
+            px += rand.nextGaussian() * 10;
+            py += rand.nextGaussian() * 10;
+            x[i] = px;
+            y[i] = py;
+        }
+        return new TrajectoryColumns(x, y);
+    }
+
+    private static double d(TrajectoryColumns a, int i, TrajectoryColumns b, int j){
+        return Math.hypot(a.getX(i) - b.getX(j), a.getY(i) - b.getY(j));
+    }
+
+    private static boolean match(TrajectoryColumns a, int i, TrajectoryColumns b, int j, double epsilon){
+        return Math.abs(a.getX(i) - b.getX(j)) <= epsilon && Math.abs(a.getY(i) - b.getY(j)) <= epsilon;
+    }
+
+    private static double naiveDTW(TrajectoryColumns a, TrajectoryColumns b, int window){
+        int n = a.size();
+        int m = b.size();
+        int w = Math.max(window, Math.abs(n - m));
+        double[][] D = new double[n + 1][m + 1];
+        for (double[] row : D) {
+            java.util.Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+        D[0][0] = 0;
+        for (int i = 1; i <= n; i++) {
+            for (int j = Math.max(1, i - w); j <= Math.min(m, (long) i + w); j++) {
+                D[i][j] = d(a, i - 1, b, j - 1) + Math.min(D[i - 1][j - 1], Math.min(D[i - 1][j], D[i][j - 1]));
+            }
+        }
+        return D[n][m];
+    }
+
+    private static double naiveFrechet(TrajectoryColumns a, TrajectoryColumns b){
+        int n = a.size();
+        int m = b.size();
+        double[][] D = new double[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                double best;
+                if(i == 0 && j == 0){
+                    best = 0;
+                }else if(i == 0){
+                    best = D[0][j - 1];
+                }else if(j == 0){
+                    best = D[i - 1][0];
+                }else{
+                    best = Math.min(D[i - 1][j - 1], Math.min(D[i - 1][j], D[i][j - 1]));
+                }
+                D[i][j] = Math.max(best, d(a, i, b, j));
+            }
+        }
+        return D[n - 1][m - 1];
+    }
+
+    private static double naiveHausdorff(TrajectoryColumns a, TrajectoryColumns b){
+        return Math.max(naiveDirected(a, b), naiveDirected(b, a));
+    }
+
+    private static double naiveDirected(TrajectoryColumns a, TrajectoryColumns b){
+        double max = 0;
+        for (int i = 0; i < a.size(); i++) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < b.size(); j++) {
+                min = Math.min(min, d(a, i, b, j));
+            }
+            max = Math.max(max, min);
+        }
+        return max;
+    }
+
+    private static double naiveEDR(TrajectoryColumns a, TrajectoryColumns b, double epsilon){
+        int n = a.size();
+        int m = b.size();
+        int[][] D = new int[n + 1][m + 1];
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j <= m; j++) {
+                if(i == 0 || j == 0){
+                    D[i][j] = i + j;
+                }else{
+                    int sub = match(a, i - 1, b, j - 1, epsilon) ? 0 : 1;
+                    D[i][j] = Math.min(D[i - 1][j - 1] + sub, Math.min(D[i - 1][j], D[i][j - 1]) + 1);
+                }
+            }
+        }
+        return D[n][m];
+    }
+
+    private static double naiveLCSS(TrajectoryColumns a, TrajectoryColumns b, double epsilon, int maxGap){
+        int n = a.size();
+        int m = b.size();
+        int[][] L = new int[n + 1][m + 1];
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                if(Math.abs(i - j) <= maxGap && match(a, i - 1, b, j - 1, epsilon)){
+                    L[i][j] = L[i - 1][j - 1] + 1;
+                }else{
+                    L[i][j] = Math.max(L[i - 1][j], L[i][j - 1]);
+                }
+            }
+        }
+        return 1 - L[n][m] / (double) Math.min(n, m);
+    }
+
+    /**
+     * Check the measure against the expected distance, and that the lower bound
+     * and thresholds agree with the exact distance.
+     */
+    private static void check(AbstractTrajectoryDistance measure, TrajectoryColumns a, TrajectoryColumns b, double expected){
+        double actual = measure.distance(a, b);
+        Assert.assertEquals(expected, actual, delta);
+        Assert.assertTrue(measure.lowerBound(a, b) <= expected + delta);
+        for (double fraction : new double[]{0, 0.25, 0.5, 0.9, 1, 1.5}) {
+            double threshold = actual * fraction;
+            double thresholded = measure.distance(a, b, threshold);
+            if(actual <= threshold){
+                Assert.assertEquals(actual, thresholded, 0);
+            }else{
+                Assert.assertEquals(Double.POSITIVE_INFINITY, thresholded, 0);
+            }
+        }
+        //just below the distance is abandoned
+        if(actual > 0){
+            Assert.assertEquals(Double.POSITIVE_INFINITY, measure.distance(a, b, Math.nextDown(actual)), 0);
+        }
+    }
+
+    @Test
+    public void testAgainstNaive() {
+        Random rand = new Random(7L);
+        for (int trial = 0; trial < 200; trial++) {
+            TrajectoryColumns a = makeTraj(1 + rand.nextInt(30), rand);
+            //same length half the time, so LB_Keogh is used
+            TrajectoryColumns b = rand.nextBoolean() ? makeTraj(a.size(), rand) : makeTraj(1 + rand.nextInt(30), rand);
+            int window = rand.nextInt(10);
+            double epsilon = 5 + rand.nextDouble() * 20;
+            int maxGap = rand.nextInt(8);
+
+            check(new DynamicTimeWarping(), a, b, naiveDTW(a, b, Integer.MAX_VALUE));
+            check(new DynamicTimeWarping(window), a, b, naiveDTW(a, b, window));
+            check(new DiscreteFrechet(), a, b, naiveFrechet(a, b));
+            check(new Hausdorff(), a, b, naiveHausdorff(a, b));
+            check(new EditDistanceOnRealSequence(epsilon), a, b, naiveEDR(a, b, epsilon));
+            check(new LongestCommonSubsequence(epsilon), a, b, naiveLCSS(a, b, epsilon, Integer.MAX_VALUE));
+            check(new LongestCommonSubsequence(epsilon, maxGap), a, b, naiveLCSS(a, b, epsilon, maxGap));
+        }
+    }
+
+    @Test
+    public void testKnownDistances() {
+        TrajectoryColumns a = new TrajectoryColumns(new double[]{0, 1, 2, 3}, new double[]{0, 0, 0, 0});
+        TrajectoryColumns b = new TrajectoryColumns(new double[]{0, 1, 2, 3}, new double[]{1, 1, 1, 1});
+        Assert.assertEquals(4, new DynamicTimeWarping().distance(a, b), delta);
+        Assert.assertEquals(1, new DiscreteFrechet().distance(a, b), delta);
+        Assert.assertEquals(1, new Hausdorff().distance(a, b), delta);
+        Assert.assertEquals(0, new EditDistanceOnRealSequence(1).distance(a, b), delta);
+        Assert.assertEquals(4, new EditDistanceOnRealSequence(0.5).distance(a, b), delta);
+        Assert.assertEquals(0, new LongestCommonSubsequence(1).distance(a, b), delta);
+        Assert.assertEquals(1, new LongestCommonSubsequence(0.5).distance(a, b), delta);
+    }
+
+    @Test
+    public void testFromTrajectory() {
+        SpatialTrajectory a = new SpatialTrajectory(true, new ProjectionEquirectangular());
+        SpatialTrajectory b = new SpatialTrajectory(true, new ProjectionEquirectangular());
+        for (int i = 0; i < 10; i++) {
+            a.addCartesian(i * 10, 0);
+            b.addCartesian(i * 10, 3);
+        }
+        Assert.assertEquals(3, new DiscreteFrechet().distance(a, b), delta);
+        Assert.assertEquals(30, new DynamicTimeWarping(0).distance(a, b), delta);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty() {
+        TrajectoryColumns a = new TrajectoryColumns(new double[0], new double[0]);
+        TrajectoryColumns b = new TrajectoryColumns(new double[]{1}, new double[]{1});
+        new Hausdorff().distance(a, b);
+    }
+
+}
@@ -0,0 +1,119 @@
+package onethreeseven.datastructures.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Test the quantile and cardinality sketches against exact answers.
+ * @see QuantileSketch
+ * @see CardinalitySketch
+ * @author Luke Bermingham
+ */
+public class QuantileSketchTest {
+
+    private static final double[] quantiles = new double[]{0, 0.01, 0.25, 0.5, 0.75, 0.95, 0.99, 1};
+
+    private static double exactQuantile(double[] sorted, double q){
+        return sorted[(int) Math.floor(q * (sorted.length - 1))];
+    }
+
+    private static void assertWithinAccuracy(double[] values, QuantileSketch sketch){
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : quantiles) {
+            double expected = exactQuantile(sorted, q);
+            double actual = sketch.getQuantile(q);
+            Assert.assertEquals("Quantile " + q, expected, actual,
+                    Math.abs(expected) * sketch.getRelativeAccuracy() + 1e-9);
+        }
+        Assert.assertEquals(sorted[0], sketch.getMin(), 0);
+        Assert.assertEquals(sorted[sorted.length - 1], sketch.getMax(), 0);
+    }
+
+    @Test
+    public void testQuantiles() {
+        Random rand = new Random(137);
+        double[] values = new double[100000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            //heavy tailed, with some zeros and negatives
+            values[i] = i % 50 == 0 ? 0 : Math.exp(rand.nextGaussian() * 3) * (i % 7 == 0 ? -1 : 1);
+            sketch.add(values[i]);
+        }
+        Assert.assertEquals(values.length, sketch.getCount());
+        assertWithinAccuracy(values, sketch);
+        Assert.assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+    }
+
+    @Test
+    public void testMerge() {
+        Random rand = new Random(731);
+        double[] values = new double[20000];
+        QuantileSketch whole = new QuantileSketch();
+        QuantileSketch[] parts = new QuantileSketch[]{new QuantileSketch(), new QuantileSketch(), new QuantileSketch()};
+        for (int i = 0; i < values.length; i++) {
+            //each part covers a different range, so merging has to grow the buckets both ways
+            values[i] = (rand.nextDouble() + 0.001) * Math.pow(100, i % parts.length);
+            whole.add(values[i]);
+            parts[i % parts.length].add(values[i]);
+        }
+        QuantileSketch merged = new QuantileSketch();
+        merged.merge(parts[2]);
+        merged.merge(parts[0]);
+        merged.merge(parts[1]);
+        Assert.assertEquals(whole.getCount(), merged.getCount());
+        for (double q : quantiles) {
+            Assert.assertEquals(whole.getQuantile(q), merged.getQuantile(q), 0);
+        }
+        assertWithinAccuracy(values, merged);
+    }
+
+    @Test
+    public void testCollapse() {
+        //only keep a few buckets, the large quantiles should still be accurate
+        QuantileSketch sketch = new QuantileSketch(0.01, 64);
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.pow(1.01, i);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        Assert.assertEquals(exactQuantile(values, 0.99), sketch.getQuantile(0.99), exactQuantile(values, 0.99) * 0.01);
+        Assert.assertEquals(values[values.length - 1], sketch.getQuantile(1), 0);
+        //collapsed values are over-estimated, but never past the maximum
+        Assert.assertTrue(sketch.getQuantile(0.01) >= exactQuantile(values, 0.01));
+    }
+
+    @Test
+    public void testCardinality() {
+        Random rand = new Random(137);
+        CardinalitySketch whole = new CardinalitySketch();
+        CardinalitySketch[] parts = new CardinalitySketch[]{new CardinalitySketch(), new CardinalitySketch()};
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 200000; i++) {
+            //plenty of duplicates
+            String id = "traj" + rand.nextInt(50000);
+            ids.add(id);
+            whole.add(id);
+            parts[i % 2].add(id);
+        }
+        parts[0].merge(parts[1]);
+        Assert.assertEquals(whole.getEstimate(), parts[0].getEstimate());
+
+        double stdError = 1.04 / Math.sqrt(1 << whole.getPrecision());
+        Assert.assertEquals(ids.size(), whole.getEstimate(), ids.size() * stdError * 3);
+
+        //small cardinalities are near exact
+        CardinalitySketch small = new CardinalitySketch();
+        for (int i = 0; i < 100; i++) {
+            small.add(String.valueOf(i % 10));
+        }
+        Assert.assertEquals(10, small.getEstimate());
+    }
+
+}
@@ -0,0 +1,152 @@
+package onethreeseven.datastructures.util;
+
+import onethreeseven.datastructures.model.STStopTrajectory;
+import onethreeseven.datastructures.model.STTrajectory;
+import onethreeseven.geo.projection.ProjectionEquirectangular;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test that the one pass statistics are the same as the ones calculated by the trajectories.
+ * @see TrajectoryStats
+ * @author Luke Bermingham
+ */
+public class TrajectoryStatsTest {
+
+    @Test
+    public void testSameAsTrajectory() {
+        Map<String, STStopTrajectory> trajs = DataGeneratorUtil.generateTrajsWithStops(
+                5, 1000, -37.8136, 144.9631, 10, 10, 1000, 60000, 3);
+        boolean toGeographic = false;
+        for (STStopTrajectory traj : trajs.values()) {
+            //check both modes
+            if(toGeographic){
+                traj.toGeographic();
+            }
+            toGeographic = !toGeographic;
+
+            TrajectoryStats stats = TrajectoryStats.of(traj);
+            Assert.assertEquals(traj.size(), stats.getNumberOfEntries());
+            double[][] bounds = traj.getBounds();
+            Assert.assertArrayEquals(bounds[0], stats.getBounds()[0], 0);
+            Assert.assertArrayEquals(bounds[1], stats.getBounds()[1], 0);
+            Assert.assertEquals(traj.distanceAlong(0, traj.size() - 1), stats.getPathLength(), 1e-6);
+            Assert.assertEquals(traj.getDuration(ChronoUnit.SECONDS), stats.getDurationMillis() / 1000);
+            Assert.assertEquals(traj.getMinSpeed(), stats.getMinSpeed(), 1e-9);
+            Assert.assertEquals(traj.getMaxSpeed(), stats.getMaxSpeed(), 1e-9);
+            Assert.assertEquals(traj.getAverageSpeed(), stats.getAverageSpeed(), 1e-9);
+            //the first entry has no speed to add to the distribution
+            Assert.assertEquals(traj.size() - 1, stats.getSpeedSketch().getCount());
+            Assert.assertEquals(traj.size() - 1, stats.getIntervalSketch().getCount());
+
+            CountStopsAndMoves counts = new CountStopsAndMoves();
+            counts.run(traj);
+            Assert.assertEquals(counts.getnStops(), stats.getNumberOfStops());
+            Assert.assertEquals(counts.getnMoves(), stats.getNumberOfMoves());
+            Assert.assertEquals(counts.getnStopEpisodes(), stats.getNumberOfStopEpisodes());
+            Assert.assertEquals(counts.getnMoveEpisodes(), stats.getNumberOfMoveEpisodes());
+            Assert.assertEquals(counts.getMinIntervalSeconds(), stats.getMinIntervalSeconds());
+            Assert.assertEquals(counts.getMaxIntervalSeconds(), stats.getMaxIntervalSeconds());
+            Assert.assertEquals(counts.getModalSamplingSeconds(), stats.getModalIntervalSeconds());
+        }
+    }
+
+    @Test
+    public void testMergeDataset() {
+        Map<String, STTrajectory> trajs = DataGeneratorUtil.generateSpatiotemporalTrajectories(20);
+        List<STTrajectory> values = new ArrayList<>(trajs.values());
+        TrajectoryStats sequential = TrajectoryStats.of(values, false);
+        TrajectoryStats parallel = TrajectoryStats.of(values, true);
+
+        long nEntries = 0;
+        double pathLength = 0;
+        double maxSpeed = 0;
+        for (STTrajectory traj : values) {
+            nEntries += traj.size();
+            pathLength += traj.distanceAlong(0, traj.size() - 1);
+            maxSpeed = Math.max(maxSpeed, traj.getMaxSpeed());
+        }
+        for (TrajectoryStats stats : new TrajectoryStats[]{sequential, parallel}) {
+            Assert.assertEquals(values.size(), stats.getNumberOfTrajectories());
+            Assert.assertEquals(nEntries, stats.getNumberOfEntries());
+            Assert.assertEquals(pathLength, stats.getPathLength(), 1e-3);
+            Assert.assertEquals(maxSpeed, stats.getMaxSpeed(), 1e-9);
+            Assert.assertTrue(stats.hasTime());
+            Assert.assertFalse(stats.hasStops());
+        }
+        Assert.assertEquals(sequential.getAverageSpeed(), parallel.getAverageSpeed(), 1e-9);
+        Assert.assertEquals(sequential.getArea(), parallel.getArea(), 0);
+        Assert.assertEquals(sequential.getSpeedSketch().getCount(), parallel.getSpeedSketch().getCount());
+
+        //the public merge copies, neither side is changed
+        TrajectoryStats first = TrajectoryStats.of(values.get(0));
+        TrajectoryStats second = TrajectoryStats.of(values.get(1));
+        long firstSpeeds = first.getSpeedSketch().getCount();
+        double[] firstXBounds = first.getBounds()[0].clone();
+        TrajectoryStats merged = first.merge(second);
+        Assert.assertEquals(values.get(0).size() + values.get(1).size(), merged.getNumberOfEntries());
+        Assert.assertEquals(firstSpeeds + second.getSpeedSketch().getCount(), merged.getSpeedSketch().getCount());
+        Assert.assertEquals(values.get(0).size(), first.getNumberOfEntries());
+        Assert.assertEquals(firstSpeeds, first.getSpeedSketch().getCount());
+        Assert.assertArrayEquals(firstXBounds, first.getBounds()[0], 0);
+        Assert.assertNotSame(first.getBounds(), merged.getBounds());
+    }
+
+    @Test
+    public void testDistinctIdsAcrossPartitions() {
+        //the same entities recorded on three days, each day is a partition
+        List<Map<String, STTrajectory>> days = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            Map<String, STTrajectory> partition = new HashMap<>();
+            for (int i = 0; i < 200; i++) {
+                STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+                traj.addCartesian(0, 0, day * 86400000L);
+                traj.addCartesian(10, 0, day * 86400000L + 1000);
+                partition.put("entity" + (i + day * 50), traj);
+            }
+            days.add(partition);
+        }
+        TrajectoryStats stats = TrajectoryStats.ofPartitions(days, false);
+        Assert.assertEquals(600, stats.getNumberOfTrajectories());
+        //ids 0 to 299
+        Assert.assertEquals(300, stats.getDistinctIds(), 300 * 0.05);
+        Assert.assertEquals(-1, TrajectoryStats.of(days.get(0).values(), false).getDistinctIds());
+    }
+
+    @Test
+    public void testModalInterval() {
+        STTrajectory traj = new STTrajectory(true, new ProjectionEquirectangular());
+        long t = 0;
+        traj.addCartesian(0, 0, t);
+        //three 5s intervals, two 3s intervals and four gaps of two hours
+        long[] intervals = new long[]{5000, 3000, 7200000, 5000, 7200000, 3000, 7200000, 5000, 7200000};
+        for (long interval : intervals) {
+            traj.addCartesian(0, 0, t += interval);
+        }
+        TrajectoryStats stats = TrajectoryStats.of(traj);
+        Assert.assertEquals(5, stats.getModalIntervalSeconds());
+        Assert.assertEquals(3, stats.getMinIntervalSeconds());
+        Assert.assertEquals(7200, stats.getMaxIntervalSeconds());
+
+        //merging a trajectory with more 3s intervals changes the mode
+        STTrajectory other = new STTrajectory(true, new ProjectionEquirectangular());
+        for (int i = 0; i < 4; i++) {
+            other.addCartesian(0, 0, i * 3000L);
+        }
+        Assert.assertEquals(3, stats.merge(TrajectoryStats.of(other)).getModalIntervalSeconds());
+
+        //only gaps, so the median is used
+        STTrajectory gaps = new STTrajectory(true, new ProjectionEquirectangular());
+        for (int i = 0; i < 4; i++) {
+            gaps.addCartesian(0, 0, i * 7200000L);
+        }
+        Assert.assertEquals(7200, TrajectoryStats.of(gaps).getModalIntervalSeconds(), 7200 * 0.02);
+    }
+
+}